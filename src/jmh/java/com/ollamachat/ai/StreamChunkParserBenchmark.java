@@ -0,0 +1,178 @@
+package com.ollamachat.ai;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses one streamed answer with {@link StreamChunkParser} and with the JSON tree path it replaced,
+ * which built a {@link JsonObject} for every line with {@code gson.fromJson}.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamChunkParserBenchmark {
+    private static final int CHUNKS = 400;
+    private static final int CONTEXT_TOKENS = 4096;
+
+    @Param({"GENERATE", "OLLAMA_CHAT", "OPENAI"})
+    private ApiFormat format;
+
+    private final Gson gson = new Gson();
+    private List<String> lines;
+
+    @Setup
+    public void setUp() {
+        lines = new ArrayList<>(CHUNKS + 2);
+        for (int i = 0; i < CHUNKS; i++) {
+            String token = i % 12 == 11 ? "sentence. " : "token" + i + " ";
+            lines.add(chunk(token, false));
+        }
+        lines.add(chunk("", true));
+        if (format == ApiFormat.OPENAI) {
+            lines.add("data: [DONE]");
+        }
+    }
+
+    @Benchmark
+    public int jsonReader() throws IOException {
+        StreamChunkParser parser = new StreamChunkParser(format, new GenerationOptions(), null);
+        StringBuilder out = new StringBuilder();
+        for (String line : lines) {
+            parser.parse(line, out);
+        }
+        return out.length();
+    }
+
+    @Benchmark
+    public int jsonTree() {
+        GenerationOptions options = new GenerationOptions();
+        StringBuilder out = new StringBuilder();
+        for (String line : lines) {
+            parseTree(line, out, options);
+        }
+        return out.length();
+    }
+
+    /**
+     * The per-line parsing of the streaming path before {@link StreamChunkParser}.
+     */
+    private void parseTree(String line, StringBuilder out, GenerationOptions options) {
+        if (line.trim().isEmpty()) return;
+
+        if (format == ApiFormat.OPENAI) {
+            if (!line.startsWith("data: ")) return;
+            String jsonData = line.substring(6);
+            if (jsonData.equals("[DONE]")) return;
+            JsonObject json = gson.fromJson(jsonData, JsonObject.class);
+            if (json.has("choices")) {
+                JsonObject delta = json.getAsJsonArray("choices")
+                        .get(0).getAsJsonObject()
+                        .getAsJsonObject("delta");
+                if (delta != null && delta.has("content") && !delta.get("content").isJsonNull()) {
+                    out.append(delta.get("content").getAsString());
+                }
+            }
+        } else if (format == ApiFormat.OLLAMA_CHAT) {
+            JsonObject json = gson.fromJson(line, JsonObject.class);
+            JsonObject message = json.getAsJsonObject("message");
+            if (message != null && message.has("content")) {
+                out.append(message.get("content").getAsString());
+            }
+        } else {
+            JsonObject json = gson.fromJson(line, JsonObject.class);
+            if (json.has("response")) {
+                out.append(json.get("response").getAsString());
+            }
+            if (json.has("context")) {
+                JsonArray array = json.getAsJsonArray("context");
+                int[] context = new int[array.size()];
+                for (int i = 0; i < context.length; i++) {
+                    context[i] = array.get(i).getAsInt();
+                }
+                options.setReturnedContext(context);
+            }
+        }
+    }
+
+    /**
+     * Builds one line as the backend sends it; the last Ollama frame carries the statistics,
+     * and for generate the context.
+     */
+    private String chunk(String token, boolean done) {
+        JsonObject json = new JsonObject();
+        switch (format) {
+            case OPENAI: {
+                JsonObject delta = new JsonObject();
+                if (!done) {
+                    delta.addProperty("content", token);
+                }
+                JsonObject choice = new JsonObject();
+                choice.addProperty("index", 0);
+                choice.add("delta", delta);
+                choice.addProperty("finish_reason", done ? "stop" : null);
+                JsonArray choices = new JsonArray();
+                choices.add(choice);
+                json.addProperty("id", "chatcmpl-123");
+                json.addProperty("object", "chat.completion.chunk");
+                json.addProperty("created", 1700000000L);
+                json.addProperty("model", "llama3");
+                json.add("choices", choices);
+                return "data: " + gson.toJson(json);
+            }
+            case OLLAMA_CHAT: {
+                JsonObject message = new JsonObject();
+                message.addProperty("role", "assistant");
+                message.addProperty("content", token);
+                json.addProperty("model", "llama3");
+                json.addProperty("created_at", "2024-01-01T00:00:00.000000Z");
+                json.add("message", message);
+                break;
+            }
+            default: {
+                json.addProperty("model", "llama3");
+                json.addProperty("created_at", "2024-01-01T00:00:00.000000Z");
+                json.addProperty("response", token);
+                break;
+            }
+        }
+        json.addProperty("done", done);
+        if (done) {
+            if (format == ApiFormat.GENERATE) {
+                JsonArray context = new JsonArray();
+                for (int i = 0; i < CONTEXT_TOKENS; i++) {
+                    context.add(i * 7 % 32000);
+                }
+                json.add("context", context);
+            }
+            json.addProperty("total_duration", 5_000_000_000L);
+            json.addProperty("load_duration", 10_000_000L);
+            json.addProperty("prompt_eval_count", 120);
+            json.addProperty("prompt_eval_duration", 200_000_000L);
+            json.addProperty("eval_count", CHUNKS);
+            json.addProperty("eval_duration", 4_700_000_000L);
+        }
+        return gson.toJson(json);
+    }
+}
@@ -1,164 +1,469 @@
 package com.ollamachat;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.ollamachat.ai.ApiFormat;
+import com.ollamachat.ai.ChatTurn;
+import com.ollamachat.ai.GenerationHandle;
+import com.ollamachat.ai.GenerationOptions;
+import com.ollamachat.ai.GenerationTrace;
+import com.ollamachat.ai.StreamChunkParser;
+import com.ollamachat.ai.StreamFlushPolicy;
+import com.ollamachat.core.ConfigManager;
+import com.ollamachat.http.HttpTransport;
+import com.ollamachat.metrics.PluginMetrics;
 
-import java.net.URI;
-import java.net.http.HttpClient;
+import java.io.IOException;
+import java.io.StringReader;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
 public class AIService {
 
-    private final HttpClient httpClient;
+    private final HttpTransport transport;
+    private final ConfigManager configManager;
+    private final PluginMetrics metrics;
     private final Gson gson;
 
-    public AIService() {
-        this.httpClient = HttpClient.newHttpClient();
+    public AIService(HttpTransport transport, ConfigManager configManager, PluginMetrics metrics) {
+        this.transport = transport;
+        this.configManager = configManager;
+        this.metrics = metrics;
         this.gson = new Gson();
     }
 
     public CompletableFuture<String> sendRequest(String apiUrl, String apiKey, String model, String prompt, boolean isMessagesFormat) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                Map<String, Object> requestBody;
-                if (isMessagesFormat) {
-                    requestBody = Map.of(
-                            "model", model,
-                            "messages", List.of(
-                                    Map.of(
-                                            "role", "user",
-                                            "content", prompt
-                                    )
-                            ),
-                            "stream", false
-                    );
-                } else {
-                    requestBody = Map.of(
-                            "model", model,
-                            "prompt", prompt,
-                            "stream", false
-                    );
-                }
-
-                String jsonRequest = gson.toJson(requestBody);
+        return sendRequest(apiUrl, apiKey, model, prompt, isMessagesFormat, null);
+    }
 
-                HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                        .uri(URI.create(apiUrl))
-                        .header("Content-Type", "application/json")
-                        .POST(HttpRequest.BodyPublishers.ofString(jsonRequest));
+    public CompletableFuture<String> sendRequest(String apiUrl, String apiKey, String model, String prompt, boolean isMessagesFormat,
+                                                 GenerationHandle handle) {
+        return sendChatRequest(apiUrl, apiKey, model, List.of(ChatTurn.user(prompt)),
+                isMessagesFormat ? ApiFormat.OPENAI : ApiFormat.GENERATE, handle);
+    }
 
-                if (apiKey != null && !apiKey.isEmpty()) {
-                    requestBuilder.header("Authorization", "Bearer " + apiKey);
-                }
+    /**
+     * Sends a conversation as a structured messages array. Backends speaking {@link ApiFormat#GENERATE}
+     * receive the turns flattened into a single prompt instead.
+     */
+    public CompletableFuture<String> sendChatRequest(String apiUrl, String apiKey, String model, List<ChatTurn> messages,
+                                                     ApiFormat format, GenerationHandle handle) {
+        return sendChatRequest(apiUrl, apiKey, model, messages, format, null, handle);
+    }
 
-                HttpRequest request = requestBuilder.build();
+    public CompletableFuture<String> sendChatRequest(String apiUrl, String apiKey, String model, List<ChatTurn> messages,
+                                                     ApiFormat format, GenerationOptions options, GenerationHandle handle) {
+        GenerationTrace trace = startTrace(handle);
+        Map<String, Object> requestBody = buildRequestBody(trace, model, messages, format, options, false);
 
-                HttpResponse<String> response = httpClient.send(
-                        request,
-                        HttpResponse.BodyHandlers.ofString()
-                );
+        CompletableFuture<HttpResponse<String>> exchange;
+        try {
+            exchange = transport.sendAsync(buildRequest(apiUrl, apiKey, requestBody), HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(
+                    new RuntimeException("Failed to get response from AI: " + e.getMessage(), e));
+        }
+        if (handle != null) {
+            // Cancelling the exchange aborts the connection, so the backend stops generating
+            handle.onCancel(() -> exchange.cancel(true));
+        }
 
-                if (response.statusCode() == 200) {
-                    return response.body();
-                } else {
-                    throw new RuntimeException("AI API Error: " + response.body());
+        return exchange.handle((response, error) -> {
+            if (handle != null && handle.isCancelled()) {
+                throw new CancellationException("Generation cancelled");
+            }
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                throw new RuntimeException("Failed to get response from AI: " + cause.getMessage(), cause);
+            }
+            if (response.statusCode() == 200) {
+                if (trace != null) {
+                    trace.addBytes(utf8Length(response.body()));
+                    readUsage(response.body(), trace);
                 }
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to get response from AI: " + e.getMessage(), e);
+                if (options != null && format == ApiFormat.GENERATE) {
+                    JsonObject json = gson.fromJson(response.body(), JsonObject.class);
+                    options.setReturnedContext(readContext(json));
+                }
+                return response.body();
             }
+            throw new RuntimeException("Failed to get response from AI: AI API Error: " + response.body());
         });
     }
 
     public CompletableFuture<Void> sendStreamingRequest(String apiUrl, String apiKey, String model, String prompt, Consumer<String> responseConsumer, boolean isMessagesFormat) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                Map<String, Object> requestBody;
-                if (isMessagesFormat) {
-                    requestBody = Map.of(
-                            "model", model,
-                            "messages", List.of(
-                                    Map.of(
-                                            "role", "user",
-                                            "content", prompt
-                                    )
-                            ),
-                            "stream", true
-                    );
-                } else {
-                    requestBody = Map.of(
-                            "model", model,
-                            "prompt", prompt,
-                            "stream", true
-                    );
+        return sendStreamingRequest(apiUrl, apiKey, model, prompt, responseConsumer, isMessagesFormat, null);
+    }
+
+    public CompletableFuture<Void> sendStreamingRequest(String apiUrl, String apiKey, String model, String prompt, Consumer<String> responseConsumer, boolean isMessagesFormat,
+                                                        GenerationHandle handle) {
+        return sendStreamingChatRequest(apiUrl, apiKey, model, List.of(ChatTurn.user(prompt)), responseConsumer,
+                isMessagesFormat ? ApiFormat.OPENAI : ApiFormat.GENERATE, handle);
+    }
+
+    /**
+     * Streaming variant of {@link #sendChatRequest}.
+     */
+    public CompletableFuture<Void> sendStreamingChatRequest(String apiUrl, String apiKey, String model, List<ChatTurn> messages,
+                                                            Consumer<String> responseConsumer, ApiFormat format,
+                                                            GenerationHandle handle) {
+        return sendStreamingChatRequest(apiUrl, apiKey, model, messages, responseConsumer, format, null, handle);
+    }
+
+    public CompletableFuture<Void> sendStreamingChatRequest(String apiUrl, String apiKey, String model, List<ChatTurn> messages,
+                                                            Consumer<String> responseConsumer, ApiFormat format,
+                                                            GenerationOptions options, GenerationHandle handle) {
+        GenerationTrace trace = startTrace(handle);
+        Map<String, Object> requestBody = buildRequestBody(trace, model, messages, format, options, true);
+
+        StreamSubscriber subscriber = new StreamSubscriber(responseConsumer, format, options,
+                StreamFlushPolicy.fromConfig(configManager), trace);
+        try {
+            // Lines are pushed to the subscriber as they arrive on the socket, so the first
+            // tokens reach the player while the model is still generating.
+            CompletableFuture<HttpResponse<Void>> exchange = transport.sendAsync(
+                    buildRequest(apiUrl, apiKey, requestBody),
+                    responseInfo -> {
+                        subscriber.statusCode = responseInfo.statusCode();
+                        return HttpResponse.BodySubscribers.fromLineSubscriber(
+                                subscriber, s -> null, StandardCharsets.UTF_8, null);
+                    });
+            exchange.whenComplete((response, error) -> {
+                if (error != null) {
+                    subscriber.fail(error);
                 }
+            });
+            if (handle != null) {
+                handle.onCancel(() -> subscriber.cancel(exchange));
+            }
+        } catch (Exception e) {
+            subscriber.fail(e);
+        }
+        return subscriber.completion;
+    }
 
-                String jsonRequest = gson.toJson(requestBody);
+    /**
+     * Extracts the answer text from a non-streaming response body.
+     */
+    public String extractContent(String responseBody, ApiFormat format) {
+        JsonObject json = gson.fromJson(responseBody, JsonObject.class);
+        switch (format) {
+            case OPENAI:
+                return json.getAsJsonArray("choices")
+                        .get(0).getAsJsonObject()
+                        .get("message").getAsJsonObject()
+                        .get("content").getAsString();
+            case OLLAMA_CHAT:
+                return json.getAsJsonObject("message").get("content").getAsString();
+            default:
+                return json.get("response").getAsString();
+        }
+    }
 
-                HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                        .uri(URI.create(apiUrl))
-                        .header("Content-Type", "application/json")
-                        .POST(HttpRequest.BodyPublishers.ofString(jsonRequest));
+    /**
+     * @return The trace the dispatcher started for this call, or null if the call is not traced
+     */
+    private static GenerationTrace startTrace(GenerationHandle handle) {
+        return handle != null ? handle.getTrace() : null;
+    }
 
-                if (apiKey != null && !apiKey.isEmpty()) {
-                    requestBuilder.header("Authorization", "Bearer " + apiKey);
+    /**
+     * Reads the token counts and timings of a non-streaming response without building a JSON tree.
+     */
+    private static void readUsage(String responseBody, GenerationTrace trace) {
+        try {
+            JsonReader reader = new JsonReader(new StringReader(responseBody));
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!StreamChunkParser.readTimingField(reader.nextName(), reader, trace)) {
+                    reader.skipValue();
                 }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Metrics are best effort; the content is parsed separately
+        }
+    }
+
+    private static long utf8Length(CharSequence text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @param trace The trace of the dispatched call, which names the backend; null for untraced calls
+     */
+    private Map<String, Object> buildRequestBody(GenerationTrace trace, String model, List<ChatTurn> messages,
+                                                 ApiFormat format, GenerationOptions options, boolean stream) {
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        requestBody.put("model", model);
+        if (format.isMessagesBased()) {
+            List<Map<String, String>> messageList = new ArrayList<>(messages.size());
+            for (ChatTurn turn : messages) {
+                messageList.add(Map.of("role", turn.getRole(), "content", turn.getContent()));
+            }
+            requestBody.put("messages", messageList);
+        } else {
+            requestBody.put("prompt", flatten(messages));
+            if (options != null && options.getContext() != null) {
+                requestBody.put("context", options.getContext());
+            }
+        }
+        if (format != ApiFormat.OPENAI) {
+            // Keeps the model loaded between questions instead of Ollama's 5 minute default
+            String keepAlive = configManager.getKeepAlive(model);
+            if (keepAlive != null) {
+                requestBody.put("keep_alive", keepAlive);
+            }
+            int numCtx = trace != null ? configManager.getContextBudgetNumCtx(trace.getAiName()) : 0;
+            if (numCtx > 0) {
+                // Ollama's own default window may be smaller than the one the prompt was budgeted for
+                requestBody.put("options", Map.of("num_ctx", numCtx));
+            }
+        }
+        requestBody.put("stream", stream);
+        return requestBody;
+    }
+
+    /**
+     * Reads the "context" token array of a final generate response.
+     */
+    private static int[] readContext(JsonObject json) {
+        if (json == null || !json.has("context") || !json.get("context").isJsonArray()) {
+            return null;
+        }
+        JsonArray array = json.getAsJsonArray("context");
+        int[] context = new int[array.size()];
+        for (int i = 0; i < context.length; i++) {
+            context[i] = array.get(i).getAsInt();
+        }
+        return context;
+    }
+
+    /**
+     * Renders turns in the plain-text transcript format used by the generate endpoint.
+     */
+    private static String flatten(List<ChatTurn> messages) {
+        if (messages.size() == 1 && ChatTurn.ROLE_USER.equals(messages.get(0).getRole())) {
+            return messages.get(0).getContent();
+        }
+        StringBuilder prompt = new StringBuilder();
+        for (int i = 0; i < messages.size(); i++) {
+            ChatTurn turn = messages.get(i);
+            if (ChatTurn.ROLE_SYSTEM.equals(turn.getRole())) {
+                prompt.append(turn.getContent());
+            } else {
+                prompt.append(ChatTurn.ROLE_USER.equals(turn.getRole()) ? "User: " : "AI: ").append(turn.getContent());
+            }
+            if (i < messages.size() - 1) {
+                prompt.append('\n');
+            }
+        }
+        return prompt.toString();
+    }
+
+    private HttpRequest buildRequest(String apiUrl, String apiKey, Map<String, Object> requestBody) {
+        String jsonRequest = gson.toJson(requestBody);
+
+        HttpRequest.Builder requestBuilder = transport.newRequest(apiUrl)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonRequest));
+
+        if (apiKey != null && !apiKey.isEmpty()) {
+            requestBuilder.header("Authorization", "Bearer " + apiKey);
+        }
+
+        return requestBuilder.build();
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+    }
+
+    /**
+     * Consumes an NDJSON (Ollama) or SSE (OpenAI-style) response body line by line.
+     * Only the pending output buffer is kept in memory, never the whole body.
+     */
+    private class StreamSubscriber implements Flow.Subscriber<String> {
+        private static final int MAX_ERROR_BODY_LENGTH = 2048;
+
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private final Consumer<String> responseConsumer;
+        private final StreamChunkParser parser;
+        private final StreamFlushPolicy flushPolicy;
+        private final GenerationTrace trace;
+        // Guards the buffer and its flushing, which also happens from the flush timer
+        private final StringBuilder buffer = new StringBuilder();
+        private long bufferedSince;
+        private boolean timerScheduled;
+        private final StringBuilder errorBody = new StringBuilder();
+        private volatile int statusCode;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled;
+
+        StreamSubscriber(Consumer<String> responseConsumer, ApiFormat format, GenerationOptions options,
+                         StreamFlushPolicy flushPolicy, GenerationTrace trace) {
+            this.responseConsumer = responseConsumer;
+            this.parser = new StreamChunkParser(format, options, trace);
+            this.flushPolicy = flushPolicy;
+            this.trace = trace;
+        }
 
-                HttpRequest request = requestBuilder.build();
-
-                HttpResponse<String> response = httpClient.send(
-                        request,
-                        HttpResponse.BodyHandlers.ofString()
-                );
-
-                if (response.statusCode() == 200) {
-                    StringBuilder buffer = new StringBuilder();
-                    int minBufferLength = 50; // Minimum length before sending
-                    String[] lines = response.body().split("\n");
-                    for (String line : lines) {
-                        if (!line.trim().isEmpty()) {
-                            if (isMessagesFormat && line.startsWith("data: ")) {
-                                String jsonData = line.substring(6); // Remove "data: " prefix
-                                if (jsonData.equals("[DONE]")) continue;
-                                JsonObject json = gson.fromJson(jsonData, JsonObject.class);
-                                if (json.has("choices")) {
-                                    String partialResponse = json.getAsJsonArray("choices")
-                                            .get(0).getAsJsonObject()
-                                            .get("delta").getAsJsonObject()
-                                            .get("content").getAsString();
-                                    buffer.append(partialResponse);
-                                }
-                            } else if (!isMessagesFormat) {
-                                JsonObject json = gson.fromJson(line, JsonObject.class);
-                                if (json.has("response")) {
-                                    String partialResponse = json.get("response").getAsString();
-                                    buffer.append(partialResponse);
-                                }
-                            }
-
-                            // Check if buffer ends with a sentence boundary or is long enough
-                            String currentBuffer = buffer.toString();
-                            if (currentBuffer.endsWith(".") || currentBuffer.endsWith("?") ||
-                                    currentBuffer.endsWith("!") || currentBuffer.length() >= minBufferLength) {
-                                responseConsumer.accept(currentBuffer);
-                                buffer.setLength(0); // Clear buffer
-                            }
-                        }
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (cancelled) return;
+            try {
+                if (statusCode != 200) {
+                    if (errorBody.length() < MAX_ERROR_BODY_LENGTH) {
+                        errorBody.append(line).append('\n');
+                    }
+                } else {
+                    metrics.streamFrame();
+                    if (trace != null) {
+                        trace.addBytes(utf8Length(line) + 1);
                     }
-                    // Send any remaining content in the buffer
+                    handleLine(line);
+                }
+                subscription.request(1);
+            } catch (Exception e) {
+                subscription.cancel();
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (cancelled) return;
+            if (statusCode != 200) {
+                completion.completeExceptionally(new RuntimeException("AI API Error: " + errorBody.toString().trim()));
+                return;
+            }
+            try {
+                // Send any remaining content in the buffer
+                synchronized (buffer) {
                     if (buffer.length() > 0) {
                         responseConsumer.accept(buffer.toString());
+                        metrics.streamChunk();
+                        buffer.setLength(0);
                     }
-                } else {
-                    throw new RuntimeException("AI API Error: " + response.body());
                 }
+                completion.complete(null);
             } catch (Exception e) {
-                throw new RuntimeException("Failed to get streaming response from AI: " + e.getMessage(), e);
+                fail(e);
             }
-        });
+        }
+
+        private void handleLine(String line) throws IOException {
+            if (line.isBlank()) return;
+
+            synchronized (buffer) {
+                int before = buffer.length();
+                parser.parse(line, buffer);
+                if (buffer.length() > before) {
+                    if (before == 0) {
+                        bufferedSince = System.currentTimeMillis();
+                    }
+                    if (trace != null) {
+                        trace.firstToken();
+                    }
+                }
+                flush();
+            }
+        }
+
+        /**
+         * Hands on as much buffered text as the flush policy allows and arms the flush timer
+         * for the rest, so text never waits longer than the policy's maximum delay.
+         * Must be called while holding the buffer lock.
+         */
+        private void flush() {
+            long now = System.currentTimeMillis();
+            int length;
+            while ((length = flushPolicy.flushLength(buffer, now - bufferedSince)) > 0) {
+                responseConsumer.accept(buffer.substring(0, length));
+                metrics.streamChunk();
+                buffer.delete(0, length);
+                bufferedSince = now;
+            }
+            long maxDelay = flushPolicy.getMaxDelayMillis();
+            if (buffer.length() > 0 && maxDelay > 0 && !timerScheduled) {
+                timerScheduled = true;
+                long delay = Math.max(1, maxDelay - (now - bufferedSince));
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(this::flushByTimer);
+            }
+        }
+
+        private void flushByTimer() {
+            try {
+                synchronized (buffer) {
+                    timerScheduled = false;
+                    if (cancelled || completion.isDone()) return;
+                    flush();
+                }
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Closes the response stream so the backend notices the disconnect and stops generating.
+         */
+        private void cancel(CompletableFuture<?> exchange) {
+            cancelled = true;
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+            exchange.cancel(true);
+            completion.completeExceptionally(new CancellationException("Generation cancelled"));
+        }
+
+        private void fail(Throwable throwable) {
+            if (cancelled) return;
+            Throwable cause = unwrap(throwable);
+            completion.completeExceptionally(
+                    new RuntimeException("Failed to get streaming response from AI: " + cause.getMessage(), cause));
+        }
     }
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package com.ollamachat;
 
+import com.ollamachat.ai.ChatTurn;
 import org.bukkit.entity.Player;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -49,4 +51,12 @@ public class ChatHistoryManager {
     public String getChatHistory(UUID playerUuid, String aiModel, String conversationId, int maxHistory) {
         return databaseManager.getChatHistory(playerUuid, aiModel, conversationId, this.maxHistory);
     }
+
+    public List<ChatTurn> getChatTurns(UUID playerUuid, String aiModel, String conversationId, int maxHistory) {
+        return databaseManager.getChatTurns(playerUuid, aiModel, conversationId, maxHistory);
+    }
+
+    public List<ChatTurn> getChatTurns(UUID playerUuid, String aiModel, String conversationId, int maxHistory, long afterId) {
+        return databaseManager.getChatTurns(playerUuid, aiModel, conversationId, maxHistory, afterId);
+    }
 }
\ No newline at end of file
@@ -1,26 +1,44 @@
 package com.ollamachat;
 
+import com.ollamachat.ai.ChatTurn;
+import com.ollamachat.ai.ConversationContextStore;
+import com.ollamachat.ai.ConversationSummarizer;
+import com.ollamachat.metrics.PluginMetrics;
+import com.ollamachat.metrics.PluginMetrics.DatabaseOperation;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 public class DatabaseManager {
     private final JavaPlugin plugin;
     private final Logger logger;
+    private final PluginMetrics metrics;
     private String databaseType; // "sqlite" or "mysql"
     private Connection sqliteConnection; // For SQLite
+    // SQLite has one shared connection; callers hold the lock from getConnection() until they close it
+    private final ReentrantLock sqliteLock = new ReentrantLock();
+    private final Connection sqliteLease = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, this::invokeShared);
     private HikariDataSource dataSource; // For MySQL (HikariCP)
 
-    public DatabaseManager(JavaPlugin plugin) {
+    public DatabaseManager(JavaPlugin plugin, PluginMetrics metrics) {
         this.plugin = plugin;
         this.logger = plugin.getLogger();
+        this.metrics = metrics;
         initializeDatabase();
     }
 
@@ -100,17 +118,40 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * For SQLite, returns the shared connection to one caller at a time. Closing it only lets the next
+     * caller in, so many worker threads can run queries without closing the connection under each other.
+     * The lock is reentrant, so a method may call another one while its own connection is open.
+     */
     private Connection getConnection() throws SQLException {
         if ("sqlite".equals(databaseType)) {
-            if (sqliteConnection == null || sqliteConnection.isClosed()) {
-                sqliteConnection = DriverManager.getConnection("jdbc:sqlite:plugins/OllamaChat/chat_history.db");
-                sqliteConnection.setAutoCommit(true);
+            sqliteLock.lock();
+            try {
+                if (sqliteConnection == null || sqliteConnection.isClosed()) {
+                    sqliteConnection = DriverManager.getConnection("jdbc:sqlite:plugins/OllamaChat/chat_history.db");
+                    sqliteConnection.setAutoCommit(true);
+                }
+            } catch (SQLException | RuntimeException e) {
+                sqliteLock.unlock();
+                throw e;
             }
-            return sqliteConnection;
+            return sqliteLease;
         }
         return dataSource.getConnection();
     }
 
+    private Object invokeShared(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().equals("close") && method.getParameterCount() == 0) {
+            sqliteLock.unlock();
+            return null;
+        }
+        try {
+            return method.invoke(sqliteConnection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
 
     private void createTables() throws SQLException {
         try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
@@ -147,6 +188,26 @@ public class DatabaseManager {
                     "FOREIGN KEY (player_uuid) REFERENCES players(uuid)," +
                     "FOREIGN KEY (conversation_id, player_uuid, ai_model) REFERENCES conversations(conversation_id, player_uuid, ai_model))");
 
+            // Ollama context per conversation (conversation_key is empty for the default conversation)
+            stmt.execute("CREATE TABLE IF NOT EXISTS conversation_contexts (" +
+                    "player_uuid " + uuidType + " NOT NULL," +
+                    "ai_model " + aiModelType + " NOT NULL," +
+                    "conversation_key " + uuidType + " NOT NULL," +
+                    "model " + textType + " NOT NULL," +
+                    "context " + (databaseType.equals("mysql") ? "MEDIUMTEXT" : "TEXT") + " NOT NULL," +
+                    "updated_at BIGINT NOT NULL," +
+                    "PRIMARY KEY (player_uuid, ai_model, conversation_key))");
+
+            // Summary of the older chat_history rows of a conversation, up to and including covered_id
+            stmt.execute("CREATE TABLE IF NOT EXISTS conversation_summaries (" +
+                    "player_uuid " + uuidType + " NOT NULL," +
+                    "ai_model " + aiModelType + " NOT NULL," +
+                    "conversation_key " + uuidType + " NOT NULL," +
+                    "summary " + longTextType + " NOT NULL," +
+                    "covered_id BIGINT NOT NULL," +
+                    "updated_at BIGINT NOT NULL," +
+                    "PRIMARY KEY (player_uuid, ai_model, conversation_key))");
+
             logger.info("Database tables created successfully for " + databaseType.toUpperCase());
         }
     }
@@ -156,6 +217,7 @@ public class DatabaseManager {
         String sql = databaseType.equals("sqlite")
                 ? "INSERT OR REPLACE INTO players (uuid, username) VALUES (?, ?)"
                 : "INSERT INTO players (uuid, username) VALUES (?, ?) ON DUPLICATE KEY UPDATE username = ?";
+        long startedAt = System.nanoTime();
         try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, uuid.toString());
             pstmt.setString(2, username);
@@ -164,14 +226,18 @@ public class DatabaseManager {
             }
             pstmt.executeUpdate();
         } catch (SQLException e) {
+            metrics.database(DatabaseOperation.SAVE_PLAYER).recordFailure();
             logger.severe("Failed to save player info: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.SAVE_PLAYER).recordSince(startedAt);
         }
     }
 
     public String createConversation(UUID playerUuid, String aiModel, String convName) {
         String convId = UUID.randomUUID().toString();
         String sql = "INSERT INTO conversations (conversation_id, player_uuid, ai_model, conversation_name) VALUES (?, ?, ?, ?)";
+        long startedAt = System.nanoTime();
         try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, convId);
             pstmt.setString(2, playerUuid.toString());
@@ -180,14 +246,18 @@ public class DatabaseManager {
             pstmt.executeUpdate();
             return convId;
         } catch (SQLException e) {
+            metrics.database(DatabaseOperation.CREATE_CONVERSATION).recordFailure();
             logger.severe("Failed to create conversation: " + e.getMessage());
             e.printStackTrace();
             return null;
+        } finally {
+            metrics.database(DatabaseOperation.CREATE_CONVERSATION).recordSince(startedAt);
         }
     }
 
     public boolean conversationExistsByName(UUID playerUuid, String aiModel, String convName) {
         String sql = "SELECT 1 FROM conversations WHERE conversation_name = ? AND player_uuid = ? AND ai_model = ?";
+        long startedAt = System.nanoTime();
         try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, convName);
             pstmt.setString(2, playerUuid.toString());
@@ -196,14 +266,18 @@ public class DatabaseManager {
                 return rs.next();
             }
         } catch (SQLException e) {
+            metrics.database(DatabaseOperation.FIND_CONVERSATION).recordFailure();
             logger.severe("Failed to check conversation existence: " + e.getMessage());
             e.printStackTrace();
             return false;
+        } finally {
+            metrics.database(DatabaseOperation.FIND_CONVERSATION).recordSince(startedAt);
         }
     }
 
     public String getConversationId(UUID playerUuid, String aiModel, String convName) {
         String sql = "SELECT conversation_id FROM conversations WHERE conversation_name = ? AND player_uuid = ? AND ai_model = ?";
+        long startedAt = System.nanoTime();
         try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, convName);
             pstmt.setString(2, playerUuid.toString());
@@ -214,14 +288,18 @@ public class DatabaseManager {
                 }
             }
         } catch (SQLException e) {
+            metrics.database(DatabaseOperation.FIND_CONVERSATION).recordFailure();
             logger.severe("Failed to get conversation ID: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.FIND_CONVERSATION).recordSince(startedAt);
         }
         return null;
     }
 
     public boolean conversationExists(UUID playerUuid, String aiModel, String convId) {
         String sql = "SELECT 1 FROM conversations WHERE conversation_id = ? AND player_uuid = ? AND ai_model = ?";
+        long startedAt = System.nanoTime();
         try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, convId);
             pstmt.setString(2, playerUuid.toString());
@@ -230,15 +308,20 @@ public class DatabaseManager {
                 return rs.next();
             }
         } catch (SQLException e) {
+            metrics.database(DatabaseOperation.FIND_CONVERSATION).recordFailure();
             logger.severe("Failed to check conversation existence: " + e.getMessage());
             e.printStackTrace();
             return false;
+        } finally {
+            metrics.database(DatabaseOperation.FIND_CONVERSATION).recordSince(startedAt);
         }
     }
 
     public boolean deleteConversation(UUID playerUuid, String aiModel, String convId) {
         String sqlDeleteHistory = "DELETE FROM chat_history WHERE conversation_id = ? AND player_uuid = ? AND ai_model = ?";
         String sqlDeleteConv = "DELETE FROM conversations WHERE conversation_id = ? AND player_uuid = ? AND ai_model = ?";
+        long startedAt = System.nanoTime();
+        int rowsAffected;
         try (Connection conn = getConnection();
              PreparedStatement pstmtHistory = conn.prepareStatement(sqlDeleteHistory);
              PreparedStatement pstmtConv = conn.prepareStatement(sqlDeleteConv)) {
@@ -248,18 +331,24 @@ public class DatabaseManager {
             pstmtConv.setString(1, convId);
             pstmtConv.setString(2, playerUuid.toString());
             pstmtConv.setString(3, aiModel);
-            int rowsAffected = pstmtHistory.executeUpdate() + pstmtConv.executeUpdate();
-            return rowsAffected > 0;
+            rowsAffected = pstmtHistory.executeUpdate() + pstmtConv.executeUpdate();
         } catch (SQLException e) {
+            metrics.database(DatabaseOperation.DELETE_CONVERSATION).recordFailure();
             logger.severe("Failed to delete conversation: " + e.getMessage());
             e.printStackTrace();
             return false;
+        } finally {
+            metrics.database(DatabaseOperation.DELETE_CONVERSATION).recordSince(startedAt);
         }
+        deleteConversationContext(playerUuid, aiModel, convId);
+        deleteConversationSummary(playerUuid, aiModel, convId);
+        return rowsAffected > 0;
     }
 
     public Map<String, String> listConversations(UUID playerUuid, String aiModel) {
         Map<String, String> conversations = new HashMap<>();
         String sql = "SELECT conversation_id, conversation_name FROM conversations WHERE player_uuid = ? AND ai_model = ?";
+        long startedAt = System.nanoTime();
         try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, playerUuid.toString());
             pstmt.setString(2, aiModel);
@@ -269,14 +358,18 @@ public class DatabaseManager {
                 }
             }
         } catch (SQLException e) {
+            metrics.database(DatabaseOperation.LIST_CONVERSATIONS).recordFailure();
             logger.severe("Failed to list conversations: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.LIST_CONVERSATIONS).recordSince(startedAt);
         }
         return conversations;
     }
 
     public void saveChatHistory(UUID playerUuid, String aiModel, String conversationId, String prompt, String response) {
         String sql = "INSERT INTO chat_history (player_uuid, ai_model, conversation_id, prompt, response) VALUES (?, ?, ?, ?, ?)";
+        long startedAt = System.nanoTime();
         try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, playerUuid.toString());
             pstmt.setString(2, aiModel);
@@ -289,17 +382,43 @@ public class DatabaseManager {
             pstmt.setString(5, response);
             pstmt.executeUpdate();
         } catch (SQLException e) {
+            metrics.database(DatabaseOperation.SAVE_HISTORY).recordFailure();
             logger.severe("Failed to save chat history: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.SAVE_HISTORY).recordSince(startedAt);
         }
     }
 
     public String getChatHistory(UUID playerUuid, String aiModel, String conversationId, int maxHistory) {
         StringBuilder history = new StringBuilder();
-        String sql = "SELECT prompt, response FROM chat_history " +
+        for (ChatTurn turn : getChatTurns(playerUuid, aiModel, conversationId, maxHistory)) {
+            history.append(ChatTurn.ROLE_USER.equals(turn.getRole()) ? "User: " : "AI: ")
+                    .append(turn.getContent()).append("\n");
+        }
+        return history.toString();
+    }
+
+    /**
+     * Loads the latest exchanges of a conversation as user/assistant turns, oldest first.
+     */
+    public List<ChatTurn> getChatTurns(UUID playerUuid, String aiModel, String conversationId, int maxHistory) {
+        return getChatTurns(playerUuid, aiModel, conversationId, maxHistory, 0);
+    }
+
+    /**
+     * Loads the latest exchanges of a conversation newer than a summarized row, oldest first.
+     *
+     * @param afterId Only rows with a greater id are loaded, 0 for all
+     */
+    public List<ChatTurn> getChatTurns(UUID playerUuid, String aiModel, String conversationId, int maxHistory, long afterId) {
+        List<ChatTurn> turns = new ArrayList<>(maxHistory * 2);
+        String sql = "SELECT prompt, response, timestamp FROM chat_history " +
                 "WHERE player_uuid = ? AND ai_model = ? " +
                 (conversationId != null ? "AND conversation_id = ? " : "AND conversation_id IS NULL ") +
-                "ORDER BY timestamp DESC LIMIT ?";
+                (afterId > 0 ? "AND id > ? " : "") +
+                "ORDER BY timestamp DESC, id DESC LIMIT ?";
+        long startedAt = System.nanoTime();
         try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, playerUuid.toString());
             pstmt.setString(2, aiModel);
@@ -307,21 +426,210 @@ public class DatabaseManager {
             if (conversationId != null) {
                 pstmt.setString(index++, conversationId);
             }
+            if (afterId > 0) {
+                pstmt.setLong(index++, afterId);
+            }
             pstmt.setInt(index, maxHistory);
             try (ResultSet rs = pstmt.executeQuery()) {
+                // Rows arrive newest first; add each exchange reversed and flip the whole list once
                 while (rs.next()) {
-                    history.insert(0, "User: " + rs.getString("prompt") + "\n");
-                    history.insert(0, "AI: " + rs.getString("response") + "\n");
+                    Timestamp timestamp = rs.getTimestamp("timestamp");
+                    long time = timestamp != null ? timestamp.getTime() : 0L;
+                    turns.add(new ChatTurn(ChatTurn.ROLE_ASSISTANT, rs.getString("response"), time));
+                    turns.add(new ChatTurn(ChatTurn.ROLE_USER, rs.getString("prompt"), time));
                 }
             }
         } catch (SQLException e) {
+            metrics.database(DatabaseOperation.LOAD_HISTORY).recordFailure();
             logger.severe("Failed to get chat history: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.LOAD_HISTORY).recordSince(startedAt);
+        }
+        Collections.reverse(turns);
+        return turns;
+    }
+
+    /**
+     * Loads the oldest exchanges of a conversation that no summary covers yet, oldest first.
+     *
+     * @param afterId The last row covered by the conversation's summary, 0 if it has none
+     */
+    public List<ConversationSummarizer.Exchange> getUnsummarizedExchanges(UUID playerUuid, String aiModel,
+                                                                         String conversationId, long afterId, int limit) {
+        List<ConversationSummarizer.Exchange> exchanges = new ArrayList<>();
+        String sql = "SELECT id, prompt, response FROM chat_history " +
+                "WHERE player_uuid = ? AND ai_model = ? " +
+                (conversationId != null ? "AND conversation_id = ? " : "AND conversation_id IS NULL ") +
+                "AND id > ? ORDER BY id ASC LIMIT ?";
+        long startedAt = System.nanoTime();
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerUuid.toString());
+            pstmt.setString(2, aiModel);
+            int index = 3;
+            if (conversationId != null) {
+                pstmt.setString(index++, conversationId);
+            }
+            pstmt.setLong(index++, afterId);
+            pstmt.setInt(index, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    exchanges.add(new ConversationSummarizer.Exchange(rs.getLong("id"),
+                            rs.getString("prompt"), rs.getString("response")));
+                }
+            }
+        } catch (SQLException e) {
+            metrics.database(DatabaseOperation.LOAD_HISTORY).recordFailure();
+            logger.severe("Failed to get chat history to summarize: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.LOAD_HISTORY).recordSince(startedAt);
+        }
+        return exchanges;
+    }
+
+    public void saveConversationSummary(UUID playerUuid, String aiModel, String conversationKey,
+                                        ConversationSummarizer.Summary summary) {
+        String sql = databaseType.equals("sqlite")
+                ? "INSERT OR REPLACE INTO conversation_summaries (player_uuid, ai_model, conversation_key, summary, covered_id, updated_at) VALUES (?, ?, ?, ?, ?, ?)"
+                : "INSERT INTO conversation_summaries (player_uuid, ai_model, conversation_key, summary, covered_id, updated_at) VALUES (?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE summary = VALUES(summary), covered_id = VALUES(covered_id), updated_at = VALUES(updated_at)";
+        long startedAt = System.nanoTime();
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerUuid.toString());
+            pstmt.setString(2, aiModel);
+            pstmt.setString(3, conversationKey);
+            pstmt.setString(4, summary.getText());
+            pstmt.setLong(5, summary.getCoveredId());
+            pstmt.setLong(6, summary.getUpdatedAt());
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            metrics.database(DatabaseOperation.SAVE_SUMMARY).recordFailure();
+            logger.severe("Failed to save conversation summary: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.SAVE_SUMMARY).recordSince(startedAt);
+        }
+    }
+
+    public ConversationSummarizer.Summary getConversationSummary(UUID playerUuid, String aiModel, String conversationKey) {
+        String sql = "SELECT summary, covered_id, updated_at FROM conversation_summaries " +
+                "WHERE player_uuid = ? AND ai_model = ? AND conversation_key = ?";
+        long startedAt = System.nanoTime();
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerUuid.toString());
+            pstmt.setString(2, aiModel);
+            pstmt.setString(3, conversationKey);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new ConversationSummarizer.Summary(rs.getString("summary"),
+                            rs.getLong("covered_id"), rs.getLong("updated_at"));
+                }
+            }
+        } catch (SQLException e) {
+            metrics.database(DatabaseOperation.LOAD_SUMMARY).recordFailure();
+            logger.severe("Failed to get conversation summary: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.LOAD_SUMMARY).recordSince(startedAt);
+        }
+        return null;
+    }
+
+    public void deleteConversationSummary(UUID playerUuid, String aiModel, String conversationKey) {
+        String sql = "DELETE FROM conversation_summaries WHERE player_uuid = ? AND ai_model = ? AND conversation_key = ?";
+        long startedAt = System.nanoTime();
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerUuid.toString());
+            pstmt.setString(2, aiModel);
+            pstmt.setString(3, conversationKey);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            metrics.database(DatabaseOperation.DELETE_SUMMARY).recordFailure();
+            logger.severe("Failed to delete conversation summary: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.DELETE_SUMMARY).recordSince(startedAt);
+        }
+    }
+
+    public void saveConversationContext(UUID playerUuid, String aiModel, String conversationKey,
+                                        ConversationContextStore.Entry entry) {
+        String sql = databaseType.equals("sqlite")
+                ? "INSERT OR REPLACE INTO conversation_contexts (player_uuid, ai_model, conversation_key, model, context, updated_at) VALUES (?, ?, ?, ?, ?, ?)"
+                : "INSERT INTO conversation_contexts (player_uuid, ai_model, conversation_key, model, context, updated_at) VALUES (?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE model = VALUES(model), context = VALUES(context), updated_at = VALUES(updated_at)";
+        StringBuilder context = new StringBuilder(entry.getContext().length * 6);
+        for (int i = 0; i < entry.getContext().length; i++) {
+            if (i > 0) context.append(',');
+            context.append(entry.getContext()[i]);
+        }
+        long startedAt = System.nanoTime();
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerUuid.toString());
+            pstmt.setString(2, aiModel);
+            pstmt.setString(3, conversationKey);
+            pstmt.setString(4, entry.getModel());
+            pstmt.setString(5, context.toString());
+            pstmt.setLong(6, entry.getUpdatedAt());
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            metrics.database(DatabaseOperation.SAVE_CONTEXT).recordFailure();
+            logger.severe("Failed to save conversation context: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.SAVE_CONTEXT).recordSince(startedAt);
+        }
+    }
+
+    public ConversationContextStore.Entry getConversationContext(UUID playerUuid, String aiModel, String conversationKey) {
+        String sql = "SELECT model, context, updated_at FROM conversation_contexts " +
+                "WHERE player_uuid = ? AND ai_model = ? AND conversation_key = ?";
+        long startedAt = System.nanoTime();
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerUuid.toString());
+            pstmt.setString(2, aiModel);
+            pstmt.setString(3, conversationKey);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    String stored = rs.getString("context");
+                    String[] tokens = stored.isEmpty() ? new String[0] : stored.split(",");
+                    int[] context = new int[tokens.length];
+                    for (int i = 0; i < tokens.length; i++) {
+                        context[i] = Integer.parseInt(tokens[i]);
+                    }
+                    return new ConversationContextStore.Entry(rs.getString("model"), context, rs.getLong("updated_at"));
+                }
+            }
+        } catch (SQLException | NumberFormatException e) {
+            metrics.database(DatabaseOperation.LOAD_CONTEXT).recordFailure();
+            logger.severe("Failed to get conversation context: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.LOAD_CONTEXT).recordSince(startedAt);
+        }
+        return null;
+    }
+
+    public void deleteConversationContext(UUID playerUuid, String aiModel, String conversationKey) {
+        String sql = "DELETE FROM conversation_contexts WHERE player_uuid = ? AND ai_model = ? AND conversation_key = ?";
+        long startedAt = System.nanoTime();
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerUuid.toString());
+            pstmt.setString(2, aiModel);
+            pstmt.setString(3, conversationKey);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            metrics.database(DatabaseOperation.DELETE_CONTEXT).recordFailure();
+            logger.severe("Failed to delete conversation context: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            metrics.database(DatabaseOperation.DELETE_CONTEXT).recordSince(startedAt);
         }
-        return history.toString();
     }
 
     public void close() {
+        sqliteLock.lock();
         try {
             if (databaseType.equals("sqlite") && sqliteConnection != null && !sqliteConnection.isClosed()) {
                 sqliteConnection.close();
@@ -332,6 +640,8 @@ public class DatabaseManager {
         } catch (SQLException e) {
             logger.severe("Failed to close database: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            sqliteLock.unlock();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,592 @@
+package com.ollamachat.ai;
+
+import com.ollamachat.core.ConfigManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of {@link com.ollamachat.AIService}.
+ * <p>
+ * Every AI backend gets its own in-flight limit: the per-endpoint limit times its healthy endpoints.
+ * Requests beyond it wait in one queue per {@link RequestPriority}; the classes share the backend by
+ * weight (stride scheduling), and within a class per-player queues are served round-robin, so one
+ * player sending many prompts cannot starve everybody else. Deferrable classes leave {@code request-queue.reserved-slots} free for the others.
+ * When the backend queue is full, new requests are rejected immediately with {@link QueueFullException},
+ * unless they can take the place of a waiting deferrable request, and while the circuit breaker of the
+ * backend or of the model is open they fail immediately with {@link CircuitOpenException}.
+ */
+public class AIDispatcher {
+    /** Queue key for requests that do not belong to a player, e.g. API calls from other plugins. */
+    private static final UUID NO_PLAYER = new UUID(0L, 0L);
+
+    private final ConfigManager configManager;
+    private final BackendHealthMonitor healthMonitor;
+    private final EndpointBalancer balancer;
+    private final GenerationMetrics metrics;
+    private final RateLimiter rateLimiter;
+    private final Map<String, Backend> backends = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public AIDispatcher(ConfigManager configManager, BackendHealthMonitor healthMonitor, EndpointBalancer balancer,
+                        GenerationMetrics metrics, RateLimiter rateLimiter) {
+        this.configManager = configManager;
+        this.healthMonitor = healthMonitor;
+        this.balancer = balancer;
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Runs a backend call once the backend has a free slot, against the endpoint chosen by the load balancer.
+     *
+     * @param routingKey Requests with the same key (e.g. one conversation) prefer the same endpoint, or null
+     * @param call       Starts the backend call against the given endpoint URL
+     * @see #submit(String, String, UUID, RequestPriority, GenerationHandle, Supplier)
+     */
+    public <T> CompletableFuture<T> submit(String aiName, String model, UUID playerUuid, RequestPriority priority,
+                                           GenerationHandle handle, String routingKey,
+                                           Function<String, CompletableFuture<T>> call) {
+        return submit(aiName, model, playerUuid, priority, handle, routingKey, null, call);
+    }
+
+    /**
+     * Runs a backend call once the backend has a free slot, against an endpoint other than the excluded one.
+     * The chosen endpoint is recorded on the handle.
+     *
+     * @param excludedEndpoint An endpoint the call must not be sent to, e.g. the one a hedged attempt is
+     *                         waiting on, or null; the call is cancelled if no other endpoint is usable
+     */
+    public <T> CompletableFuture<T> submit(String aiName, String model, UUID playerUuid, RequestPriority priority,
+                                           GenerationHandle handle, String routingKey, String excludedEndpoint,
+                                           Function<String, CompletableFuture<T>> call) {
+        return submit(aiName, model, playerUuid, priority, handle, () -> balancer.call(aiName, routingKey, excludedEndpoint, url -> {
+            if (handle != null) {
+                handle.setEndpoint(url);
+            }
+            return call.apply(url);
+        }));
+    }
+
+    /**
+     * Runs a backend call once the backend has a free slot.
+     *
+     * @param aiName     The AI backend name (ollama or an other-ai-configs entry)
+     * @param model      The model the call asks for; its metrics are recorded under this name
+     * @param playerUuid The player the request belongs to, or null
+     * @param priority   The scheduling class of the request
+     * @param handle     The generation handle; cancelling it removes the request from the queue
+     * @param call       Starts the backend call
+     * @return The result of the call, or a future failed with {@link QueueFullException},
+     *         {@link BackendUnavailableException} or {@link CircuitOpenException}
+     */
+    public <T> CompletableFuture<T> submit(String aiName, String model, UUID playerUuid, RequestPriority priority,
+                                           GenerationHandle handle, Supplier<CompletableFuture<T>> call) {
+        if (!healthMonitor.isAvailable(aiName)) {
+            return CompletableFuture.failedFuture(new BackendUnavailableException(aiName));
+        }
+        // Failed calls open the circuit of the whole backend, slow calls only that of the model, so a
+        // fallback to a smaller model on the same backend is still let through
+        CircuitBreaker breaker = breaker(aiName, null);
+        CircuitBreaker.Permit permit = breaker.tryAcquire();
+        if (permit == null) {
+            return CompletableFuture.failedFuture(new CircuitOpenException(aiName));
+        }
+        CircuitBreaker slowCallBreaker = breaker(aiName, model != null ? model : "");
+        CircuitBreaker.Permit slowCallPermit = slowCallBreaker.tryAcquire();
+        if (slowCallPermit == null) {
+            breaker.onIgnored(permit);
+            return CompletableFuture.failedFuture(new CircuitOpenException(aiName));
+        }
+        Backend backend = backends.computeIfAbsent(aiName.toLowerCase(), Backend::new);
+        GenerationMetrics.ModelMetrics modelMetrics = metrics.forModel(aiName, model);
+        AtomicReference<GenerationTrace> trace = new AtomicReference<>();
+        long enqueuedAt = System.nanoTime();
+        Task<T> task = new Task<>(playerUuid != null ? playerUuid : NO_PLAYER, priority, () -> {
+            GenerationTrace started = new GenerationTrace(aiName, model, System.nanoTime() - enqueuedAt);
+            trace.set(started);
+            if (handle != null) {
+                // AIService picks the trace up from the handle to add what only the response shows
+                handle.setTrace(started);
+            }
+            return call.get();
+        });
+        task.result.whenComplete((value, error) -> record(breaker, permit, slowCallBreaker, slowCallPermit, priority,
+                modelMetrics, playerUuid, trace.get(), error));
+        List<Task<?>> dropped = new ArrayList<>(1);
+        boolean accepted = backend.enqueue(task,
+                balancer.getCapacity(aiName),
+                configManager.getReservedSlots(),
+                configManager.getRequestQueueMaxSize(),
+                configManager.getRequestQueueMaxPerPlayer(),
+                configManager.getPriorityWeight(priority),
+                dropped);
+        for (Task<?> droppedTask : dropped) {
+            droppedTask.result.completeExceptionally(new QueueFullException(aiName));
+        }
+        if (!accepted) {
+            task.result.completeExceptionally(new QueueFullException(aiName));
+            return task.result;
+        }
+        if (handle != null) {
+            handle.onCancel(() -> {
+                if (backend.remove(task)) {
+                    task.result.completeExceptionally(new CancellationException("Generation cancelled"));
+                }
+            });
+        }
+        backend.dispatch();
+        return task.result;
+    }
+
+    /**
+     * @return The circuit breakers of every backend and model used so far
+     */
+    public List<CircuitBreaker> getCircuitBreakers() {
+        return new ArrayList<>(breakers.values());
+    }
+
+    private CircuitBreaker breaker(String aiName, String model) {
+        String name = aiName.toLowerCase();
+        return breakers.computeIfAbsent(model != null ? name + "/" + model : name,
+                k -> new CircuitBreaker(name, model, configManager));
+    }
+
+    /**
+     * Feeds the outcome of a call into the circuit breakers, the metrics and the player's token budget.
+     * Calls that never started (rejected or cancelled while queued) and cancelled calls say nothing
+     * about the backend. Failures count against the backend, slow calls against the model. Speed is
+     * judged by the time to the first streamed token, since a long answer is not a slow backend;
+     * background work is never judged by speed.
+     */
+    private void record(CircuitBreaker breaker, CircuitBreaker.Permit permit,
+                        CircuitBreaker slowCallBreaker, CircuitBreaker.Permit slowCallPermit, RequestPriority priority,
+                        GenerationMetrics.ModelMetrics modelMetrics, UUID playerUuid, GenerationTrace trace,
+                        Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (trace != null) {
+            rateLimiter.recordTokens(playerUuid, trace);
+        }
+        if (trace == null || cause instanceof CancellationException) {
+            breaker.onIgnored(permit);
+            slowCallBreaker.onIgnored(slowCallPermit);
+            return;
+        }
+        if (cause == null) {
+            long firstToken = trace.getTimeToFirstTokenNanos();
+            long latencyNanos = firstToken >= 0 ? firstToken : System.nanoTime() - trace.getStartedAt();
+            breaker.onSuccess(permit, -1);
+            slowCallBreaker.onSuccess(slowCallPermit, priority == RequestPriority.BACKGROUND ? -1 : latencyNanos / 1_000_000L);
+        } else {
+            breaker.onFailure(permit);
+            slowCallBreaker.onIgnored(slowCallPermit);
+        }
+        modelMetrics.record(trace, cause == null);
+    }
+
+    /**
+     * @return A snapshot of the queue state and wait times of every backend used so far
+     */
+    public List<BackendStats> getStats() {
+        List<BackendStats> stats = new ArrayList<>();
+        for (Backend backend : backends.values()) {
+            stats.add(backend.snapshot());
+        }
+        return stats;
+    }
+
+    /**
+     * Thrown when a backend's queue cannot take another request.
+     */
+    public static class QueueFullException extends RuntimeException {
+        private final String aiName;
+
+        public QueueFullException(String aiName) {
+            super("Request queue for " + aiName + " is full");
+            this.aiName = aiName;
+        }
+
+        public String getAiName() {
+            return aiName;
+        }
+    }
+
+    /**
+     * Thrown when the last health check of a backend failed.
+     */
+    public static class BackendUnavailableException extends RuntimeException {
+        private final String aiName;
+
+        public BackendUnavailableException(String aiName) {
+            super("AI backend " + aiName + " is unavailable");
+            this.aiName = aiName;
+        }
+
+        public String getAiName() {
+            return aiName;
+        }
+    }
+
+    /**
+     * Thrown while the circuit breaker of a backend is open.
+     */
+    public static class CircuitOpenException extends RuntimeException {
+        private final String aiName;
+
+        public CircuitOpenException(String aiName) {
+            super("Circuit breaker for " + aiName + " is open");
+            this.aiName = aiName;
+        }
+
+        public String getAiName() {
+            return aiName;
+        }
+    }
+
+    public static class BackendStats {
+        private final String aiName;
+        private final int inFlight;
+        private final int queued;
+        private final long completed;
+        private final long rejected;
+        private final long averageWaitMillis;
+        private final long maxWaitMillis;
+        private final List<PriorityStats> priorities;
+
+        BackendStats(String aiName, int inFlight, int queued, long completed, long rejected,
+                     long averageWaitMillis, long maxWaitMillis, List<PriorityStats> priorities) {
+            this.aiName = aiName;
+            this.inFlight = inFlight;
+            this.queued = queued;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.averageWaitMillis = averageWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+            this.priorities = priorities;
+        }
+
+        public String getAiName() { return aiName; }
+        public int getInFlight() { return inFlight; }
+        public int getQueued() { return queued; }
+        public long getCompleted() { return completed; }
+        public long getRejected() { return rejected; }
+        public long getAverageWaitMillis() { return averageWaitMillis; }
+        public long getMaxWaitMillis() { return maxWaitMillis; }
+        /** The classes that have sent requests to this backend, most urgent first. */
+        public List<PriorityStats> getPriorities() { return priorities; }
+    }
+
+    /**
+     * Queue state of one {@link RequestPriority} on one backend.
+     */
+    public static class PriorityStats {
+        private final String priority;
+        private final int inFlight;
+        private final int queued;
+        private final long completed;
+        private final long rejected;
+        private final long dropped;
+        private final long averageWaitMillis;
+        private final long maxWaitMillis;
+
+        PriorityStats(String priority, int inFlight, int queued, long completed, long rejected, long dropped,
+                      long averageWaitMillis, long maxWaitMillis) {
+            this.priority = priority;
+            this.inFlight = inFlight;
+            this.queued = queued;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.dropped = dropped;
+            this.averageWaitMillis = averageWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        public String getPriority() { return priority; }
+        public int getInFlight() { return inFlight; }
+        public int getQueued() { return queued; }
+        public long getCompleted() { return completed; }
+        public long getRejected() { return rejected; }
+        /** Waiting requests removed from a full queue to make room for a more urgent one. */
+        public long getDropped() { return dropped; }
+        public long getAverageWaitMillis() { return averageWaitMillis; }
+        public long getMaxWaitMillis() { return maxWaitMillis; }
+    }
+
+    private static class Task<T> {
+        final UUID owner;
+        final RequestPriority priority;
+        final Supplier<CompletableFuture<T>> call;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final long enqueuedAt = System.nanoTime();
+
+        Task(UUID owner, RequestPriority priority, Supplier<CompletableFuture<T>> call) {
+            this.owner = owner;
+            this.priority = priority;
+            this.call = call;
+        }
+
+        void start(Runnable onDone) {
+            CompletableFuture<T> exchange;
+            try {
+                exchange = call.get();
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+                onDone.run();
+                return;
+            }
+            exchange.whenComplete((value, error) -> {
+                onDone.run();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            });
+        }
+    }
+
+    /**
+     * Per-backend state. Guarded by its own monitor; tasks are started outside of it.
+     */
+    private static class Backend {
+        // Pass a class of weight 1 advances by per started request; heavier classes advance less
+        private static final long STRIDE = 1L << 20;
+
+        private final String aiName;
+        private final Map<RequestPriority, ClassQueue> classes = new EnumMap<>(RequestPriority.class);
+        private int maxInFlight = 1;
+        private int deferrableSlots = 1;
+        private int inFlight;
+        private int queued;
+        private long completed;
+        private long rejected;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+        // Pass of the class served last; a class that was idle starts here rather than catching up
+        private long virtualTime;
+
+        Backend(String aiName) {
+            this.aiName = aiName;
+        }
+
+        /**
+         * @param dropped Receives waiting requests removed to make room; the caller fails them
+         * @return false if the request was rejected
+         */
+        synchronized boolean enqueue(Task<?> task, int maxInFlight, int reservedSlots, int maxQueueSize,
+                                     int maxPerPlayer, int weight, List<Task<?>> dropped) {
+            this.maxInFlight = Math.max(1, maxInFlight);
+            this.deferrableSlots = Math.max(1, this.maxInFlight - reservedSlots);
+            ClassQueue queue = classes.computeIfAbsent(task.priority, ClassQueue::new);
+            queue.weight = weight;
+            int playerQueued = 0;
+            for (ClassQueue other : classes.values()) {
+                playerQueued += other.queuedFor(task.owner);
+            }
+            boolean mustWait = inFlight >= slotsFor(task.priority) || queued > 0;
+            if (mustWait && maxPerPlayer > 0 && playerQueued >= maxPerPlayer) {
+                queue.rejected++;
+                rejected++;
+                return false;
+            }
+            if (mustWait && maxQueueSize > 0 && queued >= maxQueueSize) {
+                Task<?> victim = task.priority.isDeferrable() ? null : dropDeferrable();
+                if (victim == null) {
+                    queue.rejected++;
+                    rejected++;
+                    return false;
+                }
+                dropped.add(victim);
+            }
+            if (queue.queued == 0) {
+                queue.pass = Math.max(queue.pass, virtualTime);
+            }
+            queue.add(task);
+            queued++;
+            return true;
+        }
+
+        /**
+         * Removes the newest waiting request of the least urgent deferrable class.
+         */
+        private Task<?> dropDeferrable() {
+            RequestPriority[] priorities = RequestPriority.values();
+            for (int i = priorities.length - 1; i >= 0; i--) {
+                ClassQueue queue = classes.get(priorities[i]);
+                if (queue == null || queue.queued == 0 || !priorities[i].isDeferrable()) continue;
+                Task<?> victim = queue.removeNewest();
+                queue.dropped++;
+                rejected++;
+                queued--;
+                return victim;
+            }
+            return null;
+        }
+
+        private int slotsFor(RequestPriority priority) {
+            return priority.isDeferrable() ? deferrableSlots : maxInFlight;
+        }
+
+        synchronized boolean remove(Task<?> task) {
+            ClassQueue queue = classes.get(task.priority);
+            if (queue == null || !queue.remove(task)) {
+                return false;
+            }
+            queued--;
+            return true;
+        }
+
+        void dispatch() {
+            Task<?> next;
+            while ((next = poll()) != null) {
+                Task<?> started = next;
+                started.start(() -> release(started));
+            }
+        }
+
+        private synchronized Task<?> poll() {
+            while (inFlight < maxInFlight && queued > 0) {
+                // The waiting class with the lowest pass goes next; on a tie the more urgent one
+                ClassQueue next = null;
+                for (ClassQueue queue : classes.values()) {
+                    if (queue.queued == 0 || inFlight >= slotsFor(queue.priority)) continue;
+                    if (next == null || queue.pass < next.pass) {
+                        next = queue;
+                    }
+                }
+                if (next == null) {
+                    return null;
+                }
+                Task<?> task = next.poll();
+                queued--;
+                if (task.result.isDone()) {
+                    continue;
+                }
+                virtualTime = next.pass;
+                next.pass += STRIDE / next.weight;
+                long waited = System.nanoTime() - task.enqueuedAt;
+                totalWaitNanos += waited;
+                maxWaitNanos = Math.max(maxWaitNanos, waited);
+                next.totalWaitNanos += waited;
+                next.maxWaitNanos = Math.max(next.maxWaitNanos, waited);
+                next.inFlight++;
+                inFlight++;
+                return task;
+            }
+            return null;
+        }
+
+        private void release(Task<?> task) {
+            synchronized (this) {
+                ClassQueue queue = classes.get(task.priority);
+                queue.inFlight--;
+                queue.completed++;
+                inFlight--;
+                completed++;
+            }
+            dispatch();
+        }
+
+        synchronized BackendStats snapshot() {
+            long started = completed + inFlight;
+            long averageWait = started > 0 ? totalWaitNanos / started / 1_000_000L : 0;
+            List<PriorityStats> priorities = new ArrayList<>(classes.size());
+            for (ClassQueue queue : classes.values()) {
+                long classStarted = queue.completed + queue.inFlight;
+                priorities.add(new PriorityStats(queue.priority.getConfigName(), queue.inFlight, queue.queued,
+                        queue.completed, queue.rejected, queue.dropped,
+                        classStarted > 0 ? queue.totalWaitNanos / classStarted / 1_000_000L : 0,
+                        queue.maxWaitNanos / 1_000_000L));
+            }
+            return new BackendStats(aiName, inFlight, queued, completed, rejected,
+                    averageWait, maxWaitNanos / 1_000_000L, priorities);
+        }
+    }
+
+    /**
+     * The waiting requests and counters of one priority class on one backend. Guarded by the backend.
+     */
+    private static class ClassQueue {
+        final RequestPriority priority;
+        // Insertion order is the round-robin order; a served player moves to the back
+        private final LinkedHashMap<UUID, Deque<Task<?>>> players = new LinkedHashMap<>();
+        int weight = 1;
+        long pass;
+        int inFlight;
+        int queued;
+        long completed;
+        long rejected;
+        long dropped;
+        long totalWaitNanos;
+        long maxWaitNanos;
+
+        ClassQueue(RequestPriority priority) {
+            this.priority = priority;
+        }
+
+        int queuedFor(UUID owner) {
+            Deque<Task<?>> playerQueue = players.get(owner);
+            return playerQueue != null ? playerQueue.size() : 0;
+        }
+
+        void add(Task<?> task) {
+            players.computeIfAbsent(task.owner, k -> new ArrayDeque<>()).addLast(task);
+            queued++;
+        }
+
+        Task<?> poll() {
+            Iterator<Map.Entry<UUID, Deque<Task<?>>>> iterator = players.entrySet().iterator();
+            Map.Entry<UUID, Deque<Task<?>>> first = iterator.next();
+            iterator.remove();
+            Task<?> task = first.getValue().pollFirst();
+            if (!first.getValue().isEmpty()) {
+                players.put(first.getKey(), first.getValue());
+            }
+            queued--;
+            return task;
+        }
+
+        boolean remove(Task<?> task) {
+            Deque<Task<?>> playerQueue = players.get(task.owner);
+            if (playerQueue == null || !playerQueue.remove(task)) {
+                return false;
+            }
+            if (playerQueue.isEmpty()) {
+                players.remove(task.owner);
+            }
+            queued--;
+            return true;
+        }
+
+        Task<?> removeNewest() {
+            Task<?> newest = null;
+            for (Deque<Task<?>> playerQueue : players.values()) {
+                Task<?> last = playerQueue.peekLast();
+                if (newest == null || last.enqueuedAt > newest.enqueuedAt) {
+                    newest = last;
+                }
+            }
+            remove(newest);
+            return newest;
+        }
+    }
+}
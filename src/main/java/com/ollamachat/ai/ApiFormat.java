@@ -0,0 +1,40 @@
+package com.ollamachat.ai;
+
+/**
+ * Request and response format spoken by an AI backend.
+ */
+public enum ApiFormat {
+    /** Ollama /api/generate: a single prompt string, answer in "response". */
+    GENERATE("generate"),
+    /** Ollama /api/chat: a messages array, answer in "message.content". */
+    OLLAMA_CHAT("ollama-chat"),
+    /** OpenAI-style chat completions: a messages array, answer in "choices[0].message.content". */
+    OPENAI("openai");
+
+    private final String configName;
+
+    ApiFormat(String configName) {
+        this.configName = configName;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    public boolean isMessagesBased() {
+        return this != GENERATE;
+    }
+
+    /**
+     * @return The matching format, or null if the name is unknown
+     */
+    public static ApiFormat fromString(String name) {
+        if (name == null) return null;
+        for (ApiFormat format : values()) {
+            if (format.configName.equalsIgnoreCase(name) || format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,286 @@
+package com.ollamachat.ai;
+
+import com.google.gson.Gson;
+import com.ollamachat.core.ConfigManager;
+import com.ollamachat.http.HttpTransport;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Probes every configured AI backend in the background, preloads Ollama models and records
+ * health and latency, so requests to a backend that is down can be rejected immediately
+ * instead of waiting for a connect timeout.
+ */
+public class BackendHealthMonitor {
+    /** Minimum time between on-demand probes triggered by rejected requests. */
+    private static final long REPROBE_INTERVAL_MILLIS = 5000;
+
+    private final ConfigManager configManager;
+    private final HttpTransport transport;
+    private final EndpointBalancer balancer;
+    private final Logger logger;
+    private final Gson gson = new Gson();
+    private final Map<String, BackendHealth> health = new ConcurrentHashMap<>();
+    // Last probe result per backend endpoint, to log and warm up only on changes
+    private final Map<String, Boolean> endpointUp = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public BackendHealthMonitor(ConfigManager configManager, HttpTransport transport, EndpointBalancer balancer, Logger logger) {
+        this.configManager = configManager;
+        this.transport = transport;
+        this.balancer = balancer;
+        this.logger = logger;
+    }
+
+    /**
+     * Runs the first probe (and model warm-up) right away and then repeats it periodically.
+     */
+    public void start() {
+        if (!configManager.isHealthCheckEnabled()) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "OllamaChat-Health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(5, configManager.getHealthCheckInterval());
+        scheduler.scheduleWithFixedDelay(this::probeAll, 0, interval, TimeUnit.SECONDS);
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * @return false only if fail-fast is enabled and the backend is down, i.e. its last
+     *         {@code health-check.failure-threshold} probes failed
+     */
+    public boolean isAvailable(String aiName) {
+        if (!configManager.isHealthCheckEnabled() || !configManager.isHealthCheckFailFast()) {
+            return true;
+        }
+        BackendHealth backendHealth = health.get(aiName.toLowerCase());
+        if (backendHealth == null || backendHealth.status != Status.DOWN) {
+            return true;
+        }
+        // Re-check soon, so a recovered backend does not stay blocked until the next scheduled probe
+        if (System.currentTimeMillis() - backendHealth.lastCheckedAt > REPROBE_INTERVAL_MILLIS) {
+            backendHealth.lastCheckedAt = System.currentTimeMillis();
+            probe(aiName);
+        }
+        return false;
+    }
+
+    public List<BackendHealth> getHealth() {
+        return new ArrayList<>(health.values());
+    }
+
+    private void probeAll() {
+        try {
+            probe("ollama");
+            for (String aiName : configManager.getOtherAIConfigs().keySet()) {
+                if (configManager.getOtherAIEnabled().getOrDefault(aiName, false)) {
+                    probe(aiName);
+                }
+            }
+        } catch (Exception e) {
+            logger.warning("Backend health check failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Probes every endpoint of a backend. The backend counts as up while at least one endpoint is.
+     */
+    private CompletableFuture<Void> probe(String aiName) {
+        ConfigManager.AIConfig aiConfig = configManager.getAIConfig(aiName);
+        if (aiConfig == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        BackendHealth backendHealth = health.computeIfAbsent(aiName.toLowerCase(), BackendHealth::new);
+        List<CompletableFuture<EndpointProbe>> probes = new ArrayList<>();
+        for (String url : aiConfig.getApiUrls()) {
+            probes.add(probeEndpoint(aiName, aiConfig, url));
+        }
+        return CompletableFuture.allOf(probes.toArray(new CompletableFuture[0])).thenRun(() -> {
+            long bestLatency = Long.MAX_VALUE;
+            String reason = null;
+            for (CompletableFuture<EndpointProbe> future : probes) {
+                EndpointProbe result = future.join();
+                if (result.error == null) {
+                    bestLatency = Math.min(bestLatency, result.latencyMillis);
+                } else {
+                    reason = result.error;
+                }
+            }
+            if (bestLatency != Long.MAX_VALUE) {
+                backendHealth.recordSuccess(bestLatency);
+            } else {
+                backendHealth.recordFailure(reason, configManager.getHealthCheckFailureThreshold());
+            }
+        });
+    }
+
+    private CompletableFuture<EndpointProbe> probeEndpoint(String aiName, ConfigManager.AIConfig aiConfig, String url) {
+        boolean ollama = aiConfig.getApiFormat() != ApiFormat.OPENAI;
+        String name = aiConfig.getApiUrls().size() > 1 ? aiName + " (" + url + ")" : aiName;
+
+        HttpRequest.Builder builder;
+        try {
+            // Ollama lists its models cheaply; for other APIs any HTTP answer proves the host is reachable
+            builder = transport.newRequest(ollama ? resolve(url, "/api/tags") : url)
+                    .timeout(Duration.ofMillis(Math.max(1, configManager.getHealthCheckTimeout())))
+                    .GET();
+        } catch (IllegalArgumentException e) {
+            balancer.recordProbe(aiName, url, false, 0);
+            return CompletableFuture.completedFuture(new EndpointProbe(0, "Invalid URL: " + e.getMessage()));
+        }
+        if (aiConfig.getApiKey() != null && !aiConfig.getApiKey().isEmpty()) {
+            builder.header("Authorization", "Bearer " + aiConfig.getApiKey());
+        }
+
+        String endpointKey = aiName.toLowerCase() + "|" + url;
+        long start = System.nanoTime();
+        return transport.sendAsync(builder.build(), HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    long latency = (System.nanoTime() - start) / 1_000_000L;
+                    boolean healthy = error == null && (!ollama || response.statusCode() == 200);
+                    Boolean wasUp = endpointUp.put(endpointKey, healthy);
+                    balancer.recordProbe(aiName, url, healthy, latency);
+                    if (healthy) {
+                        if (!Boolean.TRUE.equals(wasUp)) {
+                            logger.info("AI backend " + name + " is reachable (" + latency + "ms)");
+                            if (ollama && configManager.isWarmUpEnabled()) {
+                                warmUp(aiName, aiConfig, url);
+                            }
+                        }
+                        return new EndpointProbe(latency, null);
+                    }
+                    String reason = error != null
+                            ? error.getClass().getSimpleName() + ": " + error.getMessage()
+                            : "HTTP " + response.statusCode();
+                    if (!Boolean.FALSE.equals(wasUp)) {
+                        logger.warning("AI backend " + name + " is unavailable: " + reason);
+                    }
+                    return new EndpointProbe(latency, reason);
+                });
+    }
+
+    /**
+     * Loads the backend's models into memory on one endpoint with the configured keep_alive and
+     * num_ctx, so the first player question does not pay the model load time. Ollama reloads a model
+     * whose num_ctx changes, so the preload must ask for the same window as the requests.
+     */
+    private void warmUp(String aiName, ConfigManager.AIConfig aiConfig, String apiUrl) {
+        Set<String> models = new LinkedHashSet<>();
+        models.add(aiConfig.getModel());
+        if (aiName.equalsIgnoreCase("ollama")) {
+            for (String model : configManager.getSuggestedResponseModels()) {
+                if (!configManager.getOtherAIConfigs().containsKey(model)) {
+                    models.add(model);
+                }
+            }
+        }
+        String url = resolve(apiUrl, "/api/generate");
+        int numCtx = configManager.getContextBudgetNumCtx(aiName);
+        for (String model : models) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("model", model);
+            String keepAlive = configManager.getKeepAlive(model);
+            if (keepAlive != null) {
+                body.put("keep_alive", keepAlive);
+            }
+            if (numCtx > 0) {
+                body.put("options", Map.of("num_ctx", numCtx));
+            }
+            HttpRequest request = transport.newRequest(url)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body)))
+                    .build();
+            long start = System.nanoTime();
+            transport.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error == null && response.statusCode() == 200) {
+                            logger.info("Preloaded model " + model + " in " + (System.nanoTime() - start) / 1_000_000L + "ms");
+                        } else {
+                            logger.warning("Failed to preload model " + model + ": "
+                                    + (error != null ? error.getMessage() : "HTTP " + response.statusCode()));
+                        }
+                    });
+        }
+    }
+
+    private static String resolve(String apiUrl, String path) {
+        return URI.create(apiUrl).resolve(path).toString();
+    }
+
+    private static class EndpointProbe {
+        final long latencyMillis;
+        final String error;
+
+        EndpointProbe(long latencyMillis, String error) {
+            this.latencyMillis = latencyMillis;
+            this.error = error;
+        }
+    }
+
+    public enum Status {
+        UNKNOWN, UP, DOWN
+    }
+
+    public static class BackendHealth {
+        private final String aiName;
+        private volatile Status status = Status.UNKNOWN;
+        private volatile long lastLatencyMillis = -1;
+        private volatile long lastCheckedAt;
+        private volatile int consecutiveFailures;
+        private volatile String lastError;
+
+        BackendHealth(String aiName) {
+            this.aiName = aiName;
+        }
+
+        void recordSuccess(long latencyMillis) {
+            status = Status.UP;
+            lastLatencyMillis = latencyMillis;
+            lastCheckedAt = System.currentTimeMillis();
+            consecutiveFailures = 0;
+            lastError = null;
+        }
+
+        /**
+         * @param threshold Consecutive failed probes before the backend counts as down; a single
+         *                  timed-out probe of a busy backend must not reject every request
+         */
+        void recordFailure(String error, int threshold) {
+            lastCheckedAt = System.currentTimeMillis();
+            consecutiveFailures++;
+            lastError = error;
+            if (consecutiveFailures >= Math.max(1, threshold)) {
+                status = Status.DOWN;
+            }
+        }
+
+        public String getAiName() { return aiName; }
+        public Status getStatus() { return status; }
+        public long getLastLatencyMillis() { return lastLatencyMillis; }
+        public long getLastCheckedAt() { return lastCheckedAt; }
+        public int getConsecutiveFailures() { return consecutiveFailures; }
+        public String getLastError() { return lastError; }
+    }
+}
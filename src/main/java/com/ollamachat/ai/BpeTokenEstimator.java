@@ -0,0 +1,66 @@
+package com.ollamachat.ai;
+
+/**
+ * Estimates tokens the way byte-pair encoding tokenizers (GPT's cl100k, Llama 3, Qwen) split text.
+ * <p>
+ * Those tokenizers first cut text into words with their leading space, numbers of up to three digits,
+ * single CJK characters and runs of punctuation, and then merge bytes inside each piece. Common English
+ * words end up as one token and longer words as a few, so this counts the pieces and estimates the
+ * merges per piece from its length. One pass over the characters, no allocation.
+ */
+public class BpeTokenEstimator implements TokenEstimator {
+    /** Words up to this length are usually a single token. */
+    private static final int SHORT_WORD = 6;
+
+    @Override
+    public int estimate(String text) {
+        int tokens = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                tokens++;
+                i += Character.charCount(codePoint);
+            } else if (Character.isLetter(codePoint)) {
+                int start = i;
+                boolean ascii = true;
+                while (i < length) {
+                    int c = text.codePointAt(i);
+                    if (!Character.isLetter(c) || isCjk(c)) break;
+                    ascii &= c < 0x80;
+                    i += Character.charCount(c);
+                }
+                int letters = i - start;
+                // Vocabularies hold far fewer merges for other scripts, roughly two characters per token
+                tokens += ascii ? (letters <= SHORT_WORD ? 1 : (letters + 3) / 4) : (letters + 1) / 2;
+            } else if (Character.isDigit(codePoint)) {
+                int start = i;
+                while (i < length && Character.isDigit(text.charAt(i))) i++;
+                tokens += (i - start + 2) / 3;
+            } else if (Character.isWhitespace(codePoint)) {
+                int start = i;
+                while (i < length && Character.isWhitespace(text.charAt(i))) i++;
+                // A single space is merged into the following word
+                if (i - start > 1 || text.charAt(start) != ' ' || i == length) {
+                    tokens++;
+                }
+            } else {
+                int start = i;
+                while (i < length) {
+                    int c = text.codePointAt(i);
+                    if (Character.isLetterOrDigit(c) || Character.isWhitespace(c)) break;
+                    i += Character.charCount(c);
+                }
+                tokens += (i - start + 1) / 2;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,47 @@
+package com.ollamachat.ai;
+
+/**
+ * A single message of a conversation as sent to chat-style backends.
+ */
+public class ChatTurn {
+    public static final String ROLE_SYSTEM = "system";
+    public static final String ROLE_USER = "user";
+    public static final String ROLE_ASSISTANT = "assistant";
+
+    private final String role;
+    private final String content;
+    private final long timestamp;
+    private final boolean summary;
+
+    public ChatTurn(String role, String content, long timestamp) {
+        this(role, content, timestamp, false);
+    }
+
+    private ChatTurn(String role, String content, long timestamp, boolean summary) {
+        this.role = role;
+        this.content = content;
+        this.timestamp = timestamp;
+        this.summary = summary;
+    }
+
+    public static ChatTurn system(String content) {
+        return new ChatTurn(ROLE_SYSTEM, content, System.currentTimeMillis());
+    }
+
+    public static ChatTurn user(String content) {
+        return new ChatTurn(ROLE_USER, content, System.currentTimeMillis());
+    }
+
+    /**
+     * A system message carrying the summary of a player's earlier conversation.
+     */
+    public static ChatTurn summary(String content) {
+        return new ChatTurn(ROLE_SYSTEM, content, System.currentTimeMillis(), true);
+    }
+
+    public String getRole() { return role; }
+    public String getContent() { return content; }
+    public long getTimestamp() { return timestamp; }
+    /** @return true if the turn summarizes per-player history */
+    public boolean isSummary() { return summary; }
+}
@@ -0,0 +1,151 @@
+package com.ollamachat.ai;
+
+import com.ollamachat.core.ConfigManager;
+
+/**
+ * Circuit breaker of a backend, or of one model on a backend. The dispatcher reports failed calls
+ * to the backend's breaker and slow calls to the model's.
+ * <p>
+ * After too many consecutive failed or slow calls the circuit opens and calls fail immediately.
+ * Once the open period has passed, a limited number of trial calls are let through (half-open);
+ * a successful trial closes the circuit again, a failed one reopens it. Calls granted before the
+ * circuit opened do not count as trials.
+ */
+public class CircuitBreaker {
+    private final String aiName;
+    private final String model;
+    private final ConfigManager configManager;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int trialsInFlight;
+    // Bumped on every switch to half-open, so trials of an earlier round are not counted again
+    private long trialRound;
+    private long openedAt;
+    private long timesOpened;
+
+    /**
+     * @param model The model whose calls this breaker judges, or null for the whole backend
+     */
+    CircuitBreaker(String aiName, String model, ConfigManager configManager) {
+        this.aiName = aiName;
+        this.model = model;
+        this.configManager = configManager;
+    }
+
+    /**
+     * Asks permission for a call. Every granted call must be followed by exactly one of
+     * {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored} with the returned permit.
+     *
+     * @return The permit, or null if the circuit is open and the call should fail fast
+     */
+    public synchronized Permit tryAcquire() {
+        if (!configManager.isCircuitBreakerEnabled()) {
+            return Permit.NORMAL;
+        }
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < Math.max(1, configManager.getCircuitBreakerOpenDuration()) * 1000L) {
+                return null;
+            }
+            state = State.HALF_OPEN;
+            trialsInFlight = 0;
+            trialRound++;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsInFlight >= Math.max(1, configManager.getCircuitBreakerHalfOpenRequests())) {
+                return null;
+            }
+            trialsInFlight++;
+            return new Permit(trialRound);
+        }
+        return Permit.NORMAL;
+    }
+
+    /**
+     * Records a completed call; calls slower than the configured threshold count as failures.
+     *
+     * @param latencyMillis Time until the backend started answering, or a negative value for calls
+     *                      that should not be judged by their speed
+     */
+    public synchronized void onSuccess(Permit permit, long latencyMillis) {
+        long slowCallThreshold = configManager.getCircuitBreakerSlowCallThreshold();
+        if (slowCallThreshold > 0 && latencyMillis > slowCallThreshold) {
+            onFailure(permit);
+            return;
+        }
+        if (isCurrentTrial(permit)) {
+            trialsInFlight--;
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+        } else if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    public synchronized void onFailure(Permit permit) {
+        if (isCurrentTrial(permit)) {
+            trialsInFlight--;
+            open();
+            return;
+        }
+        if (state != State.CLOSED) {
+            // A call granted before the circuit opened; the trials decide what happens next
+            return;
+        }
+        consecutiveFailures++;
+        if (consecutiveFailures >= Math.max(1, configManager.getCircuitBreakerFailureThreshold())) {
+            open();
+        }
+    }
+
+    /**
+     * Releases a granted call that ended without a result, e.g. because it was cancelled or never started.
+     */
+    public synchronized void onIgnored(Permit permit) {
+        if (isCurrentTrial(permit)) {
+            trialsInFlight--;
+        }
+    }
+
+    private boolean isCurrentTrial(Permit permit) {
+        return permit.trial && state == State.HALF_OPEN && permit.round == trialRound;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        timesOpened++;
+    }
+
+    public String getAiName() { return aiName; }
+    /** @return The model this breaker judges, or null if it covers the whole backend */
+    public String getModel() { return model; }
+    public String getName() { return model != null ? aiName + "/" + model : aiName; }
+    public synchronized State getState() { return state; }
+    public synchronized int getConsecutiveFailures() { return consecutiveFailures; }
+    public synchronized long getTimesOpened() { return timesOpened; }
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Permission for one call, remembering whether it was granted as a half-open trial.
+     */
+    public static class Permit {
+        static final Permit NORMAL = new Permit(false, 0);
+
+        private final boolean trial;
+        private final long round;
+
+        private Permit(long round) {
+            this(true, round);
+        }
+
+        private Permit(boolean trial, long round) {
+            this.trial = trial;
+            this.round = round;
+        }
+
+        public boolean isTrial() { return trial; }
+    }
+}
@@ -0,0 +1,201 @@
+package com.ollamachat.ai;
+
+import com.ollamachat.core.ConfigManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Keeps prompts within the context window of the backend's model, so the backend neither cuts off
+ * the start of a prompt without telling nor spends its time evaluating text that does not fit.
+ * <p>
+ * A prompt is filled in priority order through a {@link Budget}: required parts (system prompt,
+ * question) first, then the most recent history turns, then search results in ranking order. Whatever
+ * does not fit is left out, oldest turns and lowest-ranked results first.
+ */
+public class ContextBudgeter {
+    /** Role markers and separators a chat template adds around every message. */
+    static final int TURN_OVERHEAD = 4;
+
+    private final ConfigManager configManager;
+    private final TokenEstimator bpeEstimator = new BpeTokenEstimator();
+    private final LongAdder prompts = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder droppedTurns = new LongAdder();
+    private final LongAdder droppedResults = new LongAdder();
+    private final LongAdder droppedContexts = new LongAdder();
+    private final LongAdder clippedTexts = new LongAdder();
+
+    public ContextBudgeter(ConfigManager configManager) {
+        this.configManager = configManager;
+    }
+
+    /**
+     * @return The estimator selected by {@code context-budget.tokenizer}
+     */
+    public TokenEstimator getEstimator() {
+        return "chars".equalsIgnoreCase(configManager.getContextBudgetTokenizer()) ? TokenEstimator.CHARS : bpeEstimator;
+    }
+
+    /**
+     * Starts a prompt for a backend. Its limit is the context window minus the tokens kept for the answer,
+     * or unlimited while budgeting is disabled.
+     */
+    public Budget begin(String aiName) {
+        int limit = configManager.isContextBudgetEnabled()
+                ? Math.max(0, configManager.getContextBudgetContextTokens(aiName) - configManager.getContextBudgetResponseTokens())
+                : Integer.MAX_VALUE;
+        return new Budget(limit, getEstimator());
+    }
+
+    /**
+     * Checks whether a stored Ollama context can be continued with another prompt. The context is a
+     * list of token ids, so its length is exact.
+     *
+     * @return false if the context and the prompt together no longer fit; the caller should send the
+     *         history instead, which the budget can trim
+     */
+    public boolean canContinue(String aiName, int[] context, String prompt) {
+        Budget budget = begin(aiName);
+        if (context.length + budget.estimate(prompt) + TURN_OVERHEAD <= budget.getLimit()) {
+            return true;
+        }
+        droppedContexts.increment();
+        return false;
+    }
+
+    public long getPrompts() { return prompts.sum(); }
+    public long getTokens() { return tokens.sum(); }
+    public long getDroppedTurns() { return droppedTurns.sum(); }
+    public long getDroppedResults() { return droppedResults.sum(); }
+    public long getDroppedContexts() { return droppedContexts.sum(); }
+    public long getClippedTexts() { return clippedTexts.sum(); }
+
+    /**
+     * The tokens of one prompt being assembled. Not thread-safe; a prompt is built by one stage.
+     */
+    public class Budget {
+        private final int limit;
+        private final TokenEstimator estimator;
+        private int used;
+
+        private Budget(int limit, TokenEstimator estimator) {
+            this.limit = limit;
+            this.estimator = estimator;
+        }
+
+        int estimate(String text) {
+            return text != null ? estimator.estimate(text) : 0;
+        }
+
+        /**
+         * Adds a part the prompt cannot do without, even past the limit.
+         */
+        public void require(ChatTurn turn) {
+            used += estimate(turn.getContent()) + TURN_OVERHEAD;
+        }
+
+        /**
+         * Adds text that is part of a message already counted, such as a template around search results.
+         */
+        public void require(String text) {
+            used += estimate(text);
+        }
+
+        /**
+         * Adds the most recent turns that fit. History stays contiguous: once a turn does not fit, older
+         * turns are left out as well, even if they are shorter.
+         *
+         * @param history Turns from oldest to newest
+         * @return The kept turns, from oldest to newest
+         */
+        public List<ChatTurn> addNewest(List<ChatTurn> history) {
+            List<ChatTurn> kept = new ArrayList<>();
+            for (int i = history.size() - 1; i >= 0; i--) {
+                int cost = estimate(history.get(i).getContent()) + TURN_OVERHEAD;
+                if (used + cost > limit) {
+                    droppedTurns.add(i + 1);
+                    break;
+                }
+                used += cost;
+                kept.add(history.get(i));
+            }
+            Collections.reverse(kept);
+            return kept;
+        }
+
+        /**
+         * Adds items in the given order while they fit.
+         *
+         * @param items Items from most to least important, e.g. search results by rank
+         * @param text  The text an item adds to the prompt
+         * @return The leading items that fit
+         */
+        public <T> List<T> addInOrder(List<T> items, Function<T, String> text) {
+            List<T> kept = new ArrayList<>();
+            for (T item : items) {
+                int cost = estimate(text.apply(item));
+                if (used + cost > limit) {
+                    droppedResults.add(items.size() - kept.size());
+                    break;
+                }
+                used += cost;
+                kept.add(item);
+            }
+            return kept;
+        }
+
+        /**
+         * Adds as much of the beginning of a text as fits.
+         *
+         * @return The text, cut at a word boundary if it did not fit
+         */
+        public String clip(String text) {
+            int cost = estimate(text);
+            if (used + cost <= limit) {
+                used += cost;
+                return text;
+            }
+            clippedTexts.increment();
+            // Estimates grow with the length, so the longest fitting prefix can be found by bisection
+            int low = 0;
+            int high = text.length();
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (used + estimate(text.substring(0, middle)) <= limit) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            int end = low;
+            if (end > 0 && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+            int space = text.lastIndexOf(' ', end);
+            if (space > end / 2) {
+                end = space;
+            }
+            String clipped = text.substring(0, end);
+            used += estimate(clipped);
+            return clipped;
+        }
+
+        public int getLimit() { return limit; }
+        public int getUsed() { return used; }
+
+        /**
+         * Records the prompt in the statistics.
+         *
+         * @return The estimated tokens of the prompt
+         */
+        public int finish() {
+            prompts.increment();
+            tokens.add(used);
+            return used;
+        }
+    }
+}
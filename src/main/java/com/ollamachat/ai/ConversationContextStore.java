@@ -0,0 +1,120 @@
+package com.ollamachat.ai;
+
+import com.ollamachat.DatabaseManager;
+import com.ollamachat.core.ConfigManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps the latest Ollama {@code context} per conversation, so the next turn can continue from it
+ * instead of resending and re-evaluating the whole chat history.
+ * <p>
+ * Entries live in a bounded LRU map and expire after a configurable idle time. When persistence is
+ * enabled they are also written to the database and reloaded on a cache miss.
+ */
+public class ConversationContextStore {
+    private final ConfigManager configManager;
+    private final DatabaseManager databaseManager;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > Math.max(1, configManager.getContextReuseMaxEntries());
+        }
+    };
+
+    public ConversationContextStore(ConfigManager configManager, DatabaseManager databaseManager) {
+        this.configManager = configManager;
+        this.databaseManager = databaseManager;
+    }
+
+    /**
+     * Returns the stored context of a conversation.
+     *
+     * @return The context, or null if there is none, it expired, or it was produced by another model
+     */
+    public int[] get(UUID playerUuid, String aiName, String conversationId, String model) {
+        String key = key(playerUuid, aiName, conversationId);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null && configManager.isContextReusePersist()) {
+            entry = databaseManager.getConversationContext(playerUuid, aiName, conversationKey(conversationId));
+            if (entry != null) {
+                synchronized (entries) {
+                    entries.put(key, entry);
+                }
+            }
+        }
+        if (entry == null || isExpired(entry)) {
+            return null;
+        }
+        return entry.getModel().equals(model) ? entry.getContext() : null;
+    }
+
+    public void put(UUID playerUuid, String aiName, String conversationId, String model, int[] context) {
+        Entry entry = new Entry(model, context, System.currentTimeMillis());
+        synchronized (entries) {
+            entries.put(key(playerUuid, aiName, conversationId), entry);
+        }
+        if (configManager.isContextReusePersist()) {
+            databaseManager.saveConversationContext(playerUuid, aiName, conversationKey(conversationId), entry);
+        }
+    }
+
+    /**
+     * Drops the stored context, e.g. when a turn was sent without it and the conversation diverged.
+     */
+    public void invalidate(UUID playerUuid, String aiName, String conversationId) {
+        synchronized (entries) {
+            entries.remove(key(playerUuid, aiName, conversationId));
+        }
+        if (configManager.isContextReusePersist()) {
+            databaseManager.deleteConversationContext(playerUuid, aiName, conversationKey(conversationId));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        long expireMinutes = configManager.getContextReuseExpireMinutes();
+        return expireMinutes > 0 && System.currentTimeMillis() - entry.getUpdatedAt() > expireMinutes * 60_000L;
+    }
+
+    private static String key(UUID playerUuid, String aiName, String conversationId) {
+        return playerUuid + "|" + aiName.toLowerCase() + "|" + conversationKey(conversationId);
+    }
+
+    /** The default conversation has no id; it is stored under an empty key. */
+    private static String conversationKey(String conversationId) {
+        return conversationId != null ? conversationId : "";
+    }
+
+    public static class Entry {
+        private final String model;
+        private final int[] context;
+        private final long updatedAt;
+
+        public Entry(String model, int[] context, long updatedAt) {
+            this.model = model;
+            this.context = context;
+            this.updatedAt = updatedAt;
+        }
+
+        public String getModel() { return model; }
+        public int[] getContext() { return context; }
+        public long getUpdatedAt() { return updatedAt; }
+    }
+}
@@ -0,0 +1,301 @@
+package com.ollamachat.ai;
+
+import com.ollamachat.AIService;
+import com.ollamachat.DatabaseManager;
+import com.ollamachat.core.ConfigManager;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Folds the older exchanges of long conversations into a rolling summary per conversation, which
+ * prompts carry in place of those exchanges. Prompts stay short while the conversation keeps its
+ * long-term memory.
+ * <p>
+ * Conversations are queued when a turn is saved. A background task summarizes one of them at a time,
+ * only while the summary backend has no other work, and submits the call at
+ * {@link RequestPriority#BACKGROUND} so it never delays a player. The summary records the last
+ * {@code chat_history} row it covers; the rows stay in the database.
+ */
+public class ConversationSummarizer {
+    private final ConfigManager configManager;
+    private final DatabaseManager databaseManager;
+    private final AIService aiService;
+    private final AIDispatcher dispatcher;
+    private final GenerationRegistry registry;
+    private final ContextBudgeter budgeter;
+    private final Executor executor;
+    private final Logger logger;
+    private final Map<String, Conversation> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder summaries = new LongAdder();
+    private final LongAdder summarizedExchanges = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private ScheduledExecutorService scheduler;
+
+    public ConversationSummarizer(ConfigManager configManager, DatabaseManager databaseManager, AIService aiService,
+                                  AIDispatcher dispatcher, GenerationRegistry registry, ContextBudgeter budgeter,
+                                  Executor executor, Logger logger) {
+        this.configManager = configManager;
+        this.databaseManager = databaseManager;
+        this.aiService = aiService;
+        this.dispatcher = dispatcher;
+        this.registry = registry;
+        this.budgeter = budgeter;
+        this.executor = executor;
+        this.logger = logger;
+    }
+
+    public void start() {
+        if (!configManager.isSummaryEnabled()) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "OllamaChat-Summary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(5, configManager.getSummaryInterval());
+        scheduler.scheduleWithFixedDelay(this::summarizeNext, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Queues a conversation after a turn was saved; it is summarized once enough older exchanges pile up.
+     */
+    public void conversationUpdated(UUID playerUuid, String aiName, String conversationId) {
+        if (!configManager.isSummaryEnabled()) return;
+        Conversation conversation = new Conversation(playerUuid, aiName, conversationId);
+        pending.put(conversation.key(), conversation);
+    }
+
+    /**
+     * @return The summary of the conversation, or null if it has none or summaries are disabled
+     */
+    public Summary getSummary(UUID playerUuid, String aiName, String conversationId) {
+        if (!configManager.isSummaryEnabled()) return null;
+        return databaseManager.getConversationSummary(playerUuid, aiName, conversationKey(conversationId));
+    }
+
+    /**
+     * @return The system message carrying a summary in front of the conversation's remaining turns
+     */
+    public ChatTurn toTurn(Summary summary) {
+        return ChatTurn.summary(configManager.getSummaryMemoryTemplate().replace("{summary}", summary.getText()));
+    }
+
+    public int getPending() { return pending.size(); }
+    public long getSummaries() { return summaries.sum(); }
+    public long getSummarizedExchanges() { return summarizedExchanges.sum(); }
+    public long getFailures() { return failures.sum(); }
+
+    private void summarizeNext() {
+        try {
+            String aiName = configManager.getSummaryAiName();
+            if (pending.isEmpty() || !isIdle(aiName) || !running.compareAndSet(false, true)) {
+                return;
+            }
+            Iterator<Conversation> iterator = pending.values().iterator();
+            if (!iterator.hasNext()) {
+                running.set(false);
+                return;
+            }
+            Conversation conversation = iterator.next();
+            iterator.remove();
+            CompletableFuture.supplyAsync(() -> loadExchanges(conversation), executor)
+                    .thenCompose(batch -> batch != null ? summarize(aiName, batch) : CompletableFuture.completedFuture(null))
+                    .whenComplete((ignored, error) -> {
+                        running.set(false);
+                        if (error != null) {
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                    ? error.getCause() : error;
+                            if (cause instanceof AIDispatcher.QueueFullException
+                                    || (conversation.handle != null && conversation.handle.isCancelled())) {
+                                // Pushed aside by a player's request; try again when the backend is idle
+                                pending.putIfAbsent(conversation.key(), conversation);
+                            } else {
+                                failures.increment();
+                                logger.warning("Failed to summarize a conversation with " + aiName + ": " + cause.getMessage());
+                            }
+                        }
+                    });
+        } catch (RuntimeException e) {
+            running.set(false);
+            logger.warning("Conversation summary task failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if the backend is enabled and has no request running or waiting
+     */
+    private boolean isIdle(String aiName) {
+        boolean enabled = aiName.equalsIgnoreCase("ollama")
+                ? configManager.isOllamaEnabled()
+                : configManager.getOtherAIEnabled().getOrDefault(aiName, false);
+        if (!enabled) return false;
+        for (AIDispatcher.BackendStats stats : dispatcher.getStats()) {
+            if (stats.getAiName().equalsIgnoreCase(aiName)) {
+                return stats.getInFlight() == 0 && stats.getQueued() == 0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The previous summary and the exchanges to fold into it, or null if too few are waiting
+     */
+    private Batch loadExchanges(Conversation conversation) {
+        Summary previous = databaseManager.getConversationSummary(conversation.playerUuid, conversation.aiName,
+                conversationKey(conversation.conversationId));
+        int keepRecent = Math.max(0, configManager.getSummaryKeepRecent());
+        int maxExchanges = Math.max(1, configManager.getSummaryMaxExchanges());
+        List<Exchange> exchanges = databaseManager.getUnsummarizedExchanges(conversation.playerUuid, conversation.aiName,
+                conversation.conversationId, previous != null ? previous.getCoveredId() : 0, keepRecent + maxExchanges);
+        int older = exchanges.size() - keepRecent;
+        if (older < Math.max(1, configManager.getSummaryMinExchanges())) {
+            return null;
+        }
+        return new Batch(conversation, previous, exchanges.subList(0, Math.min(older, maxExchanges)));
+    }
+
+    private CompletableFuture<Void> summarize(String aiName, Batch batch) {
+        ConfigManager.AIConfig aiConfig = configManager.getAIConfig(aiName);
+        if (aiConfig == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No AI backend named " + aiName));
+        }
+        String model = configManager.getSummaryModel();
+        String template = configManager.getSummaryPrompt()
+                .replace("{words}", String.valueOf(configManager.getSummaryMaxWords()))
+                .replace("{summary}", batch.previous != null ? batch.previous.getText() : "-");
+
+        // Exchanges that do not fit stay unsummarized for the next round, oldest first
+        ContextBudgeter.Budget budget = budgeter.begin(aiName);
+        budget.require(ChatTurn.user(template.replace("{history}", "")));
+        List<Exchange> exchanges = budget.addInOrder(batch.exchanges, Exchange::format);
+        budget.finish();
+        if (exchanges.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The oldest exchange does not fit the context budget"));
+        }
+        StringBuilder history = new StringBuilder();
+        for (Exchange exchange : exchanges) {
+            history.append(exchange.format());
+        }
+        String prompt = template.replace("{history}", history.toString().trim());
+
+        Conversation conversation = batch.conversation;
+        GenerationHandle handle = registry.begin(conversation.playerUuid, "summary", false);
+        conversation.handle = handle;
+        ApiFormat format = aiConfig.getApiFormat();
+        return dispatcher.submit(aiName, model, conversation.playerUuid, RequestPriority.BACKGROUND, handle, null,
+                        url -> aiService.sendChatRequest(url, aiConfig.getApiKey(), model, List.of(ChatTurn.user(prompt)),
+                                format, handle))
+                .thenApply(body -> aiService.extractContent(body, format))
+                .thenAcceptAsync(text -> {
+                    if (text == null || text.isBlank()) {
+                        throw new IllegalStateException("Empty summary");
+                    }
+                    long coveredId = exchanges.get(exchanges.size() - 1).getId();
+                    databaseManager.saveConversationSummary(conversation.playerUuid, conversation.aiName,
+                            conversationKey(conversation.conversationId),
+                            new Summary(text.trim(), coveredId, System.currentTimeMillis()));
+                    summaries.increment();
+                    summarizedExchanges.add(exchanges.size());
+                    // A long backlog is summarized over several rounds
+                    if (exchanges.size() < batch.exchanges.size() || batch.exchanges.size() >= configManager.getSummaryMaxExchanges()) {
+                        conversation.handle = null;
+                        pending.putIfAbsent(conversation.key(), conversation);
+                    }
+                }, executor)
+                .whenComplete((ignored, error) -> registry.finish(handle));
+    }
+
+    /** The default conversation has no id; it is stored under an empty key. */
+    private static String conversationKey(String conversationId) {
+        return conversationId != null ? conversationId : "";
+    }
+
+    private static class Conversation {
+        final UUID playerUuid;
+        final String aiName;
+        final String conversationId;
+        volatile GenerationHandle handle;
+
+        Conversation(UUID playerUuid, String aiName, String conversationId) {
+            this.playerUuid = playerUuid;
+            this.aiName = aiName;
+            this.conversationId = conversationId;
+        }
+
+        String key() {
+            return playerUuid + "|" + aiName.toLowerCase() + "|" + conversationKey(conversationId);
+        }
+    }
+
+    private static class Batch {
+        final Conversation conversation;
+        final Summary previous;
+        final List<Exchange> exchanges;
+
+        Batch(Conversation conversation, Summary previous, List<Exchange> exchanges) {
+            this.conversation = conversation;
+            this.previous = previous;
+            this.exchanges = exchanges;
+        }
+    }
+
+    /**
+     * The summary of a conversation's history up to and including one {@code chat_history} row.
+     */
+    public static class Summary {
+        private final String text;
+        private final long coveredId;
+        private final long updatedAt;
+
+        public Summary(String text, long coveredId, long updatedAt) {
+            this.text = text;
+            this.coveredId = coveredId;
+            this.updatedAt = updatedAt;
+        }
+
+        public String getText() { return text; }
+        /** The id of the newest {@code chat_history} row the summary covers. */
+        public long getCoveredId() { return coveredId; }
+        public long getUpdatedAt() { return updatedAt; }
+    }
+
+    /**
+     * One {@code chat_history} row: a prompt and its answer.
+     */
+    public static class Exchange {
+        private final long id;
+        private final String prompt;
+        private final String response;
+
+        public Exchange(long id, String prompt, String response) {
+            this.id = id;
+            this.prompt = prompt;
+            this.response = response;
+        }
+
+        public long getId() { return id; }
+
+        String format() {
+            return "Player: " + prompt + "\nAI: " + response + "\n";
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.ollamachat.ai;
+
+import com.ollamachat.core.ConfigManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Spreads the requests of a backend over its endpoints.
+ * <p>
+ * An endpoint is picked by fewest outstanding requests or by latency (EWMA) weighted with its load.
+ * Endpoints that fail repeatedly, or whose health probe fails, are skipped for a cool-down period,
+ * and endpoints already running their share of requests are skipped as well.
+ * Requests of the same conversation stick to one endpoint while it is healthy and has room, so the
+ * model and its prompt cache stay warm on that host.
+ */
+public class EndpointBalancer {
+    /** Weight of the newest sample in the latency average. */
+    private static final double EWMA_ALPHA = 0.3;
+    private static final int MAX_STICKY_ROUTES = 10_000;
+
+    private final ConfigManager configManager;
+    private final Map<String, Map<String, Endpoint>> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, String> stickyRoutes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_STICKY_ROUTES;
+        }
+    };
+
+    public EndpointBalancer(ConfigManager configManager) {
+        this.configManager = configManager;
+    }
+
+    /**
+     * Runs a call against the best endpoint of a backend and records its outcome.
+     *
+     * @param aiName     The AI backend name
+     * @param routingKey Requests with the same key prefer the same endpoint, or null for no preference
+     * @param excluded   An endpoint URL that must not be used, or null
+     * @param call       Starts the request against the given endpoint URL
+     * @throws CancellationException if every usable endpoint is excluded
+     */
+    public <T> CompletableFuture<T> call(String aiName, String routingKey, String excluded,
+                                         Function<String, CompletableFuture<T>> call) {
+        ConfigManager.AIConfig aiConfig = configManager.getAIConfig(aiName);
+        if (aiConfig == null) {
+            return call.apply(null);
+        }
+        Endpoint endpoint = select(aiName, aiConfig.getApiUrls(), routingKey, excluded);
+        long start = System.nanoTime();
+        CompletableFuture<T> result;
+        try {
+            result = call.apply(endpoint.url);
+        } catch (RuntimeException e) {
+            endpoint.end(false, 0, true);
+            throw e;
+        }
+        result.whenComplete((value, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            boolean cancelled = cause instanceof CancellationException;
+            endpoint.end(cause == null, (System.nanoTime() - start) / 1_000_000L, cancelled);
+        });
+        return result;
+    }
+
+    /**
+     * @return How many requests may run against a backend at once: the per-endpoint limit times the
+     *         endpoints that are not cooling down, or one endpoint's share if all of them are
+     */
+    public int getCapacity(String aiName) {
+        int perEndpoint = Math.max(1, configManager.getMaxConcurrentRequests(aiName));
+        ConfigManager.AIConfig aiConfig = configManager.getAIConfig(aiName);
+        if (aiConfig == null) {
+            return perEndpoint;
+        }
+        long now = System.currentTimeMillis();
+        int available = 0;
+        for (String url : aiConfig.getApiUrls()) {
+            if (endpoint(aiName, url).isAvailable(now)) {
+                available++;
+            }
+        }
+        return perEndpoint * Math.max(1, available);
+    }
+
+    /**
+     * @return true if the backend has an endpoint other than the given one that is healthy and has room
+     */
+    public boolean hasOtherEndpoint(String aiName, String url) {
+        ConfigManager.AIConfig aiConfig = configManager.getAIConfig(aiName);
+        if (aiConfig == null) {
+            return false;
+        }
+        int limit = Math.max(1, configManager.getMaxConcurrentRequests(aiName));
+        long now = System.currentTimeMillis();
+        for (String other : aiConfig.getApiUrls()) {
+            Endpoint endpoint = endpoint(aiName, other);
+            if (!other.equals(url) && endpoint.isAvailable(now) && endpoint.inFlight < limit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the result of an active health probe of one endpoint.
+     */
+    public void recordProbe(String aiName, String url, boolean healthy, long latencyMillis) {
+        Endpoint endpoint = endpoint(aiName, url);
+        if (healthy) {
+            endpoint.probeSucceeded(latencyMillis);
+        } else {
+            endpoint.probeFailed(System.currentTimeMillis() + cooldownMillis());
+        }
+    }
+
+    /**
+     * @return A snapshot of every endpoint used or probed so far
+     */
+    public List<EndpointStats> getStats() {
+        List<EndpointStats> stats = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Endpoint>> backend : endpoints.entrySet()) {
+            for (Endpoint endpoint : backend.getValue().values()) {
+                stats.add(endpoint.snapshot(backend.getKey()));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Picks an endpoint and counts the request against it. Selection and counting happen under the
+     * backend's lock, so concurrent requests cannot overfill the same endpoint.
+     */
+    private Endpoint select(String aiName, List<String> urls, String routingKey, String excluded) {
+        Map<String, Endpoint> backend = endpoints(aiName);
+        synchronized (backend) {
+            Endpoint endpoint = choose(aiName, backend, urls, routingKey, excluded);
+            if (endpoint == null) {
+                throw new CancellationException("No endpoint of " + aiName + " other than " + excluded + " is usable");
+            }
+            endpoint.begin();
+            return endpoint;
+        }
+    }
+
+    /**
+     * @return The endpoint to use, or null if only the excluded one could be
+     */
+    private Endpoint choose(String aiName, Map<String, Endpoint> backend, List<String> urls, String routingKey,
+                            String excluded) {
+        List<Endpoint> candidates = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            if (!url.equals(excluded)) {
+                candidates.add(backend.computeIfAbsent(url, Endpoint::new));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        if (candidates.size() == 1 && excluded == null) {
+            return candidates.get(0);
+        }
+        int limit = Math.max(1, configManager.getMaxConcurrentRequests(aiName));
+        long now = System.currentTimeMillis();
+        String stickyKey = routingKey != null && configManager.isLoadBalancingSticky()
+                ? aiName.toLowerCase() + "|" + routingKey
+                : null;
+        boolean keepPin = false;
+        if (stickyKey != null) {
+            String pinned;
+            synchronized (stickyRoutes) {
+                pinned = stickyRoutes.get(stickyKey);
+            }
+            for (Endpoint endpoint : candidates) {
+                if (endpoint.url.equals(pinned) && endpoint.isAvailable(now)) {
+                    if (endpoint.inFlight < limit) {
+                        return endpoint;
+                    }
+                    // Busy but healthy: serve this request elsewhere and come back next time
+                    keepPin = true;
+                }
+            }
+        }
+
+        boolean ewma = "ewma".equalsIgnoreCase(configManager.getLoadBalancingStrategy());
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Endpoint endpoint : candidates) {
+            if (!endpoint.isAvailable(now) || endpoint.inFlight >= limit) continue;
+            double score = ewma ? endpoint.latencyScore() : endpoint.inFlight;
+            if (best == null || score < bestScore || (score == bestScore
+                    && (ewma ? endpoint.inFlight < best.inFlight : endpoint.ewmaMillis < best.ewmaMillis))) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+        if (best == null) {
+            // Only when an endpoint failed after the dispatcher admitted the request; use the least busy one
+            for (Endpoint endpoint : candidates) {
+                if (endpoint.isAvailable(now) && (best == null || endpoint.inFlight < best.inFlight)) {
+                    best = endpoint;
+                }
+            }
+        }
+        if (best == null && excluded != null) {
+            // A copy of a request only helps on a healthy endpoint
+            return null;
+        }
+        if (best == null) {
+            // Every endpoint is cooling down; try the one that becomes available first
+            for (Endpoint endpoint : candidates) {
+                if (best == null || endpoint.downUntil < best.downUntil) {
+                    best = endpoint;
+                }
+            }
+        }
+        if (stickyKey != null && !keepPin) {
+            synchronized (stickyRoutes) {
+                stickyRoutes.put(stickyKey, best.url);
+            }
+        }
+        return best;
+    }
+
+    private Endpoint endpoint(String aiName, String url) {
+        return endpoints(aiName).computeIfAbsent(url, Endpoint::new);
+    }
+
+    private Map<String, Endpoint> endpoints(String aiName) {
+        return endpoints.computeIfAbsent(aiName.toLowerCase(), k -> new ConcurrentHashMap<>());
+    }
+
+    private long cooldownMillis() {
+        return Math.max(1, configManager.getLoadBalancingFailureCooldown()) * 1000L;
+    }
+
+    public static class EndpointStats {
+        private final String aiName;
+        private final String url;
+        private final boolean available;
+        private final int inFlight;
+        private final long ewmaMillis;
+        private final long completed;
+        private final long failed;
+
+        EndpointStats(String aiName, String url, boolean available, int inFlight, long ewmaMillis,
+                      long completed, long failed) {
+            this.aiName = aiName;
+            this.url = url;
+            this.available = available;
+            this.inFlight = inFlight;
+            this.ewmaMillis = ewmaMillis;
+            this.completed = completed;
+            this.failed = failed;
+        }
+
+        public String getAiName() { return aiName; }
+        public String getUrl() { return url; }
+        public boolean isAvailable() { return available; }
+        public int getInFlight() { return inFlight; }
+        public long getEwmaMillis() { return ewmaMillis; }
+        public long getCompleted() { return completed; }
+        public long getFailed() { return failed; }
+    }
+
+    private class Endpoint {
+        final String url;
+        volatile int inFlight;
+        volatile double ewmaMillis;
+        volatile long downUntil;
+        private int consecutiveFailures;
+        private long completed;
+        private long failed;
+
+        Endpoint(String url) {
+            this.url = url;
+        }
+
+        boolean isAvailable(long now) {
+            return downUntil <= now;
+        }
+
+        /** Expected wait if one more request is sent here; untested endpoints are tried first. */
+        double latencyScore() {
+            return (inFlight + 1) * ewmaMillis;
+        }
+
+        synchronized void begin() {
+            inFlight++;
+        }
+
+        synchronized void end(boolean success, long latencyMillis, boolean cancelled) {
+            inFlight--;
+            if (cancelled) return;
+            if (success) {
+                completed++;
+                consecutiveFailures = 0;
+                ewmaMillis = ewmaMillis == 0 ? latencyMillis : EWMA_ALPHA * latencyMillis + (1 - EWMA_ALPHA) * ewmaMillis;
+            } else {
+                failed++;
+                if (++consecutiveFailures >= Math.max(1, configManager.getLoadBalancingFailureThreshold())) {
+                    downUntil = System.currentTimeMillis() + cooldownMillis();
+                }
+            }
+        }
+
+        synchronized void probeSucceeded(long latencyMillis) {
+            downUntil = 0;
+            consecutiveFailures = 0;
+            if (ewmaMillis == 0) {
+                ewmaMillis = latencyMillis;
+            }
+        }
+
+        synchronized void probeFailed(long until) {
+            downUntil = until;
+        }
+
+        synchronized EndpointStats snapshot(String aiName) {
+            return new EndpointStats(aiName, url, isAvailable(System.currentTimeMillis()), inFlight,
+                    Math.round(ewmaMillis), completed, failed);
+        }
+    }
+}
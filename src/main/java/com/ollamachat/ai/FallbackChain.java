@@ -0,0 +1,156 @@
+package com.ollamachat.ai;
+
+import com.ollamachat.core.ConfigManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Retries a failed generation with the next entry of the configured fallback chain of the model,
+ * e.g. {@code llama3:70b -> llama3:8b -> preset}.
+ * <p>
+ * An entry is either another model on the same backend, the name of an other-ai-configs backend,
+ * or {@value #PRESET}, which ends the chain with the localized preset answer.
+ */
+public class FallbackChain {
+    public static final String PRESET = "preset";
+
+    private final ConfigManager configManager;
+
+    public FallbackChain(ConfigManager configManager) {
+        this.configManager = configManager;
+    }
+
+    /**
+     * Runs a non-streaming generation, falling back to the next target whenever the previous one fails.
+     *
+     * @param aiName  The backend the request was sent to
+     * @param handle  The generation handle; nothing is retried once it is cancelled
+     * @param attempt Runs the generation against a target
+     */
+    public <T> CompletableFuture<T> execute(String aiName, GenerationHandle handle,
+                                            Function<Target, CompletableFuture<T>> attempt) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        run(targets(aiName), 0, handle, () -> true, attempt, result);
+        return result;
+    }
+
+    /**
+     * Runs a streaming generation. A target is only replaced while it has not emitted any chunk,
+     * so players never see two partial answers.
+     */
+    public CompletableFuture<Void> executeStreaming(String aiName, GenerationHandle handle, Consumer<String> consumer,
+                                                    BiFunction<Target, Consumer<String>, CompletableFuture<Void>> attempt) {
+        AtomicBoolean emitted = new AtomicBoolean();
+        Consumer<String> tracking = chunk -> {
+            emitted.set(true);
+            consumer.accept(chunk);
+        };
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        run(targets(aiName), 0, handle, () -> !emitted.get(), target -> attempt.apply(target, tracking), result);
+        return result;
+    }
+
+    /**
+     * @return The preset answer if the chain of the backend's model ends with {@value #PRESET}, otherwise null
+     */
+    public String getPresetAnswer(String aiName) {
+        ConfigManager.AIConfig aiConfig = configManager.getAIConfig(aiName);
+        if (aiConfig == null || !configManager.isFallbackEnabled()) {
+            return null;
+        }
+        List<String> chain = configManager.getFallbackChain(aiConfig.getModel());
+        return chain.contains(PRESET) ? configManager.getMessage("fallback-answer", null) : null;
+    }
+
+    private List<Target> targets(String aiName) {
+        List<Target> targets = new ArrayList<>();
+        ConfigManager.AIConfig aiConfig = configManager.getAIConfig(aiName);
+        targets.add(new Target(aiName, aiConfig, aiConfig.getModel(), true));
+        if (!configManager.isFallbackEnabled()) {
+            return targets;
+        }
+        for (String entry : configManager.getFallbackChain(aiConfig.getModel())) {
+            if (entry.equalsIgnoreCase(PRESET)) {
+                break;
+            }
+            Target target = resolve(configManager, aiName, aiConfig, entry);
+            if (target != null) {
+                targets.add(target);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Resolves a chain entry: the name of an other-ai-configs backend, or otherwise a model on the same backend.
+     *
+     * @return The target, or null if the entry names a disabled backend
+     */
+    static Target resolve(ConfigManager configManager, String aiName, ConfigManager.AIConfig aiConfig, String entry) {
+        ConfigManager.AIConfig otherConfig = configManager.getOtherAIConfigs().get(entry);
+        if (otherConfig != null) {
+            return configManager.getOtherAIEnabled().getOrDefault(entry, false)
+                    ? new Target(entry, otherConfig, otherConfig.getModel(), false)
+                    : null;
+        }
+        return new Target(aiName, aiConfig, entry, entry.equals(aiConfig.getModel()));
+    }
+
+    private <T> void run(List<Target> targets, int index, GenerationHandle handle, BooleanSupplier canRetry,
+                         Function<Target, CompletableFuture<T>> attempt, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = attempt.apply(targets.get(index));
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (index + 1 >= targets.size() || cause instanceof CancellationException
+                    || (handle != null && handle.isCancelled()) || !canRetry.getAsBoolean()) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            run(targets, index + 1, handle, canRetry, attempt, result);
+        });
+    }
+
+    /**
+     * One step of a fallback chain: a backend and the model to request from it.
+     */
+    public static class Target {
+        private final String aiName;
+        private final ConfigManager.AIConfig config;
+        private final String model;
+        private final boolean primary;
+
+        Target(String aiName, ConfigManager.AIConfig config, String model, boolean primary) {
+            this.aiName = aiName;
+            this.config = config;
+            this.model = model;
+            this.primary = primary;
+        }
+
+        public String getAiName() { return aiName; }
+        public ConfigManager.AIConfig getConfig() { return config; }
+        public String getModel() { return model; }
+
+        /**
+         * @return true for the originally requested backend and model
+         */
+        public boolean isPrimary() { return primary; }
+    }
+}
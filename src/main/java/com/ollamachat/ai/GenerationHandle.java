@@ -0,0 +1,99 @@
+package com.ollamachat.ai;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cancellable handle for a single in-flight AI generation.
+ * <p>
+ * Whoever starts the underlying HTTP exchange registers a cancel action, so cancelling the handle
+ * closes the response stream and the backend stops generating.
+ */
+public class GenerationHandle {
+    private final long requestId;
+    private final UUID playerUuid;
+    private final String aiName;
+    private final long startedAt;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final List<Runnable> cancelActions = new CopyOnWriteArrayList<>();
+    private volatile GenerationTrace trace;
+    private volatile String endpoint;
+
+    GenerationHandle(long requestId, UUID playerUuid, String aiName) {
+        this.requestId = requestId;
+        this.playerUuid = playerUuid;
+        this.aiName = aiName;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Registers an action to run when the generation is cancelled.
+     * Runs immediately if the handle has already been cancelled.
+     */
+    public void onCancel(Runnable action) {
+        cancelActions.add(action);
+        if (cancelled.get() && cancelActions.remove(action)) {
+            action.run();
+        }
+    }
+
+    /**
+     * Cancels the generation.
+     *
+     * @return true if this call cancelled it, false if it was already cancelled
+     */
+    public boolean cancel() {
+        if (!cancelled.compareAndSet(false, true)) {
+            return false;
+        }
+        for (Runnable action : cancelActions) {
+            if (cancelActions.remove(action)) {
+                action.run();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a handle for one of several backend calls made in parallel for this generation, so every
+     * call keeps its own trace. Cancelling this handle cancels the child too.
+     */
+    public GenerationHandle child(String aiName) {
+        GenerationHandle child = new GenerationHandle(requestId, playerUuid, aiName);
+        onCancel(child::cancel);
+        return child;
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * @return The measurements of the backend call started last for this handle, or null
+     */
+    public GenerationTrace getTrace() {
+        return trace;
+    }
+
+    void setTrace(GenerationTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * @return The endpoint URL the load balancer sent the last backend call to, or null if none was sent yet
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public long getRequestId() { return requestId; }
+    public UUID getPlayerUuid() { return playerUuid; }
+    public String getAiName() { return aiName; }
+    public long getStartedAt() { return startedAt; }
+}
@@ -0,0 +1,198 @@
+package com.ollamachat.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates the {@link GenerationTrace} of every finished backend call per backend and model:
+ * time to first token, total latency, queue wait, generation speed and model load time as
+ * histograms, plus request, token and byte counters.
+ * <p>
+ * The dispatcher resolves the {@link ModelMetrics} of a call when it is submitted, so recording the
+ * finished call neither looks anything up nor allocates.
+ */
+public class GenerationMetrics {
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    // Backend name, then model
+    private final Map<String, Map<String, ModelMetrics>> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * @return The metrics of a backend and model, created on first use
+     */
+    ModelMetrics forModel(String aiName, String model) {
+        String backend = aiName.toLowerCase(Locale.ROOT);
+        String modelName = model != null ? model : "";
+        Map<String, ModelMetrics> models = metrics.get(backend);
+        if (models == null) {
+            models = metrics.computeIfAbsent(backend, k -> new ConcurrentHashMap<>());
+        }
+        ModelMetrics modelMetrics = models.get(modelName);
+        if (modelMetrics == null) {
+            modelMetrics = models.computeIfAbsent(modelName, k -> new ModelMetrics(aiName, k));
+        }
+        return modelMetrics;
+    }
+
+    /**
+     * @return A snapshot per backend and model that has been used so far
+     */
+    public List<ModelStats> getStats() {
+        List<ModelStats> stats = new ArrayList<>();
+        for (Map<String, ModelMetrics> models : metrics.values()) {
+            for (ModelMetrics modelMetrics : models.values()) {
+                stats.add(modelMetrics.snapshot());
+            }
+        }
+        return stats;
+    }
+
+    public void reset() {
+        metrics.clear();
+    }
+
+    /**
+     * Summary of one histogram; times in milliseconds, speeds in tokens per second.
+     */
+    public static class Distribution {
+        private final long count;
+        private final long sum;
+        private final long mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+
+        Distribution(LogHistogram histogram) {
+            this.count = histogram.getCount();
+            this.sum = histogram.getSum();
+            this.mean = histogram.getMean();
+            this.p50 = histogram.getPercentile(0.50);
+            this.p90 = histogram.getPercentile(0.90);
+            this.p99 = histogram.getPercentile(0.99);
+            this.max = histogram.getMax();
+        }
+
+        public long getCount() { return count; }
+        public long getSum() { return sum; }
+        public long getMean() { return mean; }
+        public long getP50() { return p50; }
+        public long getP90() { return p90; }
+        public long getP99() { return p99; }
+        public long getMax() { return max; }
+    }
+
+    public static class ModelStats {
+        private final String aiName;
+        private final String model;
+        private final long requests;
+        private final long failures;
+        private final long bytes;
+        private final long promptTokens;
+        private final long generatedTokens;
+        private final long promptTokensPerSecond;
+        private final Distribution timeToFirstToken;
+        private final Distribution latency;
+        private final Distribution queueWait;
+        private final Distribution tokensPerSecond;
+        private final Distribution loadTime;
+
+        ModelStats(ModelMetrics source) {
+            this.aiName = source.aiName;
+            this.model = source.model;
+            this.requests = source.requests.sum();
+            this.failures = source.failures.sum();
+            this.bytes = source.bytes.sum();
+            this.promptTokens = source.promptTokens.sum();
+            this.generatedTokens = source.generatedTokens.sum();
+            long promptEvalNanos = source.promptEvalNanos.sum();
+            this.promptTokensPerSecond = promptEvalNanos > 0
+                    ? source.timedPromptTokens.sum() * 1_000_000_000L / promptEvalNanos
+                    : 0;
+            this.timeToFirstToken = new Distribution(source.timeToFirstToken);
+            this.latency = new Distribution(source.latency);
+            this.queueWait = new Distribution(source.queueWait);
+            this.tokensPerSecond = new Distribution(source.tokensPerSecond);
+            this.loadTime = new Distribution(source.loadTime);
+        }
+
+        public String getAiName() { return aiName; }
+        public String getModel() { return model; }
+        public long getRequests() { return requests; }
+        public long getFailures() { return failures; }
+        public long getBytes() { return bytes; }
+        public long getPromptTokens() { return promptTokens; }
+        public long getGeneratedTokens() { return generatedTokens; }
+        public long getPromptTokensPerSecond() { return promptTokensPerSecond; }
+        public Distribution getTimeToFirstToken() { return timeToFirstToken; }
+        public Distribution getLatency() { return latency; }
+        public Distribution getQueueWait() { return queueWait; }
+        public Distribution getTokensPerSecond() { return tokensPerSecond; }
+        public Distribution getLoadTime() { return loadTime; }
+    }
+
+    /**
+     * The counters and histograms of one backend and model.
+     */
+    static class ModelMetrics {
+        final String aiName;
+        final String model;
+        final LongAdder requests = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder generatedTokens = new LongAdder();
+        // Prompt tokens of calls that also reported their prompt evaluation time
+        final LongAdder timedPromptTokens = new LongAdder();
+        final LongAdder promptEvalNanos = new LongAdder();
+        final LogHistogram timeToFirstToken = new LogHistogram();
+        final LogHistogram latency = new LogHistogram();
+        final LogHistogram queueWait = new LogHistogram();
+        final LogHistogram tokensPerSecond = new LogHistogram();
+        final LogHistogram loadTime = new LogHistogram();
+
+        ModelMetrics(String aiName, String model) {
+            this.aiName = aiName;
+            this.model = model;
+        }
+
+        /**
+         * Records a finished call. Cancelled calls are not recorded, their timings say nothing about the backend.
+         */
+        void record(GenerationTrace trace, boolean success) {
+            requests.increment();
+            if (!success) {
+                failures.increment();
+            }
+            bytes.add(trace.getBytes());
+            queueWait.record(trace.getQueueWaitNanos() / NANOS_PER_MILLI);
+            if (!success) return;
+
+            latency.record((System.nanoTime() - trace.getStartedAt()) / NANOS_PER_MILLI);
+            long ttft = trace.getTimeToFirstTokenNanos();
+            if (ttft >= 0) {
+                timeToFirstToken.record(ttft / NANOS_PER_MILLI);
+            }
+            promptTokens.add(trace.getPromptTokens());
+            generatedTokens.add(trace.getEvalTokens());
+            if (trace.getPromptEvalNanos() > 0) {
+                timedPromptTokens.add(trace.getPromptTokens());
+                promptEvalNanos.add(trace.getPromptEvalNanos());
+            }
+            if (trace.getEvalNanos() > 0) {
+                tokensPerSecond.record(trace.getEvalTokens() * 1_000_000_000L / trace.getEvalNanos());
+            }
+            if (trace.getLoadNanos() > 0) {
+                loadTime.record(trace.getLoadNanos() / NANOS_PER_MILLI);
+            }
+        }
+
+        ModelStats snapshot() {
+            return new ModelStats(this);
+        }
+    }
+}
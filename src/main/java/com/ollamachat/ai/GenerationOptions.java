@@ -0,0 +1,35 @@
+package com.ollamachat.ai;
+
+/**
+ * Optional per-request settings for a generation, plus state the backend hands back.
+ * <p>
+ * Values returned by the backend are written into the same instance by
+ * {@link com.ollamachat.AIService} once the response has been read.
+ */
+public class GenerationOptions {
+    private int[] context;
+    private volatile int[] returnedContext;
+
+    /**
+     * Sets the Ollama context to continue from (generate format only).
+     */
+    public GenerationOptions setContext(int[] context) {
+        this.context = context;
+        return this;
+    }
+
+    public int[] getContext() {
+        return context;
+    }
+
+    public void setReturnedContext(int[] returnedContext) {
+        this.returnedContext = returnedContext;
+    }
+
+    /**
+     * @return The context returned by Ollama at the end of the generation, or null if none was sent
+     */
+    public int[] getReturnedContext() {
+        return returnedContext;
+    }
+}
@@ -0,0 +1,85 @@
+package com.ollamachat.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks in-flight generations per player and per request so they can be aborted
+ * when the player quits, sends a newer prompt, or runs /aichat cancel.
+ */
+public class GenerationRegistry {
+    private final Map<UUID, Map<Long, GenerationHandle>> activeGenerations = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+
+    /**
+     * Starts tracking a new generation.
+     *
+     * @param playerUuid The player the generation belongs to
+     * @param aiName     The AI backend name
+     * @param supersede  Whether to cancel the player's other running generations first
+     * @return The handle for the new generation
+     */
+    public GenerationHandle begin(UUID playerUuid, String aiName, boolean supersede) {
+        if (supersede) {
+            cancelAll(playerUuid);
+        }
+        GenerationHandle handle = new GenerationHandle(requestIds.incrementAndGet(), playerUuid, aiName);
+        activeGenerations.computeIfAbsent(playerUuid, k -> new ConcurrentHashMap<>())
+                .put(handle.getRequestId(), handle);
+        return handle;
+    }
+
+    /**
+     * Stops tracking a generation once it has finished, failed or been cancelled.
+     */
+    public void finish(GenerationHandle handle) {
+        if (handle == null) return;
+        activeGenerations.computeIfPresent(handle.getPlayerUuid(), (uuid, handles) -> {
+            handles.remove(handle.getRequestId());
+            return handles.isEmpty() ? null : handles;
+        });
+    }
+
+    /**
+     * Cancels every running generation of a player.
+     *
+     * @return The number of generations that were cancelled
+     */
+    public int cancelAll(UUID playerUuid) {
+        Map<Long, GenerationHandle> handles = activeGenerations.remove(playerUuid);
+        if (handles == null) return 0;
+        int cancelled = 0;
+        for (GenerationHandle handle : handles.values()) {
+            if (handle.cancel()) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Cancels every running generation, e.g. when the plugin is disabled.
+     */
+    public void cancelEverything() {
+        for (UUID playerUuid : new ArrayList<>(activeGenerations.keySet())) {
+            cancelAll(playerUuid);
+        }
+    }
+
+    public List<GenerationHandle> getActive(UUID playerUuid) {
+        Map<Long, GenerationHandle> handles = activeGenerations.get(playerUuid);
+        return handles != null ? new ArrayList<>(handles.values()) : new ArrayList<>();
+    }
+
+    public int getActiveCount() {
+        int count = 0;
+        for (Map<Long, GenerationHandle> handles : activeGenerations.values()) {
+            count += handles.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,68 @@
+package com.ollamachat.ai;
+
+/**
+ * Measurements of one backend call, filled in by the dispatcher and by {@link com.ollamachat.AIService}
+ * and recorded into {@link GenerationMetrics} when the call ends.
+ * <p>
+ * Times are {@link System#nanoTime()} values; token counts and durations are the ones Ollama
+ * reports in its final frame, or the OpenAI usage block, and stay 0 when the backend sends none.
+ */
+public class GenerationTrace {
+    private final String aiName;
+    private final long queueWaitNanos;
+    private final long startedAt = System.nanoTime();
+    private final String model;
+    private volatile long firstTokenAt;
+    private volatile long bytes;
+    private volatile long promptTokens;
+    private volatile long promptEvalNanos;
+    private volatile long evalTokens;
+    private volatile long evalNanos;
+    private volatile long loadNanos;
+
+    GenerationTrace(String aiName, String model, long queueWaitNanos) {
+        this.aiName = aiName;
+        this.model = model;
+        this.queueWaitNanos = queueWaitNanos;
+    }
+
+    /**
+     * Marks the arrival of the first generated text; later calls are ignored.
+     */
+    public void firstToken() {
+        if (firstTokenAt == 0) {
+            firstTokenAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Adds received response bytes. Called from the one thread reading the response.
+     */
+    public void addBytes(long count) {
+        bytes += count;
+    }
+
+    public void setPromptTokens(long promptTokens) { this.promptTokens = promptTokens; }
+    public void setPromptEvalNanos(long promptEvalNanos) { this.promptEvalNanos = promptEvalNanos; }
+    public void setEvalTokens(long evalTokens) { this.evalTokens = evalTokens; }
+    public void setEvalNanos(long evalNanos) { this.evalNanos = evalNanos; }
+    public void setLoadNanos(long loadNanos) { this.loadNanos = loadNanos; }
+
+    public String getAiName() { return aiName; }
+    String getModel() { return model; }
+    long getQueueWaitNanos() { return queueWaitNanos; }
+    long getStartedAt() { return startedAt; }
+    long getBytes() { return bytes; }
+    long getPromptTokens() { return promptTokens; }
+    long getPromptEvalNanos() { return promptEvalNanos; }
+    long getEvalTokens() { return evalTokens; }
+    long getEvalNanos() { return evalNanos; }
+    long getLoadNanos() { return loadNanos; }
+
+    /**
+     * @return Nanoseconds from the start of the call to the first text, or -1 if none arrived
+     */
+    long getTimeToFirstTokenNanos() {
+        return firstTokenAt != 0 ? firstTokenAt - startedAt : -1;
+    }
+}
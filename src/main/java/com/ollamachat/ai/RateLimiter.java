@@ -0,0 +1,271 @@
+package com.ollamachat.ai;
+
+import com.ollamachat.core.ConfigManager;
+import org.bukkit.entity.Player;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how often players may ask for generations and how many tokens may be generated for them per day.
+ * <p>
+ * Request rates are token buckets per player, per permission group and per backend. Each bucket is one
+ * {@link AtomicLong} updated by compare-and-set (the GCRA form of a token bucket), so checking a request
+ * never blocks. Daily token usage is the {@code eval_count} (or OpenAI {@code completion_tokens}) the
+ * backend reports when a generation finishes; backends that report none are only limited per minute.
+ */
+public class RateLimiter {
+    public static final String BYPASS_PERMISSION = "ollamachat.ratelimit.bypass";
+    public static final String GROUP_PERMISSION_PREFIX = "ollamachat.ratelimit.";
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final ConfigManager configManager;
+    private final Map<UUID, PlayerUsage> players = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> groupBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> backendBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong sweptDay = new AtomicLong(LocalDate.now().toEpochDay());
+
+    public RateLimiter(ConfigManager configManager) {
+        this.configManager = configManager;
+    }
+
+    /**
+     * Takes one request from the player's, the group's and the backend's bucket, or from none of them.
+     *
+     * @param player The player asking, or null for requests that do not belong to a player
+     * @throws RateLimitedException If a limit is reached
+     */
+    public void acquire(Player player, String aiName) {
+        if (!configManager.isRateLimitEnabled() || player == null || player.hasPermission(BYPASS_PERMISSION)) {
+            return;
+        }
+        sweepOnNewDay();
+        ConfigManager.RateLimitGroup group = getGroup(player);
+        PlayerUsage usage = players.computeIfAbsent(player.getUniqueId(), k -> new PlayerUsage());
+        if (group.getTokensPerDay() > 0 && usage.getTokensToday() >= group.getTokensPerDay()) {
+            throw new RateLimitedException(Limit.DAILY_TOKENS, millisUntilMidnight());
+        }
+
+        long now = System.nanoTime();
+        int playerRate = group.getRequestsPerMinute();
+        long wait = usage.requests.tryAcquire(playerRate, now);
+        if (wait > 0) {
+            throw new RateLimitedException(Limit.PLAYER, wait);
+        }
+        int groupRate = group.getSharedRequestsPerMinute();
+        Bucket groupBucket = groupRate > 0 ? groupBuckets.computeIfAbsent(group.getName(), k -> new Bucket()) : null;
+        if (groupBucket != null && (wait = groupBucket.tryAcquire(groupRate, now)) > 0) {
+            usage.requests.release(playerRate);
+            throw new RateLimitedException(Limit.GROUP, wait);
+        }
+        int backendRate = configManager.getBackendRequestsPerMinute(aiName);
+        Bucket backendBucket = backendRate > 0 ? backendBuckets.computeIfAbsent(aiName.toLowerCase(), k -> new Bucket()) : null;
+        if (backendBucket != null && (wait = backendBucket.tryAcquire(backendRate, now)) > 0) {
+            usage.requests.release(playerRate);
+            if (groupBucket != null) {
+                groupBucket.release(groupRate);
+            }
+            throw new RateLimitedException(Limit.BACKEND, wait);
+        }
+    }
+
+    /**
+     * Adds the tokens a finished generation reported to its player's daily usage.
+     */
+    void recordTokens(UUID playerUuid, GenerationTrace trace) {
+        if (!configManager.isRateLimitEnabled() || playerUuid == null || trace.getEvalTokens() <= 0) return;
+        sweepOnNewDay();
+        players.computeIfAbsent(playerUuid, k -> new PlayerUsage()).addTokens(trace.getEvalTokens());
+    }
+
+    /**
+     * Drops the usage of a player who left, unless it still limits them: a bucket that has not
+     * refilled or tokens used today. Those entries go at the first sweep of a later day.
+     */
+    public void forget(UUID playerUuid) {
+        long now = System.nanoTime();
+        players.computeIfPresent(playerUuid, (k, usage) -> usage.isIdle(now) ? null : usage);
+    }
+
+    /**
+     * Once per day, when the daily usage starts over, drops every entry that is back to a full bucket.
+     * An idle entry limits nothing that a new one would not, so this is safe for online players too.
+     */
+    private void sweepOnNewDay() {
+        long today = LocalDate.now().toEpochDay();
+        long swept = sweptDay.get();
+        if (swept == today || !sweptDay.compareAndSet(swept, today)) return;
+        long now = System.nanoTime();
+        players.values().removeIf(usage -> usage.isIdle(now));
+    }
+
+    /**
+     * @return The group whose limits apply to the player: the first configured group they have the
+     *         permission for, or the default group
+     */
+    public ConfigManager.RateLimitGroup getGroup(Player player) {
+        for (ConfigManager.RateLimitGroup group : configManager.getRateLimitGroups()) {
+            if (player.hasPermission(GROUP_PERMISSION_PREFIX + group.getName())) {
+                return group;
+            }
+        }
+        return configManager.getRateLimitDefaultGroup();
+    }
+
+    /**
+     * @return What the player may still use, ignoring the shared group and backend limits
+     */
+    public Quota getQuota(Player player) {
+        ConfigManager.RateLimitGroup group = getGroup(player);
+        PlayerUsage usage = players.get(player.getUniqueId());
+        int requestsLeft = usage != null
+                ? usage.requests.available(group.getRequestsPerMinute(), System.nanoTime())
+                : group.getRequestsPerMinute();
+        long tokensUsed = usage != null ? usage.getTokensToday() : 0;
+        return new Quota(group.getName(), group.getRequestsPerMinute(), requestsLeft,
+                group.getTokensPerDay(), tokensUsed, millisUntilMidnight());
+    }
+
+    private static long millisUntilMidnight() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.until(now.toLocalDate().plusDays(1).atStartOfDay(), ChronoUnit.MILLIS);
+    }
+
+    public enum Limit {
+        PLAYER, GROUP, BACKEND, DAILY_TOKENS
+    }
+
+    /**
+     * Thrown when a request exceeds a rate limit or the daily token budget.
+     */
+    public static class RateLimitedException extends RuntimeException {
+        private final Limit limit;
+        private final long retryAfterMillis;
+
+        public RateLimitedException(Limit limit, long retryAfterMillis) {
+            super("Rate limit reached (" + limit.name().toLowerCase() + "), retry in " + retryAfterMillis + "ms");
+            this.limit = limit;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public Limit getLimit() { return limit; }
+        public long getRetryAfterMillis() { return retryAfterMillis; }
+    }
+
+    public static class Quota {
+        private final String group;
+        private final int requestsPerMinute;
+        private final int requestsLeft;
+        private final int tokensPerDay;
+        private final long tokensUsed;
+        private final long resetInMillis;
+
+        Quota(String group, int requestsPerMinute, int requestsLeft, int tokensPerDay, long tokensUsed, long resetInMillis) {
+            this.group = group;
+            this.requestsPerMinute = requestsPerMinute;
+            this.requestsLeft = requestsLeft;
+            this.tokensPerDay = tokensPerDay;
+            this.tokensUsed = tokensUsed;
+            this.resetInMillis = resetInMillis;
+        }
+
+        public String getGroup() { return group; }
+        /** 0 for unlimited. */
+        public int getRequestsPerMinute() { return requestsPerMinute; }
+        public int getRequestsLeft() { return requestsLeft; }
+        /** 0 for unlimited. */
+        public int getTokensPerDay() { return tokensPerDay; }
+        public long getTokensUsed() { return tokensUsed; }
+        public long getTokensLeft() { return Math.max(0, tokensPerDay - tokensUsed); }
+        /** Time until the daily token usage starts over. */
+        public long getResetInMillis() { return resetInMillis; }
+    }
+
+    /**
+     * A token bucket holding one minute of requests, stored as the time at which it will be full again.
+     * Taking a request moves that time one emission interval further; a request that would move it more
+     * than a minute ahead of now is refused.
+     */
+    private static class Bucket {
+        private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+
+        /**
+         * @return 0 if a request was taken, otherwise the milliseconds until one is available
+         */
+        long tryAcquire(int perMinute, long now) {
+            if (perMinute <= 0) return 0;
+            long interval = NANOS_PER_MINUTE / perMinute;
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + interval;
+                if (next - now > NANOS_PER_MINUTE) {
+                    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(next - now - NANOS_PER_MINUTE));
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * Gives back a request taken by {@link #tryAcquire}, when a later bucket refused it.
+         */
+        void release(int perMinute) {
+            if (perMinute > 0) {
+                fullAt.addAndGet(-(NANOS_PER_MINUTE / perMinute));
+            }
+        }
+
+        boolean isFull(long now) {
+            return fullAt.get() - now <= 0;
+        }
+
+        int available(int perMinute, long now) {
+            if (perMinute <= 0) return 0;
+            long interval = NANOS_PER_MINUTE / perMinute;
+            long used = Math.max(fullAt.get(), now) - now;
+            return (int) Math.max(0, (NANOS_PER_MINUTE - used) / interval);
+        }
+    }
+
+    private static class PlayerUsage {
+        final Bucket requests = new Bucket();
+        private final AtomicLong day = new AtomicLong(LocalDate.now().toEpochDay());
+        private final AtomicLong tokens = new AtomicLong();
+
+        long getTokensToday() {
+            rollOver();
+            return tokens.get();
+        }
+
+        void addTokens(long count) {
+            rollOver();
+            tokens.addAndGet(count);
+        }
+
+        /**
+         * @return true if the player has no requests outstanding in the last minute and no tokens today
+         */
+        boolean isIdle(long now) {
+            return requests.isFull(now) && getTokensToday() == 0;
+        }
+
+        /**
+         * Starts a new day's usage. Tokens added by another thread between the two steps may be lost,
+         * which is fine for a budget.
+         */
+        private void rollOver() {
+            long today = LocalDate.now().toEpochDay();
+            long current = day.get();
+            if (current != today && day.compareAndSet(current, today)) {
+                tokens.set(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.ollamachat.ai;
+
+import com.ollamachat.core.ConfigManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Single-flight deduplication of identical stateless AI requests.
+ * <p>
+ * While a generation is running, callers sending the same effective request (same backend, model,
+ * system prompt and normalized prompt, without per-player history) join it instead of starting
+ * their own. Streamed chunks produced before a caller joined are replayed to it first.
+ * The upstream generation is only cancelled once every participant has cancelled.
+ */
+public class RequestCoalescer {
+    private final ConfigManager configManager;
+    private final Map<String, Flight<?>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong upstreamCalls = new AtomicLong();
+    private final AtomicLong coalescedCalls = new AtomicLong();
+
+    public RequestCoalescer(ConfigManager configManager) {
+        this.configManager = configManager;
+    }
+
+    /**
+     * Builds the coalescing key of a request. The normalized prompt is always the last line of the key.
+     *
+     * @return The key, or null if the request carries per-player history, such as a conversation
+     *         summary, and must not be shared
+     */
+    public static String key(String aiName, String model, ApiFormat format, List<ChatTurn> messages) {
+        String system = null;
+        String prompt = null;
+        for (ChatTurn turn : messages) {
+            if (ChatTurn.ROLE_SYSTEM.equals(turn.getRole())) {
+                if (system != null || turn.isSummary()) return null;
+                system = turn.getContent();
+            } else if (ChatTurn.ROLE_USER.equals(turn.getRole()) && prompt == null) {
+                prompt = turn.getContent();
+            } else {
+                return null;
+            }
+        }
+        if (prompt == null) return null;
+        return aiName.toLowerCase(Locale.ROOT) + '\n' + model + '\n' + format + '\n'
+                + (system != null ? system : "") + '\n' + normalize(prompt);
+    }
+
+    /**
+     * Lower-cases the prompt and collapses whitespace, so trivially different spellings share a key.
+     */
+    public static String normalize(String prompt) {
+        return prompt.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Runs a non-streaming call, or joins an identical one already in flight.
+     *
+     * @param key    The coalescing key, or null to always run the call
+     * @param handle The caller's generation handle
+     * @param call   Starts the upstream call with the handle that should cancel it
+     */
+    public CompletableFuture<String> execute(String key, GenerationHandle handle,
+                                             Function<GenerationHandle, CompletableFuture<String>> call) {
+        if (key == null || !configManager.isRequestCoalescingEnabled()) {
+            return call.apply(handle);
+        }
+        return run("request\n" + key, handle, null, (upstream, publish) -> call.apply(upstream));
+    }
+
+    /**
+     * Runs a streaming call, or joins an identical one already in flight.
+     *
+     * @param key      The coalescing key, or null to always run the call
+     * @param handle   The caller's generation handle
+     * @param consumer Receives every chunk of the shared generation
+     * @param call     Starts the upstream call with the handle that should cancel it and the chunk sink
+     */
+    public CompletableFuture<Void> executeStreaming(String key, GenerationHandle handle, Consumer<String> consumer,
+                                                    BiFunction<GenerationHandle, Consumer<String>, CompletableFuture<Void>> call) {
+        if (key == null || !configManager.isRequestCoalescingEnabled()) {
+            return call.apply(handle, consumer);
+        }
+        return run("stream\n" + key, handle, consumer, call);
+    }
+
+    public long getUpstreamCalls() {
+        return upstreamCalls.get();
+    }
+
+    public long getCoalescedCalls() {
+        return coalescedCalls.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> run(String key, GenerationHandle handle, Consumer<String> consumer,
+                                         BiFunction<GenerationHandle, Consumer<String>, CompletableFuture<T>> call) {
+        while (true) {
+            Flight<T> created = new Flight<>();
+            Flight<T> flight = (Flight<T>) flights.putIfAbsent(key, created);
+            if (flight == null) {
+                flight = created;
+                flight.join(consumer);
+                upstreamCalls.incrementAndGet();
+                start(key, flight, call);
+                return attach(flight, handle, consumer);
+            }
+            if (flight.join(consumer)) {
+                coalescedCalls.incrementAndGet();
+                return attach(flight, handle, consumer);
+            }
+            // The flight finished while we were looking it up; start a new one
+            flights.remove(key, flight);
+        }
+    }
+
+    private <T> void start(String key, Flight<T> flight,
+                           BiFunction<GenerationHandle, Consumer<String>, CompletableFuture<T>> call) {
+        CompletableFuture<T> upstream;
+        try {
+            upstream = call.apply(flight.upstreamHandle, flight::publish);
+        } catch (Exception e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        upstream.whenComplete((value, error) -> {
+            flight.close();
+            flights.remove(key, flight);
+            if (error != null) {
+                flight.result.completeExceptionally(error);
+            } else {
+                flight.result.complete(value);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> attach(Flight<T> flight, GenerationHandle handle, Consumer<String> consumer) {
+        CompletableFuture<T> participant = new CompletableFuture<>();
+        flight.result.whenComplete((value, error) -> {
+            if (error != null) {
+                participant.completeExceptionally(error);
+            } else {
+                participant.complete(value);
+            }
+        });
+        if (handle != null) {
+            handle.onCancel(() -> {
+                flight.leave(consumer);
+                participant.completeExceptionally(new CancellationException("Generation cancelled"));
+            });
+        }
+        return participant;
+    }
+
+    private static class Flight<T> {
+        final GenerationHandle upstreamHandle = new GenerationHandle(0L, null, "coalesced");
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        private final List<String> chunks = new ArrayList<>();
+        private final List<Consumer<String>> consumers = new ArrayList<>();
+        private int participants;
+        private boolean closed;
+
+        synchronized boolean join(Consumer<String> consumer) {
+            if (closed) return false;
+            participants++;
+            if (consumer != null) {
+                for (String chunk : chunks) {
+                    deliver(consumer, chunk);
+                }
+                consumers.add(consumer);
+            }
+            return true;
+        }
+
+        synchronized void publish(String chunk) {
+            chunks.add(chunk);
+            for (Consumer<String> consumer : consumers) {
+                deliver(consumer, chunk);
+            }
+        }
+
+        synchronized void leave(Consumer<String> consumer) {
+            if (consumer != null) {
+                consumers.remove(consumer);
+            }
+            if (--participants == 0 && !closed) {
+                upstreamHandle.cancel();
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+
+        private static void deliver(Consumer<String> consumer, String chunk) {
+            try {
+                consumer.accept(chunk);
+            } catch (RuntimeException ignored) {
+                // One participant failing to handle a chunk must not break the others
+            }
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.ollamachat.ai;
+
+import com.ollamachat.core.ConfigManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sends a second copy of a slow request to keep the latency tail short.
+ * <p>
+ * If a request has produced no output after the hedge delay, the same request is also sent to
+ * another endpoint of the backend, or to the configured secondary model. A copy on the same backend
+ * never goes to the endpoint the first attempt is waiting on, and is not sent if the backend has no
+ * other healthy endpoint with room. Whichever attempt
+ * produces output first wins and the other one is cancelled. Hedges are paid for from a budget
+ * that grows with every request, so they never exceed the configured share of the traffic.
+ * <p>
+ * The adaptive hedge delay is learned from the time to first output of every request, hedged or not.
+ * An attempt cancelled because a later one won counts with the time it had waited, as a lower bound;
+ * leaving it out would only keep the fast answers and shrink the delay.
+ */
+public class RequestHedger {
+    private static final int LATENCY_SAMPLES = 200;
+    /** Samples needed before the adaptive delay replaces {@link #INITIAL_DELAY_MILLIS}. */
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    private static final long INITIAL_DELAY_MILLIS = 2000;
+    /** Hedges that can be saved up while requests are fast. */
+    private static final double MAX_BUDGET = 10;
+
+    private final ConfigManager configManager;
+    private final EndpointBalancer balancer;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private double budget;
+
+    public RequestHedger(ConfigManager configManager, EndpointBalancer balancer) {
+        this.configManager = configManager;
+        this.balancer = balancer;
+    }
+
+    /**
+     * Runs a non-streaming request; the first attempt to complete successfully wins.
+     *
+     * @param target    The backend and model the request is sent to
+     * @param handle    The generation handle; cancelling it cancels every attempt
+     * @param hedgeable false for requests that must not be repeated elsewhere, e.g. those continuing a stored context
+     * @param attempt   Runs the request for an attempt
+     */
+    public <T> CompletableFuture<T> execute(FallbackChain.Target target, GenerationHandle handle, boolean hedgeable,
+                                            Function<Attempt, CompletableFuture<T>> attempt) {
+        FallbackChain.Target hedgeTarget = hedgeable ? hedgeTarget(target) : null;
+        if (hedgeTarget == null) {
+            long startedAt = System.nanoTime();
+            return attempt.apply(new Attempt(target, false, handle)).whenComplete((value, error) -> {
+                if (error == null) {
+                    recordLatency(target, false, startedAt);
+                }
+            });
+        }
+        Race<T> race = new Race<>(target, handle, false);
+        race.start(target, false, attempt);
+        race.scheduleHedge(hedgeTarget, attempt);
+        return race.result;
+    }
+
+    /**
+     * Runs a streaming request; the first attempt to emit a chunk wins and only its chunks reach the consumer.
+     *
+     * @return The target whose answer was streamed
+     */
+    public CompletableFuture<FallbackChain.Target> executeStreaming(FallbackChain.Target target, GenerationHandle handle,
+                                                                    boolean hedgeable, Consumer<String> consumer,
+                                                                    BiFunction<Attempt, Consumer<String>, CompletableFuture<Void>> attempt) {
+        FallbackChain.Target hedgeTarget = hedgeable ? hedgeTarget(target) : null;
+        if (hedgeTarget == null) {
+            long startedAt = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean(true);
+            return attempt.apply(new Attempt(target, false, handle), chunk -> {
+                if (first.getAndSet(false)) {
+                    recordLatency(target, true, startedAt);
+                }
+                consumer.accept(chunk);
+            }).thenApply(v -> target);
+        }
+        Race<Void> race = new Race<>(target, handle, true);
+        Function<Attempt, CompletableFuture<Void>> start = current -> attempt.apply(current, chunk -> {
+            if (race.claim(current)) {
+                consumer.accept(chunk);
+            }
+        });
+        race.start(target, false, start);
+        race.scheduleHedge(hedgeTarget, start);
+        return race.result.thenApply(v -> race.winner.target);
+    }
+
+    public long getHedges() { return hedges.get(); }
+    public long getHedgeWins() { return hedgeWins.get(); }
+
+    /**
+     * @return The delay after which requests to a backend and model are hedged
+     */
+    public long getDelayMillis(String aiName, String model, boolean streaming) {
+        if (configManager.getHedgingDelay() > 0) {
+            return configManager.getHedgingDelay();
+        }
+        LatencyWindow window = latencies.get(latencyKey(aiName, model, streaming));
+        long p95 = window != null ? window.percentile(0.95) : -1;
+        return p95 >= 0 ? p95 : INITIAL_DELAY_MILLIS;
+    }
+
+    /**
+     * @return Where a copy of the request would go, or null if it cannot be hedged
+     */
+    private FallbackChain.Target hedgeTarget(FallbackChain.Target target) {
+        if (!configManager.isHedgingEnabled()) {
+            return null;
+        }
+        String secondary = configManager.getHedgingSecondary(target.getModel());
+        if (secondary != null) {
+            return FallbackChain.resolve(configManager, target.getAiName(), target.getConfig(), secondary);
+        }
+        // Without a secondary model, only a backend with several endpoints has somewhere else to send the copy
+        return target.getConfig().getApiUrls().size() > 1 ? target : null;
+    }
+
+    private synchronized void earnBudget() {
+        budget = Math.min(MAX_BUDGET, budget + Math.max(0, configManager.getHedgingMaxPercent()) / 100.0);
+    }
+
+    private synchronized boolean spendBudget() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+
+    /**
+     * Adds the time from an attempt's start until now to the latencies of its target.
+     */
+    private void recordLatency(FallbackChain.Target target, boolean streaming, long startedAt) {
+        if (!configManager.isHedgingEnabled() || configManager.getHedgingDelay() > 0) {
+            return;
+        }
+        latencies.computeIfAbsent(latencyKey(target.getAiName(), target.getModel(), streaming), k -> new LatencyWindow())
+                .add((System.nanoTime() - startedAt) / 1_000_000L);
+    }
+
+    private static String latencyKey(String aiName, String model, boolean streaming) {
+        return aiName.toLowerCase() + "|" + model + (streaming ? "|stream" : "");
+    }
+
+    /**
+     * One attempt at a request, with its own handle so a losing attempt can be cancelled on its own.
+     */
+    public static class Attempt {
+        private final FallbackChain.Target target;
+        private final boolean hedge;
+        private final GenerationHandle handle;
+        private final String excludedEndpoint;
+        private final long startedAt = System.nanoTime();
+        private volatile boolean finished;
+
+        Attempt(FallbackChain.Target target, boolean hedge, GenerationHandle handle) {
+            this(target, hedge, handle, null);
+        }
+
+        Attempt(FallbackChain.Target target, boolean hedge, GenerationHandle handle, String excludedEndpoint) {
+            this.target = target;
+            this.hedge = hedge;
+            this.handle = handle;
+            this.excludedEndpoint = excludedEndpoint;
+        }
+
+        public FallbackChain.Target getTarget() { return target; }
+
+        /**
+         * @return true for the copy sent after the hedge delay
+         */
+        public boolean isHedge() { return hedge; }
+
+        /**
+         * @return The handle to pass on to the request; may be null if the request has none
+         */
+        public GenerationHandle getHandle() { return handle; }
+
+        /**
+         * @return The endpoint the attempt must not be sent to, or null
+         */
+        public String getExcludedEndpoint() { return excludedEndpoint; }
+    }
+
+    private class Race<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final FallbackChain.Target target;
+        final GenerationHandle handle;
+        final boolean streaming;
+        final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+        volatile Attempt winner;
+        private int running;
+        private Throwable firstError;
+
+        Race(FallbackChain.Target target, GenerationHandle handle, boolean streaming) {
+            this.target = target;
+            this.handle = handle;
+            this.streaming = streaming;
+            earnBudget();
+            if (handle != null) {
+                handle.onCancel(() -> {
+                    for (Attempt attempt : attempts) {
+                        attempt.handle.cancel();
+                    }
+                });
+            }
+        }
+
+        void scheduleHedge(FallbackChain.Target hedgeTarget, Function<Attempt, CompletableFuture<T>> call) {
+            long delay = getDelayMillis(target.getAiName(), target.getModel(), streaming);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+                if (winner != null || result.isDone() || (handle != null && handle.isCancelled())) {
+                    return;
+                }
+                String excluded = null;
+                if (hedgeTarget.getAiName().equalsIgnoreCase(target.getAiName())
+                        && hedgeTarget.getConfig().getApiUrls().size() > 1) {
+                    // The first attempt still waiting for a slot has no endpoint to avoid yet; a copy would only queue too
+                    excluded = attempts.get(0).handle.getEndpoint();
+                    if (excluded == null || !balancer.hasOtherEndpoint(target.getAiName(), excluded)) {
+                        return;
+                    }
+                }
+                if (!spendBudget()) {
+                    return;
+                }
+                hedges.incrementAndGet();
+                start(hedgeTarget, true, excluded, call);
+            });
+        }
+
+        void start(FallbackChain.Target attemptTarget, boolean hedge, Function<Attempt, CompletableFuture<T>> call) {
+            start(attemptTarget, hedge, null, call);
+        }
+
+        void start(FallbackChain.Target attemptTarget, boolean hedge, String excludedEndpoint,
+                   Function<Attempt, CompletableFuture<T>> call) {
+            // Every attempt gets its own handle, so the loser can be cancelled without the winner
+            Attempt attempt = new Attempt(attemptTarget, hedge, new GenerationHandle(0L, null, attemptTarget.getAiName()),
+                    excludedEndpoint);
+            synchronized (this) {
+                running++;
+            }
+            attempts.add(attempt);
+            if (handle != null && handle.isCancelled()) {
+                attempt.handle.cancel();
+            }
+            CompletableFuture<T> future;
+            try {
+                future = call.apply(attempt);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((value, error) -> finish(attempt, value, error));
+        }
+
+        /**
+         * Makes an attempt the winner unless another one already is.
+         *
+         * @return true if the attempt is the winner
+         */
+        boolean claim(Attempt attempt) {
+            if (winner == attempt) {
+                return true;
+            }
+            synchronized (this) {
+                if (winner != null) {
+                    return false;
+                }
+                winner = attempt;
+            }
+            recordLatency(attempt.target, streaming, attempt.startedAt);
+            if (attempt.hedge) {
+                hedgeWins.incrementAndGet();
+            }
+            for (Attempt other : attempts) {
+                if (other != attempt) {
+                    // An attempt started after the winner was cut short before it could be slow
+                    if (!other.finished && other.startedAt < attempt.startedAt) {
+                        recordLatency(other.target, streaming, other.startedAt);
+                    }
+                    other.handle.cancel();
+                }
+            }
+            return true;
+        }
+
+        private void finish(Attempt attempt, T value, Throwable error) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            attempt.finished = cause != null;
+            boolean lastRunning;
+            synchronized (this) {
+                running--;
+                lastRunning = running == 0;
+                // A hedge dropped for lack of another endpoint must not hide the first attempt's error
+                if (cause != null && (firstError == null || firstError instanceof CancellationException)) {
+                    firstError = cause;
+                }
+            }
+            if (cause == null && claim(attempt)) {
+                result.complete(value);
+            } else if (cause != null && winner == attempt) {
+                result.completeExceptionally(cause);
+            } else if (lastRunning && winner == null) {
+                // Every attempt so far failed; a hedge that has not started yet is not sent any more
+                result.completeExceptionally(firstError);
+            }
+        }
+    }
+
+    /**
+     * The most recent latencies of one backend and model.
+     */
+    private static class LatencyWindow {
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private int next;
+        private int count;
+
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * @return The percentile, or -1 if there are too few samples
+         */
+        synchronized long percentile(double percentile) {
+            if (count < MIN_LATENCY_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.ollamachat.ai;
+
+/**
+ * Scheduling class of a request waiting for a backend slot, from most to least urgent.
+ * <p>
+ * Waiting classes share the backend by weight (see {@code request-queue.priority-weights}), and
+ * deferrable classes never take the slots reserved for the others.
+ */
+public enum RequestPriority {
+    /** A player waiting in chat for an answer. */
+    INTERACTIVE("interactive", false),
+    /** Calls from other plugins through the API. */
+    API("api", false),
+    /** Suggested follow-up replies. */
+    SUGGESTION("suggestion", true),
+    /** Work nobody is waiting for, such as summarising old conversation turns. */
+    BACKGROUND("background", true);
+
+    private final String configName;
+    private final boolean deferrable;
+
+    RequestPriority(String configName, boolean deferrable) {
+        this.configName = configName;
+        this.deferrable = deferrable;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * @return true if the class may wait while a backend is busy with more urgent work, and may be
+     *         dropped from a full queue to make room for it
+     */
+    public boolean isDeferrable() {
+        return deferrable;
+    }
+}
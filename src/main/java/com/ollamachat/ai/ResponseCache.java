@@ -0,0 +1,205 @@
+package com.ollamachat.ai;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ollamachat.core.ConfigManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Caches answers to stateless prompts, i.e. prompts sent without chat history, a stored context
+ * or web search results, so repeated FAQ-style questions are not generated again.
+ * <p>
+ * Keys are built like {@link RequestCoalescer#key}: backend, model, API format, system prompt and
+ * normalized prompt. The cache is an LRU map bounded by entry count and total size, entries expire
+ * after a TTL, and the whole cache can be written to a file on shutdown and read back on startup.
+ */
+public class ResponseCache {
+    private final ConfigManager configManager;
+    private final File file;
+    private final Logger logger;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ResponseCache(ConfigManager configManager, File file, Logger logger) {
+        this.configManager = configManager;
+        this.file = file;
+        this.logger = logger;
+    }
+
+    /**
+     * @return Whether answers for this request may be cached
+     */
+    public boolean isCacheable(String key, String model) {
+        return key != null && configManager.isResponseCacheEnabled() && configManager.isResponseCacheModel(model);
+    }
+
+    /**
+     * Looks up a cached answer.
+     *
+     * @param key   The request key, or null for requests that must not be cached
+     * @param model The model the request is sent to
+     * @return The cached answer, or null on a miss
+     */
+    public String get(String key, String model) {
+        if (!isCacheable(key, model)) return null;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && isExpired(entry)) {
+                remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.response;
+        }
+    }
+
+    public void put(String key, String model, String response) {
+        if (!isCacheable(key, model) || response == null || response.isEmpty()) return;
+        Entry entry = new Entry(model, response, System.currentTimeMillis());
+        synchronized (entries) {
+            remove(key);
+            entries.put(key, entry);
+            totalBytes += entry.size(key);
+            evict();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            totalBytes = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getSizeBytes() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+
+    /**
+     * Reads the cache file written by {@link #save()}, skipping entries that have expired since.
+     */
+    public void load() {
+        if (!configManager.isResponseCacheEnabled() || !configManager.isResponseCachePersist() || !file.exists()) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            JsonArray array = JsonParser.parseReader(reader).getAsJsonArray();
+            synchronized (entries) {
+                for (JsonElement element : array) {
+                    JsonObject object = element.getAsJsonObject();
+                    String key = object.get("key").getAsString();
+                    Entry entry = new Entry(object.get("model").getAsString(),
+                            object.get("response").getAsString(), object.get("created_at").getAsLong());
+                    if (!isExpired(entry)) {
+                        remove(key);
+                        entries.put(key, entry);
+                        totalBytes += entry.size(key);
+                    }
+                }
+                evict();
+            }
+            logger.info("Loaded " + size() + " cached responses");
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Failed to load response cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the cache to its file, least recently used entries first so loading keeps the LRU order.
+     */
+    public void save() {
+        if (!configManager.isResponseCacheEnabled() || !configManager.isResponseCachePersist()) {
+            return;
+        }
+        JsonArray array = new JsonArray();
+        synchronized (entries) {
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                if (isExpired(mapEntry.getValue())) continue;
+                JsonObject object = new JsonObject();
+                object.addProperty("key", mapEntry.getKey());
+                object.addProperty("model", mapEntry.getValue().model);
+                object.addProperty("response", mapEntry.getValue().response);
+                object.addProperty("created_at", mapEntry.getValue().createdAt);
+                array.add(object);
+            }
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(array.toString());
+        } catch (IOException e) {
+            logger.warning("Failed to save response cache: " + e.getMessage());
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.size(key);
+        }
+    }
+
+    private void evict() {
+        int maxEntries = Math.max(1, configManager.getResponseCacheMaxEntries());
+        long maxBytes = Math.max(1, configManager.getResponseCacheMaxSizeKb()) * 1024L;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            totalBytes -= eldest.getValue().size(eldest.getKey());
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        long ttlMinutes = configManager.getResponseCacheTtlMinutes();
+        return ttlMinutes > 0 && System.currentTimeMillis() - entry.createdAt > ttlMinutes * 60_000L;
+    }
+
+    private static class Entry {
+        final String model;
+        final String response;
+        final long createdAt;
+
+        Entry(String model, String response, long createdAt) {
+            this.model = model;
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+
+        /** Approximate heap size of the key and answer, two bytes per char. */
+        long size(String key) {
+            return 2L * (key.length() + response.length());
+        }
+    }
+}
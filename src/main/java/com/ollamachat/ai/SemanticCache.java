@@ -0,0 +1,217 @@
+package com.ollamachat.ai;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ollamachat.core.ConfigManager;
+import com.ollamachat.http.HttpTransport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Answers paraphrases of earlier stateless prompts, e.g. "how do I claim land" and
+ * "how to claim a plot", by comparing prompt embeddings from Ollama's /api/embed endpoint.
+ * <p>
+ * Prompts are only compared with earlier prompts sent to the same backend, model and system prompt.
+ * Embedding failures are treated as cache misses, so the cache never blocks an answer.
+ */
+public class SemanticCache {
+    private final ConfigManager configManager;
+    private final HttpTransport transport;
+    private final File file;
+    private final Logger logger;
+    private final Gson gson = new Gson();
+    private final VectorIndex index;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+
+    public SemanticCache(ConfigManager configManager, HttpTransport transport, File file, Logger logger) {
+        this.configManager = configManager;
+        this.transport = transport;
+        this.file = file;
+        this.logger = logger;
+        this.index = new VectorIndex(configManager.getSemanticCacheMaxEntries(), configManager.isSemanticCacheQuantize());
+    }
+
+    /**
+     * Embeds a prompt and searches the index for a similar one.
+     *
+     * @param key   The request key built by {@link RequestCoalescer#key}, or null for requests that must not be cached
+     * @param model The model the request is sent to
+     * @return The lookup, or null if the request is not cached; never completes exceptionally
+     */
+    public CompletableFuture<Lookup> lookup(String key, String model) {
+        if (key == null || !configManager.isSemanticCacheEnabled() || !configManager.isResponseCacheModel(model)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // The normalized prompt is the last line of the key, everything before it is the scope
+        int split = key.lastIndexOf('\n');
+        String scope = key.substring(0, split);
+        String prompt = key.substring(split + 1);
+        long start = System.nanoTime();
+        return embed(prompt).handle((embedding, error) -> {
+            if (error != null || embedding == null) {
+                if (error != null) {
+                    logger.fine("Failed to embed prompt for the semantic cache: " + error.getMessage());
+                }
+                lookupNanos.addAndGet(System.nanoTime() - start);
+                misses.incrementAndGet();
+                return null;
+            }
+            long searchStart = System.nanoTime();
+            String answer = index.search(scope, embedding, configManager.getSemanticCacheThreshold(), ttlMillis());
+            long end = System.nanoTime();
+            searchNanos.addAndGet(end - searchStart);
+            lookupNanos.addAndGet(end - start);
+            (answer != null ? hits : misses).incrementAndGet();
+            return new Lookup(scope, embedding, answer);
+        });
+    }
+
+    /**
+     * Remembers the answer generated after a cache miss.
+     */
+    public void store(Lookup lookup, String answer) {
+        if (lookup == null || lookup.answer != null || answer == null || answer.isEmpty()) return;
+        index.add(lookup.scope, lookup.embedding, answer, ttlMillis());
+    }
+
+    public void clear() {
+        index.clear();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long getMemoryBytes() {
+        return index.memoryBytes();
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    /**
+     * @return The average time of a lookup including the embedding request, in milliseconds
+     */
+    public long getAverageLookupMillis() {
+        long lookups = hits.get() + misses.get();
+        return lookups > 0 ? lookupNanos.get() / lookups / 1_000_000L : 0;
+    }
+
+    /**
+     * @return The average time of the index search alone, in microseconds
+     */
+    public long getAverageSearchMicros() {
+        long lookups = hits.get() + misses.get();
+        return lookups > 0 ? searchNanos.get() / lookups / 1_000L : 0;
+    }
+
+    public void load() {
+        if (!configManager.isSemanticCacheEnabled() || !configManager.isSemanticCachePersist() || !file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (index.read(in, configManager.getSemanticCacheModel())) {
+                logger.info("Loaded " + index.size() + " semantic cache entries");
+            } else {
+                logger.info("Discarding semantic cache file written for another embedding model or format");
+            }
+        } catch (IOException | RuntimeException e) {
+            index.clear();
+            logger.warning("Failed to load semantic cache: " + e.getMessage());
+        }
+    }
+
+    public void save() {
+        if (!configManager.isSemanticCacheEnabled() || !configManager.isSemanticCachePersist()) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            index.write(out, configManager.getSemanticCacheModel());
+        } catch (IOException e) {
+            logger.warning("Failed to save semantic cache: " + e.getMessage());
+        }
+    }
+
+    private CompletableFuture<float[]> embed(String prompt) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", configManager.getSemanticCacheModel());
+        body.put("input", prompt);
+        String keepAlive = configManager.getKeepAlive(configManager.getSemanticCacheModel());
+        if (keepAlive != null) {
+            body.put("keep_alive", keepAlive);
+        }
+        HttpRequest request;
+        try {
+            request = transport.newRequest(URI.create(configManager.getOllamaApiUrls().get(0)).resolve("/api/embed").toString())
+                    .timeout(Duration.ofMillis(Math.max(1, configManager.getSemanticCacheTimeout())))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body)))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return transport.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("HTTP " + response.statusCode());
+            }
+            JsonObject json = JsonParser.parseString(response.body()).getAsJsonObject();
+            JsonArray embeddings = json.getAsJsonArray("embeddings");
+            if (embeddings == null || embeddings.isEmpty()) {
+                return null;
+            }
+            JsonArray values = embeddings.get(0).getAsJsonArray();
+            float[] embedding = new float[values.size()];
+            for (int i = 0; i < embedding.length; i++) {
+                embedding[i] = values.get(i).getAsFloat();
+            }
+            return embedding;
+        });
+    }
+
+    private long ttlMillis() {
+        return Math.max(0, configManager.getSemanticCacheTtlMinutes()) * 60_000L;
+    }
+
+    /**
+     * The result of a lookup; holds the prompt embedding so a generated answer can be stored without embedding again.
+     */
+    public static class Lookup {
+        private final String scope;
+        private final float[] embedding;
+        private final String answer;
+
+        Lookup(String scope, float[] embedding, String answer) {
+            this.scope = scope;
+            this.embedding = embedding;
+            this.answer = answer;
+        }
+
+        /**
+         * @return The cached answer, or null on a miss
+         */
+        public String getAnswer() {
+            return answer;
+        }
+    }
+}
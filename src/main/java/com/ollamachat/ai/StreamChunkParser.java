@@ -0,0 +1,179 @@
+package com.ollamachat.ai;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a streamed response: NDJSON for Ollama, SSE for OpenAI-style backends.
+ * <p>
+ * Only the text field is pulled out of each line with a token-level reader; no JSON tree and
+ * no intermediate strings are built for the rest of it. Token counts and timings go into the trace,
+ * and the context Ollama returns goes into the options.
+ */
+public class StreamChunkParser {
+    private final ApiFormat format;
+    private final GenerationOptions options;
+    private final GenerationTrace trace;
+
+    /**
+     * @param options Where the returned context is stored, or null
+     * @param trace   Where token counts and timings are stored, or null
+     */
+    public StreamChunkParser(ApiFormat format, GenerationOptions options, GenerationTrace trace) {
+        this.format = format;
+        this.options = options;
+        this.trace = trace;
+    }
+
+    /**
+     * Appends the text carried by one line of the response body to the output.
+     */
+    public void parse(String line, StringBuilder out) throws IOException {
+        if (line.isBlank()) return;
+
+        if (format == ApiFormat.OPENAI) {
+            if (!line.startsWith("data: ") || line.startsWith("[DONE]", 6)) return;
+            StringReader source = new StringReader(line);
+            source.skip(6); // Skip "data: " prefix
+            readOpenAIChunk(new JsonReader(source), out);
+        } else if (format == ApiFormat.OLLAMA_CHAT) {
+            readOllamaChatChunk(new JsonReader(new StringReader(line)), out);
+        } else {
+            readGenerateChunk(new JsonReader(new StringReader(line)), out);
+        }
+    }
+
+    /** {"response": "...", "context": [...], ...} */
+    private void readGenerateChunk(JsonReader reader, StringBuilder out) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("response") && reader.peek() == JsonToken.STRING) {
+                out.append(reader.nextString());
+            } else if (name.equals("context") && options != null && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                options.setReturnedContext(readIntArray(reader));
+            } else if (!readTimingField(name, reader, trace)) {
+                reader.skipValue();
+            }
+        }
+    }
+
+    /** {"message": {"role": "assistant", "content": "..."}, ...} */
+    private void readOllamaChatChunk(JsonReader reader, StringBuilder out) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("message") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                readContentField(reader, out);
+            } else if (!readTimingField(name, reader, trace)) {
+                reader.skipValue();
+            }
+        }
+    }
+
+    /** {"choices": [{"delta": {"content": "..."}}, ...], ...} */
+    private void readOpenAIChunk(JsonReader reader, StringBuilder out) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("choices") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                if (reader.hasNext() && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("delta") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                            readContentField(reader, out);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+            } else if (!readTimingField(name, reader, trace)) {
+                reader.skipValue();
+            }
+        }
+    }
+
+    /** Appends the "content" string of the object at the reader's position, if present and not null. */
+    private static void readContentField(JsonReader reader, StringBuilder out) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("content") && reader.peek() == JsonToken.STRING) {
+                out.append(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static int[] readIntArray(JsonReader reader) throws IOException {
+        int[] values = new int[1024];
+        int size = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = reader.nextInt();
+        }
+        reader.endArray();
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Reads one of Ollama's final-frame statistics, or the OpenAI usage block, into the trace.
+     *
+     * @return false if the field is not a statistic and has not been consumed
+     */
+    public static boolean readTimingField(String name, JsonReader reader, GenerationTrace trace) throws IOException {
+        if (trace == null) return false;
+        if (name.equals("usage")) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) return false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (field.equals("prompt_tokens") && reader.peek() == JsonToken.NUMBER) {
+                    trace.setPromptTokens(reader.nextLong());
+                } else if (field.equals("completion_tokens") && reader.peek() == JsonToken.NUMBER) {
+                    trace.setEvalTokens(reader.nextLong());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return true;
+        }
+        if ((!name.endsWith("_count") && !name.endsWith("_duration")) || reader.peek() != JsonToken.NUMBER) {
+            return false;
+        }
+        switch (name) {
+            case "prompt_eval_count":
+                trace.setPromptTokens(reader.nextLong());
+                return true;
+            case "prompt_eval_duration":
+                trace.setPromptEvalNanos(reader.nextLong());
+                return true;
+            case "eval_count":
+                trace.setEvalTokens(reader.nextLong());
+                return true;
+            case "eval_duration":
+                trace.setEvalNanos(reader.nextLong());
+                return true;
+            case "load_duration":
+                trace.setLoadNanos(reader.nextLong());
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.ollamachat.ai;
+
+import com.ollamachat.core.ConfigManager;
+
+/**
+ * Decides when buffered stream text is handed on to the player.
+ * <p>
+ * Text is flushed at the end of a sentence once it reaches the minimum chunk size, when it reaches
+ * the maximum chunk size, or when it has been waiting longer than the maximum delay. Size and time
+ * flushes cut at the last word boundary, so words are never split; in CJK text every character
+ * is a boundary.
+ */
+public class StreamFlushPolicy {
+    private final int minChunk;
+    private final int maxChunk;
+    private final long maxDelayMillis;
+
+    public StreamFlushPolicy(int minChunk, int maxChunk, long maxDelayMillis) {
+        this.minChunk = Math.max(1, minChunk);
+        this.maxChunk = Math.max(this.minChunk, maxChunk);
+        this.maxDelayMillis = Math.max(0, maxDelayMillis);
+    }
+
+    public static StreamFlushPolicy fromConfig(ConfigManager configManager) {
+        return new StreamFlushPolicy(configManager.getStreamMinChunk(), configManager.getStreamMaxChunk(),
+                configManager.getStreamFlushInterval());
+    }
+
+    /**
+     * @return The longest time text may wait in the buffer, 0 for no limit
+     */
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * @param buffer  The text not flushed yet
+     * @param waiting How long the oldest buffered text has been waiting, in milliseconds
+     * @return The number of leading characters to flush now, 0 to keep buffering
+     */
+    public int flushLength(CharSequence buffer, long waiting) {
+        int length = buffer.length();
+        if (length == 0) return 0;
+        if (length >= maxChunk) {
+            int boundary = lastBoundary(buffer, maxChunk, BoundaryType.WORD);
+            return boundary > 0 ? boundary : maxChunk;
+        }
+        int sentenceEnd = lastBoundary(buffer, length, BoundaryType.SENTENCE);
+        if (sentenceEnd >= minChunk) {
+            return sentenceEnd;
+        }
+        if (maxDelayMillis > 0 && waiting >= maxDelayMillis) {
+            int boundary = lastBoundary(buffer, length, BoundaryType.WORD);
+            return boundary > 0 ? boundary : length;
+        }
+        return 0;
+    }
+
+    /**
+     * @return The end of the last boundary at or before {@code limit}, or 0 if there is none
+     */
+    private static int lastBoundary(CharSequence text, int limit, BoundaryType type) {
+        for (int i = limit - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            if (type == BoundaryType.SENTENCE ? isSentenceEnd(text, i) : isWordBreakAfter(c)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isSentenceEnd(CharSequence text, int index) {
+        switch (text.charAt(index)) {
+            case '\n':
+            case '。':
+            case '！':
+            case '？':
+            case '；':
+            case '…':
+                return true;
+            case '.':
+            case '!':
+            case '?':
+                // Only when followed by whitespace, so "3.14" is not cut; the next token decides
+                return index + 1 < text.length() && Character.isWhitespace(text.charAt(index + 1));
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isWordBreakAfter(char c) {
+        if (Character.isWhitespace(c) || Character.isIdeographic(c)) {
+            return true;
+        }
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return block == Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION
+                || block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA
+                || block == Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS;
+    }
+
+    private enum BoundaryType {
+        WORD, SENTENCE
+    }
+}
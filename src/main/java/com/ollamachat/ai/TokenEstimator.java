@@ -0,0 +1,12 @@
+package com.ollamachat.ai;
+
+/**
+ * Counts the tokens a text takes in a model's prompt. Implementations work without the model's
+ * vocabulary, so their counts are estimates.
+ */
+public interface TokenEstimator {
+    /** One token per four characters, the usual rule of thumb for English text. */
+    TokenEstimator CHARS = text -> (text.length() + 3) / 4;
+
+    int estimate(String text);
+}
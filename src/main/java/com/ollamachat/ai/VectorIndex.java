@@ -0,0 +1,240 @@
+package com.ollamachat.ai;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-capacity in-memory vector index with brute-force cosine search.
+ * <p>
+ * All vectors are normalized on insert and stored back to back in one flat array, either as floats
+ * or quantized to one signed byte per dimension, so the index stays compact and a search is a
+ * single linear scan. When the index is full the least recently used entry is replaced.
+ */
+class VectorIndex {
+    private static final int MAGIC = 0x4F435349;
+    private static final int VERSION = 1;
+
+    private final int capacity;
+    private final boolean quantized;
+    private int dimensions = -1;
+    private float[] floats;
+    private byte[] bytes;
+    private final String[] scopes;
+    private final String[] answers;
+    private final long[] createdAt;
+    // Logical use counter rather than wall-clock time, so recency is exact even within a millisecond
+    private final long[] lastUsed;
+    private long clock;
+    private int size;
+
+    VectorIndex(int capacity, boolean quantized) {
+        this.capacity = Math.max(1, capacity);
+        this.quantized = quantized;
+        this.scopes = new String[this.capacity];
+        this.answers = new String[this.capacity];
+        this.createdAt = new long[this.capacity];
+        this.lastUsed = new long[this.capacity];
+    }
+
+    /**
+     * Finds the most similar entry within a scope.
+     *
+     * @param scope     Only entries stored with this scope are compared
+     * @param query     The query vector
+     * @param threshold The minimum cosine similarity
+     * @param ttlMillis Entries older than this are ignored, 0 for no limit
+     * @return The answer of the best match, or null if no entry reaches the threshold
+     */
+    synchronized String search(String scope, float[] query, double threshold, long ttlMillis) {
+        if (size == 0 || query.length != dimensions) return null;
+        float[] unit = normalize(query);
+        long now = System.currentTimeMillis();
+        int best = -1;
+        double bestScore = threshold;
+        for (int i = 0; i < size; i++) {
+            if (!scopes[i].equals(scope) || isExpired(i, now, ttlMillis)) continue;
+            double score = dot(unit, i);
+            if (score >= bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        if (best < 0) return null;
+        lastUsed[best] = ++clock;
+        return answers[best];
+    }
+
+    synchronized void add(String scope, float[] vector, String answer, long ttlMillis) {
+        if (dimensions != vector.length) {
+            // A different embedding model produced the vectors; old entries are not comparable
+            reset(vector.length);
+        }
+        long now = System.currentTimeMillis();
+        int slot = size < capacity ? size++ : evictionSlot(now, ttlMillis);
+        store(slot, scope, normalize(vector), answer, now, ++clock);
+    }
+
+    synchronized void clear() {
+        size = 0;
+        dimensions = -1;
+        floats = null;
+        bytes = null;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return The approximate heap size of the vectors and answers in bytes
+     */
+    synchronized long memoryBytes() {
+        long total = floats != null ? 4L * floats.length : bytes != null ? bytes.length : 0;
+        for (int i = 0; i < size; i++) {
+            total += 2L * (answers[i].length() + scopes[i].length());
+        }
+        return total;
+    }
+
+    synchronized void write(DataOutputStream out, String model) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, model);
+        out.writeBoolean(quantized);
+        out.writeInt(dimensions);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            writeString(out, scopes[i]);
+            writeString(out, answers[i]);
+            out.writeLong(createdAt[i]);
+            out.writeLong(lastUsed[i]);
+            for (int d = 0; d < dimensions; d++) {
+                if (quantized) {
+                    out.writeByte(bytes[i * dimensions + d]);
+                } else {
+                    out.writeFloat(floats[i * dimensions + d]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents with a file written by {@link #write}.
+     *
+     * @return false if the file was written for another embedding model or storage format
+     */
+    synchronized boolean read(DataInputStream in, String model) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unknown semantic cache file format");
+        }
+        if (!readString(in).equals(model) || in.readBoolean() != quantized) {
+            return false;
+        }
+        int fileDimensions = in.readInt();
+        int count = in.readInt();
+        clear();
+        if (count == 0) return true;
+        reset(fileDimensions);
+        float[] vector = new float[fileDimensions];
+        for (int i = 0; i < count; i++) {
+            String scope = readString(in);
+            String answer = readString(in);
+            long created = in.readLong();
+            long used = in.readLong();
+            clock = Math.max(clock, used);
+            for (int d = 0; d < fileDimensions; d++) {
+                vector[d] = quantized ? in.readByte() / 127f : in.readFloat();
+            }
+            // The capacity may have been lowered since the file was written; keep the most recently used
+            int slot = size < capacity ? size++ : evictionSlot(System.currentTimeMillis(), 0);
+            store(slot, scope, vector, answer, created, used);
+        }
+        return true;
+    }
+
+    private void reset(int newDimensions) {
+        size = 0;
+        dimensions = newDimensions;
+        if (quantized) {
+            bytes = new byte[capacity * newDimensions];
+            floats = null;
+        } else {
+            floats = new float[capacity * newDimensions];
+            bytes = null;
+        }
+    }
+
+    private void store(int slot, String scope, float[] unit, String answer, long created, long used) {
+        int offset = slot * dimensions;
+        for (int d = 0; d < dimensions; d++) {
+            if (quantized) {
+                bytes[offset + d] = (byte) Math.round(Math.max(-1f, Math.min(1f, unit[d])) * 127f);
+            } else {
+                floats[offset + d] = unit[d];
+            }
+        }
+        scopes[slot] = scope;
+        answers[slot] = answer;
+        createdAt[slot] = created;
+        lastUsed[slot] = used;
+    }
+
+    /** An expired entry if there is one, otherwise the least recently used. */
+    private int evictionSlot(long now, long ttlMillis) {
+        int slot = 0;
+        for (int i = 0; i < size; i++) {
+            if (isExpired(i, now, ttlMillis)) return i;
+            if (lastUsed[i] < lastUsed[slot]) {
+                slot = i;
+            }
+        }
+        return slot;
+    }
+
+    private boolean isExpired(int slot, long now, long ttlMillis) {
+        return ttlMillis > 0 && now - createdAt[slot] > ttlMillis;
+    }
+
+    private double dot(float[] unit, int slot) {
+        int offset = slot * dimensions;
+        double sum = 0;
+        if (quantized) {
+            for (int d = 0; d < dimensions; d++) {
+                sum += unit[d] * bytes[offset + d];
+            }
+            return sum / 127.0;
+        }
+        for (int d = 0; d < dimensions; d++) {
+            sum += unit[d] * floats[offset + d];
+        }
+        return sum;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] unit = new float[vector.length];
+        if (norm == 0) return unit;
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
@@ -60,6 +60,15 @@ public interface OllamaChatAPI {
      */
     CompletableFuture<Void> sendAIQueryStreaming(Player player, String aiName, String prompt, StreamCallback callback);
 
+    /**
+     * Cancels every running AI generation of a player, including ones started through this API.
+     * The backend connection is closed, so the model stops generating.
+     *
+     * @param playerUuid The UUID of the player
+     * @return The number of generations that were cancelled
+     */
+    int cancelGenerations(UUID playerUuid);
+
     /**
      * Checks if an AI model is enabled.
      *
@@ -321,6 +330,18 @@ public interface OllamaChatAPI {
      */
     boolean setSearchEngine(String engine);
 
+    // ============================================================
+    // Statistics Methods
+    // ============================================================
+
+    /**
+     * Gets generation metrics for every AI backend and model used since the server started:
+     * time to first token, latency, queue wait and generation speed.
+     *
+     * @return One entry per backend and model
+     */
+    List<GenerationStats> getGenerationStats();
+
     // ============================================================
     // Utility Methods
     // ============================================================
@@ -439,4 +460,89 @@ public interface OllamaChatAPI {
         public String getSnippet() { return snippet; }
         public String getSiteName() { return siteName; }
     }
+
+    /**
+     * Represents the generation metrics of one AI backend and model.
+     */
+    class GenerationStats {
+        private final String aiName;
+        private final String model;
+        private final long requests;
+        private final long failures;
+        private final long bytes;
+        private final long promptTokens;
+        private final long generatedTokens;
+        private final long promptTokensPerSecond;
+        private final Percentiles timeToFirstToken;
+        private final Percentiles latency;
+        private final Percentiles queueWait;
+        private final Percentiles tokensPerSecond;
+        private final Percentiles loadTime;
+
+        public GenerationStats(String aiName, String model, long requests, long failures, long bytes,
+                               long promptTokens, long generatedTokens, long promptTokensPerSecond,
+                               Percentiles timeToFirstToken, Percentiles latency, Percentiles queueWait,
+                               Percentiles tokensPerSecond, Percentiles loadTime) {
+            this.aiName = aiName;
+            this.model = model;
+            this.requests = requests;
+            this.failures = failures;
+            this.bytes = bytes;
+            this.promptTokens = promptTokens;
+            this.generatedTokens = generatedTokens;
+            this.promptTokensPerSecond = promptTokensPerSecond;
+            this.timeToFirstToken = timeToFirstToken;
+            this.latency = latency;
+            this.queueWait = queueWait;
+            this.tokensPerSecond = tokensPerSecond;
+            this.loadTime = loadTime;
+        }
+
+        public String getAiName() { return aiName; }
+        public String getModel() { return model; }
+        public long getRequests() { return requests; }
+        public long getFailures() { return failures; }
+        public long getBytes() { return bytes; }
+        public long getPromptTokens() { return promptTokens; }
+        public long getGeneratedTokens() { return generatedTokens; }
+        public long getPromptTokensPerSecond() { return promptTokensPerSecond; }
+        /** In milliseconds. */
+        public Percentiles getTimeToFirstToken() { return timeToFirstToken; }
+        /** In milliseconds. */
+        public Percentiles getLatency() { return latency; }
+        /** In milliseconds. */
+        public Percentiles getQueueWait() { return queueWait; }
+        /** In generated tokens per second. */
+        public Percentiles getTokensPerSecond() { return tokensPerSecond; }
+        /** In milliseconds. */
+        public Percentiles getLoadTime() { return loadTime; }
+    }
+
+    /**
+     * Represents a summary of recorded values.
+     */
+    class Percentiles {
+        private final long count;
+        private final long mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+
+        public Percentiles(long count, long mean, long p50, long p90, long p99, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+        public long getMean() { return mean; }
+        public long getP50() { return p50; }
+        public long getP90() { return p90; }
+        public long getP99() { return p99; }
+        public long getMax() { return max; }
+    }
 }
\ No newline at end of file
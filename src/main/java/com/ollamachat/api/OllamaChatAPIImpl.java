@@ -2,16 +2,33 @@ package com.ollamachat.api;
 
 import com.ollamachat.AIService;
 import com.ollamachat.ChatHistoryManager;
+import com.ollamachat.ai.AIDispatcher;
+import com.ollamachat.ai.ApiFormat;
+import com.ollamachat.ai.ChatTurn;
+import com.ollamachat.ai.ContextBudgeter;
+import com.ollamachat.ai.ConversationContextStore;
+import com.ollamachat.ai.ConversationSummarizer;
+import com.ollamachat.ai.FallbackChain;
+import com.ollamachat.ai.GenerationHandle;
+import com.ollamachat.ai.GenerationMetrics;
+import com.ollamachat.ai.GenerationOptions;
+import com.ollamachat.ai.GenerationRegistry;
+import com.ollamachat.ai.RateLimiter;
+import com.ollamachat.ai.RequestCoalescer;
+import com.ollamachat.ai.RequestHedger;
+import com.ollamachat.ai.RequestPriority;
+import com.ollamachat.ai.ResponseCache;
+import com.ollamachat.ai.SemanticCache;
 import com.ollamachat.search.WebSearchService;
 import com.ollamachat.core.ConfigManager;
 import com.ollamachat.core.Ollamachat;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import com.ollamachat.scheduler.WorkerPool;
 import org.bukkit.entity.Player;
 
 import java.sql.Timestamp;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -21,7 +38,19 @@ public class OllamaChatAPIImpl implements OllamaChatAPI {
     private final ChatHistoryManager chatHistoryManager;
     private final AIService aiService;
     private final WebSearchService webSearchService;
-    private final Gson gson;
+    private final GenerationRegistry generationRegistry;
+    private final AIDispatcher aiDispatcher;
+    private final WorkerPool workerPool;
+    private final WorkerPool computePool;
+    private final ConversationContextStore contextStore;
+    private final RequestCoalescer requestCoalescer;
+    private final FallbackChain fallbackChain;
+    private final RequestHedger requestHedger;
+    private final ResponseCache responseCache;
+    private final SemanticCache semanticCache;
+    private final RateLimiter rateLimiter;
+    private final ContextBudgeter contextBudgeter;
+    private final ConversationSummarizer summarizer;
     private final Map<UUID, Map<String, String>> conversationCache;
     private boolean initialized;
 
@@ -29,9 +58,21 @@ public class OllamaChatAPIImpl implements OllamaChatAPI {
         this.plugin = plugin;
         this.configManager = plugin.getConfigManager();
         this.chatHistoryManager = plugin.getChatHistoryManager();
-        this.aiService = new AIService();
+        this.aiService = plugin.getAIService();
         this.webSearchService = plugin.getWebSearchService();
-        this.gson = new Gson();
+        this.generationRegistry = plugin.getGenerationRegistry();
+        this.aiDispatcher = plugin.getAIDispatcher();
+        this.workerPool = plugin.getWorkerPool();
+        this.computePool = plugin.getComputePool();
+        this.contextStore = plugin.getConversationContextStore();
+        this.requestCoalescer = plugin.getRequestCoalescer();
+        this.fallbackChain = plugin.getFallbackChain();
+        this.requestHedger = plugin.getRequestHedger();
+        this.responseCache = plugin.getResponseCache();
+        this.semanticCache = plugin.getSemanticCache();
+        this.rateLimiter = plugin.getRateLimiter();
+        this.contextBudgeter = plugin.getContextBudgeter();
+        this.summarizer = plugin.getConversationSummarizer();
         this.conversationCache = new ConcurrentHashMap<>();
         this.initialized = true;
     }
@@ -55,62 +96,78 @@ public class OllamaChatAPIImpl implements OllamaChatAPI {
             return CompletableFuture.completedFuture("Error: Prompt cannot be empty.");
         }
 
+        try {
+            rateLimiter.acquire(player, aiName);
+        } catch (RateLimiter.RateLimitedException e) {
+            return CompletableFuture.completedFuture("Error: " + e.getMessage());
+        }
+
         UUID playerUuid = player != null ? player.getUniqueId() : null;
+        GenerationHandle handle = playerUuid != null ? generationRegistry.begin(playerUuid, aiName, false) : null;
+
+        // Get API configuration
+        ApiConfig apiConfig = getApiConfig(aiName);
+        if (apiConfig == null) {
+            generationRegistry.finish(handle);
+            return CompletableFuture.completedFuture("Error: Failed to get API configuration for " + aiName);
+        }
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Save player info if player exists
-                if (player != null) {
-                    chatHistoryManager.savePlayerInfo(player);
-                }
-
-                // Get or create conversation ID
-                String convId = conversationId;
-                if (convId == null && playerUuid != null) {
-                    String convName = getSelectedConversation(playerUuid, aiName);
-                    if (convName != null) {
-                        convId = chatHistoryManager.getConversationId(playerUuid, aiName, convName);
+        ApiQuery query = new ApiQuery(player, aiName, prompt, conversationId, apiConfig, handle);
+        return CompletableFuture.supplyAsync(() -> loadConversation(query), workerPool)
+                .thenApplyAsync(this::lookupResponseCache, computePool)
+                .thenCompose(this::lookupSemanticCache)
+                .thenCompose(q -> {
+                    if (q.response != null) {
+                        return CompletableFuture.completedFuture(q);
                     }
-                }
-
-                // Build context
-                String history = "";
-                if (playerUuid != null) {
-                    history = chatHistoryManager.getChatHistory(playerUuid, aiName, convId, configManager.getMaxHistory());
-                }
-                String selectedPrompt = configManager.getPrompts().getOrDefault(configManager.getDefaultPrompt(), "");
-                String context = history + (selectedPrompt.isEmpty() ? "" : selectedPrompt + "\n") + "User: " + prompt;
-
-                // Get API configuration
-                ApiConfig apiConfig = getApiConfig(aiName);
-                if (apiConfig == null) {
-                    return "Error: Failed to get API configuration for " + aiName;
-                }
-
-                // Send request
-                String responseBody = aiService.sendRequest(
-                        apiConfig.url, apiConfig.key, apiConfig.model, context, apiConfig.isMessagesFormat
-                ).join();
-
-                // Parse response
-                String finalResponse = parseResponse(responseBody, apiConfig.isMessagesFormat);
-                if (finalResponse == null || finalResponse.isEmpty()) {
-                    return "Error: Empty response from AI";
-                }
-
-                // Save history
-                if (playerUuid != null && finalResponse != null && !finalResponse.isEmpty()) {
-                    chatHistoryManager.saveChatHistory(playerUuid, aiName, convId, prompt, finalResponse);
-                }
-
-                // Truncate if needed
-                return truncateResponse(finalResponse);
-            } catch (Exception e) {
-                plugin.getLogger().severe("Error processing API " + aiName + " request: " + e.getMessage());
-                e.printStackTrace();
-                return "Error: Failed to get response from " + aiName + " - " + e.getMessage();
-            }
-        });
+                    // Send the request and parse the response
+                    return requestCoalescer.execute(q.key, handle,
+                            upstream -> fallbackChain.execute(aiName, upstream, target -> {
+                                GenerationOptions targetOptions = target.isPrimary() ? q.options : null;
+                                return requestHedger.execute(target, upstream, targetOptions == null, attempt -> {
+                                    FallbackChain.Target attemptTarget = attempt.getTarget();
+                                    ApiFormat format = attemptTarget.getConfig().getApiFormat();
+                                    return aiDispatcher.submit(attemptTarget.getAiName(), attemptTarget.getModel(), playerUuid,
+                                            RequestPriority.API, attempt.getHandle(),
+                                            attempt.isHedge() ? null : q.routingKey(), attempt.getExcludedEndpoint(),
+                                            url -> aiService.sendChatRequest(
+                                                    url, attemptTarget.getConfig().getApiKey(), attemptTarget.getModel(), q.messages,
+                                                    format, targetOptions, attempt.getHandle()
+                                            )).thenApply(body -> {
+                                                if (!attemptTarget.isPrimary()) {
+                                                    q.servedByOtherModel.set(true);
+                                                }
+                                                return parseResponse(body, format);
+                                            });
+                                });
+                            })).thenApply(response -> {
+                                q.response = response;
+                                cacheResponse(q);
+                                return q;
+                            });
+                })
+                .thenApplyAsync(this::saveHistory, workerPool)
+                .handle((q, error) -> {
+                    generationRegistry.finish(handle);
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        if (handle != null && handle.isCancelled()) {
+                            return "Error: Generation cancelled";
+                        }
+                        String presetAnswer = fallbackChain.getPresetAnswer(aiName);
+                        if (presetAnswer != null) {
+                            return presetAnswer;
+                        }
+                        plugin.getLogger().severe("Error processing API " + aiName + " request: " + cause.getMessage());
+                        cause.printStackTrace();
+                        return "Error: Failed to get response from " + aiName + " - " + cause.getMessage();
+                    }
+                    if (q.response == null || q.response.isEmpty()) {
+                        return "Error: Empty response from AI";
+                    }
+                    // Truncate if needed
+                    return truncateResponse(q.response);
+                });
     }
 
     @Override
@@ -125,55 +182,147 @@ public class OllamaChatAPIImpl implements OllamaChatAPI {
             return CompletableFuture.completedFuture(null);
         }
 
+        try {
+            rateLimiter.acquire(player, aiName);
+        } catch (RateLimiter.RateLimitedException e) {
+            callback.onChunk("Error: " + e.getMessage(), true);
+            return CompletableFuture.completedFuture(null);
+        }
+
         UUID playerUuid = player != null ? player.getUniqueId() : null;
+        GenerationHandle handle = playerUuid != null ? generationRegistry.begin(playerUuid, aiName, false) : null;
 
-        return CompletableFuture.runAsync(() -> {
-            try {
-                if (player != null) {
-                    chatHistoryManager.savePlayerInfo(player);
-                }
-
-                String convId = null;
-                if (playerUuid != null) {
-                    String convName = getSelectedConversation(playerUuid, aiName);
-                    if (convName != null) {
-                        convId = chatHistoryManager.getConversationId(playerUuid, aiName, convName);
+        ApiConfig apiConfig = getApiConfig(aiName);
+        if (apiConfig == null) {
+            generationRegistry.finish(handle);
+            callback.onChunk("Error: Failed to get API configuration for " + aiName, true);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ApiQuery query = new ApiQuery(player, aiName, prompt, null, apiConfig, handle);
+        return CompletableFuture.supplyAsync(() -> loadConversation(query), workerPool)
+                .thenApplyAsync(this::lookupResponseCache, computePool)
+                .thenCompose(this::lookupSemanticCache)
+                .thenCompose(q -> {
+                    if (q.response != null) {
+                        callback.onChunk(truncateResponse(q.response), true);
+                        return CompletableFuture.completedFuture(q);
+                    }
+                    StringBuilder fullResponse = new StringBuilder();
+                    AtomicBoolean isFirst = new AtomicBoolean(true);
+                    return requestCoalescer.executeStreaming(q.key, handle,
+                            chunk -> {
+                                String formattedChunk = truncateResponse(chunk);
+                                callback.onChunk(formattedChunk, isFirst.getAndSet(false));
+                                fullResponse.append(chunk);
+                            }, (upstream, sink) -> fallbackChain.executeStreaming(aiName, upstream, sink, (target, targetSink) -> {
+                                GenerationOptions targetOptions = target.isPrimary() ? q.options : null;
+                                return requestHedger.executeStreaming(target, upstream, targetOptions == null, targetSink, (attempt, attemptSink) -> {
+                                    FallbackChain.Target attemptTarget = attempt.getTarget();
+                                    return aiDispatcher.submit(attemptTarget.getAiName(), attemptTarget.getModel(), playerUuid,
+                                            RequestPriority.API, attempt.getHandle(),
+                                            attempt.isHedge() ? null : q.routingKey(), attempt.getExcludedEndpoint(),
+                                            url -> aiService.sendStreamingChatRequest(
+                                                    url, attemptTarget.getConfig().getApiKey(), attemptTarget.getModel(), q.messages,
+                                                    attemptSink, attemptTarget.getConfig().getApiFormat(), targetOptions, attempt.getHandle()
+                                            ));
+                                }).thenAccept(winner -> {
+                                    if (!winner.isPrimary()) {
+                                        q.servedByOtherModel.set(true);
+                                    }
+                                });
+                            })).thenApply(ignored -> {
+                                q.response = fullResponse.toString();
+                                cacheResponse(q);
+                                return q;
+                            });
+                })
+                .thenApplyAsync(this::saveHistory, workerPool)
+                .handle((q, error) -> {
+                    generationRegistry.finish(handle);
+                    if (error == null || (handle != null && handle.isCancelled())) {
+                        return null;
                     }
-                }
-
-                String history = "";
-                if (playerUuid != null) {
-                    history = chatHistoryManager.getChatHistory(playerUuid, aiName, convId, configManager.getMaxHistory());
-                }
-                String selectedPrompt = configManager.getPrompts().getOrDefault(configManager.getDefaultPrompt(), "");
-                String context = history + (selectedPrompt.isEmpty() ? "" : selectedPrompt + "\n") + "User: " + prompt;
-
-                ApiConfig apiConfig = getApiConfig(aiName);
-                if (apiConfig == null) {
-                    callback.onChunk("Error: Failed to get API configuration for " + aiName, true);
-                    return;
-                }
-
-                StringBuilder fullResponse = new StringBuilder();
-                AtomicBoolean isFirst = new AtomicBoolean(true);
-
-                aiService.sendStreamingRequest(apiConfig.url, apiConfig.key, apiConfig.model, context,
-                        chunk -> {
-                            String formattedChunk = truncateResponse(chunk);
-                            callback.onChunk(formattedChunk, isFirst.getAndSet(false));
-                            fullResponse.append(chunk);
-                        }, apiConfig.isMessagesFormat).join();
-
-                if (playerUuid != null && fullResponse.length() > 0) {
-                    chatHistoryManager.saveChatHistory(playerUuid, aiName, convId, prompt, fullResponse.toString());
-                }
-            } catch (Exception e) {
-                plugin.getLogger().severe("Error in streaming API request: " + e.getMessage());
-                callback.onChunk("Error: " + e.getMessage(), true);
+                    Throwable cause = unwrap(error);
+                    String presetAnswer = fallbackChain.getPresetAnswer(aiName);
+                    if (presetAnswer != null) {
+                        callback.onChunk(presetAnswer, true);
+                        return null;
+                    }
+                    plugin.getLogger().severe("Error in streaming API request: " + cause.getMessage());
+                    callback.onChunk("Error: " + cause.getMessage(), true);
+                    return null;
+                });
+    }
+
+    /**
+     * Database stage of an API request: the player, the conversation and its history.
+     */
+    private ApiQuery loadConversation(ApiQuery query) {
+        // Save player info if player exists
+        if (query.player != null) {
+            chatHistoryManager.savePlayerInfo(query.player);
+        }
+
+        // Get or create conversation ID
+        if (query.convId == null && query.playerUuid != null) {
+            String convName = getSelectedConversation(query.playerUuid, query.aiName);
+            if (convName != null) {
+                query.convId = chatHistoryManager.getConversationId(query.playerUuid, query.aiName, convName);
+            }
+        }
+
+        query.options = isContextReuse(query.playerUuid, query.apiConfig) ? new GenerationOptions() : null;
+        query.messages = buildMessages(query.playerUuid, query.aiName, query.convId, query.prompt,
+                query.apiConfig.model, query.options);
+        return query;
+    }
+
+    private ApiQuery lookupResponseCache(ApiQuery query) {
+        query.key = coalesceKey(query.aiName, query.apiConfig, query.messages, query.options);
+        query.response = responseCache.get(query.key, query.apiConfig.model);
+        return query;
+    }
+
+    private CompletableFuture<ApiQuery> lookupSemanticCache(ApiQuery query) {
+        if (query.response != null) {
+            return CompletableFuture.completedFuture(query);
+        }
+        return semanticCache.lookup(query.key, query.apiConfig.model).thenApply(lookup -> {
+            query.semanticLookup = lookup;
+            if (lookup != null && lookup.getAnswer() != null) {
+                query.response = lookup.getAnswer();
             }
+            return query;
         });
     }
 
+    private void cacheResponse(ApiQuery query) {
+        if (!query.servedByOtherModel.get()) {
+            responseCache.put(query.key, query.apiConfig.model, query.response);
+            semanticCache.store(query.semanticLookup, query.response);
+        }
+    }
+
+    private ApiQuery saveHistory(ApiQuery query) {
+        if (query.playerUuid != null && query.response != null && !query.response.isEmpty()) {
+            chatHistoryManager.saveChatHistory(query.playerUuid, query.aiName, query.convId, query.prompt, query.response);
+            storeContext(query.playerUuid, query.aiName, query.convId, query.apiConfig.model, query.options);
+            summarizer.conversationUpdated(query.playerUuid, query.aiName, query.convId);
+        }
+        return query;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    @Override
+    public int cancelGenerations(UUID playerUuid) {
+        if (playerUuid == null) return 0;
+        return generationRegistry.cancelAll(playerUuid);
+    }
+
     @Override
     public boolean isAIEnabled(String aiName) {
         if (aiName == null) return false;
@@ -286,22 +435,10 @@ public class OllamaChatAPIImpl implements OllamaChatAPI {
 
     @Override
     public List<ChatMessage> getChatHistoryAsList(UUID playerUuid, String aiModel, String conversationId) {
-        String history = getChatHistory(playerUuid, aiModel, conversationId);
         List<ChatMessage> messages = new ArrayList<>();
-
-        if (history == null || history.isEmpty()) {
-            return messages;
-        }
-
-        String[] lines = history.split("\n");
-        for (String line : lines) {
-            if (line.startsWith("User: ")) {
-                messages.add(new ChatMessage("user", line.substring(6), System.currentTimeMillis()));
-            } else if (line.startsWith("AI: ")) {
-                messages.add(new ChatMessage("assistant", line.substring(4), System.currentTimeMillis()));
-            }
+        for (ChatTurn turn : chatHistoryManager.getChatTurns(playerUuid, aiModel, conversationId, configManager.getMaxHistory())) {
+            messages.add(new ChatMessage(turn.getRole(), turn.getContent(), turn.getTimestamp()));
         }
-
         return messages;
     }
 
@@ -408,6 +545,23 @@ public class OllamaChatAPIImpl implements OllamaChatAPI {
         }
     }
 
+    // ============================================================
+    // Statistics Methods
+    // ============================================================
+
+    @Override
+    public List<GenerationStats> getGenerationStats() {
+        List<GenerationStats> result = new ArrayList<>();
+        for (GenerationMetrics.ModelStats stats : plugin.getGenerationMetrics().getStats()) {
+            result.add(new GenerationStats(stats.getAiName(), stats.getModel(), stats.getRequests(),
+                    stats.getFailures(), stats.getBytes(), stats.getPromptTokens(), stats.getGeneratedTokens(),
+                    stats.getPromptTokensPerSecond(), toPercentiles(stats.getTimeToFirstToken()),
+                    toPercentiles(stats.getLatency()), toPercentiles(stats.getQueueWait()),
+                    toPercentiles(stats.getTokensPerSecond()), toPercentiles(stats.getLoadTime())));
+        }
+        return result;
+    }
+
     // ============================================================
     // Utility Methods
     // ============================================================
@@ -437,37 +591,82 @@ public class OllamaChatAPIImpl implements OllamaChatAPI {
     // ============================================================
 
     private ApiConfig getApiConfig(String aiName) {
-        if (aiName.equalsIgnoreCase("ollama")) {
-            return new ApiConfig(
-                    configManager.getOllamaApiUrl(),
-                    null,
-                    configManager.getOllamaModel(),
-                    false
-            );
+        ConfigManager.AIConfig aiConfig = configManager.getAIConfig(aiName);
+        if (aiConfig == null) return null;
+        return new ApiConfig(
+                aiConfig.getApiKey(),
+                aiConfig.getModel(),
+                aiConfig.getApiFormat()
+        );
+    }
+
+    private static Percentiles toPercentiles(GenerationMetrics.Distribution distribution) {
+        return new Percentiles(distribution.getCount(), distribution.getMean(), distribution.getP50(),
+                distribution.getP90(), distribution.getP99(), distribution.getMax());
+    }
+
+    private boolean isContextReuse(UUID playerUuid, ApiConfig apiConfig) {
+        return playerUuid != null && configManager.isContextReuseEnabled() && apiConfig.format == ApiFormat.GENERATE;
+    }
+
+    /**
+     * Builds the messages for a query. When options are given and a context is stored for the
+     * conversation, only the new prompt is sent and the context is attached to the options.
+     * Otherwise the history is trimmed to the backend's context budget.
+     */
+    private List<ChatTurn> buildMessages(UUID playerUuid, String aiName, String convId, String prompt,
+                                         String model, GenerationOptions options) {
+        List<ChatTurn> messages = new ArrayList<>();
+        if (options != null) {
+            int[] storedContext = contextStore.get(playerUuid, aiName, convId, model);
+            if (storedContext != null && contextBudgeter.canContinue(aiName, storedContext, prompt)) {
+                options.setContext(storedContext);
+                messages.add(ChatTurn.user(prompt));
+                return messages;
+            }
+        }
+        ContextBudgeter.Budget budget = contextBudgeter.begin(aiName);
+        String selectedPrompt = configManager.getPrompts().getOrDefault(configManager.getDefaultPrompt(), "");
+        if (!selectedPrompt.isEmpty()) {
+            messages.add(ChatTurn.system(selectedPrompt));
+            budget.require(messages.get(0));
+        }
+        ChatTurn question = ChatTurn.user(prompt);
+        budget.require(question);
+        if (playerUuid != null) {
+            // Turns covered by the conversation's summary are sent as the summary
+            ConversationSummarizer.Summary summary = summarizer.getSummary(playerUuid, aiName, convId);
+            if (summary != null) {
+                messages.add(summarizer.toTurn(summary));
+                budget.require(messages.get(messages.size() - 1));
+            }
+            messages.addAll(budget.addNewest(chatHistoryManager.getChatTurns(playerUuid, aiName, convId,
+                    configManager.getMaxHistory(), summary != null ? summary.getCoveredId() : 0)));
+        }
+        messages.add(question);
+        budget.finish();
+        return messages;
+    }
+
+    /**
+     * Requests carrying per-player state (history or a reusable context) are never shared.
+     */
+    private String coalesceKey(String aiName, ApiConfig apiConfig, List<ChatTurn> messages, GenerationOptions options) {
+        return options != null ? null : RequestCoalescer.key(aiName, apiConfig.model, apiConfig.format, messages);
+    }
+
+    private void storeContext(UUID playerUuid, String aiName, String convId, String model, GenerationOptions options) {
+        if (options == null) return;
+        if (options.getReturnedContext() != null) {
+            contextStore.put(playerUuid, aiName, convId, model, options.getReturnedContext());
         } else {
-            ConfigManager.AIConfig aiConfig = configManager.getOtherAIConfigs().get(aiName);
-            if (aiConfig == null) return null;
-            return new ApiConfig(
-                    aiConfig.getApiUrl(),
-                    aiConfig.getApiKey(),
-                    aiConfig.getModel(),
-                    aiConfig.isMessagesFormat()
-            );
+            contextStore.invalidate(playerUuid, aiName, convId);
         }
     }
 
-    private String parseResponse(String responseBody, boolean isMessagesFormat) {
+    private String parseResponse(String responseBody, ApiFormat format) {
         try {
-            if (isMessagesFormat) {
-                JsonObject json = gson.fromJson(responseBody, JsonObject.class);
-                return json.getAsJsonArray("choices")
-                        .get(0).getAsJsonObject()
-                        .get("message").getAsJsonObject()
-                        .get("content").getAsString();
-            } else {
-                JsonObject json = gson.fromJson(responseBody, JsonObject.class);
-                return json.get("response").getAsString();
-            }
+            return aiService.extractContent(responseBody, format);
         } catch (Exception e) {
             plugin.getLogger().severe("Failed to parse response: " + e.getMessage());
             return responseBody;
@@ -483,16 +682,48 @@ public class OllamaChatAPIImpl implements OllamaChatAPI {
     }
 
     private static class ApiConfig {
-        final String url;
         final String key;
         final String model;
-        final boolean isMessagesFormat;
+        final ApiFormat format;
 
-        ApiConfig(String url, String key, String model, boolean isMessagesFormat) {
-            this.url = url;
+        ApiConfig(String key, String model, ApiFormat format) {
             this.key = key;
             this.model = model;
-            this.isMessagesFormat = isMessagesFormat;
+            this.format = format;
+        }
+    }
+
+    /**
+     * State of one API request, handed from stage to stage.
+     */
+    private static class ApiQuery {
+        final Player player;
+        final UUID playerUuid;
+        final String aiName;
+        final String prompt;
+        final ApiConfig apiConfig;
+        final GenerationHandle handle;
+        // Answers of a fallback or hedge model are not cached as answers of the requested one
+        final AtomicBoolean servedByOtherModel = new AtomicBoolean();
+        String convId;
+        GenerationOptions options;
+        List<ChatTurn> messages;
+        String key;
+        SemanticCache.Lookup semanticLookup;
+        String response;
+
+        ApiQuery(Player player, String aiName, String prompt, String convId, ApiConfig apiConfig, GenerationHandle handle) {
+            this.player = player;
+            this.playerUuid = player != null ? player.getUniqueId() : null;
+            this.aiName = aiName;
+            this.prompt = prompt;
+            this.convId = convId;
+            this.apiConfig = apiConfig;
+            this.handle = handle;
+        }
+
+        String routingKey() {
+            return playerUuid != null ? playerUuid + "|" + convId : null;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.ollamachat.chat;
+
+import com.ollamachat.core.Ollamachat;
+import com.ollamachat.scheduler.SchedulerUtils;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers streamed answer text to players on their own scheduler.
+ * <p>
+ * Text arriving while a delivery is pending is appended to it, so a player receives at most one
+ * streamed message per tick no matter how fast the model produces chunks.
+ */
+public class ChatDelivery {
+    private final Ollamachat plugin;
+    private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+
+    public ChatDelivery(Ollamachat plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Queues text for the player's next delivery.
+     */
+    public void send(Player player, String text) {
+        UUID playerUuid = player.getUniqueId();
+        while (true) {
+            Pending current = pending.computeIfAbsent(playerUuid, k -> new Pending());
+            synchronized (current) {
+                // A delivery that just ran removed this entry; queue into a fresh one
+                if (current.removed) continue;
+                current.text.append(text);
+                if (current.scheduled) return;
+                current.scheduled = true;
+            }
+            SchedulerUtils.runOnEntity(plugin, player, () -> deliver(player, current));
+            return;
+        }
+    }
+
+    /**
+     * Sends the player's queued text right away, so messages sent afterwards cannot overtake it.
+     */
+    public void flush(Player player) {
+        Pending current = pending.get(player.getUniqueId());
+        if (current != null) {
+            deliver(player, current);
+        }
+    }
+
+    public void clear(UUID playerUuid) {
+        Pending current = pending.remove(playerUuid);
+        if (current != null) {
+            synchronized (current) {
+                current.removed = true;
+            }
+        }
+    }
+
+    private void deliver(Player player, Pending current) {
+        String text;
+        synchronized (current) {
+            if (current.removed) return;
+            text = current.text.toString();
+            current.removed = true;
+            pending.remove(player.getUniqueId(), current);
+        }
+        if (!text.isEmpty() && player.isOnline()) {
+            player.sendMessage(text);
+        }
+    }
+
+    private static class Pending {
+        final StringBuilder text = new StringBuilder();
+        boolean scheduled;
+        boolean removed;
+    }
+}
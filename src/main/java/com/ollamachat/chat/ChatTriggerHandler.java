@@ -1,41 +1,82 @@
 package com.ollamachat.chat;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
 import com.ollamachat.AIService;
+import com.ollamachat.ai.AIDispatcher;
+import com.ollamachat.ai.ApiFormat;
+import com.ollamachat.ai.ChatTurn;
+import com.ollamachat.ai.ContextBudgeter;
+import com.ollamachat.ai.ConversationContextStore;
+import com.ollamachat.ai.ConversationSummarizer;
+import com.ollamachat.ai.FallbackChain;
+import com.ollamachat.ai.GenerationHandle;
+import com.ollamachat.ai.GenerationOptions;
+import com.ollamachat.ai.GenerationRegistry;
+import com.ollamachat.ai.RateLimiter;
+import com.ollamachat.ai.RequestCoalescer;
+import com.ollamachat.ai.RequestHedger;
+import com.ollamachat.ai.RequestPriority;
+import com.ollamachat.ai.ResponseCache;
+import com.ollamachat.ai.SemanticCache;
 import com.ollamachat.search.WebSearchService;
 import com.ollamachat.core.ConfigManager;
 import com.ollamachat.core.Ollamachat;
-import com.ollamachat.scheduler.SchedulerUtils;
 import org.bukkit.boss.BarColor;
 import org.bukkit.boss.BarStyle;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class ChatTriggerHandler implements Listener {
     private final Ollamachat plugin;
     private final ConfigManager configManager;
     private final AIService aiService;
     private final SuggestedResponseHandler suggestedResponseHandler;
+    private final ChatDelivery chatDelivery;
     private final WebSearchService webSearchService;
-    private final Gson gson;
+    private final GenerationRegistry generationRegistry;
+    private final AIDispatcher aiDispatcher;
+    private final ConversationContextStore contextStore;
+    private final RequestCoalescer requestCoalescer;
+    private final ResponseCache responseCache;
+    private final SemanticCache semanticCache;
+    private final FallbackChain fallbackChain;
+    private final RequestHedger requestHedger;
+    private final RateLimiter rateLimiter;
+    private final ContextBudgeter contextBudgeter;
+    private final ConversationSummarizer summarizer;
 
     public ChatTriggerHandler(Ollamachat plugin) {
         this.plugin = plugin;
         this.configManager = plugin.getConfigManager();
-        this.aiService = new AIService();
-        this.suggestedResponseHandler = new SuggestedResponseHandler(plugin);
+        this.aiService = plugin.getAIService();
+        this.suggestedResponseHandler = plugin.getSuggestedResponseHandler();
+        this.chatDelivery = plugin.getChatDelivery();
         this.webSearchService = plugin.getWebSearchService();
-        this.gson = new Gson();
+        this.generationRegistry = plugin.getGenerationRegistry();
+        this.aiDispatcher = plugin.getAIDispatcher();
+        this.contextStore = plugin.getConversationContextStore();
+        this.requestCoalescer = plugin.getRequestCoalescer();
+        this.responseCache = plugin.getResponseCache();
+        this.semanticCache = plugin.getSemanticCache();
+        this.fallbackChain = plugin.getFallbackChain();
+        this.requestHedger = plugin.getRequestHedger();
+        this.rateLimiter = plugin.getRateLimiter();
+        this.contextBudgeter = plugin.getContextBudgeter();
+        this.summarizer = plugin.getConversationSummarizer();
     }
 
     @EventHandler
@@ -57,6 +98,14 @@ public class ChatTriggerHandler implements Listener {
         }
     }
 
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        // Nobody will read the answer, stop the backend from generating it
+        generationRegistry.cancelAll(event.getPlayer().getUniqueId());
+        chatDelivery.clear(event.getPlayer().getUniqueId());
+        rateLimiter.forget(event.getPlayer().getUniqueId());
+    }
+
     public void processAIQuery(Player player, String aiName, String prompt) {
         if (!aiName.equalsIgnoreCase("ollama") && !configManager.getOtherAIEnabled().getOrDefault(aiName, false)) {
             sendErrorMessage(player, configManager.getMessage("error-prefix", null) +
@@ -64,6 +113,13 @@ public class ChatTriggerHandler implements Listener {
             return;
         }
 
+        try {
+            rateLimiter.acquire(player, aiName);
+        } catch (RateLimiter.RateLimitedException e) {
+            sendErrorMessage(player, configManager.getMessage("error-prefix", null) + rateLimitMessage(e, aiName));
+            return;
+        }
+
         if (plugin.getConfig().getBoolean("progress-display.enabled", true)) {
             BarColor color = BarColor.valueOf(plugin.getConfig().getString("progress-display.color", "BLUE"));
             BarStyle style = BarStyle.valueOf(plugin.getConfig().getString("progress-display.style", "SOLID"));
@@ -71,118 +127,324 @@ public class ChatTriggerHandler implements Listener {
                     configManager.getMessage("generating-status", null), color, style);
         }
 
-        SchedulerUtils.runAsync(plugin, () -> {
-            try {
-                UUID playerUuid = player.getUniqueId();
-                // Save player info to ensure uuid exists in players table
-                plugin.getChatHistoryManager().savePlayerInfo(player);
+        GenerationHandle handle = generationRegistry.begin(player.getUniqueId(), aiName,
+                configManager.isCancelOnNewPrompt());
 
-                String conversationName = configManager.getSelectedConversations()
-                        .computeIfAbsent(playerUuid, k -> new HashMap<>())
-                        .getOrDefault(aiName, null);
-                String conversationId = conversationName != null
-                        ? plugin.getChatHistoryManager().getConversationId(playerUuid, aiName, conversationName)
-                        : null;
-
-                //
-                boolean shouldSearch = shouldPerformWebSearch(prompt);
-                String searchContext = "";
+        Query query = new Query(player, aiName, prompt, handle);
+        // Database stages run on the blocking pool and prompt building on the compute pool. Searches
+        // and generations continue on whichever thread completes them, so no thread is held while a
+        // request waits for the search engine or a backend.
+        // Nothing before the prompt depends on the search, so the search, saving the player and loading
+        // the conversation run at the same time and the request waits only for the slowest of them.
+        CompletableFuture<Void> playerInfo = CompletableFuture.runAsync(() -> savePlayerInfo(query), plugin.getWorkerPool());
+        CompletableFuture<Void> search = search(query);
+        CompletableFuture<Void> history = CompletableFuture.runAsync(() -> loadHistory(resolveConversation(query)),
+                plugin.getWorkerPool());
+        CompletableFuture.allOf(playerInfo, search, history)
+                .thenApplyAsync(ignored -> buildPrompt(query), plugin.getComputePool())
+                .thenCompose(this::lookupSemanticCache)
+                .thenCompose(this::generate)
+                .thenApplyAsync(this::saveHistory, plugin.getWorkerPool())
+                .whenComplete((done, error) -> {
+                    try {
+                        if (configManager.isLogStageTimings()) {
+                            plugin.getLogger().info(query.describeTimings());
+                        }
+                        if (error != null) {
+                            handleFailure(query, error instanceof CompletionException && error.getCause() != null
+                                    ? error.getCause() : error);
+                            return;
+                        }
+                        if (!query.response.isEmpty()) {
+                            suggestedResponseHandler.sendSuggestedResponses(player, aiName, prompt, query.response);
+                        }
+                        plugin.getProgressManager().complete(player);
+                    } finally {
+                        generationRegistry.finish(handle);
+                    }
+                });
+    }
 
-                if (shouldSearch && configManager.isWebSearchEnabled()) {
-                    player.sendMessage(configManager.getMessage("websearch-starting",
-                            Map.of("query", prompt)));
+    private void savePlayerInfo(Query query) {
+        long start = System.nanoTime();
+        // Save player info to ensure uuid exists in players table
+        plugin.getChatHistoryManager().savePlayerInfo(query.player);
+        query.record("player", start);
+    }
 
-                    List<WebSearchService.SearchResult> searchResults =
-                            webSearchService.search(prompt, configManager.getWebSearchResultCount()).join();
+    private Query resolveConversation(Query query) {
+        long start = System.nanoTime();
+        String conversationName = configManager.getSelectedConversations()
+                .computeIfAbsent(query.playerUuid, k -> new HashMap<>())
+                .getOrDefault(query.aiName, null);
+        query.conversationId = conversationName != null
+                ? plugin.getChatHistoryManager().getConversationId(query.playerUuid, query.aiName, conversationName)
+                : null;
+        query.record("conversation", start);
+        return query;
+    }
 
+    private CompletableFuture<Void> search(Query query) {
+        if (!shouldPerformWebSearch(query.prompt) || !configManager.isWebSearchEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long start = System.nanoTime();
+        query.player.sendMessage(configManager.getMessage("websearch-starting", Map.of("query", query.prompt)));
+        return webSearchService.search(query.prompt, configManager.getWebSearchResultCount())
+                .thenAccept(searchResults -> {
+                    query.record("search", start);
                     if (!searchResults.isEmpty()) {
-                        searchContext = webSearchService.formatSearchResultsForAI(searchResults, prompt);
-                        player.sendMessage(configManager.getMessage("websearch-completed",
+                        query.searchResults = searchResults;
+                        query.player.sendMessage(configManager.getMessage("websearch-completed",
                                 Map.of("count", String.valueOf(searchResults.size()))));
                     } else {
-                        player.sendMessage(configManager.getMessage("websearch-no-results-short", null));
+                        query.player.sendMessage(configManager.getMessage("websearch-no-results-short", null));
                     }
-                }
+                });
+    }
 
-                String history = plugin.getChatHistoryManager().getChatHistory(playerUuid, aiName,
-                        conversationId, configManager.getMaxHistory());
-                String selectedPrompt = configManager.getPrompts().getOrDefault(configManager.getDefaultPrompt(), "");
-
-                //
-                String context;
-                if (!searchContext.isEmpty()) {
-                    String template = configManager.getWebSearchPromptTemplate();
-                    context = template
-                            .replace("{search_results}", searchContext)
-                            .replace("{prompt}", prompt);
-                } else {
-                    context = history + (selectedPrompt.isEmpty() ? "" : selectedPrompt + "\n") + "User: " + prompt;
-                }
+    /**
+     * Loads the stored context or the history while the search may still run. Both go unused when
+     * the search finds something, which costs less than waiting for the search before loading them.
+     */
+    private void loadHistory(Query query) {
+        long start = System.nanoTime();
+        query.aiConfig = configManager.getAIConfig(query.aiName);
+        query.reuseContext = configManager.isContextReuseEnabled() && query.aiConfig.getApiFormat() == ApiFormat.GENERATE;
+        query.storedContext = query.reuseContext
+                ? contextStore.get(query.playerUuid, query.aiName, query.conversationId, query.aiConfig.getModel())
+                : null;
+        // A context too long to continue is replaced by the history, of which the budget keeps what fits
+        if (query.storedContext != null && !contextBudgeter.canContinue(query.aiName, query.storedContext, query.prompt)) {
+            query.storedContext = null;
+        }
+        if (query.storedContext == null) {
+            // Turns covered by the conversation's summary are sent as the summary
+            query.summary = summarizer.getSummary(query.playerUuid, query.aiName, query.conversationId);
+            query.history = plugin.getChatHistoryManager().getChatTurns(query.playerUuid, query.aiName,
+                    query.conversationId, configManager.getMaxHistory(),
+                    query.summary != null ? query.summary.getCoveredId() : 0);
+        }
+        query.record("history", start);
+    }
 
-                String apiUrl, apiKey, model;
-                boolean isMessagesFormat;
-                if (aiName.equalsIgnoreCase("ollama")) {
-                    apiUrl = configManager.getOllamaApiUrl();
-                    apiKey = null;
-                    model = configManager.getOllamaModel();
-                    isMessagesFormat = false;
-                } else {
-                    ConfigManager.AIConfig aiConfig = configManager.getOtherAIConfigs().get(aiName);
-                    apiUrl = aiConfig.getApiUrl();
-                    apiKey = aiConfig.getApiKey();
-                    model = aiConfig.getModel();
-                    isMessagesFormat = aiConfig.isMessagesFormat();
-                }
+    private Query buildPrompt(Query query) {
+        long start = System.nanoTime();
+        ContextBudgeter.Budget budget = contextBudgeter.begin(query.aiName);
+        List<ChatTurn> messages = new ArrayList<>();
+        if (!query.searchResults.isEmpty()) {
+            String template = configManager.getWebSearchPromptTemplate()
+                    .replace("{prompt}", query.prompt);
+            budget.require(ChatTurn.user(template.replace("{search_results}", "")));
+            budget.require(configManager.getMessage("websearch-results-header", Map.of("query", query.prompt)));
+            List<WebSearchService.SearchResult> results = budget.addInOrder(query.searchResults,
+                    result -> webSearchService.formatSearchResultForAI(query.searchResults.indexOf(result) + 1, result));
+            query.searchContext = webSearchService.formatSearchResultsForAI(results, query.prompt);
+            messages.add(ChatTurn.user(template.replace("{search_results}", query.searchContext)));
+        } else if (query.storedContext != null) {
+            // The stored context already covers the system prompt and earlier turns
+            query.options.setContext(query.storedContext);
+            messages.add(ChatTurn.user(query.prompt));
+            budget.require(messages.get(0));
+        } else {
+            String selectedPrompt = configManager.getPrompts().getOrDefault(configManager.getDefaultPrompt(), "");
+            if (!selectedPrompt.isEmpty()) {
+                messages.add(ChatTurn.system(selectedPrompt));
+            }
+            if (query.summary != null) {
+                messages.add(summarizer.toTurn(query.summary));
+            }
+            ChatTurn question = ChatTurn.user(query.prompt);
+            messages.forEach(budget::require);
+            budget.require(question);
+            messages.addAll(budget.addNewest(query.history));
+            messages.add(question);
+        }
+        query.messages = messages;
+        query.promptTokens = budget.finish() + (query.storedContext != null ? query.storedContext.length : 0);
 
-                String finalResponse;
-                if (configManager.isStreamingEnabled()) {
-                    StringBuilder fullResponse = new StringBuilder();
-                    AtomicBoolean isFirstMessage = new AtomicBoolean(true);
-                    aiService.sendStreamingRequest(apiUrl, apiKey, model, context, partialResponse -> {
-                        if (player.isOnline()) {
-                            String formattedPartial = partialResponse.length() > configManager.getMaxResponseLength()
-                                    ? partialResponse.substring(0, configManager.getMaxResponseLength()) + "..."
-                                    : partialResponse;
-                            String message = isFirstMessage.get()
-                                    ? configManager.getMessage("response-prefix", null) + formattedPartial
-                                    : formattedPartial;
-                            player.sendMessage(message);
-                            isFirstMessage.set(false);
-                            fullResponse.append(partialResponse);
-                        }
-                    }, isMessagesFormat).join();
-                    finalResponse = fullResponse.toString();
-                } else {
-                    String responseBody = aiService.sendRequest(apiUrl, apiKey, model, context, isMessagesFormat).join();
-                    if (isMessagesFormat) {
-                        JsonObject json = gson.fromJson(responseBody, JsonObject.class);
-                        finalResponse = json.getAsJsonArray("choices")
-                                .get(0).getAsJsonObject()
-                                .get("message").getAsJsonObject()
-                                .get("content").getAsString();
-                    } else {
-                        JsonObject json = gson.fromJson(responseBody, JsonObject.class);
-                        finalResponse = json.get("response").getAsString();
-                    }
+        // Requests without history or a stored context may share a generation with identical ones
+        query.coalesceKey = query.reuseContext ? null
+                : RequestCoalescer.key(query.aiName, query.aiConfig.getModel(), query.aiConfig.getApiFormat(), messages);
+        // Answers built from search results go stale, so only plain prompts are cached
+        query.cacheKey = query.searchContext.isEmpty() ? query.coalesceKey : null;
+        // Keeps a conversation on one endpoint, so its model and prompt cache stay warm there
+        query.routingKey = query.playerUuid + "|" + query.conversationId;
+        query.cachedResponse = responseCache.get(query.cacheKey, query.aiConfig.getModel());
+        query.record("prompt", start);
+        return query;
+    }
+
+    private CompletableFuture<Query> lookupSemanticCache(Query query) {
+        if (query.cachedResponse != null) {
+            return CompletableFuture.completedFuture(query);
+        }
+        return semanticCache.lookup(query.cacheKey, query.aiConfig.getModel()).thenApply(lookup -> {
+            query.semanticLookup = lookup;
+            if (lookup != null && lookup.getAnswer() != null) {
+                query.cachedResponse = lookup.getAnswer();
+            }
+            return query;
+        });
+    }
+
+    private CompletableFuture<Query> generate(Query query) {
+        Player player = query.player;
+        if (query.cachedResponse != null) {
+            query.response = query.cachedResponse;
+            if (player.isOnline()) {
+                sendFormattedResponse(player, query.response);
+            }
+            return CompletableFuture.completedFuture(query);
+        }
+
+        GenerationHandle handle = query.handle;
+        long start = System.nanoTime();
+        if (configManager.isStreamingEnabled()) {
+            StringBuilder fullResponse = new StringBuilder();
+            AtomicBoolean isFirstMessage = new AtomicBoolean(true);
+            return requestCoalescer.executeStreaming(query.coalesceKey, handle, partialResponse -> {
+                if (player.isOnline() && !handle.isCancelled()) {
+                    String formattedPartial = partialResponse.length() > configManager.getMaxResponseLength()
+                            ? partialResponse.substring(0, configManager.getMaxResponseLength()) + "..."
+                            : partialResponse;
+                    String message = isFirstMessage.get()
+                            ? configManager.getMessage("response-prefix", null) + formattedPartial
+                            : formattedPartial;
+                    chatDelivery.send(player, message);
+                    isFirstMessage.set(false);
+                    fullResponse.append(partialResponse);
+                }
+            }, (upstream, sink) -> fallbackChain.executeStreaming(query.aiName, upstream, sink, (target, targetSink) -> {
+                GenerationOptions targetOptions = target.isPrimary() ? query.options : null;
+                return requestHedger.executeStreaming(target, upstream, targetOptions == null, targetSink,
+                        (attempt, attemptSink) -> submitStreaming(attempt, query.playerUuid, query.routingKey,
+                                query.messages, attemptSink, targetOptions))
+                        .thenAccept(winner -> {
+                            if (!winner.isPrimary()) {
+                                query.servedByOtherModel.set(true);
+                            }
+                        });
+            })).thenApply(ignored -> {
+                query.record("generate", start);
+                chatDelivery.flush(player);
+                query.response = fullResponse.toString();
+                cacheResponse(query);
+                return query;
+            });
+        }
+        return requestCoalescer.execute(query.coalesceKey, handle,
+                upstream -> fallbackChain.execute(query.aiName, upstream, target -> {
+                    GenerationOptions targetOptions = target.isPrimary() ? query.options : null;
+                    return requestHedger.execute(target, upstream, targetOptions == null,
+                            attempt -> submit(attempt, query.playerUuid, query.routingKey, query.messages, targetOptions)
+                                    .thenApply(content -> {
+                                        if (!attempt.getTarget().isPrimary()) {
+                                            query.servedByOtherModel.set(true);
+                                        }
+                                        return content;
+                                    }));
+                })).thenApply(response -> {
+                    query.record("generate", start);
+                    query.response = response;
+                    cacheResponse(query);
                     if (player.isOnline()) {
-                        sendFormattedResponse(player, finalResponse);
+                        sendFormattedResponse(player, response);
                     }
-                }
+                    return query;
+                });
+    }
 
-                if (!finalResponse.isEmpty()) {
-                    plugin.getChatHistoryManager().saveChatHistory(playerUuid, aiName, conversationId, prompt, finalResponse);
-                    suggestedResponseHandler.sendSuggestedResponses(player, aiName, prompt, finalResponse);
-                }
-                plugin.getProgressManager().complete(player);
-            } catch (Exception e) {
-                plugin.getLogger().severe("Error processing " + aiName + " request: " + e.getMessage());
-                if (player.isOnline()) {
-                    sendErrorMessage(player, configManager.getMessage("error-prefix", null) +
-                            configManager.getMessage("websearch-error", Map.of("error", e.getMessage())));
-                }
-                plugin.getProgressManager().error(player);
+    /**
+     * Answers of a fallback or hedge model are not cached as answers of the requested one.
+     */
+    private void cacheResponse(Query query) {
+        if (!query.servedByOtherModel.get()) {
+            responseCache.put(query.cacheKey, query.aiConfig.getModel(), query.response);
+            semanticCache.store(query.semanticLookup, query.response);
+        }
+    }
+
+    private Query saveHistory(Query query) {
+        if (query.response.isEmpty()) {
+            return query;
+        }
+        long start = System.nanoTime();
+        plugin.getChatHistoryManager().saveChatHistory(query.playerUuid, query.aiName, query.conversationId,
+                query.prompt, query.response);
+        if (query.reuseContext) {
+            // A search turn was sent without the history, so its context cannot be continued
+            if (query.searchContext.isEmpty() && query.options.getReturnedContext() != null) {
+                contextStore.put(query.playerUuid, query.aiName, query.conversationId, query.aiConfig.getModel(),
+                        query.options.getReturnedContext());
+            } else {
+                contextStore.invalidate(query.playerUuid, query.aiName, query.conversationId);
             }
-        });
+        }
+        summarizer.conversationUpdated(query.playerUuid, query.aiName, query.conversationId);
+        query.record("save", start);
+        return query;
+    }
+
+    private void handleFailure(Query query, Throwable error) {
+        Player player = query.player;
+        String aiName = query.aiName;
+        // Text streamed before the failure still comes before the error message
+        chatDelivery.flush(player);
+        if (query.handle.isCancelled()) {
+            plugin.getProgressManager().cleanup(player);
+            return;
+        }
+        String presetAnswer = fallbackChain.getPresetAnswer(aiName);
+        if (presetAnswer != null) {
+            if (player.isOnline()) {
+                sendFormattedResponse(player, presetAnswer);
+            }
+            plugin.getProgressManager().complete(player);
+            return;
+        }
+        if (error instanceof AIDispatcher.QueueFullException
+                || error instanceof AIDispatcher.BackendUnavailableException
+                || error instanceof AIDispatcher.CircuitOpenException) {
+            String key = error instanceof AIDispatcher.QueueFullException ? "queue-full"
+                    : error instanceof AIDispatcher.CircuitOpenException ? "circuit-open" : "backend-unavailable";
+            if (player.isOnline()) {
+                sendErrorMessage(player, configManager.getMessage("error-prefix", null) +
+                        configManager.getMessage(key, Map.of("ai-name", aiName)));
+            }
+            plugin.getProgressManager().cleanup(player);
+            return;
+        }
+        plugin.getLogger().severe("Error processing " + aiName + " request: " + error.getMessage());
+        if (player.isOnline()) {
+            sendErrorMessage(player, configManager.getMessage("error-prefix", null) +
+                    configManager.getMessage("websearch-error", Map.of("error", String.valueOf(error.getMessage()))));
+        }
+        plugin.getProgressManager().error(player);
+    }
+
+    /**
+     * Sends one attempt of a request through the dispatcher. Hedges skip the conversation's
+     * endpoint preference and the endpoint the first attempt is waiting on.
+     */
+    private CompletableFuture<String> submit(RequestHedger.Attempt attempt, UUID playerUuid, String routingKey,
+                                             List<ChatTurn> messages, GenerationOptions options) {
+        FallbackChain.Target target = attempt.getTarget();
+        ApiFormat format = target.getConfig().getApiFormat();
+        return aiDispatcher.submit(target.getAiName(), target.getModel(), playerUuid, RequestPriority.INTERACTIVE,
+                attempt.getHandle(), attempt.isHedge() ? null : routingKey, attempt.getExcludedEndpoint(),
+                url -> aiService.sendChatRequest(url, target.getConfig().getApiKey(), target.getModel(), messages,
+                        format, options, attempt.getHandle()))
+                .thenApply(body -> aiService.extractContent(body, format));
+    }
+
+    private CompletableFuture<Void> submitStreaming(RequestHedger.Attempt attempt, UUID playerUuid, String routingKey,
+                                                    List<ChatTurn> messages, Consumer<String> sink, GenerationOptions options) {
+        FallbackChain.Target target = attempt.getTarget();
+        return aiDispatcher.submit(target.getAiName(), target.getModel(), playerUuid, RequestPriority.INTERACTIVE,
+                attempt.getHandle(), attempt.isHedge() ? null : routingKey, attempt.getExcludedEndpoint(),
+                url -> aiService.sendStreamingChatRequest(url, target.getConfig().getApiKey(), target.getModel(), messages,
+                        sink, target.getConfig().getApiFormat(), options, attempt.getHandle()));
     }
 
     /**
@@ -202,6 +464,21 @@ public class ChatTriggerHandler implements Listener {
         return false;
     }
 
+    private String rateLimitMessage(RateLimiter.RateLimitedException e, String aiName) {
+        long seconds = Math.max(1, (e.getRetryAfterMillis() + 999) / 1000);
+        switch (e.getLimit()) {
+            case DAILY_TOKENS:
+                return configManager.getMessage("rate-limit-tokens", Map.of(
+                        "hours", String.valueOf(seconds / 3600),
+                        "minutes", String.valueOf(seconds % 3600 / 60)));
+            case BACKEND:
+                return configManager.getMessage("rate-limit-backend", Map.of(
+                        "ai-name", aiName, "seconds", String.valueOf(seconds)));
+            default:
+                return configManager.getMessage("rate-limit-player", Map.of("seconds", String.valueOf(seconds)));
+        }
+    }
+
     private void sendFormattedResponse(Player player, String response) {
         if (response.length() > configManager.getMaxResponseLength()) {
             response = response.substring(0, configManager.getMaxResponseLength()) + "...";
@@ -212,4 +489,63 @@ public class ChatTriggerHandler implements Listener {
     private void sendErrorMessage(Player player, String errorMessage) {
         player.sendMessage(errorMessage);
     }
+
+    /**
+     * State of one chat request, handed from stage to stage. Stages running at the same time set
+     * different fields and all complete before the prompt is built, so the fields need no synchronization.
+     */
+    private static class Query {
+        final Player player;
+        final UUID playerUuid;
+        final String aiName;
+        final String prompt;
+        final GenerationHandle handle;
+        final GenerationOptions options = new GenerationOptions();
+        final AtomicBoolean servedByOtherModel = new AtomicBoolean();
+        final long startNanos = System.nanoTime();
+        // Stages that run at the same time record their times concurrently
+        final Map<String, Long> stageMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+        String conversationId;
+        String searchContext = "";
+        ConfigManager.AIConfig aiConfig;
+        boolean reuseContext;
+        int[] storedContext;
+        ConversationSummarizer.Summary summary;
+        List<ChatTurn> history = List.of();
+        List<ChatTurn> messages;
+        String coalesceKey;
+        String cacheKey;
+        String routingKey;
+        String cachedResponse;
+        SemanticCache.Lookup semanticLookup;
+        List<WebSearchService.SearchResult> searchResults = List.of();
+        int promptTokens;
+        String response;
+
+        Query(Player player, String aiName, String prompt, GenerationHandle handle) {
+            this.player = player;
+            this.playerUuid = player.getUniqueId();
+            this.aiName = aiName;
+            this.prompt = prompt;
+            this.handle = handle;
+        }
+
+        void record(String stage, long startNanos) {
+            stageMillis.put(stage, (System.nanoTime() - startNanos) / 1_000_000L);
+        }
+
+        String describeTimings() {
+            StringBuilder description = new StringBuilder("Request of ").append(player.getName()).append(" to ")
+                    .append(aiName).append(" took ").append((System.nanoTime() - startNanos) / 1_000_000L)
+                    .append("ms with about ").append(promptTokens).append(" prompt tokens");
+            synchronized (stageMillis) {
+                String separator = ": ";
+                for (Map.Entry<String, Long> stage : stageMillis.entrySet()) {
+                    description.append(separator).append(stage.getKey()).append(' ').append(stage.getValue()).append("ms");
+                    separator = ", ";
+                }
+            }
+            return description.toString();
+        }
+    }
 }
\ No newline at end of file
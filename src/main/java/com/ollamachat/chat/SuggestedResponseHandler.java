@@ -1,8 +1,10 @@
 package com.ollamachat.chat;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
 import com.ollamachat.AIService;
+import com.ollamachat.ai.ChatTurn;
+import com.ollamachat.ai.ContextBudgeter;
+import com.ollamachat.ai.GenerationHandle;
+import com.ollamachat.ai.RequestPriority;
 import com.ollamachat.core.ConfigManager;
 import com.ollamachat.core.Ollamachat;
 import net.md_5.bungee.api.ChatColor;
@@ -10,25 +12,27 @@ import net.md_5.bungee.api.chat.*;
 import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class SuggestedResponseHandler {
     private final Ollamachat plugin;
     private final ConfigManager configManager;
     private final AIService aiService;
-    private final Gson gson;
     private final Map<UUID, Long> lastSuggestionTimes;
 
     public SuggestedResponseHandler(Ollamachat plugin) {
         this.plugin = plugin;
         this.configManager = plugin.getConfigManager();
-        this.aiService = new AIService();
-        this.gson = new Gson();
-        this.lastSuggestionTimes = new HashMap<>();
+        this.aiService = plugin.getAIService();
+        this.lastSuggestionTimes = new ConcurrentHashMap<>();
     }
 
     public boolean isSuggestionsEnabledForPlayer(Player player) {
@@ -63,77 +67,143 @@ public class SuggestedResponseHandler {
             return;
         }
 
-        List<String> suggestedResponses = new ArrayList<>();
+        SuggestionRound round = new SuggestionRound(player, originalAIName, configManager.isSuggestedResponseShowAsReady());
         if (configManager.isSuggestedResponsePresetsEnabled()) {
-            suggestedResponses.addAll(configManager.getSuggestedResponsePresets());
+            round.add(null, configManager.getSuggestedResponsePresets());
         }
 
-        List<String> suggestedModels = configManager.getSuggestedResponseModels();
-        if (!suggestedModels.isEmpty()) {
-            CompletableFuture.runAsync(() -> {
-                for (String model : suggestedModels) {
-                    if (model.equalsIgnoreCase(originalAIName)) continue;
-                    if (!configManager.getSuggestedResponseModelToggles().getOrDefault(model, true)) continue;
-                    try {
-                        String apiUrl;
-                        String apiKey;
-                        boolean isMessagesFormat;
-                        ConfigManager.AIConfig aiConfig = configManager.getOtherAIConfigs().get(model);
-                        if (aiConfig != null && configManager.getOtherAIEnabled().getOrDefault(model, false)) {
-                            apiUrl = aiConfig.getApiUrl();
-                            apiKey = aiConfig.getApiKey();
-                            isMessagesFormat = aiConfig.isMessagesFormat();
-                        } else {
-                            apiUrl = configManager.getOllamaApiUrl();
-                            apiKey = null;
-                            isMessagesFormat = false;
-                        }
-                        String promptTemplate = configManager.getSuggestedResponsePrompt();
-                        String context = promptTemplate
-                                .replace("{prompt}", originalPrompt)
-                                .replace("{response}", originalResponse)
-                                .replace("{count}", String.valueOf(configManager.getSuggestedResponseCount()));
-                        String responseBody = aiService.sendRequest(apiUrl, apiKey, model, context, isMessagesFormat).join();
-                        String suggestedText;
-                        if (isMessagesFormat) {
-                            JsonObject json = gson.fromJson(responseBody, JsonObject.class);
-                            suggestedText = json.getAsJsonArray("choices")
-                                    .get(0).getAsJsonObject()
-                                    .get("message").getAsJsonObject()
-                                    .get("content").getAsString();
-                        } else {
-                            JsonObject json = gson.fromJson(responseBody, JsonObject.class);
-                            suggestedText = json.get("response").getAsString();
-                        }
-                        String[] suggestions = suggestedText.split("\n");
-                        for (String suggestion : suggestions) {
-                            String cleanedSuggestion = suggestion.replaceAll("^\\d+\\.\\s*", "").trim();
-                            if (!cleanedSuggestion.isEmpty()) {
-                                suggestedResponses.add("[" + model + "] " + cleanedSuggestion);
-                            }
+        String template = configManager.getSuggestedResponsePrompt()
+                .replace("{prompt}", originalPrompt)
+                .replace("{count}", String.valueOf(configManager.getSuggestedResponseCount()));
+        GenerationHandle handle = plugin.getGenerationRegistry().begin(player.getUniqueId(), "suggestions", false);
+        // Every model is asked at once, so the slowest one bounds the wait instead of the sum of all
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (String model : configManager.getSuggestedResponseModels()) {
+            if (model.equalsIgnoreCase(originalAIName)) continue;
+            if (!configManager.getSuggestedResponseModelToggles().getOrDefault(model, true)) continue;
+            String backend;
+            ConfigManager.AIConfig aiConfig = configManager.getOtherAIConfigs().get(model);
+            if (aiConfig != null && configManager.getOtherAIEnabled().getOrDefault(model, false)) {
+                backend = model;
+            } else {
+                // Any other name is treated as a model served by the Ollama host
+                backend = "ollama";
+                aiConfig = configManager.getAIConfig(backend);
+            }
+            ConfigManager.AIConfig backendConfig = aiConfig;
+            String context = buildContext(template, backend, originalResponse);
+            GenerationHandle call = handle.child(backend);
+            calls.add(plugin.getAIDispatcher().submit(backend, model, player.getUniqueId(), RequestPriority.SUGGESTION, call, null,
+                            url -> aiService.sendChatRequest(url, backendConfig.getApiKey(), model,
+                                    List.of(ChatTurn.user(context)), backendConfig.getApiFormat(), call))
+                    .thenAccept(body -> round.add(model,
+                            parseSuggestions(aiService.extractContent(body, backendConfig.getApiFormat()))))
+                    .exceptionally(e -> {
+                        if (!handle.isCancelled()) {
+                            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                            plugin.getLogger().warning("Failed to get suggested response from " + model + ": " + cause.getMessage());
                         }
-                    } catch (Exception e) {
-                        plugin.getLogger().warning("Failed to get suggested response from " + model + ": " + e.getMessage());
-                    }
-                }
+                        return null;
+                    }));
+        }
 
-                if (player.isOnline() && !suggestedResponses.isEmpty()) {
-                    sendMessage(player, ChatColor.GREEN + configManager.getMessage("suggested-responses-header", null));
-                    for (String response : suggestedResponses) {
-                        if (response.length() > configManager.getMaxResponseLength()) {
-                            response = response.substring(0, configManager.getMaxResponseLength()) + "...";
-                            sendMessage(player, ChatColor.YELLOW + configManager.getMessage("response-truncated", null));
-                        }
-                        sendClickableMessage(player,
-                                configManager.getMessage("suggested-response-prefix", null) + response,
-                                "/aichat " + originalAIName + " " + response.replace("\"", "\\\""),
-                                configManager.getMessage("suggested-response-hover", null));
+        CompletableFuture<Void> all = CompletableFuture.allOf(calls.toArray(new CompletableFuture[0]));
+        int timeout = configManager.getSuggestedResponseTimeout();
+        if (timeout > 0) {
+            all.completeOnTimeout(null, timeout, TimeUnit.SECONDS);
+        }
+        all.whenComplete((ignored, error) -> {
+            // Closing first discards whatever the cancelled models still deliver
+            round.close();
+            handle.cancel();
+            plugin.getGenerationRegistry().finish(handle);
+        });
+    }
+
+    /**
+     * Fills in the answer the suggestions follow up on, cut to what fits the backend's context budget.
+     */
+    private String buildContext(String template, String backend, String response) {
+        ContextBudgeter.Budget budget = plugin.getContextBudgeter().begin(backend);
+        budget.require(ChatTurn.user(template.replace("{response}", "")));
+        String context = template.replace("{response}", budget.clip(response));
+        budget.finish();
+        return context;
+    }
+
+    private static List<String> parseSuggestions(String text) {
+        List<String> suggestions = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            String cleaned = line.replaceAll("^\\d+\\.\\s*", "").trim();
+            if (!cleaned.isEmpty()) {
+                suggestions.add(cleaned);
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * The suggestions of one fan-out. Suggestions that differ only in case, spacing or punctuation are
+     * shown once, labelled with every model that made them; nothing is shown after the round closes.
+     */
+    private class SuggestionRound {
+        private final Player player;
+        private final String originalAIName;
+        private final boolean showAsReady;
+        // Keyed by normalized text, in the order the suggestions arrived
+        private final Map<String, Suggestion> suggestions = new LinkedHashMap<>();
+        private boolean headerSent;
+        private boolean closed;
+
+        SuggestionRound(Player player, String originalAIName, boolean showAsReady) {
+            this.player = player;
+            this.originalAIName = originalAIName;
+            this.showAsReady = showAsReady;
+        }
+
+        /**
+         * @param model The model that made the suggestions, or null for presets
+         */
+        synchronized void add(String model, List<String> texts) {
+            if (closed) return;
+            List<Suggestion> added = new ArrayList<>();
+            for (String text : texts) {
+                String key = text.toLowerCase(Locale.ROOT).replaceAll("[\\p{Punct}\\s]+", " ").trim();
+                if (key.isEmpty()) continue;
+                Suggestion existing = suggestions.get(key);
+                if (existing != null) {
+                    if (model != null && !existing.models.contains(model)) {
+                        existing.models.add(model);
                     }
+                    continue;
                 }
-            });
-        } else if (player.isOnline() && !suggestedResponses.isEmpty()) {
-            sendMessage(player, ChatColor.GREEN + configManager.getMessage("suggested-responses-header", null));
-            for (String response : suggestedResponses) {
+                Suggestion suggestion = new Suggestion(text, model);
+                suggestions.put(key, suggestion);
+                added.add(suggestion);
+            }
+            if (showAsReady) {
+                show(added);
+            }
+        }
+
+        synchronized void close() {
+            if (closed) return;
+            closed = true;
+            if (!showAsReady) {
+                show(new ArrayList<>(suggestions.values()));
+            }
+        }
+
+        private void show(List<Suggestion> batch) {
+            if (batch.isEmpty() || !player.isOnline()) return;
+            if (!headerSent) {
+                sendMessage(player, ChatColor.GREEN + configManager.getMessage("suggested-responses-header", null));
+                headerSent = true;
+            }
+            for (Suggestion suggestion : batch) {
+                String response = suggestion.models.isEmpty()
+                        ? suggestion.text
+                        : "[" + String.join(", ", suggestion.models) + "] " + suggestion.text;
                 if (response.length() > configManager.getMaxResponseLength()) {
                     response = response.substring(0, configManager.getMaxResponseLength()) + "...";
                     sendMessage(player, ChatColor.YELLOW + configManager.getMessage("response-truncated", null));
@@ -146,6 +216,18 @@ public class SuggestedResponseHandler {
         }
     }
 
+    private static class Suggestion {
+        final String text;
+        final List<String> models = new ArrayList<>(1);
+
+        Suggestion(String text, String model) {
+            this.text = text;
+            if (model != null) {
+                models.add(model);
+            }
+        }
+    }
+
     private void sendMessage(Player player, String message) {
         if (player.isOnline()) {
             player.sendMessage(message);
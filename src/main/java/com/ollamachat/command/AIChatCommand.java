@@ -19,11 +19,15 @@ public class AIChatCommand implements CommandExecutor {
     public AIChatCommand(Ollamachat plugin) {
         this.plugin = plugin;
         this.configManager = plugin.getConfigManager();
-        this.chatTriggerHandler = new ChatTriggerHandler(plugin);
+        this.chatTriggerHandler = plugin.getChatTriggerHandler();
     }
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 1 && args[0].equalsIgnoreCase("cancel")) {
+            return handleCancel(sender);
+        }
+
         if (args.length < 2) {
             sender.sendMessage(configManager.getMessage("usage-aichat", null));
             return true;
@@ -43,4 +47,21 @@ public class AIChatCommand implements CommandExecutor {
         }
         return true;
     }
+
+    private boolean handleCancel(CommandSender sender) {
+        if (!(sender instanceof Player)) {
+            sender.sendMessage(configManager.getMessage("player-only", null));
+            return true;
+        }
+
+        Player player = (Player) sender;
+        int cancelled = plugin.getGenerationRegistry().cancelAll(player.getUniqueId());
+        if (cancelled > 0) {
+            sender.sendMessage(configManager.getMessage("generation-cancelled",
+                    Map.of("count", String.valueOf(cancelled))));
+        } else {
+            sender.sendMessage(configManager.getMessage("generation-none-active", null));
+        }
+        return true;
+    }
 }
\ No newline at end of file
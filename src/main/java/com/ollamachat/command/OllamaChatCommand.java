@@ -1,8 +1,20 @@
 package com.ollamachat.command;
 
+import com.ollamachat.ai.AIDispatcher;
+import com.ollamachat.ai.BackendHealthMonitor;
+import com.ollamachat.ai.CircuitBreaker;
+import com.ollamachat.ai.ContextBudgeter;
+import com.ollamachat.ai.ConversationSummarizer;
+import com.ollamachat.ai.EndpointBalancer;
+import com.ollamachat.ai.GenerationMetrics;
+import com.ollamachat.ai.RateLimiter;
+import com.ollamachat.ai.RequestCoalescer;
+import com.ollamachat.ai.RequestHedger;
+import com.ollamachat.ai.ResponseCache;
+import com.ollamachat.ai.SemanticCache;
 import com.ollamachat.core.Ollamachat;
+import com.ollamachat.scheduler.WorkerPool;
 import com.ollamachat.core.ConfigManager;
-import com.ollamachat.scheduler.SchedulerUtils;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -11,6 +23,7 @@ import org.bukkit.entity.Player;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class OllamaChatCommand implements CommandExecutor {
@@ -48,6 +61,13 @@ public class OllamaChatCommand implements CommandExecutor {
                 return handleSuggestsPresets(sender, args);
             case "search":
                 return handleSearch(sender, args);
+            case "stats":
+                if (args.length > 1 && args[1].equalsIgnoreCase("generation")) {
+                    return handleGenerationStats(sender);
+                }
+                return handleStats(sender);
+            case "quota":
+                return handleQuota(sender, args);
             default:
                 sender.sendMessage(ChatColor.RED + configManager.getMessage("invalid-command", null));
                 return true;
@@ -97,6 +117,242 @@ public class OllamaChatCommand implements CommandExecutor {
         return true;
     }
 
+    private boolean handleGenerationStats(CommandSender sender) {
+        if (!sender.hasPermission("ollamachat.stats")) {
+            sender.sendMessage(ChatColor.RED + configManager.getMessage("no-permission", null));
+            return true;
+        }
+
+        sender.sendMessage(configManager.getMessage("stats-generation-header", null));
+        List<GenerationMetrics.ModelStats> modelStats = plugin.getGenerationMetrics().getStats();
+        if (modelStats.isEmpty()) {
+            sender.sendMessage(configManager.getMessage("stats-generation-empty", null));
+            return true;
+        }
+        for (GenerationMetrics.ModelStats stats : modelStats) {
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("ai-name", stats.getAiName());
+            placeholders.put("model", stats.getModel());
+            placeholders.put("requests", String.valueOf(stats.getRequests()));
+            placeholders.put("failures", String.valueOf(stats.getFailures()));
+            placeholders.put("size", String.valueOf(stats.getBytes() / 1024));
+            sender.sendMessage(configManager.getMessage("stats-generation-model", placeholders));
+            sender.sendMessage(configManager.getMessage("stats-generation-ttft", distribution(stats.getTimeToFirstToken())));
+            sender.sendMessage(configManager.getMessage("stats-generation-latency", distribution(stats.getLatency())));
+            sender.sendMessage(configManager.getMessage("stats-generation-queue", distribution(stats.getQueueWait())));
+
+            placeholders = new HashMap<>();
+            placeholders.put("tps", String.valueOf(stats.getTokensPerSecond().getP50()));
+            placeholders.put("prompt-tps", String.valueOf(stats.getPromptTokensPerSecond()));
+            placeholders.put("prompt-tokens", String.valueOf(stats.getPromptTokens()));
+            placeholders.put("generated-tokens", String.valueOf(stats.getGeneratedTokens()));
+            placeholders.put("load", String.valueOf(stats.getLoadTime().getMean()));
+            sender.sendMessage(configManager.getMessage("stats-generation-tokens", placeholders));
+        }
+        return true;
+    }
+
+    private static Map<String, String> distribution(GenerationMetrics.Distribution distribution) {
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("p50", String.valueOf(distribution.getP50()));
+        placeholders.put("p90", String.valueOf(distribution.getP90()));
+        placeholders.put("p99", String.valueOf(distribution.getP99()));
+        placeholders.put("max", String.valueOf(distribution.getMax()));
+        placeholders.put("count", String.valueOf(distribution.getCount()));
+        return placeholders;
+    }
+
+    private boolean handleQuota(CommandSender sender, String[] args) {
+        Player target;
+        if (args.length > 1) {
+            if (!sender.hasPermission("ollamachat.quota.others")) {
+                sender.sendMessage(ChatColor.RED + configManager.getMessage("no-permission", null));
+                return true;
+            }
+            target = plugin.getServer().getPlayerExact(args[1]);
+            if (target == null) {
+                sender.sendMessage(ChatColor.RED + configManager.getMessage("player-not-found", Map.of("player", args[1])));
+                return true;
+            }
+        } else if (sender instanceof Player) {
+            if (!sender.hasPermission("ollamachat.quota")) {
+                sender.sendMessage(ChatColor.RED + configManager.getMessage("no-permission", null));
+                return true;
+            }
+            target = (Player) sender;
+        } else {
+            sender.sendMessage(configManager.getMessage("player-only", null));
+            return true;
+        }
+
+        if (!configManager.isRateLimitEnabled() || target.hasPermission(RateLimiter.BYPASS_PERMISSION)) {
+            sender.sendMessage(configManager.getMessage("quota-unlimited", Map.of("player", target.getName())));
+            return true;
+        }
+        RateLimiter.Quota quota = plugin.getRateLimiter().getQuota(target);
+        sender.sendMessage(configManager.getMessage("quota-header", Map.of(
+                "player", target.getName(), "group", quota.getGroup())));
+        String unlimited = configManager.getMessage("quota-no-limit", null);
+        sender.sendMessage(configManager.getMessage("quota-requests", Map.of(
+                "left", quota.getRequestsPerMinute() > 0 ? String.valueOf(quota.getRequestsLeft()) : unlimited,
+                "limit", quota.getRequestsPerMinute() > 0 ? String.valueOf(quota.getRequestsPerMinute()) : unlimited)));
+        long resetMinutes = quota.getResetInMillis() / 60000;
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("used", String.valueOf(quota.getTokensUsed()));
+        placeholders.put("left", quota.getTokensPerDay() > 0 ? String.valueOf(quota.getTokensLeft()) : unlimited);
+        placeholders.put("limit", quota.getTokensPerDay() > 0 ? String.valueOf(quota.getTokensPerDay()) : unlimited);
+        placeholders.put("hours", String.valueOf(resetMinutes / 60));
+        placeholders.put("minutes", String.valueOf(resetMinutes % 60));
+        sender.sendMessage(configManager.getMessage("quota-tokens", placeholders));
+        return true;
+    }
+
+    private boolean handleStats(CommandSender sender) {
+        if (!sender.hasPermission("ollamachat.stats")) {
+            sender.sendMessage(ChatColor.RED + configManager.getMessage("no-permission", null));
+            return true;
+        }
+
+        sender.sendMessage(configManager.getMessage("stats-header", null));
+        for (BackendHealthMonitor.BackendHealth health : plugin.getHealthMonitor().getHealth()) {
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("ai-name", health.getAiName());
+            placeholders.put("status", health.getStatus() == BackendHealthMonitor.Status.UP ? "§aUP"
+                    : health.getStatus() == BackendHealthMonitor.Status.DOWN ? "§cDOWN" : "§7UNKNOWN");
+            placeholders.put("latency", String.valueOf(health.getLastLatencyMillis()));
+            placeholders.put("checked", String.valueOf((System.currentTimeMillis() - health.getLastCheckedAt()) / 1000));
+            sender.sendMessage(configManager.getMessage("stats-health", placeholders));
+        }
+
+        List<AIDispatcher.BackendStats> queueStats = plugin.getAIDispatcher().getStats();
+        if (queueStats.isEmpty()) {
+            sender.sendMessage(configManager.getMessage("stats-empty", null));
+        }
+        for (AIDispatcher.BackendStats stats : queueStats) {
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("ai-name", stats.getAiName());
+            placeholders.put("in-flight", String.valueOf(stats.getInFlight()));
+            placeholders.put("queued", String.valueOf(stats.getQueued()));
+            placeholders.put("completed", String.valueOf(stats.getCompleted()));
+            placeholders.put("rejected", String.valueOf(stats.getRejected()));
+            placeholders.put("avg-wait", String.valueOf(stats.getAverageWaitMillis()));
+            placeholders.put("max-wait", String.valueOf(stats.getMaxWaitMillis()));
+            sender.sendMessage(configManager.getMessage("stats-queue", placeholders));
+            for (AIDispatcher.PriorityStats priority : stats.getPriorities()) {
+                Map<String, String> priorityPlaceholders = new HashMap<>();
+                priorityPlaceholders.put("priority", priority.getPriority());
+                priorityPlaceholders.put("in-flight", String.valueOf(priority.getInFlight()));
+                priorityPlaceholders.put("queued", String.valueOf(priority.getQueued()));
+                priorityPlaceholders.put("completed", String.valueOf(priority.getCompleted()));
+                priorityPlaceholders.put("rejected", String.valueOf(priority.getRejected()));
+                priorityPlaceholders.put("dropped", String.valueOf(priority.getDropped()));
+                priorityPlaceholders.put("avg-wait", String.valueOf(priority.getAverageWaitMillis()));
+                priorityPlaceholders.put("max-wait", String.valueOf(priority.getMaxWaitMillis()));
+                sender.sendMessage(configManager.getMessage("stats-queue-priority", priorityPlaceholders));
+            }
+        }
+        for (EndpointBalancer.EndpointStats stats : plugin.getEndpointBalancer().getStats()) {
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("ai-name", stats.getAiName());
+            placeholders.put("url", stats.getUrl());
+            placeholders.put("status", stats.isAvailable() ? "§aUP" : "§cDOWN");
+            placeholders.put("in-flight", String.valueOf(stats.getInFlight()));
+            placeholders.put("latency", String.valueOf(stats.getEwmaMillis()));
+            placeholders.put("completed", String.valueOf(stats.getCompleted()));
+            placeholders.put("failed", String.valueOf(stats.getFailed()));
+            sender.sendMessage(configManager.getMessage("stats-endpoint", placeholders));
+        }
+        for (CircuitBreaker breaker : plugin.getAIDispatcher().getCircuitBreakers()) {
+            CircuitBreaker.State state = breaker.getState();
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("ai-name", breaker.getName());
+            placeholders.put("state", (state == CircuitBreaker.State.CLOSED ? "§a" : state == CircuitBreaker.State.OPEN ? "§c" : "§e") + state);
+            placeholders.put("failures", String.valueOf(breaker.getConsecutiveFailures()));
+            placeholders.put("opened", String.valueOf(breaker.getTimesOpened()));
+            sender.sendMessage(configManager.getMessage("stats-circuit", placeholders));
+        }
+        if (configManager.isHedgingEnabled()) {
+            RequestHedger hedger = plugin.getRequestHedger();
+            sender.sendMessage(configManager.getMessage("stats-hedging", Map.of(
+                    "hedges", String.valueOf(hedger.getHedges()),
+                    "wins", String.valueOf(hedger.getHedgeWins()))));
+        }
+        RequestCoalescer coalescer = plugin.getRequestCoalescer();
+        sender.sendMessage(configManager.getMessage("stats-coalesced", Map.of(
+                "coalesced", String.valueOf(coalescer.getCoalescedCalls()),
+                "upstream", String.valueOf(coalescer.getUpstreamCalls()))));
+        WorkerPool workerPool = plugin.getWorkerPool();
+        Map<String, String> workerPlaceholders = new HashMap<>();
+        workerPlaceholders.put("mode", workerPool.getMode().name().toLowerCase());
+        workerPlaceholders.put("running", String.valueOf(workerPool.getRunning()));
+        workerPlaceholders.put("peak", String.valueOf(workerPool.getPeakRunning()));
+        workerPlaceholders.put("threads", String.valueOf(workerPool.getThreads()));
+        workerPlaceholders.put("queued", String.valueOf(workerPool.getQueued()));
+        workerPlaceholders.put("completed", String.valueOf(workerPool.getCompleted()));
+        sender.sendMessage(configManager.getMessage("stats-workers", workerPlaceholders));
+        if (workerPool.getPinnedEvents() > 0) {
+            String location = workerPool.getLastPinnedAt();
+            sender.sendMessage(configManager.getMessage("stats-workers-pinned", Map.of(
+                    "pinned", String.valueOf(workerPool.getPinnedEvents()),
+                    "time", String.valueOf(workerPool.getPinnedMillis()),
+                    "location", location != null ? location : "?")));
+        }
+        WorkerPool computePool = plugin.getComputePool();
+        Map<String, String> computePlaceholders = new HashMap<>();
+        computePlaceholders.put("running", String.valueOf(computePool.getRunning()));
+        computePlaceholders.put("peak", String.valueOf(computePool.getPeakRunning()));
+        computePlaceholders.put("threads", String.valueOf(computePool.getThreads()));
+        computePlaceholders.put("queued", String.valueOf(computePool.getQueued()));
+        computePlaceholders.put("completed", String.valueOf(computePool.getCompleted()));
+        sender.sendMessage(configManager.getMessage("stats-compute", computePlaceholders));
+        ContextBudgeter budgeter = plugin.getContextBudgeter();
+        if (budgeter.getPrompts() > 0) {
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("prompts", String.valueOf(budgeter.getPrompts()));
+            placeholders.put("average", String.valueOf(budgeter.getTokens() / budgeter.getPrompts()));
+            placeholders.put("turns", String.valueOf(budgeter.getDroppedTurns()));
+            placeholders.put("results", String.valueOf(budgeter.getDroppedResults()));
+            placeholders.put("contexts", String.valueOf(budgeter.getDroppedContexts()));
+            placeholders.put("clipped", String.valueOf(budgeter.getClippedTexts()));
+            sender.sendMessage(configManager.getMessage("stats-context", placeholders));
+        }
+        ConversationSummarizer summarizer = plugin.getConversationSummarizer();
+        if (configManager.isSummaryEnabled()) {
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("summaries", String.valueOf(summarizer.getSummaries()));
+            placeholders.put("exchanges", String.valueOf(summarizer.getSummarizedExchanges()));
+            placeholders.put("pending", String.valueOf(summarizer.getPending()));
+            placeholders.put("failures", String.valueOf(summarizer.getFailures()));
+            sender.sendMessage(configManager.getMessage("stats-summary", placeholders));
+        }
+        ResponseCache responseCache = plugin.getResponseCache();
+        if (configManager.isResponseCacheEnabled()) {
+            long lookups = responseCache.getHits() + responseCache.getMisses();
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("entries", String.valueOf(responseCache.size()));
+            placeholders.put("size", String.valueOf(responseCache.getSizeBytes() / 1024));
+            placeholders.put("hits", String.valueOf(responseCache.getHits()));
+            placeholders.put("misses", String.valueOf(responseCache.getMisses()));
+            placeholders.put("hit-rate", String.valueOf(lookups > 0 ? responseCache.getHits() * 100 / lookups : 0));
+            placeholders.put("evictions", String.valueOf(responseCache.getEvictions()));
+            sender.sendMessage(configManager.getMessage("stats-response-cache", placeholders));
+        }
+        SemanticCache semanticCache = plugin.getSemanticCache();
+        if (configManager.isSemanticCacheEnabled()) {
+            long lookups = semanticCache.getHits() + semanticCache.getMisses();
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("entries", String.valueOf(semanticCache.size()));
+            placeholders.put("size", String.valueOf(semanticCache.getMemoryBytes() / 1024));
+            placeholders.put("hits", String.valueOf(semanticCache.getHits()));
+            placeholders.put("misses", String.valueOf(semanticCache.getMisses()));
+            placeholders.put("hit-rate", String.valueOf(lookups > 0 ? semanticCache.getHits() * 100 / lookups : 0));
+            placeholders.put("lookup", String.valueOf(semanticCache.getAverageLookupMillis()));
+            placeholders.put("search", String.valueOf(semanticCache.getAverageSearchMicros()));
+            sender.sendMessage(configManager.getMessage("stats-semantic-cache", placeholders));
+        }
+        return true;
+    }
+
     private boolean handleToggle(CommandSender sender, String[] args) {
         if (!sender.hasPermission("ollamachat.toggle")) {
             sender.sendMessage(ChatColor.RED + configManager.getMessage("no-permission", null));
@@ -590,43 +846,39 @@ public class OllamaChatCommand implements CommandExecutor {
             }
         }
 
-        // Search asynchronously.
-        SchedulerUtils.runAsync(plugin, () -> {
-            try {
-                sender.sendMessage(configManager.getMessage("websearch-starting",
-                        Map.of("query", query)));
-
-                com.ollamachat.search.WebSearchService webSearchService = plugin.getWebSearchService();
-                java.util.List<com.ollamachat.search.WebSearchService.SearchResult> results =
-                        webSearchService.search(query, configManager.getWebSearchResultCount()).join();
-
-                if (results.isEmpty()) {
-                    sender.sendMessage(configManager.getMessage("websearch-no-results",
-                            Map.of("query", query)));
-                    return;
-                }
+        // Search asynchronously; the results are shown from the thread that receives them.
+        sender.sendMessage(configManager.getMessage("websearch-starting",
+                Map.of("query", query)));
 
-                sender.sendMessage(configManager.getMessage("websearch-completed",
-                        Map.of("count", String.valueOf(results.size()))));
+        com.ollamachat.search.WebSearchService webSearchService = plugin.getWebSearchService();
+        webSearchService.search(query, configManager.getWebSearchResultCount()).thenAccept(results -> {
+            if (results.isEmpty()) {
+                sender.sendMessage(configManager.getMessage("websearch-no-results",
+                        Map.of("query", query)));
+                return;
+            }
 
-                // Show search results
-                for (int i = 0; i < results.size(); i++) {
-                    com.ollamachat.search.WebSearchService.SearchResult result = results.get(i);
-                    Map<String, String> placeholders = new HashMap<>();
-                    placeholders.put("index", String.valueOf(i + 1));
-                    placeholders.put("title", result.getTitle());
-                    placeholders.put("site", result.getSiteName());
-                    placeholders.put("snippet", result.getSnippet());
-                    placeholders.put("url", result.getUrl());
+            sender.sendMessage(configManager.getMessage("websearch-completed",
+                    Map.of("count", String.valueOf(results.size()))));
 
-                    sender.sendMessage(configManager.getMessage("search-result-format", placeholders));
-                }
+            // Show search results
+            for (int i = 0; i < results.size(); i++) {
+                com.ollamachat.search.WebSearchService.SearchResult result = results.get(i);
+                Map<String, String> placeholders = new HashMap<>();
+                placeholders.put("index", String.valueOf(i + 1));
+                placeholders.put("title", result.getTitle());
+                placeholders.put("site", result.getSiteName());
+                placeholders.put("snippet", result.getSnippet());
+                placeholders.put("url", result.getUrl());
 
-            } catch (Exception e) {
-                sender.sendMessage(ChatColor.RED + configManager.getMessage("websearch-error",
-                        Map.of("error", e.getMessage())));
-                plugin.getLogger().severe("Search error: " + e.getMessage());
+                sender.sendMessage(configManager.getMessage("search-result-format", placeholders));
             }
+        }).exceptionally(e -> {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            sender.sendMessage(ChatColor.RED + configManager.getMessage("websearch-error",
+                    Map.of("error", String.valueOf(cause.getMessage()))));
+            plugin.getLogger().severe("Search error: " + cause.getMessage());
+            return null;
         });
 
         return true;
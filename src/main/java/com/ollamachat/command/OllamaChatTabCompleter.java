@@ -68,6 +68,12 @@ public class OllamaChatTabCompleter implements TabCompleter {
                         sender.hasPermission("ollamachat.search.keywords")) {
                     subCommands.add("search");
                 }
+                if (sender.hasPermission("ollamachat.stats")) {
+                    subCommands.add("stats");
+                }
+                if (sender.hasPermission("ollamachat.quota") || sender.hasPermission("ollamachat.quota.others")) {
+                    subCommands.add("quota");
+                }
                 return filterCompletions(subCommands, args[0]);
             }
             else if (args.length == 2 && args[0].equalsIgnoreCase("help")) {
@@ -80,8 +86,22 @@ public class OllamaChatTabCompleter implements TabCompleter {
                 helpTopics.add("suggests");
                 helpTopics.add("suggests-presets");
                 helpTopics.add("search");
+                helpTopics.add("stats");
+                helpTopics.add("quota");
                 return filterCompletions(helpTopics, args[1]);
             }
+            else if (args.length == 2 && args[0].equalsIgnoreCase("stats") && sender.hasPermission("ollamachat.stats")) {
+                List<String> statsViews = new ArrayList<>();
+                statsViews.add("generation");
+                return filterCompletions(statsViews, args[1]);
+            }
+            else if (args.length == 2 && args[0].equalsIgnoreCase("quota") && sender.hasPermission("ollamachat.quota.others")) {
+                List<String> playerNames = new ArrayList<>();
+                for (Player player : plugin.getServer().getOnlinePlayers()) {
+                    playerNames.add(player.getName());
+                }
+                return filterCompletions(playerNames, args[1]);
+            }
             else if (args.length == 2 && args[0].equalsIgnoreCase("toggle") && sender.hasPermission("ollamachat.toggle")) {
                 // Toggle command - AI name completion
                 List<String> aiNames = new ArrayList<>();
@@ -241,6 +261,9 @@ public class OllamaChatTabCompleter implements TabCompleter {
                 List<String> aiNames = new ArrayList<>();
                 aiNames.add("ollama");
                 aiNames.addAll(configManager.getOtherAIConfigs().keySet());
+                if (sender instanceof Player) {
+                    aiNames.add("cancel");
+                }
                 return filterCompletions(aiNames, args[0]);
             }
         }
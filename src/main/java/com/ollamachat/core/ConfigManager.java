@@ -3,6 +3,8 @@ package com.ollamachat.core;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.ollamachat.ai.ApiFormat;
+import com.ollamachat.ai.RequestPriority;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
@@ -27,13 +29,38 @@ public class ConfigManager {
     private String currentLanguage;
 
     private String ollamaApiUrl;
+    private List<String> ollamaApiUrls;
     private String ollamaModel;
+    private boolean ollamaChatMode;
+    private AIConfig ollamaAIConfig;
     private List<String> triggerPrefixes;
     private int maxResponseLength;
     private Map<String, AIConfig> otherAIConfigs;
     private boolean ollamaEnabled;
     private Map<String, Boolean> otherAIEnabled;
     private boolean streamingEnabled;
+    private int streamFlushInterval;
+    private int streamMinChunk;
+    private int streamMaxChunk;
+    private boolean cancelOnNewPrompt;
+    private boolean contextReuseEnabled;
+    private int contextReuseMaxEntries;
+    private int contextReuseExpireMinutes;
+    private boolean contextReusePersist;
+    private boolean responseCacheEnabled;
+    private int responseCacheMaxEntries;
+    private int responseCacheMaxSizeKb;
+    private int responseCacheTtlMinutes;
+    private List<String> responseCacheModels;
+    private boolean responseCachePersist;
+    private boolean semanticCacheEnabled;
+    private String semanticCacheModel;
+    private double semanticCacheThreshold;
+    private int semanticCacheMaxEntries;
+    private boolean semanticCacheQuantize;
+    private int semanticCacheTtlMinutes;
+    private int semanticCacheTimeout;
+    private boolean semanticCachePersist;
     private String defaultPrompt;
     private Map<String, String> prompts;
     private Map<UUID, Map<String, String>> selectedConversations;
@@ -45,6 +72,8 @@ public class ConfigManager {
     private List<String> suggestedResponsePresets;
     private Map<String, Boolean> suggestedResponseModelToggles;
     private int suggestedResponseCooldown;
+    private int suggestedResponseTimeout;
+    private boolean suggestedResponseShowAsReady;
     private boolean suggestedResponsePresetsEnabled;
 
     private boolean webSearchEnabled;
@@ -68,6 +97,71 @@ public class ConfigManager {
     private String braveUiLang;
     private String braveSafeSearch;
 
+    private int httpConnectTimeout;
+    private int httpRequestTimeout;
+    private boolean http2Enabled;
+    private int httpExecutorThreads;
+    private int httpMaxConnectionsPerHost;
+    private String workerMode;
+    private int workerPlatformThreads;
+    private int workerPinnedThreshold;
+    private boolean logStageTimings;
+
+    private int ollamaMaxConcurrent;
+    private int defaultMaxConcurrent;
+    private int requestQueueMaxSize;
+    private int requestQueueMaxPerPlayer;
+    private boolean requestCoalescingEnabled;
+    private int reservedSlots;
+    private final Map<RequestPriority, Integer> priorityWeights = new EnumMap<>(RequestPriority.class);
+    private String loadBalancingStrategy;
+    private boolean loadBalancingSticky;
+    private int loadBalancingFailureThreshold;
+    private int loadBalancingFailureCooldown;
+    private boolean circuitBreakerEnabled;
+    private int circuitBreakerFailureThreshold;
+    private int circuitBreakerSlowCallThreshold;
+    private int circuitBreakerOpenDuration;
+    private int circuitBreakerHalfOpenRequests;
+    private boolean fallbackEnabled;
+    private Map<String, List<String>> fallbackChains;
+    private boolean hedgingEnabled;
+    private int hedgingDelay;
+    private int hedgingMaxPercent;
+    private Map<String, List<String>> hedgingSecondaries;
+    private boolean prometheusEnabled;
+    private String prometheusBindAddress;
+    private int prometheusPort;
+    private boolean jmxEnabled;
+    private boolean rateLimitEnabled;
+    private RateLimitGroup rateLimitDefaultGroup;
+    private List<RateLimitGroup> rateLimitGroups;
+    private Map<String, Integer> rateLimitBackends;
+    private boolean contextBudgetEnabled;
+    private String contextBudgetTokenizer;
+    private int contextBudgetContextTokens;
+    private int contextBudgetResponseTokens;
+    private Map<String, Integer> contextBudgetBackends;
+    private boolean summaryEnabled;
+    private String summaryAiName;
+    private String summaryModel;
+    private int summaryKeepRecent;
+    private int summaryMinExchanges;
+    private int summaryMaxExchanges;
+    private int summaryMaxWords;
+    private int summaryInterval;
+    private String summaryPrompt;
+    private String summaryMemoryTemplate;
+
+    private boolean healthCheckEnabled;
+    private int healthCheckInterval;
+    private int healthCheckTimeout;
+    private boolean healthCheckFailFast;
+    private int healthCheckFailureThreshold;
+    private boolean warmUpEnabled;
+    private String keepAliveDefault;
+    private Map<String, String> keepAliveModels;
+
     public enum SearchEngine {
         BOCHA("bocha"),
         BRAVE("brave");
@@ -94,12 +188,36 @@ public class ConfigManager {
 
     private static final String DEFAULT_OLLAMA_API_URL = "http://localhost:11434/api/generate";
     private static final String DEFAULT_OLLAMA_MODEL = "llama3";
+    private static final boolean DEFAULT_OLLAMA_CHAT_MODE = true;
     private static final List<String> DEFAULT_TRIGGER_PREFIXES = Arrays.asList("@bot", "@ai");
     private static final int DEFAULT_MAX_RESPONSE_LENGTH = 500;
     private static final int DEFAULT_MAX_HISTORY = 5;
     private static final int DEFAULT_SUGGESTED_RESPONSE_COUNT = 3;
     private static final int DEFAULT_SUGGESTED_RESPONSE_COOLDOWN = 10;
+    private static final int DEFAULT_SUGGESTED_RESPONSE_TIMEOUT = 20;
+    private static final boolean DEFAULT_SUGGESTED_RESPONSE_SHOW_AS_READY = true;
     private static final boolean DEFAULT_STREAMING_ENABLED = true;
+    private static final int DEFAULT_STREAM_FLUSH_INTERVAL = 500;
+    private static final int DEFAULT_STREAM_MIN_CHUNK = 10;
+    private static final int DEFAULT_STREAM_MAX_CHUNK = 200;
+    private static final boolean DEFAULT_CANCEL_ON_NEW_PROMPT = false;
+    private static final boolean DEFAULT_CONTEXT_REUSE_ENABLED = false;
+    private static final int DEFAULT_CONTEXT_REUSE_MAX_ENTRIES = 500;
+    private static final int DEFAULT_CONTEXT_REUSE_EXPIRE_MINUTES = 60;
+    private static final boolean DEFAULT_CONTEXT_REUSE_PERSIST = false;
+    private static final boolean DEFAULT_RESPONSE_CACHE_ENABLED = false;
+    private static final int DEFAULT_RESPONSE_CACHE_MAX_ENTRIES = 1000;
+    private static final int DEFAULT_RESPONSE_CACHE_MAX_SIZE_KB = 2048;
+    private static final int DEFAULT_RESPONSE_CACHE_TTL_MINUTES = 360;
+    private static final boolean DEFAULT_RESPONSE_CACHE_PERSIST = false;
+    private static final boolean DEFAULT_SEMANTIC_CACHE_ENABLED = false;
+    private static final String DEFAULT_SEMANTIC_CACHE_MODEL = "nomic-embed-text";
+    private static final double DEFAULT_SEMANTIC_CACHE_THRESHOLD = 0.92;
+    private static final int DEFAULT_SEMANTIC_CACHE_MAX_ENTRIES = 2000;
+    private static final boolean DEFAULT_SEMANTIC_CACHE_QUANTIZE = true;
+    private static final int DEFAULT_SEMANTIC_CACHE_TTL_MINUTES = 360;
+    private static final int DEFAULT_SEMANTIC_CACHE_TIMEOUT = 2000;
+    private static final boolean DEFAULT_SEMANTIC_CACHE_PERSIST = false;
     private static final boolean DEFAULT_OLLAMA_ENABLED = true;
     private static final boolean DEFAULT_SUGGESTED_RESPONSES_ENABLED = true;
     private static final boolean DEFAULT_SUGGESTED_RESPONSE_PRESETS_ENABLED = true;
@@ -126,6 +244,71 @@ public class ConfigManager {
     private static final String DEFAULT_BRAVE_UI_LANG = "en";
     private static final String DEFAULT_BRAVE_SAFE_SEARCH = "moderate";
 
+    private static final int DEFAULT_HTTP_CONNECT_TIMEOUT = 5000;
+    private static final int DEFAULT_HTTP_REQUEST_TIMEOUT = 0;
+    private static final boolean DEFAULT_HTTP2_ENABLED = true;
+    private static final int DEFAULT_HTTP_EXECUTOR_THREADS = 4;
+    private static final int DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST = 16;
+    private static final String DEFAULT_WORKER_MODE = "auto";
+    private static final int DEFAULT_WORKER_PLATFORM_THREADS = 16;
+    private static final int DEFAULT_WORKER_PINNED_THRESHOLD = 20;
+    private static final boolean DEFAULT_LOG_STAGE_TIMINGS = false;
+
+    private static final int DEFAULT_OLLAMA_MAX_CONCURRENT = 2;
+    private static final int DEFAULT_MAX_CONCURRENT = 4;
+    private static final int DEFAULT_REQUEST_QUEUE_MAX_SIZE = 32;
+    private static final int DEFAULT_REQUEST_QUEUE_MAX_PER_PLAYER = 3;
+    private static final boolean DEFAULT_REQUEST_COALESCING = true;
+    private static final int DEFAULT_RESERVED_SLOTS = 1;
+    // Indexed by RequestPriority ordinal
+    private static final int[] DEFAULT_PRIORITY_WEIGHTS = {8, 4, 2, 1};
+    private static final String DEFAULT_LOAD_BALANCING_STRATEGY = "least-outstanding";
+    private static final boolean DEFAULT_LOAD_BALANCING_STICKY = true;
+    private static final int DEFAULT_LOAD_BALANCING_FAILURE_THRESHOLD = 3;
+    private static final int DEFAULT_LOAD_BALANCING_FAILURE_COOLDOWN = 30;
+    private static final boolean DEFAULT_CIRCUIT_BREAKER_ENABLED = true;
+    private static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+    private static final int DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_THRESHOLD = 60000;
+    private static final int DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = 30;
+    private static final int DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_REQUESTS = 1;
+    private static final boolean DEFAULT_FALLBACK_ENABLED = false;
+    private static final boolean DEFAULT_HEDGING_ENABLED = false;
+    private static final int DEFAULT_HEDGING_DELAY = 0;
+    private static final int DEFAULT_HEDGING_MAX_PERCENT = 10;
+    private static final boolean DEFAULT_PROMETHEUS_ENABLED = false;
+    private static final String DEFAULT_PROMETHEUS_BIND_ADDRESS = "127.0.0.1";
+    private static final int DEFAULT_PROMETHEUS_PORT = 9464;
+    private static final boolean DEFAULT_JMX_ENABLED = false;
+    private static final boolean DEFAULT_RATE_LIMIT_ENABLED = false;
+    private static final int DEFAULT_RATE_LIMIT_REQUESTS_PER_MINUTE = 6;
+    private static final int DEFAULT_RATE_LIMIT_TOKENS_PER_DAY = 20000;
+    private static final int DEFAULT_RATE_LIMIT_SHARED_REQUESTS_PER_MINUTE = 0;
+    private static final boolean DEFAULT_CONTEXT_BUDGET_ENABLED = false;
+    private static final String DEFAULT_CONTEXT_BUDGET_TOKENIZER = "bpe";
+    private static final int DEFAULT_CONTEXT_BUDGET_CONTEXT_TOKENS = 4096;
+    private static final int DEFAULT_CONTEXT_BUDGET_RESPONSE_TOKENS = 512;
+    private static final boolean DEFAULT_SUMMARY_ENABLED = false;
+    private static final String DEFAULT_SUMMARY_AI_NAME = "ollama";
+    private static final String DEFAULT_SUMMARY_MODEL = "";
+    private static final int DEFAULT_SUMMARY_KEEP_RECENT = 4;
+    private static final int DEFAULT_SUMMARY_MIN_EXCHANGES = 4;
+    private static final int DEFAULT_SUMMARY_MAX_EXCHANGES = 20;
+    private static final int DEFAULT_SUMMARY_MAX_WORDS = 150;
+    private static final int DEFAULT_SUMMARY_INTERVAL = 30;
+    private static final String DEFAULT_SUMMARY_PROMPT = "Update the memory of a chat between a Minecraft player and an AI. " +
+            "Keep names, facts, preferences, decisions and open questions; leave out greetings and small talk. " +
+            "Write it in the language of the chat, in at most {words} words, and reply with the memory only.\n\n" +
+            "Memory so far:\n{summary}\n\nNew messages:\n{history}";
+    private static final String DEFAULT_SUMMARY_MEMORY_TEMPLATE = "Summary of the earlier conversation:\n{summary}";
+
+    private static final boolean DEFAULT_HEALTH_CHECK_ENABLED = true;
+    private static final int DEFAULT_HEALTH_CHECK_INTERVAL = 60;
+    private static final int DEFAULT_HEALTH_CHECK_TIMEOUT = 3000;
+    private static final boolean DEFAULT_HEALTH_CHECK_FAIL_FAST = true;
+    private static final int DEFAULT_HEALTH_CHECK_FAILURE_THRESHOLD = 3;
+    private static final boolean DEFAULT_WARM_UP_ENABLED = true;
+    private static final String DEFAULT_KEEP_ALIVE = "";
+
     private static final String DEFAULT_WEB_SEARCH_PROMPT_TEMPLATE =
             "Based on the following search results, please answer the user's question:\n\n" +
                     "{search_results}\n\n" +
@@ -167,17 +350,43 @@ public class ConfigManager {
         config.addDefault("language", "en_us");
         config.addDefault("ollama-enabled", DEFAULT_OLLAMA_ENABLED);
         config.addDefault("ollama-api-url", DEFAULT_OLLAMA_API_URL);
+        config.addDefault("ollama-api-urls", new ArrayList<String>());
         config.addDefault("model", DEFAULT_OLLAMA_MODEL);
+        config.addDefault("ollama-chat-mode", DEFAULT_OLLAMA_CHAT_MODE);
         config.addDefault("max-history", DEFAULT_MAX_HISTORY);
         config.addDefault("max-response-length", DEFAULT_MAX_RESPONSE_LENGTH);
         config.addDefault("trigger-prefixes", DEFAULT_TRIGGER_PREFIXES);
 
         config.addDefault("stream-settings.enabled", DEFAULT_STREAMING_ENABLED);
+        config.addDefault("stream-settings.flush-interval", DEFAULT_STREAM_FLUSH_INTERVAL);
+        config.addDefault("stream-settings.min-chunk", DEFAULT_STREAM_MIN_CHUNK);
+        config.addDefault("stream-settings.max-chunk", DEFAULT_STREAM_MAX_CHUNK);
+        config.addDefault("generation.cancel-on-new-prompt", DEFAULT_CANCEL_ON_NEW_PROMPT);
+        config.addDefault("context-reuse.enabled", DEFAULT_CONTEXT_REUSE_ENABLED);
+        config.addDefault("context-reuse.max-entries", DEFAULT_CONTEXT_REUSE_MAX_ENTRIES);
+        config.addDefault("context-reuse.expire-minutes", DEFAULT_CONTEXT_REUSE_EXPIRE_MINUTES);
+        config.addDefault("context-reuse.persist", DEFAULT_CONTEXT_REUSE_PERSIST);
+        config.addDefault("response-cache.enabled", DEFAULT_RESPONSE_CACHE_ENABLED);
+        config.addDefault("response-cache.max-entries", DEFAULT_RESPONSE_CACHE_MAX_ENTRIES);
+        config.addDefault("response-cache.max-size-kb", DEFAULT_RESPONSE_CACHE_MAX_SIZE_KB);
+        config.addDefault("response-cache.ttl-minutes", DEFAULT_RESPONSE_CACHE_TTL_MINUTES);
+        config.addDefault("response-cache.models", new ArrayList<String>());
+        config.addDefault("response-cache.persist", DEFAULT_RESPONSE_CACHE_PERSIST);
+        config.addDefault("semantic-cache.enabled", DEFAULT_SEMANTIC_CACHE_ENABLED);
+        config.addDefault("semantic-cache.embedding-model", DEFAULT_SEMANTIC_CACHE_MODEL);
+        config.addDefault("semantic-cache.similarity-threshold", DEFAULT_SEMANTIC_CACHE_THRESHOLD);
+        config.addDefault("semantic-cache.max-entries", DEFAULT_SEMANTIC_CACHE_MAX_ENTRIES);
+        config.addDefault("semantic-cache.quantize", DEFAULT_SEMANTIC_CACHE_QUANTIZE);
+        config.addDefault("semantic-cache.ttl-minutes", DEFAULT_SEMANTIC_CACHE_TTL_MINUTES);
+        config.addDefault("semantic-cache.timeout", DEFAULT_SEMANTIC_CACHE_TIMEOUT);
+        config.addDefault("semantic-cache.persist", DEFAULT_SEMANTIC_CACHE_PERSIST);
 
         config.addDefault("suggested-response-models", Arrays.asList(DEFAULT_OLLAMA_MODEL));
         config.addDefault("suggested-responses-enabled", DEFAULT_SUGGESTED_RESPONSES_ENABLED);
         config.addDefault("suggested-response-count", DEFAULT_SUGGESTED_RESPONSE_COUNT);
         config.addDefault("suggested-response-cooldown", DEFAULT_SUGGESTED_RESPONSE_COOLDOWN);
+        config.addDefault("suggested-response-timeout", DEFAULT_SUGGESTED_RESPONSE_TIMEOUT);
+        config.addDefault("suggested-response-show-as-ready", DEFAULT_SUGGESTED_RESPONSE_SHOW_AS_READY);
         config.addDefault("suggested-response-presets-enabled", DEFAULT_SUGGESTED_RESPONSE_PRESETS_ENABLED);
         config.addDefault("suggested-response-presets",
                 Arrays.asList("I see what you mean.", "That's interesting!", "Tell me more about that."));
@@ -203,6 +412,74 @@ public class ConfigManager {
         config.addDefault("web-search.brave.ui-lang", DEFAULT_BRAVE_UI_LANG);
         config.addDefault("web-search.brave.safe-search", DEFAULT_BRAVE_SAFE_SEARCH);
 
+        config.addDefault("http.connect-timeout", DEFAULT_HTTP_CONNECT_TIMEOUT);
+        config.addDefault("http.request-timeout", DEFAULT_HTTP_REQUEST_TIMEOUT);
+        config.addDefault("http.http2", DEFAULT_HTTP2_ENABLED);
+        config.addDefault("http.executor-threads", DEFAULT_HTTP_EXECUTOR_THREADS);
+        config.addDefault("http.max-connections-per-host", DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST);
+        config.addDefault("workers.mode", DEFAULT_WORKER_MODE);
+        config.addDefault("workers.platform-threads", DEFAULT_WORKER_PLATFORM_THREADS);
+        config.addDefault("workers.pinned-threshold", DEFAULT_WORKER_PINNED_THRESHOLD);
+        config.addDefault("workers.log-stage-timings", DEFAULT_LOG_STAGE_TIMINGS);
+
+        config.addDefault("request-queue.ollama-max-concurrent", DEFAULT_OLLAMA_MAX_CONCURRENT);
+        config.addDefault("request-queue.default-max-concurrent", DEFAULT_MAX_CONCURRENT);
+        config.addDefault("request-queue.max-size", DEFAULT_REQUEST_QUEUE_MAX_SIZE);
+        config.addDefault("request-queue.max-per-player", DEFAULT_REQUEST_QUEUE_MAX_PER_PLAYER);
+        config.addDefault("request-queue.coalesce-identical", DEFAULT_REQUEST_COALESCING);
+        config.addDefault("request-queue.reserved-slots", DEFAULT_RESERVED_SLOTS);
+        for (RequestPriority priority : RequestPriority.values()) {
+            config.addDefault("request-queue.priority-weights." + priority.getConfigName(),
+                    DEFAULT_PRIORITY_WEIGHTS[priority.ordinal()]);
+        }
+
+        config.addDefault("load-balancing.strategy", DEFAULT_LOAD_BALANCING_STRATEGY);
+        config.addDefault("load-balancing.sticky-sessions", DEFAULT_LOAD_BALANCING_STICKY);
+        config.addDefault("load-balancing.failure-threshold", DEFAULT_LOAD_BALANCING_FAILURE_THRESHOLD);
+        config.addDefault("load-balancing.failure-cooldown", DEFAULT_LOAD_BALANCING_FAILURE_COOLDOWN);
+
+        config.addDefault("circuit-breaker.enabled", DEFAULT_CIRCUIT_BREAKER_ENABLED);
+        config.addDefault("circuit-breaker.failure-threshold", DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+        config.addDefault("circuit-breaker.slow-call-threshold", DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_THRESHOLD);
+        config.addDefault("circuit-breaker.open-duration", DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION);
+        config.addDefault("circuit-breaker.half-open-requests", DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_REQUESTS);
+        config.addDefault("fallback.enabled", DEFAULT_FALLBACK_ENABLED);
+        config.addDefault("fallback.chains", new ArrayList<String>());
+        config.addDefault("hedging.enabled", DEFAULT_HEDGING_ENABLED);
+        config.addDefault("hedging.delay", DEFAULT_HEDGING_DELAY);
+        config.addDefault("hedging.max-percent", DEFAULT_HEDGING_MAX_PERCENT);
+        config.addDefault("hedging.secondaries", new ArrayList<String>());
+        config.addDefault("metrics-export.prometheus.enabled", DEFAULT_PROMETHEUS_ENABLED);
+        config.addDefault("metrics-export.prometheus.bind-address", DEFAULT_PROMETHEUS_BIND_ADDRESS);
+        config.addDefault("metrics-export.prometheus.port", DEFAULT_PROMETHEUS_PORT);
+        config.addDefault("metrics-export.jmx.enabled", DEFAULT_JMX_ENABLED);
+        config.addDefault("rate-limit.enabled", DEFAULT_RATE_LIMIT_ENABLED);
+        config.addDefault("rate-limit.requests-per-minute", DEFAULT_RATE_LIMIT_REQUESTS_PER_MINUTE);
+        config.addDefault("rate-limit.tokens-per-day", DEFAULT_RATE_LIMIT_TOKENS_PER_DAY);
+        config.addDefault("rate-limit.shared-requests-per-minute", DEFAULT_RATE_LIMIT_SHARED_REQUESTS_PER_MINUTE);
+        config.addDefault("context-budget.enabled", DEFAULT_CONTEXT_BUDGET_ENABLED);
+        config.addDefault("context-budget.tokenizer", DEFAULT_CONTEXT_BUDGET_TOKENIZER);
+        config.addDefault("context-budget.context-tokens", DEFAULT_CONTEXT_BUDGET_CONTEXT_TOKENS);
+        config.addDefault("context-budget.response-tokens", DEFAULT_CONTEXT_BUDGET_RESPONSE_TOKENS);
+        config.addDefault("conversation-summary.enabled", DEFAULT_SUMMARY_ENABLED);
+        config.addDefault("conversation-summary.ai-name", DEFAULT_SUMMARY_AI_NAME);
+        config.addDefault("conversation-summary.model", DEFAULT_SUMMARY_MODEL);
+        config.addDefault("conversation-summary.keep-recent", DEFAULT_SUMMARY_KEEP_RECENT);
+        config.addDefault("conversation-summary.min-exchanges", DEFAULT_SUMMARY_MIN_EXCHANGES);
+        config.addDefault("conversation-summary.max-exchanges", DEFAULT_SUMMARY_MAX_EXCHANGES);
+        config.addDefault("conversation-summary.max-words", DEFAULT_SUMMARY_MAX_WORDS);
+        config.addDefault("conversation-summary.interval", DEFAULT_SUMMARY_INTERVAL);
+        config.addDefault("conversation-summary.prompt", DEFAULT_SUMMARY_PROMPT);
+        config.addDefault("conversation-summary.memory-template", DEFAULT_SUMMARY_MEMORY_TEMPLATE);
+
+        config.addDefault("health-check.enabled", DEFAULT_HEALTH_CHECK_ENABLED);
+        config.addDefault("health-check.interval", DEFAULT_HEALTH_CHECK_INTERVAL);
+        config.addDefault("health-check.timeout", DEFAULT_HEALTH_CHECK_TIMEOUT);
+        config.addDefault("health-check.fail-fast", DEFAULT_HEALTH_CHECK_FAIL_FAST);
+        config.addDefault("health-check.failure-threshold", DEFAULT_HEALTH_CHECK_FAILURE_THRESHOLD);
+        config.addDefault("health-check.warm-up", DEFAULT_WARM_UP_ENABLED);
+        config.addDefault("keep-alive.default", DEFAULT_KEEP_ALIVE);
+
         config.addDefault("database.type", "sqlite");
         config.addDefault("database.mysql.host", "localhost");
         config.addDefault("database.mysql.port", 3306);
@@ -237,6 +514,31 @@ public class ConfigManager {
             needsSave = true;
         }
 
+        needsSave |= checkAndAddConfig(config, "ollama-chat-mode", DEFAULT_OLLAMA_CHAT_MODE);
+        needsSave |= checkAndAddConfig(config, "ollama-api-urls", new ArrayList<String>());
+        needsSave |= checkAndAddConfig(config, "stream-settings.flush-interval", DEFAULT_STREAM_FLUSH_INTERVAL);
+        needsSave |= checkAndAddConfig(config, "stream-settings.min-chunk", DEFAULT_STREAM_MIN_CHUNK);
+        needsSave |= checkAndAddConfig(config, "stream-settings.max-chunk", DEFAULT_STREAM_MAX_CHUNK);
+        needsSave |= checkAndAddConfig(config, "generation.cancel-on-new-prompt", DEFAULT_CANCEL_ON_NEW_PROMPT);
+        needsSave |= checkAndAddConfig(config, "context-reuse.enabled", DEFAULT_CONTEXT_REUSE_ENABLED);
+        needsSave |= checkAndAddConfig(config, "context-reuse.max-entries", DEFAULT_CONTEXT_REUSE_MAX_ENTRIES);
+        needsSave |= checkAndAddConfig(config, "context-reuse.expire-minutes", DEFAULT_CONTEXT_REUSE_EXPIRE_MINUTES);
+        needsSave |= checkAndAddConfig(config, "context-reuse.persist", DEFAULT_CONTEXT_REUSE_PERSIST);
+        needsSave |= checkAndAddConfig(config, "response-cache.enabled", DEFAULT_RESPONSE_CACHE_ENABLED);
+        needsSave |= checkAndAddConfig(config, "response-cache.max-entries", DEFAULT_RESPONSE_CACHE_MAX_ENTRIES);
+        needsSave |= checkAndAddConfig(config, "response-cache.max-size-kb", DEFAULT_RESPONSE_CACHE_MAX_SIZE_KB);
+        needsSave |= checkAndAddConfig(config, "response-cache.ttl-minutes", DEFAULT_RESPONSE_CACHE_TTL_MINUTES);
+        needsSave |= checkAndAddConfig(config, "response-cache.models", new ArrayList<String>());
+        needsSave |= checkAndAddConfig(config, "response-cache.persist", DEFAULT_RESPONSE_CACHE_PERSIST);
+        needsSave |= checkAndAddConfig(config, "semantic-cache.enabled", DEFAULT_SEMANTIC_CACHE_ENABLED);
+        needsSave |= checkAndAddConfig(config, "semantic-cache.embedding-model", DEFAULT_SEMANTIC_CACHE_MODEL);
+        needsSave |= checkAndAddConfig(config, "semantic-cache.similarity-threshold", DEFAULT_SEMANTIC_CACHE_THRESHOLD);
+        needsSave |= checkAndAddConfig(config, "semantic-cache.max-entries", DEFAULT_SEMANTIC_CACHE_MAX_ENTRIES);
+        needsSave |= checkAndAddConfig(config, "semantic-cache.quantize", DEFAULT_SEMANTIC_CACHE_QUANTIZE);
+        needsSave |= checkAndAddConfig(config, "semantic-cache.ttl-minutes", DEFAULT_SEMANTIC_CACHE_TTL_MINUTES);
+        needsSave |= checkAndAddConfig(config, "semantic-cache.timeout", DEFAULT_SEMANTIC_CACHE_TIMEOUT);
+        needsSave |= checkAndAddConfig(config, "semantic-cache.persist", DEFAULT_SEMANTIC_CACHE_PERSIST);
+
         needsSave |= checkAndAddConfig(config, "web-search.enabled", DEFAULT_WEB_SEARCH_ENABLED);
         needsSave |= checkAndAddConfig(config, "web-search.auto-trigger", DEFAULT_WEB_SEARCH_AUTO_TRIGGER);
         needsSave |= checkAndAddConfig(config, "web-search.trigger-keywords", DEFAULT_WEB_SEARCH_TRIGGER_KEYWORDS);
@@ -258,6 +560,76 @@ public class ConfigManager {
         needsSave |= checkAndAddConfig(config, "web-search.brave.ui-lang", DEFAULT_BRAVE_UI_LANG);
         needsSave |= checkAndAddConfig(config, "web-search.brave.safe-search", DEFAULT_BRAVE_SAFE_SEARCH);
 
+        needsSave |= checkAndAddConfig(config, "http.connect-timeout", DEFAULT_HTTP_CONNECT_TIMEOUT);
+        needsSave |= checkAndAddConfig(config, "http.request-timeout", DEFAULT_HTTP_REQUEST_TIMEOUT);
+        needsSave |= checkAndAddConfig(config, "http.http2", DEFAULT_HTTP2_ENABLED);
+        needsSave |= checkAndAddConfig(config, "http.executor-threads", DEFAULT_HTTP_EXECUTOR_THREADS);
+        needsSave |= checkAndAddConfig(config, "http.max-connections-per-host", DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST);
+        needsSave |= checkAndAddConfig(config, "workers.mode", DEFAULT_WORKER_MODE);
+        needsSave |= checkAndAddConfig(config, "workers.platform-threads", DEFAULT_WORKER_PLATFORM_THREADS);
+        needsSave |= checkAndAddConfig(config, "workers.pinned-threshold", DEFAULT_WORKER_PINNED_THRESHOLD);
+        needsSave |= checkAndAddConfig(config, "workers.log-stage-timings", DEFAULT_LOG_STAGE_TIMINGS);
+
+        needsSave |= checkAndAddConfig(config, "suggested-response-timeout", DEFAULT_SUGGESTED_RESPONSE_TIMEOUT);
+        needsSave |= checkAndAddConfig(config, "suggested-response-show-as-ready", DEFAULT_SUGGESTED_RESPONSE_SHOW_AS_READY);
+        needsSave |= checkAndAddConfig(config, "request-queue.ollama-max-concurrent", DEFAULT_OLLAMA_MAX_CONCURRENT);
+        needsSave |= checkAndAddConfig(config, "request-queue.default-max-concurrent", DEFAULT_MAX_CONCURRENT);
+        needsSave |= checkAndAddConfig(config, "request-queue.max-size", DEFAULT_REQUEST_QUEUE_MAX_SIZE);
+        needsSave |= checkAndAddConfig(config, "request-queue.max-per-player", DEFAULT_REQUEST_QUEUE_MAX_PER_PLAYER);
+        needsSave |= checkAndAddConfig(config, "request-queue.coalesce-identical", DEFAULT_REQUEST_COALESCING);
+        needsSave |= checkAndAddConfig(config, "request-queue.reserved-slots", DEFAULT_RESERVED_SLOTS);
+        for (RequestPriority priority : RequestPriority.values()) {
+            needsSave |= checkAndAddConfig(config, "request-queue.priority-weights." + priority.getConfigName(),
+                    DEFAULT_PRIORITY_WEIGHTS[priority.ordinal()]);
+        }
+
+        needsSave |= checkAndAddConfig(config, "load-balancing.strategy", DEFAULT_LOAD_BALANCING_STRATEGY);
+        needsSave |= checkAndAddConfig(config, "load-balancing.sticky-sessions", DEFAULT_LOAD_BALANCING_STICKY);
+        needsSave |= checkAndAddConfig(config, "load-balancing.failure-threshold", DEFAULT_LOAD_BALANCING_FAILURE_THRESHOLD);
+        needsSave |= checkAndAddConfig(config, "load-balancing.failure-cooldown", DEFAULT_LOAD_BALANCING_FAILURE_COOLDOWN);
+
+        needsSave |= checkAndAddConfig(config, "circuit-breaker.enabled", DEFAULT_CIRCUIT_BREAKER_ENABLED);
+        needsSave |= checkAndAddConfig(config, "circuit-breaker.failure-threshold", DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+        needsSave |= checkAndAddConfig(config, "circuit-breaker.slow-call-threshold", DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_THRESHOLD);
+        needsSave |= checkAndAddConfig(config, "circuit-breaker.open-duration", DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION);
+        needsSave |= checkAndAddConfig(config, "circuit-breaker.half-open-requests", DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_REQUESTS);
+        needsSave |= checkAndAddConfig(config, "fallback.enabled", DEFAULT_FALLBACK_ENABLED);
+        needsSave |= checkAndAddConfig(config, "fallback.chains", new ArrayList<String>());
+        needsSave |= checkAndAddConfig(config, "hedging.enabled", DEFAULT_HEDGING_ENABLED);
+        needsSave |= checkAndAddConfig(config, "hedging.delay", DEFAULT_HEDGING_DELAY);
+        needsSave |= checkAndAddConfig(config, "hedging.max-percent", DEFAULT_HEDGING_MAX_PERCENT);
+        needsSave |= checkAndAddConfig(config, "hedging.secondaries", new ArrayList<String>());
+        needsSave |= checkAndAddConfig(config, "metrics-export.prometheus.enabled", DEFAULT_PROMETHEUS_ENABLED);
+        needsSave |= checkAndAddConfig(config, "metrics-export.prometheus.bind-address", DEFAULT_PROMETHEUS_BIND_ADDRESS);
+        needsSave |= checkAndAddConfig(config, "metrics-export.prometheus.port", DEFAULT_PROMETHEUS_PORT);
+        needsSave |= checkAndAddConfig(config, "metrics-export.jmx.enabled", DEFAULT_JMX_ENABLED);
+        needsSave |= checkAndAddConfig(config, "rate-limit.enabled", DEFAULT_RATE_LIMIT_ENABLED);
+        needsSave |= checkAndAddConfig(config, "rate-limit.requests-per-minute", DEFAULT_RATE_LIMIT_REQUESTS_PER_MINUTE);
+        needsSave |= checkAndAddConfig(config, "rate-limit.tokens-per-day", DEFAULT_RATE_LIMIT_TOKENS_PER_DAY);
+        needsSave |= checkAndAddConfig(config, "rate-limit.shared-requests-per-minute", DEFAULT_RATE_LIMIT_SHARED_REQUESTS_PER_MINUTE);
+        needsSave |= checkAndAddConfig(config, "context-budget.enabled", DEFAULT_CONTEXT_BUDGET_ENABLED);
+        needsSave |= checkAndAddConfig(config, "context-budget.tokenizer", DEFAULT_CONTEXT_BUDGET_TOKENIZER);
+        needsSave |= checkAndAddConfig(config, "context-budget.context-tokens", DEFAULT_CONTEXT_BUDGET_CONTEXT_TOKENS);
+        needsSave |= checkAndAddConfig(config, "context-budget.response-tokens", DEFAULT_CONTEXT_BUDGET_RESPONSE_TOKENS);
+        needsSave |= checkAndAddConfig(config, "conversation-summary.enabled", DEFAULT_SUMMARY_ENABLED);
+        needsSave |= checkAndAddConfig(config, "conversation-summary.ai-name", DEFAULT_SUMMARY_AI_NAME);
+        needsSave |= checkAndAddConfig(config, "conversation-summary.model", DEFAULT_SUMMARY_MODEL);
+        needsSave |= checkAndAddConfig(config, "conversation-summary.keep-recent", DEFAULT_SUMMARY_KEEP_RECENT);
+        needsSave |= checkAndAddConfig(config, "conversation-summary.min-exchanges", DEFAULT_SUMMARY_MIN_EXCHANGES);
+        needsSave |= checkAndAddConfig(config, "conversation-summary.max-exchanges", DEFAULT_SUMMARY_MAX_EXCHANGES);
+        needsSave |= checkAndAddConfig(config, "conversation-summary.max-words", DEFAULT_SUMMARY_MAX_WORDS);
+        needsSave |= checkAndAddConfig(config, "conversation-summary.interval", DEFAULT_SUMMARY_INTERVAL);
+        needsSave |= checkAndAddConfig(config, "conversation-summary.prompt", DEFAULT_SUMMARY_PROMPT);
+        needsSave |= checkAndAddConfig(config, "conversation-summary.memory-template", DEFAULT_SUMMARY_MEMORY_TEMPLATE);
+
+        needsSave |= checkAndAddConfig(config, "health-check.enabled", DEFAULT_HEALTH_CHECK_ENABLED);
+        needsSave |= checkAndAddConfig(config, "health-check.interval", DEFAULT_HEALTH_CHECK_INTERVAL);
+        needsSave |= checkAndAddConfig(config, "health-check.timeout", DEFAULT_HEALTH_CHECK_TIMEOUT);
+        needsSave |= checkAndAddConfig(config, "health-check.fail-fast", DEFAULT_HEALTH_CHECK_FAIL_FAST);
+        needsSave |= checkAndAddConfig(config, "health-check.failure-threshold", DEFAULT_HEALTH_CHECK_FAILURE_THRESHOLD);
+        needsSave |= checkAndAddConfig(config, "health-check.warm-up", DEFAULT_WARM_UP_ENABLED);
+        needsSave |= checkAndAddConfig(config, "keep-alive.default", DEFAULT_KEEP_ALIVE);
+
         if (needsSave) {
             plugin.saveConfig();
             plugin.getLogger().info("Config file has been updated with missing settings.");
@@ -283,7 +655,9 @@ public class ConfigManager {
         currentLanguage = config.getString("language", "en_us");
 
         ollamaApiUrl = config.getString("ollama-api-url", DEFAULT_OLLAMA_API_URL);
+        ollamaApiUrls = config.getStringList("ollama-api-urls");
         ollamaModel = config.getString("model", DEFAULT_OLLAMA_MODEL);
+        ollamaChatMode = config.getBoolean("ollama-chat-mode", DEFAULT_OLLAMA_CHAT_MODE);
         triggerPrefixes = config.getStringList("trigger-prefixes");
         if (triggerPrefixes.isEmpty()) {
             triggerPrefixes = DEFAULT_TRIGGER_PREFIXES;
@@ -293,6 +667,28 @@ public class ConfigManager {
         ollamaEnabled = config.getBoolean("ollama-enabled", DEFAULT_OLLAMA_ENABLED);
         maxHistory = config.getInt("max-history", DEFAULT_MAX_HISTORY);
         streamingEnabled = config.getBoolean("stream-settings.enabled", DEFAULT_STREAMING_ENABLED);
+        streamFlushInterval = config.getInt("stream-settings.flush-interval", DEFAULT_STREAM_FLUSH_INTERVAL);
+        streamMinChunk = config.getInt("stream-settings.min-chunk", DEFAULT_STREAM_MIN_CHUNK);
+        streamMaxChunk = config.getInt("stream-settings.max-chunk", DEFAULT_STREAM_MAX_CHUNK);
+        cancelOnNewPrompt = config.getBoolean("generation.cancel-on-new-prompt", DEFAULT_CANCEL_ON_NEW_PROMPT);
+        contextReuseEnabled = config.getBoolean("context-reuse.enabled", DEFAULT_CONTEXT_REUSE_ENABLED);
+        contextReuseMaxEntries = config.getInt("context-reuse.max-entries", DEFAULT_CONTEXT_REUSE_MAX_ENTRIES);
+        contextReuseExpireMinutes = config.getInt("context-reuse.expire-minutes", DEFAULT_CONTEXT_REUSE_EXPIRE_MINUTES);
+        contextReusePersist = config.getBoolean("context-reuse.persist", DEFAULT_CONTEXT_REUSE_PERSIST);
+        responseCacheEnabled = config.getBoolean("response-cache.enabled", DEFAULT_RESPONSE_CACHE_ENABLED);
+        responseCacheMaxEntries = config.getInt("response-cache.max-entries", DEFAULT_RESPONSE_CACHE_MAX_ENTRIES);
+        responseCacheMaxSizeKb = config.getInt("response-cache.max-size-kb", DEFAULT_RESPONSE_CACHE_MAX_SIZE_KB);
+        responseCacheTtlMinutes = config.getInt("response-cache.ttl-minutes", DEFAULT_RESPONSE_CACHE_TTL_MINUTES);
+        responseCacheModels = config.getStringList("response-cache.models");
+        responseCachePersist = config.getBoolean("response-cache.persist", DEFAULT_RESPONSE_CACHE_PERSIST);
+        semanticCacheEnabled = config.getBoolean("semantic-cache.enabled", DEFAULT_SEMANTIC_CACHE_ENABLED);
+        semanticCacheModel = config.getString("semantic-cache.embedding-model", DEFAULT_SEMANTIC_CACHE_MODEL);
+        semanticCacheThreshold = config.getDouble("semantic-cache.similarity-threshold", DEFAULT_SEMANTIC_CACHE_THRESHOLD);
+        semanticCacheMaxEntries = config.getInt("semantic-cache.max-entries", DEFAULT_SEMANTIC_CACHE_MAX_ENTRIES);
+        semanticCacheQuantize = config.getBoolean("semantic-cache.quantize", DEFAULT_SEMANTIC_CACHE_QUANTIZE);
+        semanticCacheTtlMinutes = config.getInt("semantic-cache.ttl-minutes", DEFAULT_SEMANTIC_CACHE_TTL_MINUTES);
+        semanticCacheTimeout = config.getInt("semantic-cache.timeout", DEFAULT_SEMANTIC_CACHE_TIMEOUT);
+        semanticCachePersist = config.getBoolean("semantic-cache.persist", DEFAULT_SEMANTIC_CACHE_PERSIST);
 
         defaultPrompt = config.getString("default-prompt", "");
         loadPrompts(config);
@@ -307,6 +703,8 @@ public class ConfigManager {
         suggestedResponsePrompt = config.getString("suggested-response-prompt", getDefaultSuggestedPrompt());
         suggestedResponsePresets = config.getStringList("suggested-response-presets");
         suggestedResponseCooldown = config.getInt("suggested-response-cooldown", DEFAULT_SUGGESTED_RESPONSE_COOLDOWN);
+        suggestedResponseTimeout = config.getInt("suggested-response-timeout", DEFAULT_SUGGESTED_RESPONSE_TIMEOUT);
+        suggestedResponseShowAsReady = config.getBoolean("suggested-response-show-as-ready", DEFAULT_SUGGESTED_RESPONSE_SHOW_AS_READY);
         suggestedResponsePresetsEnabled = config.getBoolean("suggested-response-presets-enabled", DEFAULT_SUGGESTED_RESPONSE_PRESETS_ENABLED);
 
         webSearchEnabled = config.getBoolean("web-search.enabled", DEFAULT_WEB_SEARCH_ENABLED);
@@ -336,6 +734,85 @@ public class ConfigManager {
         braveUiLang = config.getString("web-search.brave.ui-lang", DEFAULT_BRAVE_UI_LANG);
         braveSafeSearch = config.getString("web-search.brave.safe-search", DEFAULT_BRAVE_SAFE_SEARCH);
 
+        httpConnectTimeout = config.getInt("http.connect-timeout", DEFAULT_HTTP_CONNECT_TIMEOUT);
+        httpRequestTimeout = config.getInt("http.request-timeout", DEFAULT_HTTP_REQUEST_TIMEOUT);
+        http2Enabled = config.getBoolean("http.http2", DEFAULT_HTTP2_ENABLED);
+        httpExecutorThreads = config.getInt("http.executor-threads", DEFAULT_HTTP_EXECUTOR_THREADS);
+        httpMaxConnectionsPerHost = config.getInt("http.max-connections-per-host", DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST);
+        workerMode = config.getString("workers.mode", DEFAULT_WORKER_MODE);
+        workerPlatformThreads = config.getInt("workers.platform-threads", DEFAULT_WORKER_PLATFORM_THREADS);
+        workerPinnedThreshold = config.getInt("workers.pinned-threshold", DEFAULT_WORKER_PINNED_THRESHOLD);
+        logStageTimings = config.getBoolean("workers.log-stage-timings", DEFAULT_LOG_STAGE_TIMINGS);
+
+        ollamaMaxConcurrent = config.getInt("request-queue.ollama-max-concurrent", DEFAULT_OLLAMA_MAX_CONCURRENT);
+        ollamaAIConfig = buildOllamaAIConfig();
+        defaultMaxConcurrent = config.getInt("request-queue.default-max-concurrent", DEFAULT_MAX_CONCURRENT);
+        requestQueueMaxSize = config.getInt("request-queue.max-size", DEFAULT_REQUEST_QUEUE_MAX_SIZE);
+        requestQueueMaxPerPlayer = config.getInt("request-queue.max-per-player", DEFAULT_REQUEST_QUEUE_MAX_PER_PLAYER);
+        requestCoalescingEnabled = config.getBoolean("request-queue.coalesce-identical", DEFAULT_REQUEST_COALESCING);
+        reservedSlots = Math.max(0, config.getInt("request-queue.reserved-slots", DEFAULT_RESERVED_SLOTS));
+        for (RequestPriority priority : RequestPriority.values()) {
+            int weight = config.getInt("request-queue.priority-weights." + priority.getConfigName(),
+                    DEFAULT_PRIORITY_WEIGHTS[priority.ordinal()]);
+            priorityWeights.put(priority, Math.max(1, weight));
+        }
+        loadBalancingStrategy = config.getString("load-balancing.strategy", DEFAULT_LOAD_BALANCING_STRATEGY);
+        loadBalancingSticky = config.getBoolean("load-balancing.sticky-sessions", DEFAULT_LOAD_BALANCING_STICKY);
+        loadBalancingFailureThreshold = config.getInt("load-balancing.failure-threshold", DEFAULT_LOAD_BALANCING_FAILURE_THRESHOLD);
+        loadBalancingFailureCooldown = config.getInt("load-balancing.failure-cooldown", DEFAULT_LOAD_BALANCING_FAILURE_COOLDOWN);
+        circuitBreakerEnabled = config.getBoolean("circuit-breaker.enabled", DEFAULT_CIRCUIT_BREAKER_ENABLED);
+        circuitBreakerFailureThreshold = config.getInt("circuit-breaker.failure-threshold", DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+        circuitBreakerSlowCallThreshold = config.getInt("circuit-breaker.slow-call-threshold", DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_THRESHOLD);
+        circuitBreakerOpenDuration = config.getInt("circuit-breaker.open-duration", DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION);
+        circuitBreakerHalfOpenRequests = config.getInt("circuit-breaker.half-open-requests", DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_REQUESTS);
+        fallbackEnabled = config.getBoolean("fallback.enabled", DEFAULT_FALLBACK_ENABLED);
+        fallbackChains = parseChains(config.getStringList("fallback.chains"));
+        hedgingEnabled = config.getBoolean("hedging.enabled", DEFAULT_HEDGING_ENABLED);
+        hedgingDelay = config.getInt("hedging.delay", DEFAULT_HEDGING_DELAY);
+        hedgingMaxPercent = config.getInt("hedging.max-percent", DEFAULT_HEDGING_MAX_PERCENT);
+        hedgingSecondaries = parseChains(config.getStringList("hedging.secondaries"));
+        prometheusEnabled = config.getBoolean("metrics-export.prometheus.enabled", DEFAULT_PROMETHEUS_ENABLED);
+        prometheusBindAddress = config.getString("metrics-export.prometheus.bind-address", DEFAULT_PROMETHEUS_BIND_ADDRESS);
+        prometheusPort = config.getInt("metrics-export.prometheus.port", DEFAULT_PROMETHEUS_PORT);
+        jmxEnabled = config.getBoolean("metrics-export.jmx.enabled", DEFAULT_JMX_ENABLED);
+        rateLimitEnabled = config.getBoolean("rate-limit.enabled", DEFAULT_RATE_LIMIT_ENABLED);
+        loadRateLimits(config);
+        contextBudgetEnabled = config.getBoolean("context-budget.enabled", DEFAULT_CONTEXT_BUDGET_ENABLED);
+        contextBudgetTokenizer = config.getString("context-budget.tokenizer", DEFAULT_CONTEXT_BUDGET_TOKENIZER);
+        contextBudgetContextTokens = config.getInt("context-budget.context-tokens", DEFAULT_CONTEXT_BUDGET_CONTEXT_TOKENS);
+        contextBudgetResponseTokens = config.getInt("context-budget.response-tokens", DEFAULT_CONTEXT_BUDGET_RESPONSE_TOKENS);
+        Map<String, Integer> budgetBackends = new HashMap<>();
+        if (config.getConfigurationSection("context-budget.backends") != null) {
+            for (String aiName : config.getConfigurationSection("context-budget.backends").getKeys(false)) {
+                budgetBackends.put(aiName.toLowerCase(), config.getInt("context-budget.backends." + aiName, 0));
+            }
+        }
+        contextBudgetBackends = budgetBackends;
+        summaryEnabled = config.getBoolean("conversation-summary.enabled", DEFAULT_SUMMARY_ENABLED);
+        summaryAiName = config.getString("conversation-summary.ai-name", DEFAULT_SUMMARY_AI_NAME);
+        summaryModel = config.getString("conversation-summary.model", DEFAULT_SUMMARY_MODEL);
+        summaryKeepRecent = config.getInt("conversation-summary.keep-recent", DEFAULT_SUMMARY_KEEP_RECENT);
+        summaryMinExchanges = config.getInt("conversation-summary.min-exchanges", DEFAULT_SUMMARY_MIN_EXCHANGES);
+        summaryMaxExchanges = config.getInt("conversation-summary.max-exchanges", DEFAULT_SUMMARY_MAX_EXCHANGES);
+        summaryMaxWords = config.getInt("conversation-summary.max-words", DEFAULT_SUMMARY_MAX_WORDS);
+        summaryInterval = config.getInt("conversation-summary.interval", DEFAULT_SUMMARY_INTERVAL);
+        summaryPrompt = config.getString("conversation-summary.prompt", DEFAULT_SUMMARY_PROMPT);
+        summaryMemoryTemplate = config.getString("conversation-summary.memory-template", DEFAULT_SUMMARY_MEMORY_TEMPLATE);
+        if (summaryEnabled && summaryModel.isBlank()) {
+            // The chat model would add its full cost to every summary; a small model has to be chosen explicitly
+            plugin.getLogger().warning("conversation-summary.model is not set, conversation summaries stay disabled");
+            summaryEnabled = false;
+        }
+
+        healthCheckEnabled = config.getBoolean("health-check.enabled", DEFAULT_HEALTH_CHECK_ENABLED);
+        healthCheckInterval = config.getInt("health-check.interval", DEFAULT_HEALTH_CHECK_INTERVAL);
+        healthCheckTimeout = config.getInt("health-check.timeout", DEFAULT_HEALTH_CHECK_TIMEOUT);
+        healthCheckFailFast = config.getBoolean("health-check.fail-fast", DEFAULT_HEALTH_CHECK_FAIL_FAST);
+        healthCheckFailureThreshold = config.getInt("health-check.failure-threshold", DEFAULT_HEALTH_CHECK_FAILURE_THRESHOLD);
+        warmUpEnabled = config.getBoolean("health-check.warm-up", DEFAULT_WARM_UP_ENABLED);
+        keepAliveDefault = config.getString("keep-alive.default", DEFAULT_KEEP_ALIVE);
+        loadKeepAliveModels(config);
+
         loadOtherAIConfigs(config);
         loadSuggestedResponseToggles(config);
     }
@@ -380,19 +857,89 @@ public class ConfigManager {
             for (String aiName : config.getConfigurationSection("other-ai-configs").getKeys(false)) {
                 String path = "other-ai-configs." + aiName;
                 String apiUrl = config.getString(path + ".api-url");
+                List<String> apiUrls = new ArrayList<>(config.getStringList(path + ".api-urls"));
+                if (apiUrls.isEmpty() && apiUrl != null) {
+                    apiUrls.add(apiUrl);
+                }
                 String apiKey = config.getString(path + ".api-key", "");
                 String model = config.getString(path + ".model");
                 boolean enabled = config.getBoolean(path + ".enabled", true);
                 boolean isMessagesFormat = config.getBoolean(path + ".messages-format", false);
+                int maxConcurrent = config.getInt(path + ".max-concurrent", 0);
+                ApiFormat apiFormat = ApiFormat.fromString(config.getString(path + ".api-format"));
+                if (apiFormat == null) {
+                    apiFormat = isMessagesFormat ? ApiFormat.OPENAI : ApiFormat.GENERATE;
+                }
 
-                if (apiUrl != null && model != null) {
-                    otherAIConfigs.put(aiName, new AIConfig(apiUrl, apiKey, model, isMessagesFormat));
+                if (!apiUrls.isEmpty() && model != null) {
+                    otherAIConfigs.put(aiName, new AIConfig(apiUrls, apiKey, model, apiFormat, maxConcurrent));
                     otherAIEnabled.put(aiName, enabled);
                 }
             }
         }
     }
 
+    /**
+     * Parses chains written as "model -> next -> ...", keyed by their first model.
+     */
+    private static Map<String, List<String>> parseChains(List<String> lines) {
+        Map<String, List<String>> chains = new HashMap<>();
+
+        for (String line : lines) {
+            List<String> entries = new ArrayList<>();
+            for (String entry : line.split("->")) {
+                if (!entry.trim().isEmpty()) {
+                    entries.add(entry.trim());
+                }
+            }
+            if (entries.size() > 1) {
+                chains.put(entries.get(0), entries.subList(1, entries.size()));
+            }
+        }
+        return chains;
+    }
+
+    private void loadKeepAliveModels(FileConfiguration config) {
+        keepAliveModels = new HashMap<>();
+
+        if (config.contains("keep-alive.models") && config.getConfigurationSection("keep-alive.models") != null) {
+            for (String model : config.getConfigurationSection("keep-alive.models").getKeys(false)) {
+                String keepAlive = config.getString("keep-alive.models." + model);
+                if (keepAlive != null) {
+                    keepAliveModels.put(model, keepAlive);
+                }
+            }
+        }
+    }
+
+    private void loadRateLimits(FileConfiguration config) {
+        rateLimitDefaultGroup = new RateLimitGroup("default",
+                config.getInt("rate-limit.requests-per-minute", DEFAULT_RATE_LIMIT_REQUESTS_PER_MINUTE),
+                config.getInt("rate-limit.tokens-per-day", DEFAULT_RATE_LIMIT_TOKENS_PER_DAY),
+                config.getInt("rate-limit.shared-requests-per-minute", DEFAULT_RATE_LIMIT_SHARED_REQUESTS_PER_MINUTE));
+
+        List<RateLimitGroup> groups = new ArrayList<>();
+        if (config.getConfigurationSection("rate-limit.groups") != null) {
+            for (String group : config.getConfigurationSection("rate-limit.groups").getKeys(false)) {
+                String path = "rate-limit.groups." + group + ".";
+                // Unset values fall back to the default group
+                groups.add(new RateLimitGroup(group.toLowerCase(),
+                        config.getInt(path + "requests-per-minute", rateLimitDefaultGroup.getRequestsPerMinute()),
+                        config.getInt(path + "tokens-per-day", rateLimitDefaultGroup.getTokensPerDay()),
+                        config.getInt(path + "shared-requests-per-minute", 0)));
+            }
+        }
+        rateLimitGroups = groups;
+
+        Map<String, Integer> backends = new HashMap<>();
+        if (config.getConfigurationSection("rate-limit.backends") != null) {
+            for (String aiName : config.getConfigurationSection("rate-limit.backends").getKeys(false)) {
+                backends.put(aiName.toLowerCase(), config.getInt("rate-limit.backends." + aiName, 0));
+            }
+        }
+        rateLimitBackends = backends;
+    }
+
     private void loadSuggestedResponseToggles(FileConfiguration config) {
         suggestedResponseModelToggles.clear();
 
@@ -685,6 +1232,199 @@ public class ConfigManager {
     public String getBraveUiLang() { return braveUiLang; }
     public String getBraveSafeSearch() { return braveSafeSearch; }
 
+    public int getHttpConnectTimeout() { return httpConnectTimeout; }
+    public int getHttpRequestTimeout() { return httpRequestTimeout; }
+    public boolean isHttp2Enabled() { return http2Enabled; }
+    public int getHttpExecutorThreads() { return httpExecutorThreads; }
+    public int getHttpMaxConnectionsPerHost() { return httpMaxConnectionsPerHost; }
+    public String getWorkerMode() { return workerMode; }
+    public int getWorkerPlatformThreads() { return workerPlatformThreads; }
+    public int getWorkerPinnedThreshold() { return workerPinnedThreshold; }
+    public boolean isLogStageTimings() { return logStageTimings; }
+
+    public boolean isHealthCheckEnabled() { return healthCheckEnabled; }
+    public int getHealthCheckInterval() { return healthCheckInterval; }
+    public int getHealthCheckTimeout() { return healthCheckTimeout; }
+    public boolean isHealthCheckFailFast() { return healthCheckFailFast; }
+    public int getHealthCheckFailureThreshold() { return healthCheckFailureThreshold; }
+    public boolean isWarmUpEnabled() { return warmUpEnabled; }
+
+    /**
+     * Returns the Ollama keep_alive value for a model.
+     *
+     * @return The keep_alive duration, or null to leave Ollama's default
+     */
+    public String getKeepAlive(String model) {
+        String keepAlive = keepAliveModels.getOrDefault(model, keepAliveDefault);
+        return keepAlive == null || keepAlive.isEmpty() ? null : keepAlive;
+    }
+
+    public int getRequestQueueMaxSize() { return requestQueueMaxSize; }
+    public int getRequestQueueMaxPerPlayer() { return requestQueueMaxPerPlayer; }
+    public boolean isRequestCoalescingEnabled() { return requestCoalescingEnabled; }
+    public int getReservedSlots() { return reservedSlots; }
+    public int getPriorityWeight(RequestPriority priority) { return priorityWeights.get(priority); }
+    public String getLoadBalancingStrategy() { return loadBalancingStrategy; }
+    public boolean isLoadBalancingSticky() { return loadBalancingSticky; }
+    public int getLoadBalancingFailureThreshold() { return loadBalancingFailureThreshold; }
+    public int getLoadBalancingFailureCooldown() { return loadBalancingFailureCooldown; }
+    public boolean isCircuitBreakerEnabled() { return circuitBreakerEnabled; }
+    public int getCircuitBreakerFailureThreshold() { return circuitBreakerFailureThreshold; }
+    public int getCircuitBreakerSlowCallThreshold() { return circuitBreakerSlowCallThreshold; }
+    public int getCircuitBreakerOpenDuration() { return circuitBreakerOpenDuration; }
+    public int getCircuitBreakerHalfOpenRequests() { return circuitBreakerHalfOpenRequests; }
+    public boolean isFallbackEnabled() { return fallbackEnabled; }
+
+    /**
+     * @return The fallbacks configured for a model, in order, or an empty list
+     */
+    public List<String> getFallbackChain(String model) {
+        return fallbackChains.getOrDefault(model, Collections.emptyList());
+    }
+
+    public boolean isHedgingEnabled() { return hedgingEnabled; }
+    public int getHedgingDelay() { return hedgingDelay; }
+    public int getHedgingMaxPercent() { return hedgingMaxPercent; }
+
+    /**
+     * @return The model or backend requests to a model are hedged to, or null to use another endpoint
+     */
+    public String getHedgingSecondary(String model) {
+        List<String> secondaries = hedgingSecondaries.get(model);
+        return secondaries != null ? secondaries.get(0) : null;
+    }
+
+    public boolean isPrometheusEnabled() { return prometheusEnabled; }
+    public String getPrometheusBindAddress() { return prometheusBindAddress; }
+    public int getPrometheusPort() { return prometheusPort; }
+    public boolean isJmxEnabled() { return jmxEnabled; }
+    public boolean isRateLimitEnabled() { return rateLimitEnabled; }
+    public RateLimitGroup getRateLimitDefaultGroup() { return rateLimitDefaultGroup; }
+
+    /**
+     * @return The configured rate limit groups in config order, without the default group
+     */
+    public List<RateLimitGroup> getRateLimitGroups() { return rateLimitGroups; }
+
+    /**
+     * @return Requests per minute allowed to a backend across all players, 0 for unlimited
+     */
+    public int getBackendRequestsPerMinute(String aiName) {
+        return rateLimitBackends.getOrDefault(aiName.toLowerCase(), 0);
+    }
+
+    public boolean isContextBudgetEnabled() { return contextBudgetEnabled; }
+    public String getContextBudgetTokenizer() { return contextBudgetTokenizer; }
+    public int getContextBudgetResponseTokens() { return contextBudgetResponseTokens; }
+
+    /**
+     * @return The context window of a backend's model in tokens
+     */
+    public int getContextBudgetContextTokens(String aiName) {
+        Integer tokens = contextBudgetBackends.get(aiName.toLowerCase());
+        return tokens != null && tokens > 0 ? tokens : contextBudgetContextTokens;
+    }
+
+    /**
+     * Returns the num_ctx option sent to a backend, so Ollama loads the model with the window
+     * the prompt was budgeted for.
+     *
+     * @return The window set for the backend under context-budget.backends, or 0 to keep the server's default
+     */
+    public int getContextBudgetNumCtx(String aiName) {
+        if (!contextBudgetEnabled) {
+            return 0;
+        }
+        Integer tokens = contextBudgetBackends.get(aiName.toLowerCase());
+        return tokens != null && tokens > 0 ? tokens : 0;
+    }
+
+    public boolean isSummaryEnabled() { return summaryEnabled; }
+    public String getSummaryAiName() { return summaryAiName; }
+    public String getSummaryModel() { return summaryModel; }
+    public int getSummaryKeepRecent() { return summaryKeepRecent; }
+    public int getSummaryMinExchanges() { return summaryMinExchanges; }
+    public int getSummaryMaxExchanges() { return summaryMaxExchanges; }
+    public int getSummaryMaxWords() { return summaryMaxWords; }
+    public int getSummaryInterval() { return summaryInterval; }
+    public String getSummaryPrompt() { return summaryPrompt; }
+    public String getSummaryMemoryTemplate() { return summaryMemoryTemplate; }
+
+    /**
+     * Returns the connection settings of an AI backend, including the built-in ollama one.
+     *
+     * @return The backend configuration, or null if no such backend is configured
+     */
+    public AIConfig getAIConfig(String aiName) {
+        if (aiName.equalsIgnoreCase("ollama")) {
+            return ollamaAIConfig;
+        }
+        return otherAIConfigs.get(aiName);
+    }
+
+    /**
+     * Builds the built-in ollama backend. Chat mode is only used if every endpoint maps to /api/chat,
+     * so that the request body always matches the URL it is sent to.
+     */
+    private AIConfig buildOllamaAIConfig() {
+        List<String> urls = new ArrayList<>();
+        for (String url : getOllamaApiUrls()) {
+            urls.add(stripTrailingSlashes(url));
+        }
+        if (ollamaChatMode || urls.get(0).endsWith("/api/chat")) {
+            List<String> chatUrls = new ArrayList<>(urls.size());
+            for (String url : urls) {
+                String chatUrl = toOllamaChatApiUrl(url);
+                if (chatUrl == null) {
+                    plugin.getLogger().warning("Cannot derive the /api/chat endpoint from " + url
+                            + ", using the generate API for ollama instead");
+                    return new AIConfig(urls, null, ollamaModel, ApiFormat.GENERATE, ollamaMaxConcurrent);
+                }
+                chatUrls.add(chatUrl);
+            }
+            return new AIConfig(chatUrls, null, ollamaModel, ApiFormat.OLLAMA_CHAT, ollamaMaxConcurrent);
+        }
+        return new AIConfig(urls, null, ollamaModel, ApiFormat.GENERATE, ollamaMaxConcurrent);
+    }
+
+    /**
+     * Returns every configured Ollama endpoint; ollama-api-urls takes precedence over ollama-api-url.
+     */
+    public List<String> getOllamaApiUrls() {
+        return ollamaApiUrls.isEmpty() ? Collections.singletonList(ollamaApiUrl) : ollamaApiUrls;
+    }
+
+    /**
+     * Derives the /api/chat endpoint from an Ollama /api/generate URL.
+     *
+     * @return The chat endpoint, or null if the URL points at neither API
+     */
+    private static String toOllamaChatApiUrl(String url) {
+        if (url.endsWith("/api/generate")) {
+            return url.substring(0, url.length() - "/api/generate".length()) + "/api/chat";
+        }
+        return url.endsWith("/api/chat") ? url : null;
+    }
+
+    private static String stripTrailingSlashes(String url) {
+        int end = url.length();
+        while (end > 0 && url.charAt(end - 1) == '/') {
+            end--;
+        }
+        return url.substring(0, end);
+    }
+
+    /**
+     * Returns how many requests may run against each endpoint of an AI backend at the same time.
+     */
+    public int getMaxConcurrentRequests(String aiName) {
+        AIConfig aiConfig = getAIConfig(aiName);
+        if (aiConfig == null || aiConfig.getMaxConcurrent() <= 0) {
+            return defaultMaxConcurrent;
+        }
+        return aiConfig.getMaxConcurrent();
+    }
+
     public String getCurrentLanguage() { return currentLanguage; }
     public String getOllamaApiUrl() { return ollamaApiUrl; }
     public String getOllamaModel() { return ollamaModel; }
@@ -694,6 +1434,34 @@ public class ConfigManager {
     public boolean isOllamaEnabled() { return ollamaEnabled; }
     public Map<String, Boolean> getOtherAIEnabled() { return otherAIEnabled; }
     public boolean isStreamingEnabled() { return streamingEnabled; }
+    public int getStreamFlushInterval() { return streamFlushInterval; }
+    public int getStreamMinChunk() { return streamMinChunk; }
+    public int getStreamMaxChunk() { return streamMaxChunk; }
+    public boolean isCancelOnNewPrompt() { return cancelOnNewPrompt; }
+    public boolean isContextReuseEnabled() { return contextReuseEnabled; }
+    public int getContextReuseMaxEntries() { return contextReuseMaxEntries; }
+    public int getContextReuseExpireMinutes() { return contextReuseExpireMinutes; }
+    public boolean isContextReusePersist() { return contextReusePersist; }
+    public boolean isResponseCacheEnabled() { return responseCacheEnabled; }
+    public int getResponseCacheMaxEntries() { return responseCacheMaxEntries; }
+    public int getResponseCacheMaxSizeKb() { return responseCacheMaxSizeKb; }
+    public int getResponseCacheTtlMinutes() { return responseCacheTtlMinutes; }
+    public boolean isResponseCachePersist() { return responseCachePersist; }
+    public boolean isSemanticCacheEnabled() { return semanticCacheEnabled; }
+    public String getSemanticCacheModel() { return semanticCacheModel; }
+    public double getSemanticCacheThreshold() { return semanticCacheThreshold; }
+    public int getSemanticCacheMaxEntries() { return semanticCacheMaxEntries; }
+    public boolean isSemanticCacheQuantize() { return semanticCacheQuantize; }
+    public int getSemanticCacheTtlMinutes() { return semanticCacheTtlMinutes; }
+    public int getSemanticCacheTimeout() { return semanticCacheTimeout; }
+    public boolean isSemanticCachePersist() { return semanticCachePersist; }
+
+    /**
+     * @return true if answers of the model may be cached; an empty model list allows every model
+     */
+    public boolean isResponseCacheModel(String model) {
+        return responseCacheModels.isEmpty() || responseCacheModels.contains(model);
+    }
     public String getDefaultPrompt() { return defaultPrompt; }
     public Map<String, String> getPrompts() { return prompts; }
     public Map<UUID, Map<String, String>> getSelectedConversations() { return selectedConversations; }
@@ -705,24 +1473,67 @@ public class ConfigManager {
     public List<String> getSuggestedResponsePresets() { return suggestedResponsePresets; }
     public Map<String, Boolean> getSuggestedResponseModelToggles() { return suggestedResponseModelToggles; }
     public int getSuggestedResponseCooldown() { return suggestedResponseCooldown; }
+    public int getSuggestedResponseTimeout() { return suggestedResponseTimeout; }
+    public boolean isSuggestedResponseShowAsReady() { return suggestedResponseShowAsReady; }
     public boolean isSuggestedResponsePresetsEnabled() { return suggestedResponsePresetsEnabled; }
 
     public static class AIConfig {
-        private final String apiUrl;
+        private final List<String> apiUrls;
         private final String apiKey;
         private final String model;
-        private final boolean isMessagesFormat;
+        private final ApiFormat apiFormat;
+        private final int maxConcurrent;
 
         public AIConfig(String apiUrl, String apiKey, String model, boolean isMessagesFormat) {
-            this.apiUrl = apiUrl;
+            this(apiUrl, apiKey, model, isMessagesFormat ? ApiFormat.OPENAI : ApiFormat.GENERATE, 0);
+        }
+
+        public AIConfig(String apiUrl, String apiKey, String model, ApiFormat apiFormat, int maxConcurrent) {
+            this(Collections.singletonList(apiUrl), apiKey, model, apiFormat, maxConcurrent);
+        }
+
+        public AIConfig(List<String> apiUrls, String apiKey, String model, ApiFormat apiFormat, int maxConcurrent) {
+            this.apiUrls = apiUrls;
             this.apiKey = apiKey;
             this.model = model;
-            this.isMessagesFormat = isMessagesFormat;
+            this.apiFormat = apiFormat;
+            this.maxConcurrent = maxConcurrent;
         }
 
-        public String getApiUrl() { return apiUrl; }
+        /**
+         * @return The first endpoint; requests should be routed through the load balancer instead
+         */
+        public String getApiUrl() { return apiUrls.get(0); }
+        public List<String> getApiUrls() { return apiUrls; }
         public String getApiKey() { return apiKey; }
         public String getModel() { return model; }
-        public boolean isMessagesFormat() { return isMessagesFormat; }
+        public boolean isMessagesFormat() { return apiFormat == ApiFormat.OPENAI; }
+        public ApiFormat getApiFormat() { return apiFormat; }
+        public int getMaxConcurrent() { return maxConcurrent; }
+    }
+
+    /**
+     * Limits for the players of one permission group; 0 means unlimited.
+     */
+    public static class RateLimitGroup {
+        private final String name;
+        private final int requestsPerMinute;
+        private final int tokensPerDay;
+        private final int sharedRequestsPerMinute;
+
+        public RateLimitGroup(String name, int requestsPerMinute, int tokensPerDay, int sharedRequestsPerMinute) {
+            this.name = name;
+            this.requestsPerMinute = requestsPerMinute;
+            this.tokensPerDay = tokensPerDay;
+            this.sharedRequestsPerMinute = sharedRequestsPerMinute;
+        }
+
+        public String getName() { return name; }
+        /** Requests per minute for each player of the group. */
+        public int getRequestsPerMinute() { return requestsPerMinute; }
+        /** Generated tokens per day for each player of the group. */
+        public int getTokensPerDay() { return tokensPerDay; }
+        /** Requests per minute for all players of the group together. */
+        public int getSharedRequestsPerMinute() { return sharedRequestsPerMinute; }
     }
 }
\ No newline at end of file
@@ -1,20 +1,42 @@
 package com.ollamachat.core;
 
+import com.ollamachat.AIService;
 import com.ollamachat.Metrics;
 import com.ollamachat.ChatHistoryManager;
 import com.ollamachat.DependencyLoader;
 import com.ollamachat.ProgressManager;
+import com.ollamachat.ai.AIDispatcher;
+import com.ollamachat.ai.BackendHealthMonitor;
+import com.ollamachat.ai.ContextBudgeter;
+import com.ollamachat.ai.ConversationContextStore;
+import com.ollamachat.ai.ConversationSummarizer;
+import com.ollamachat.ai.EndpointBalancer;
+import com.ollamachat.ai.FallbackChain;
+import com.ollamachat.ai.GenerationMetrics;
+import com.ollamachat.ai.GenerationRegistry;
+import com.ollamachat.ai.RateLimiter;
+import com.ollamachat.ai.RequestCoalescer;
+import com.ollamachat.ai.RequestHedger;
+import com.ollamachat.ai.ResponseCache;
+import com.ollamachat.ai.SemanticCache;
 import com.ollamachat.DatabaseManager;
 import com.ollamachat.api.OllamaChatAPI;
 import com.ollamachat.api.OllamaChatAPIImpl;
+import com.ollamachat.chat.ChatDelivery;
 import com.ollamachat.chat.ChatTriggerHandler;
 import com.ollamachat.chat.SuggestedResponseHandler;
 import com.ollamachat.command.AIChatCommand;
 import com.ollamachat.command.OllamaChatCommand;
 import com.ollamachat.command.OllamaChatTabCompleter;
+import com.ollamachat.http.HttpTransport;
+import com.ollamachat.metrics.JmxExporter;
+import com.ollamachat.metrics.PluginMetrics;
+import com.ollamachat.metrics.PrometheusExporter;
+import com.ollamachat.scheduler.WorkerPool;
 import com.ollamachat.search.WebSearchService;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -24,7 +46,29 @@ public class Ollamachat extends JavaPlugin {
     private DatabaseManager databaseManager;
     private ChatHistoryManager chatHistoryManager;
     private ProgressManager progressManager;
+    private HttpTransport httpTransport;
+    private WorkerPool workerPool;
+    private WorkerPool computePool;
+    private AIService aiService;
+    private GenerationRegistry generationRegistry;
+    private AIDispatcher aiDispatcher;
+    private EndpointBalancer endpointBalancer;
+    private GenerationMetrics generationMetrics;
+    private RateLimiter rateLimiter;
+    private ContextBudgeter contextBudgeter;
+    private PluginMetrics pluginMetrics;
+    private PrometheusExporter prometheusExporter;
+    private JmxExporter jmxExporter;
+    private RequestCoalescer requestCoalescer;
+    private FallbackChain fallbackChain;
+    private RequestHedger requestHedger;
+    private ResponseCache responseCache;
+    private SemanticCache semanticCache;
+    private BackendHealthMonitor healthMonitor;
+    private ConversationContextStore conversationContextStore;
+    private ConversationSummarizer conversationSummarizer;
     private SuggestedResponseHandler suggestedResponseHandler;
+    private ChatDelivery chatDelivery;
     private WebSearchService webSearchService;
     private Map<UUID, Boolean> playerSuggestionToggles;
     private OllamaChatAPI api;
@@ -46,13 +90,13 @@ public class Ollamachat extends JavaPlugin {
         int pluginId = 30682;
         Metrics metrics = new Metrics(this, pluginId);
 
-        // Optional: Add custom charts
         metrics.addCustomChart(
-                new Metrics.SimplePie("chart_id", () -> "My value")
+                new Metrics.SimplePie("database_type", () -> getConfig().getString("database.type", "sqlite").toLowerCase())
         );
 
+        pluginMetrics = new PluginMetrics();
         try {
-            databaseManager = new DatabaseManager(this);
+            databaseManager = new DatabaseManager(this, pluginMetrics);
         } catch (Exception e) {
             getLogger().severe("Failed to initialize DatabaseManager: " + e.getMessage());
             e.printStackTrace();
@@ -63,7 +107,29 @@ public class Ollamachat extends JavaPlugin {
         int maxHistory = configManager.getMaxHistory();
         chatHistoryManager = new ChatHistoryManager(databaseManager, maxHistory);
         progressManager = new ProgressManager(this);
+        httpTransport = new HttpTransport(configManager);
+        workerPool = new WorkerPool(configManager, getLogger());
+        computePool = new WorkerPool("compute", Math.max(2, Runtime.getRuntime().availableProcessors() / 2), getLogger());
+        aiService = new AIService(httpTransport, configManager, pluginMetrics);
+        generationRegistry = new GenerationRegistry();
+        endpointBalancer = new EndpointBalancer(configManager);
+        healthMonitor = new BackendHealthMonitor(configManager, httpTransport, endpointBalancer, getLogger());
+        generationMetrics = new GenerationMetrics();
+        rateLimiter = new RateLimiter(configManager);
+        contextBudgeter = new ContextBudgeter(configManager);
+        aiDispatcher = new AIDispatcher(configManager, healthMonitor, endpointBalancer, generationMetrics, rateLimiter);
+        requestCoalescer = new RequestCoalescer(configManager);
+        fallbackChain = new FallbackChain(configManager);
+        requestHedger = new RequestHedger(configManager, endpointBalancer);
+        conversationContextStore = new ConversationContextStore(configManager, databaseManager);
+        conversationSummarizer = new ConversationSummarizer(configManager, databaseManager, aiService, aiDispatcher,
+                generationRegistry, contextBudgeter, workerPool, getLogger());
+        responseCache = new ResponseCache(configManager, new File(getDataFolder(), "response-cache.json"), getLogger());
+        responseCache.load();
+        semanticCache = new SemanticCache(configManager, httpTransport, new File(getDataFolder(), "semantic-cache.dat"), getLogger());
+        semanticCache.load();
         suggestedResponseHandler = new SuggestedResponseHandler(this);
+        chatDelivery = new ChatDelivery(this);
         webSearchService = new WebSearchService(this);
         playerSuggestionToggles = new HashMap<>();
         api = new OllamaChatAPIImpl(this);
@@ -71,6 +137,14 @@ public class Ollamachat extends JavaPlugin {
 
         getServer().getPluginManager().registerEvents(chatTriggerHandler, this);
 
+        // Probe backends and preload models in the background
+        healthMonitor.start();
+        conversationSummarizer.start();
+        prometheusExporter = new PrometheusExporter(this);
+        prometheusExporter.start();
+        jmxExporter = new JmxExporter(this);
+        jmxExporter.start();
+
         getCommand("ollamachat").setExecutor(new OllamaChatCommand(this));
         getCommand("ollamachat").setTabCompleter(new OllamaChatTabCompleter(this));
         getCommand("aichat").setExecutor(new AIChatCommand(this));
@@ -90,6 +164,34 @@ public class Ollamachat extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (prometheusExporter != null) {
+            prometheusExporter.shutdown();
+        }
+        if (jmxExporter != null) {
+            jmxExporter.shutdown();
+        }
+        if (healthMonitor != null) {
+            healthMonitor.shutdown();
+        }
+        if (conversationSummarizer != null) {
+            conversationSummarizer.shutdown();
+        }
+        if (generationRegistry != null) {
+            generationRegistry.cancelEverything();
+        }
+        if (responseCache != null) {
+            responseCache.save();
+        }
+        if (semanticCache != null) {
+            semanticCache.save();
+        }
+        if (workerPool != null) {
+            // Lets pending database writes finish before the connection pool closes
+            workerPool.shutdown();
+        }
+        if (computePool != null) {
+            computePool.shutdown();
+        }
         if (databaseManager != null) {
             databaseManager.close();
         } else {
@@ -98,6 +200,9 @@ public class Ollamachat extends JavaPlugin {
         if (progressManager != null) {
             getServer().getOnlinePlayers().forEach(progressManager::cleanup);
         }
+        if (httpTransport != null) {
+            httpTransport.shutdown();
+        }
     }
 
     public void reloadPlugin() {
@@ -128,10 +233,100 @@ public class Ollamachat extends JavaPlugin {
         return progressManager;
     }
 
+    public HttpTransport getHttpTransport() {
+        return httpTransport;
+    }
+
+    /**
+     * @return The pool for blocking work such as database calls
+     */
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
+    /**
+     * @return The pool for CPU-bound pipeline stages
+     */
+    public WorkerPool getComputePool() {
+        return computePool;
+    }
+
+    public AIService getAIService() {
+        return aiService;
+    }
+
+    public GenerationRegistry getGenerationRegistry() {
+        return generationRegistry;
+    }
+
+    public BackendHealthMonitor getHealthMonitor() {
+        return healthMonitor;
+    }
+
+    public AIDispatcher getAIDispatcher() {
+        return aiDispatcher;
+    }
+
+    public GenerationMetrics getGenerationMetrics() {
+        return generationMetrics;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public ContextBudgeter getContextBudgeter() {
+        return contextBudgeter;
+    }
+
+    public PluginMetrics getPluginMetrics() {
+        return pluginMetrics;
+    }
+
+    public EndpointBalancer getEndpointBalancer() {
+        return endpointBalancer;
+    }
+
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    public FallbackChain getFallbackChain() {
+        return fallbackChain;
+    }
+
+    public RequestHedger getRequestHedger() {
+        return requestHedger;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public SemanticCache getSemanticCache() {
+        return semanticCache;
+    }
+
+    public ConversationContextStore getConversationContextStore() {
+        return conversationContextStore;
+    }
+
+    public ConversationSummarizer getConversationSummarizer() {
+        return conversationSummarizer;
+    }
+
+    public ChatTriggerHandler getChatTriggerHandler() {
+        return chatTriggerHandler;
+    }
+
     public SuggestedResponseHandler getSuggestedResponseHandler() {
         return suggestedResponseHandler;
     }
 
+    public ChatDelivery getChatDelivery() {
+        return chatDelivery;
+    }
+
     public WebSearchService getWebSearchService() {
         return webSearchService;
     }
@@ -0,0 +1,192 @@
+package com.ollamachat.http;
+
+import com.ollamachat.core.ConfigManager;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plugin-wide HTTP transport shared by the AI and web search services.
+ * <p>
+ * A single {@link HttpClient} keeps one connection pool and selector thread for the whole plugin,
+ * so keep-alive connections to the Ollama host are reused across triggers, commands, suggestions
+ * and API calls. Concurrent requests per host are capped without blocking caller threads.
+ */
+public class HttpTransport {
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final boolean http2;
+    private final Duration requestTimeout;
+    private final int maxConnectionsPerHost;
+    private final Map<String, HostLimiter> hostLimiters = new ConcurrentHashMap<>();
+
+    public HttpTransport(ConfigManager configManager) {
+        this.http2 = configManager.isHttp2Enabled();
+        this.maxConnectionsPerHost = configManager.getHttpMaxConnectionsPerHost();
+        this.requestTimeout = configManager.getHttpRequestTimeout() > 0
+                ? Duration.ofMillis(configManager.getHttpRequestTimeout())
+                : null;
+        this.executor = Executors.newFixedThreadPool(
+                Math.max(1, configManager.getHttpExecutorThreads()),
+                new NamedThreadFactory("OllamaChat-HTTP"));
+        this.httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(Math.max(1, configManager.getHttpConnectTimeout())))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Creates a request builder with the configured timeout and protocol version.
+     * Plain-text endpoints are pinned to HTTP/1.1 so no h2c upgrade is attempted on every request;
+     * HTTPS endpoints negotiate HTTP/2 through ALPN when enabled.
+     */
+    public HttpRequest.Builder newRequest(String url) {
+        URI uri = URI.create(url);
+        HttpRequest.Builder builder = HttpRequest.newBuilder().uri(uri);
+        if (requestTimeout != null) {
+            builder.timeout(requestTimeout);
+        }
+        if (http2 && "http".equalsIgnoreCase(uri.getScheme())) {
+            builder.version(HttpClient.Version.HTTP_1_1);
+        }
+        return builder;
+    }
+
+    /**
+     * Sends a request asynchronously once a connection slot for its host is free.
+     * Cancelling the returned future aborts the exchange, or skips it if it has not started yet.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        HostLimiter limiter = limiterFor(request.uri());
+        if (limiter == null) {
+            return httpClient.sendAsync(request, handler);
+        }
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        limiter.acquire().thenRun(() -> {
+            if (result.isDone()) {
+                limiter.release();
+                return;
+            }
+            CompletableFuture<HttpResponse<T>> exchange = httpClient.sendAsync(request, handler);
+            exchange.whenComplete((response, error) -> {
+                limiter.release();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(response);
+                }
+            });
+            result.whenComplete((response, error) -> {
+                if (result.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            });
+        });
+        return result;
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(2, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private HostLimiter limiterFor(URI uri) {
+        if (maxConnectionsPerHost <= 0 || uri.getHost() == null) {
+            return null;
+        }
+        String key = uri.getHost().toLowerCase() + ":" + uri.getPort();
+        return hostLimiters.computeIfAbsent(key, k -> new HostLimiter(maxConnectionsPerHost));
+    }
+
+    /**
+     * Non-blocking counting semaphore: waiters are parked as futures instead of threads.
+     */
+    private static class HostLimiter {
+        private final int maxPermits;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Queue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+
+        HostLimiter(int maxPermits) {
+            this.maxPermits = maxPermits;
+        }
+
+        CompletableFuture<Void> acquire() {
+            if (tryAcquire()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            // A permit may have been released between the failed attempt and enqueueing
+            drain();
+            return waiter;
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+            drain();
+        }
+
+        private boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= maxPermits) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void drain() {
+            while (!waiters.isEmpty() && tryAcquire()) {
+                CompletableFuture<Void> next = waiters.poll();
+                if (next == null || !next.complete(null)) {
+                    inFlight.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
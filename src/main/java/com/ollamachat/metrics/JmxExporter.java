@@ -0,0 +1,152 @@
+package com.ollamachat.metrics;
+
+import com.ollamachat.ai.AIDispatcher;
+import com.ollamachat.ai.GenerationMetrics;
+import com.ollamachat.core.Ollamachat;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Registers {@link OllamaChatMXBean} with the platform MBean server, for JConsole, VisualVM
+ * or a JMX exporter agent.
+ */
+public class JmxExporter {
+    private static final String OBJECT_NAME = "com.ollamachat:type=Metrics";
+
+    private final Ollamachat plugin;
+    private ObjectName objectName;
+
+    public JmxExporter(Ollamachat plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        if (!plugin.getConfigManager().isJmxEnabled()) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            // Left behind by an earlier instance of the plugin, e.g. after a plugin reload
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new Bean(), name);
+            objectName = name;
+        } catch (JMException e) {
+            plugin.getLogger().warning("Failed to register JMX metrics: " + e.getMessage());
+        }
+    }
+
+    public void shutdown() {
+        if (objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            plugin.getLogger().warning("Failed to unregister JMX metrics: " + e.getMessage());
+        }
+        objectName = null;
+    }
+
+    private class Bean implements OllamaChatMXBean {
+        @Override
+        public List<GenerationMetrics.ModelStats> getGenerations() {
+            return plugin.getGenerationMetrics().getStats();
+        }
+
+        @Override
+        public List<AIDispatcher.BackendStats> getQueues() {
+            return plugin.getAIDispatcher().getStats();
+        }
+
+        @Override
+        public int getRunningRequests() {
+            int running = 0;
+            for (AIDispatcher.BackendStats stats : plugin.getAIDispatcher().getStats()) {
+                running += stats.getInFlight();
+            }
+            return running;
+        }
+
+        @Override
+        public int getWaitingRequests() {
+            int waiting = 0;
+            for (AIDispatcher.BackendStats stats : plugin.getAIDispatcher().getStats()) {
+                waiting += stats.getQueued();
+            }
+            return waiting;
+        }
+
+        @Override
+        public long getCoalescedRequests() {
+            return plugin.getRequestCoalescer().getCoalescedCalls();
+        }
+
+        @Override
+        public long getHedgedRequests() {
+            return plugin.getRequestHedger().getHedges();
+        }
+
+        @Override
+        public double getResponseCacheHitRatio() {
+            return ratio(plugin.getResponseCache().getHits(), plugin.getResponseCache().getMisses());
+        }
+
+        @Override
+        public double getSemanticCacheHitRatio() {
+            return ratio(plugin.getSemanticCache().getHits(), plugin.getSemanticCache().getMisses());
+        }
+
+        @Override
+        public List<LatencyTimer> getDatabaseOperations() {
+            return plugin.getPluginMetrics().getDatabaseTimers();
+        }
+
+        @Override
+        public List<LatencyTimer> getSearches() {
+            return plugin.getPluginMetrics().getSearchTimers();
+        }
+
+        @Override
+        public long getStreamFrames() {
+            return plugin.getPluginMetrics().getStreamFrames();
+        }
+
+        @Override
+        public long getStreamChunks() {
+            return plugin.getPluginMetrics().getStreamChunks();
+        }
+
+        @Override
+        public String getWorkerMode() {
+            return plugin.getWorkerPool().getMode().name().toLowerCase();
+        }
+
+        @Override
+        public int getRunningWorkerTasks() {
+            return plugin.getWorkerPool().getRunning();
+        }
+
+        @Override
+        public int getWorkerThreads() {
+            return plugin.getWorkerPool().getThreads();
+        }
+
+        @Override
+        public int getWaitingWorkerTasks() {
+            return plugin.getWorkerPool().getQueued();
+        }
+
+        @Override
+        public long getPinnedVirtualThreads() {
+            return plugin.getWorkerPool().getPinnedEvents();
+        }
+
+        private double ratio(long hits, long misses) {
+            long lookups = hits + misses;
+            return lookups > 0 ? (double) hits / lookups : 0;
+        }
+    }
+}
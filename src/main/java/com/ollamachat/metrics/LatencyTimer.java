@@ -0,0 +1,69 @@
+package com.ollamachat.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations of one kind of operation into fixed buckets, the layout of a Prometheus histogram.
+ * <p>
+ * Recording does not allocate: it is a search over a constant array and a few atomic additions,
+ * so it can be called on every request.
+ */
+public class LatencyTimer {
+    /** Upper bounds of the buckets in milliseconds; a last bucket takes everything slower. */
+    static final long[] BUCKET_MILLIS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_MILLIS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public LatencyTimer(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records an operation that started at the given {@link System#nanoTime()}.
+     */
+    public void recordSince(long startedAt) {
+        record(System.nanoTime() - startedAt);
+    }
+
+    public void record(long nanos) {
+        long duration = Math.max(0, nanos);
+        int bucket = 0;
+        // Bucket bounds are inclusive, as in Prometheus
+        while (bucket < BUCKET_MILLIS.length && duration > BUCKET_MILLIS[bucket] * NANOS_PER_MILLI) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(duration);
+    }
+
+    /**
+     * Counts a failed operation; its duration is recorded separately, like any other.
+     */
+    public void recordFailure() {
+        failures.increment();
+    }
+
+    public String getName() { return name; }
+    public long getCount() { return count.sum(); }
+    public long getFailures() { return failures.sum(); }
+    public long getTotalNanos() { return totalNanos.sum(); }
+
+    public long getAverageMillis() {
+        long total = count.sum();
+        return total > 0 ? totalNanos.sum() / total / NANOS_PER_MILLI : 0;
+    }
+
+    /**
+     * @return The number of operations in one bucket, not including faster buckets
+     */
+    long getBucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+}
@@ -0,0 +1,45 @@
+package com.ollamachat.metrics;
+
+import com.ollamachat.ai.AIDispatcher;
+import com.ollamachat.ai.GenerationMetrics;
+
+import java.util.List;
+
+/**
+ * The plugin's metrics as JMX attributes, registered as {@code com.ollamachat:type=Metrics}.
+ */
+public interface OllamaChatMXBean {
+    List<GenerationMetrics.ModelStats> getGenerations();
+
+    List<AIDispatcher.BackendStats> getQueues();
+
+    int getRunningRequests();
+
+    int getWaitingRequests();
+
+    long getCoalescedRequests();
+
+    long getHedgedRequests();
+
+    double getResponseCacheHitRatio();
+
+    double getSemanticCacheHitRatio();
+
+    List<LatencyTimer> getDatabaseOperations();
+
+    List<LatencyTimer> getSearches();
+
+    long getStreamFrames();
+
+    long getStreamChunks();
+
+    String getWorkerMode();
+
+    int getRunningWorkerTasks();
+
+    int getWorkerThreads();
+
+    int getWaitingWorkerTasks();
+
+    long getPinnedVirtualThreads();
+}
@@ -0,0 +1,80 @@
+package com.ollamachat.metrics;
+
+import com.ollamachat.core.ConfigManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request-path instruments that no other component already keeps: database operation and web search
+ * timings and streaming throughput. Every instrument is created up front, so recording never looks
+ * anything up or allocates.
+ */
+public class PluginMetrics {
+    public enum DatabaseOperation {
+        SAVE_PLAYER,
+        CREATE_CONVERSATION,
+        FIND_CONVERSATION,
+        DELETE_CONVERSATION,
+        LIST_CONVERSATIONS,
+        SAVE_HISTORY,
+        LOAD_HISTORY,
+        SAVE_CONTEXT,
+        LOAD_CONTEXT,
+        DELETE_CONTEXT,
+        SAVE_SUMMARY,
+        LOAD_SUMMARY,
+        DELETE_SUMMARY
+    }
+
+    private final LatencyTimer[] databaseTimers;
+    private final LatencyTimer[] searchTimers;
+    private final LongAdder streamFrames = new LongAdder();
+    private final LongAdder streamChunks = new LongAdder();
+
+    public PluginMetrics() {
+        DatabaseOperation[] operations = DatabaseOperation.values();
+        databaseTimers = new LatencyTimer[operations.length];
+        for (DatabaseOperation operation : operations) {
+            databaseTimers[operation.ordinal()] = new LatencyTimer(operation.name().toLowerCase());
+        }
+        ConfigManager.SearchEngine[] engines = ConfigManager.SearchEngine.values();
+        searchTimers = new LatencyTimer[engines.length];
+        for (ConfigManager.SearchEngine engine : engines) {
+            searchTimers[engine.ordinal()] = new LatencyTimer(engine.getConfigName());
+        }
+    }
+
+    public LatencyTimer database(DatabaseOperation operation) {
+        return databaseTimers[operation.ordinal()];
+    }
+
+    public LatencyTimer search(ConfigManager.SearchEngine engine) {
+        return searchTimers[engine.ordinal()];
+    }
+
+    /**
+     * Counts a frame (one JSON line or SSE event) received from a streaming backend.
+     */
+    public void streamFrame() {
+        streamFrames.increment();
+    }
+
+    /**
+     * Counts a chunk of streamed text handed on to a player or API caller.
+     */
+    public void streamChunk() {
+        streamChunks.increment();
+    }
+
+    public long getStreamFrames() { return streamFrames.sum(); }
+    public long getStreamChunks() { return streamChunks.sum(); }
+
+    public List<LatencyTimer> getDatabaseTimers() {
+        return List.of(databaseTimers);
+    }
+
+    public List<LatencyTimer> getSearchTimers() {
+        return List.of(searchTimers);
+    }
+}
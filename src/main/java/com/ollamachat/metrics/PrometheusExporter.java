@@ -0,0 +1,426 @@
+package com.ollamachat.metrics;
+
+import com.ollamachat.ai.AIDispatcher;
+import com.ollamachat.ai.BackendHealthMonitor;
+import com.ollamachat.ai.CircuitBreaker;
+import com.ollamachat.ai.ContextBudgeter;
+import com.ollamachat.ai.ConversationSummarizer;
+import com.ollamachat.ai.EndpointBalancer;
+import com.ollamachat.ai.GenerationMetrics;
+import com.ollamachat.ai.ResponseCache;
+import com.ollamachat.ai.SemanticCache;
+import com.ollamachat.core.ConfigManager;
+import com.ollamachat.core.Ollamachat;
+import com.ollamachat.scheduler.WorkerPool;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the plugin's metrics in the Prometheus text format on a local HTTP port.
+ * <p>
+ * Nothing is collected for the endpoint: every scrape reads the counters the dispatcher, caches and
+ * {@link PluginMetrics} keep anyway, so a server that is never scraped pays nothing for it.
+ */
+public class PrometheusExporter {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Ollamachat plugin;
+    private final ConfigManager configManager;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public PrometheusExporter(Ollamachat plugin) {
+        this.plugin = plugin;
+        this.configManager = plugin.getConfigManager();
+    }
+
+    public void start() {
+        if (!configManager.isPrometheusEnabled()) return;
+        String address = configManager.getPrometheusBindAddress();
+        int port = configManager.getPrometheusPort();
+        try {
+            server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to start the metrics endpoint on " + address + ":" + port + ": " + e.getMessage());
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "OllamaChat-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        plugin.getLogger().info("Metrics endpoint listening on http://" + address + ":" + port + "/metrics");
+    }
+
+    public void shutdown() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (RuntimeException e) {
+            plugin.getLogger().warning("Failed to collect metrics: " + e.getMessage());
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return The current value of every metric in the Prometheus text format
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(16384);
+        writeGenerations(out);
+        writeQueues(out);
+        writeCaches(out);
+        writeWorkers(out);
+        writeContextBudget(out);
+        writeSummaries(out);
+        writeTimers(out, "ollamachat_database_operation", "Duration of database operations",
+                "operation", plugin.getPluginMetrics().getDatabaseTimers());
+        writeTimers(out, "ollamachat_search", "Duration of web search requests",
+                "engine", plugin.getPluginMetrics().getSearchTimers());
+
+        PluginMetrics metrics = plugin.getPluginMetrics();
+        header(out, "ollamachat_stream_frames_total", "counter", "Frames received from streaming backends");
+        sample(out, "ollamachat_stream_frames_total", "", metrics.getStreamFrames());
+        header(out, "ollamachat_stream_chunks_total", "counter", "Chunks of streamed text handed on to players and API callers");
+        sample(out, "ollamachat_stream_chunks_total", "", metrics.getStreamChunks());
+        return out.toString();
+    }
+
+    private void writeGenerations(StringBuilder out) {
+        List<GenerationMetrics.ModelStats> stats = plugin.getGenerationMetrics().getStats();
+        header(out, "ollamachat_generation_requests_total", "counter", "Finished generations per backend and model");
+        for (GenerationMetrics.ModelStats model : stats) {
+            sample(out, "ollamachat_generation_requests_total", modelLabels(model), model.getRequests());
+        }
+        header(out, "ollamachat_generation_failures_total", "counter", "Failed generations per backend and model");
+        for (GenerationMetrics.ModelStats model : stats) {
+            sample(out, "ollamachat_generation_failures_total", modelLabels(model), model.getFailures());
+        }
+        header(out, "ollamachat_generation_response_bytes_total", "counter", "Response bytes received per backend and model");
+        for (GenerationMetrics.ModelStats model : stats) {
+            sample(out, "ollamachat_generation_response_bytes_total", modelLabels(model), model.getBytes());
+        }
+        header(out, "ollamachat_generation_prompt_tokens_total", "counter", "Prompt tokens reported by the backend");
+        for (GenerationMetrics.ModelStats model : stats) {
+            sample(out, "ollamachat_generation_prompt_tokens_total", modelLabels(model), model.getPromptTokens());
+        }
+        header(out, "ollamachat_generation_generated_tokens_total", "counter", "Generated tokens reported by the backend");
+        for (GenerationMetrics.ModelStats model : stats) {
+            sample(out, "ollamachat_generation_generated_tokens_total", modelLabels(model), model.getGeneratedTokens());
+        }
+
+        header(out, "ollamachat_generation_latency_seconds", "summary", "Time from sending a request to its last token");
+        for (GenerationMetrics.ModelStats model : stats) {
+            summary(out, "ollamachat_generation_latency_seconds", modelLabels(model), model.getLatency(), 1000.0);
+        }
+        header(out, "ollamachat_generation_time_to_first_token_seconds", "summary", "Time from sending a request to its first token");
+        for (GenerationMetrics.ModelStats model : stats) {
+            summary(out, "ollamachat_generation_time_to_first_token_seconds", modelLabels(model), model.getTimeToFirstToken(), 1000.0);
+        }
+        header(out, "ollamachat_generation_queue_wait_seconds", "summary", "Time requests waited in the backend queue");
+        for (GenerationMetrics.ModelStats model : stats) {
+            summary(out, "ollamachat_generation_queue_wait_seconds", modelLabels(model), model.getQueueWait(), 1000.0);
+        }
+        header(out, "ollamachat_generation_load_seconds", "summary", "Model load time reported by Ollama");
+        for (GenerationMetrics.ModelStats model : stats) {
+            summary(out, "ollamachat_generation_load_seconds", modelLabels(model), model.getLoadTime(), 1000.0);
+        }
+        header(out, "ollamachat_generation_tokens_per_second", "summary", "Generation speed reported by the backend");
+        for (GenerationMetrics.ModelStats model : stats) {
+            summary(out, "ollamachat_generation_tokens_per_second", modelLabels(model), model.getTokensPerSecond(), 1.0);
+        }
+    }
+
+    private void writeQueues(StringBuilder out) {
+        List<AIDispatcher.BackendStats> queues = plugin.getAIDispatcher().getStats();
+        header(out, "ollamachat_queue_running", "gauge", "Requests currently running per backend");
+        for (AIDispatcher.BackendStats queue : queues) {
+            sample(out, "ollamachat_queue_running", labels("backend", queue.getAiName()), queue.getInFlight());
+        }
+        header(out, "ollamachat_queue_waiting", "gauge", "Requests waiting in the queue per backend");
+        for (AIDispatcher.BackendStats queue : queues) {
+            sample(out, "ollamachat_queue_waiting", labels("backend", queue.getAiName()), queue.getQueued());
+        }
+        header(out, "ollamachat_queue_completed_total", "counter", "Requests that left the queue and finished");
+        for (AIDispatcher.BackendStats queue : queues) {
+            sample(out, "ollamachat_queue_completed_total", labels("backend", queue.getAiName()), queue.getCompleted());
+        }
+        header(out, "ollamachat_queue_rejected_total", "counter", "Requests rejected because the queue was full");
+        for (AIDispatcher.BackendStats queue : queues) {
+            sample(out, "ollamachat_queue_rejected_total", labels("backend", queue.getAiName()), queue.getRejected());
+        }
+        header(out, "ollamachat_queue_priority_running", "gauge", "Requests currently running per backend and priority class");
+        for (AIDispatcher.BackendStats queue : queues) {
+            for (AIDispatcher.PriorityStats priority : queue.getPriorities()) {
+                sample(out, "ollamachat_queue_priority_running", priorityLabels(queue, priority), priority.getInFlight());
+            }
+        }
+        header(out, "ollamachat_queue_priority_waiting", "gauge", "Requests waiting per backend and priority class");
+        for (AIDispatcher.BackendStats queue : queues) {
+            for (AIDispatcher.PriorityStats priority : queue.getPriorities()) {
+                sample(out, "ollamachat_queue_priority_waiting", priorityLabels(queue, priority), priority.getQueued());
+            }
+        }
+        header(out, "ollamachat_queue_priority_completed_total", "counter", "Finished requests per backend and priority class");
+        for (AIDispatcher.BackendStats queue : queues) {
+            for (AIDispatcher.PriorityStats priority : queue.getPriorities()) {
+                sample(out, "ollamachat_queue_priority_completed_total", priorityLabels(queue, priority), priority.getCompleted());
+            }
+        }
+        header(out, "ollamachat_queue_priority_rejected_total", "counter",
+                "Requests rejected, or dropped from the queue for more urgent ones, per backend and priority class");
+        for (AIDispatcher.BackendStats queue : queues) {
+            for (AIDispatcher.PriorityStats priority : queue.getPriorities()) {
+                sample(out, "ollamachat_queue_priority_rejected_total", priorityLabels(queue, priority),
+                        priority.getRejected() + priority.getDropped());
+            }
+        }
+        header(out, "ollamachat_queue_priority_wait_seconds", "gauge", "Average queue wait per backend and priority class");
+        for (AIDispatcher.BackendStats queue : queues) {
+            for (AIDispatcher.PriorityStats priority : queue.getPriorities()) {
+                sample(out, "ollamachat_queue_priority_wait_seconds", priorityLabels(queue, priority),
+                        priority.getAverageWaitMillis() / 1000.0);
+            }
+        }
+
+        header(out, "ollamachat_backend_up", "gauge", "Result of the last health check (1 up, 0 down)");
+        for (BackendHealthMonitor.BackendHealth health : plugin.getHealthMonitor().getHealth()) {
+            if (health.getStatus() == BackendHealthMonitor.Status.UNKNOWN) continue;
+            sample(out, "ollamachat_backend_up", labels("backend", health.getAiName()),
+                    health.getStatus() == BackendHealthMonitor.Status.UP ? 1 : 0);
+        }
+        List<EndpointBalancer.EndpointStats> endpoints = plugin.getEndpointBalancer().getStats();
+        header(out, "ollamachat_endpoint_running", "gauge", "Requests currently running per endpoint");
+        for (EndpointBalancer.EndpointStats endpoint : endpoints) {
+            sample(out, "ollamachat_endpoint_running", endpointLabels(endpoint), endpoint.getInFlight());
+        }
+        header(out, "ollamachat_endpoint_latency_seconds", "gauge", "Moving average of response times per endpoint");
+        for (EndpointBalancer.EndpointStats endpoint : endpoints) {
+            sample(out, "ollamachat_endpoint_latency_seconds", endpointLabels(endpoint), endpoint.getEwmaMillis() / 1000.0);
+        }
+        header(out, "ollamachat_endpoint_failures_total", "counter", "Failed requests per endpoint");
+        for (EndpointBalancer.EndpointStats endpoint : endpoints) {
+            sample(out, "ollamachat_endpoint_failures_total", endpointLabels(endpoint), endpoint.getFailed());
+        }
+        header(out, "ollamachat_circuit_state", "gauge", "Circuit breaker state (0 closed, 1 half-open, 2 open)");
+        for (CircuitBreaker breaker : plugin.getAIDispatcher().getCircuitBreakers()) {
+            CircuitBreaker.State state = breaker.getState();
+            sample(out, "ollamachat_circuit_state", labels("backend", breaker.getAiName(), "model", breaker.getModel()),
+                    state == CircuitBreaker.State.OPEN ? 2 : state == CircuitBreaker.State.HALF_OPEN ? 1 : 0);
+        }
+
+        header(out, "ollamachat_coalesced_requests_total", "counter", "Requests that joined an identical running generation");
+        sample(out, "ollamachat_coalesced_requests_total", "", plugin.getRequestCoalescer().getCoalescedCalls());
+        header(out, "ollamachat_hedged_requests_total", "counter", "Requests sent a second time because the first was slow");
+        sample(out, "ollamachat_hedged_requests_total", "", plugin.getRequestHedger().getHedges());
+        header(out, "ollamachat_hedge_wins_total", "counter", "Hedged requests answered first by the copy");
+        sample(out, "ollamachat_hedge_wins_total", "", plugin.getRequestHedger().getHedgeWins());
+    }
+
+    private void writeCaches(StringBuilder out) {
+        ResponseCache responseCache = plugin.getResponseCache();
+        SemanticCache semanticCache = plugin.getSemanticCache();
+        String response = labels("cache", "response");
+        String semantic = labels("cache", "semantic");
+
+        header(out, "ollamachat_cache_hits_total", "counter", "Answers served from a cache");
+        sample(out, "ollamachat_cache_hits_total", response, responseCache.getHits());
+        sample(out, "ollamachat_cache_hits_total", semantic, semanticCache.getHits());
+        header(out, "ollamachat_cache_misses_total", "counter", "Cache lookups that found no answer");
+        sample(out, "ollamachat_cache_misses_total", response, responseCache.getMisses());
+        sample(out, "ollamachat_cache_misses_total", semantic, semanticCache.getMisses());
+        header(out, "ollamachat_cache_hit_ratio", "gauge", "Share of cache lookups that found an answer");
+        sample(out, "ollamachat_cache_hit_ratio", response, ratio(responseCache.getHits(), responseCache.getMisses()));
+        sample(out, "ollamachat_cache_hit_ratio", semantic, ratio(semanticCache.getHits(), semanticCache.getMisses()));
+        header(out, "ollamachat_cache_entries", "gauge", "Answers held by a cache");
+        sample(out, "ollamachat_cache_entries", response, responseCache.size());
+        sample(out, "ollamachat_cache_entries", semantic, semanticCache.size());
+        header(out, "ollamachat_cache_bytes", "gauge", "Approximate memory held by a cache");
+        sample(out, "ollamachat_cache_bytes", response, responseCache.getSizeBytes());
+        sample(out, "ollamachat_cache_bytes", semantic, semanticCache.getMemoryBytes());
+    }
+
+    private void writeWorkers(StringBuilder out) {
+        List<WorkerPool> pools = List.of(plugin.getWorkerPool(), plugin.getComputePool());
+        header(out, "ollamachat_worker_running", "gauge", "Worker tasks currently running");
+        for (WorkerPool pool : pools) {
+            sample(out, "ollamachat_worker_running", poolLabels(pool), pool.getRunning());
+        }
+        header(out, "ollamachat_worker_threads", "gauge", "Platform threads in the worker pool, or running virtual threads");
+        for (WorkerPool pool : pools) {
+            sample(out, "ollamachat_worker_threads", poolLabels(pool), pool.getThreads());
+        }
+        header(out, "ollamachat_worker_waiting", "gauge", "Worker tasks waiting for a platform thread");
+        for (WorkerPool pool : pools) {
+            sample(out, "ollamachat_worker_waiting", poolLabels(pool), pool.getQueued());
+        }
+        header(out, "ollamachat_worker_tasks_total", "counter", "Worker tasks finished");
+        for (WorkerPool pool : pools) {
+            sample(out, "ollamachat_worker_tasks_total", poolLabels(pool), pool.getCompleted());
+        }
+        WorkerPool workers = plugin.getWorkerPool();
+        header(out, "ollamachat_worker_pinned_total", "counter", "Virtual threads pinned to their carrier longer than the threshold");
+        sample(out, "ollamachat_worker_pinned_total", poolLabels(workers), workers.getPinnedEvents());
+        header(out, "ollamachat_worker_pinned_seconds_total", "counter", "Time virtual threads spent pinned");
+        sample(out, "ollamachat_worker_pinned_seconds_total", poolLabels(workers), workers.getPinnedMillis() / 1000.0);
+    }
+
+    private void writeContextBudget(StringBuilder out) {
+        ContextBudgeter budgeter = plugin.getContextBudgeter();
+        header(out, "ollamachat_context_prompts_total", "counter", "Prompts built within the context budget");
+        sample(out, "ollamachat_context_prompts_total", "", budgeter.getPrompts());
+        header(out, "ollamachat_context_tokens_total", "counter", "Estimated tokens of the budgeted prompts");
+        sample(out, "ollamachat_context_tokens_total", "", budgeter.getTokens());
+        header(out, "ollamachat_context_trimmed_total", "counter", "Prompt parts left out or cut to fit the context budget");
+        sample(out, "ollamachat_context_trimmed_total", labels("part", "turn"), budgeter.getDroppedTurns());
+        sample(out, "ollamachat_context_trimmed_total", labels("part", "search_result"), budgeter.getDroppedResults());
+        sample(out, "ollamachat_context_trimmed_total", labels("part", "stored_context"), budgeter.getDroppedContexts());
+        sample(out, "ollamachat_context_trimmed_total", labels("part", "text"), budgeter.getClippedTexts());
+    }
+
+    private void writeSummaries(StringBuilder out) {
+        ConversationSummarizer summarizer = plugin.getConversationSummarizer();
+        header(out, "ollamachat_summaries_total", "counter", "Conversation summaries written");
+        sample(out, "ollamachat_summaries_total", "", summarizer.getSummaries());
+        header(out, "ollamachat_summarized_exchanges_total", "counter", "Chat exchanges folded into conversation summaries");
+        sample(out, "ollamachat_summarized_exchanges_total", "", summarizer.getSummarizedExchanges());
+        header(out, "ollamachat_summary_failures_total", "counter", "Conversation summaries that failed");
+        sample(out, "ollamachat_summary_failures_total", "", summarizer.getFailures());
+        header(out, "ollamachat_summary_pending", "gauge", "Conversations waiting to be summarized");
+        sample(out, "ollamachat_summary_pending", "", summarizer.getPending());
+    }
+
+    private static String poolLabels(WorkerPool pool) {
+        return labels("pool", pool.getName(), "mode", pool.getMode().name().toLowerCase());
+    }
+
+    private static void writeTimers(StringBuilder out, String name, String help, String label, List<LatencyTimer> timers) {
+        header(out, name + "_seconds", "histogram", help);
+        for (LatencyTimer timer : timers) {
+            long cumulative = 0;
+            for (int i = 0; i < LatencyTimer.BUCKET_MILLIS.length; i++) {
+                cumulative += timer.getBucketCount(i);
+                sample(out, name + "_seconds_bucket",
+                        labels(label, timer.getName(), "le", formatDouble(LatencyTimer.BUCKET_MILLIS[i] / 1000.0)), cumulative);
+            }
+            // Read the count once, so +Inf and _count always agree even while operations are recorded
+            long count = timer.getCount();
+            sample(out, name + "_seconds_bucket", labels(label, timer.getName(), "le", "+Inf"), Math.max(count, cumulative));
+            sample(out, name + "_seconds_sum", labels(label, timer.getName()), timer.getTotalNanos() / 1e9);
+            sample(out, name + "_seconds_count", labels(label, timer.getName()), Math.max(count, cumulative));
+        }
+        header(out, name + "_failures_total", "counter", "Failed operations, also counted in " + name + "_seconds");
+        for (LatencyTimer timer : timers) {
+            sample(out, name + "_failures_total", labels(label, timer.getName()), timer.getFailures());
+        }
+    }
+
+    /**
+     * @param divisor Converts the recorded unit into the exported one, e.g. 1000 for milliseconds to seconds
+     */
+    private static void summary(StringBuilder out, String name, String labels, GenerationMetrics.Distribution distribution,
+                                double divisor) {
+        long[] values = {distribution.getP50(), distribution.getP90(), distribution.getP99()};
+        for (int i = 0; i < QUANTILES.length; i++) {
+            String quantile = "quantile=\"" + formatDouble(QUANTILES[i]) + "\"";
+            sample(out, name, labels.isEmpty() ? "{" + quantile + "}" : labels.substring(0, labels.length() - 1) + "," + quantile + "}",
+                    values[i] / divisor);
+        }
+        sample(out, name + "_sum", labels, distribution.getSum() / divisor);
+        sample(out, name + "_count", labels, distribution.getCount());
+    }
+
+    private static String modelLabels(GenerationMetrics.ModelStats model) {
+        return labels("backend", model.getAiName(), "model", model.getModel());
+    }
+
+    private static String priorityLabels(AIDispatcher.BackendStats queue, AIDispatcher.PriorityStats priority) {
+        return labels("backend", queue.getAiName(), "priority", priority.getPriority());
+    }
+
+    private static String endpointLabels(EndpointBalancer.EndpointStats endpoint) {
+        return labels("backend", endpoint.getAiName(), "url", endpoint.getUrl());
+    }
+
+    private static double ratio(long hits, long misses) {
+        long lookups = hits + misses;
+        return lookups > 0 ? (double) hits / lookups : 0;
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ').append(formatDouble(value)).append('\n');
+    }
+
+    /**
+     * @param pairs Label names and values, alternating
+     */
+    private static String labels(String... pairs) {
+        StringBuilder labels = new StringBuilder("{");
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (i > 0) labels.append(',');
+            labels.append(pairs[i]).append("=\"");
+            String value = pairs[i + 1] != null ? pairs[i + 1] : "";
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    labels.append('\\').append(c);
+                } else if (c == '\n') {
+                    labels.append("\\n");
+                } else {
+                    labels.append(c);
+                }
+            }
+            labels.append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    private static String formatDouble(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+}
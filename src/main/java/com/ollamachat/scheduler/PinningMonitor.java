@@ -0,0 +1,75 @@
+package com.ollamachat.scheduler;
+
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Counts virtual threads pinned to their carrier thread, e.g. while blocking inside a
+ * {@code synchronized} block, from the JDK's {@code jdk.VirtualThreadPinned} flight recorder event.
+ */
+class PinningMonitor {
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+
+    private final RecordingStream stream;
+    private final LongAdder events = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private volatile String lastFrame;
+
+    private PinningMonitor(Duration threshold) {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, event -> {
+            events.increment();
+            totalNanos.add(event.getDuration().toNanos());
+            RecordedStackTrace stackTrace = event.getStackTrace();
+            if (stackTrace != null) {
+                lastFrame = firstApplicationFrame(stackTrace);
+            }
+        });
+        stream.startAsync();
+    }
+
+    /**
+     * @return The monitor, or null if the runtime has no flight recorder
+     */
+    static PinningMonitor start(Duration threshold, Logger logger) {
+        try {
+            return new PinningMonitor(threshold);
+        } catch (Exception | LinkageError e) {
+            logger.warning("Virtual thread pinning cannot be monitored: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The innermost frame is usually the JDK method that blocked; the caller is what needs fixing.
+     */
+    private static String firstApplicationFrame(RecordedStackTrace stackTrace) {
+        String fallback = null;
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (!frame.isJavaFrame()) continue;
+            String type = frame.getMethod().getType().getName();
+            String name = type + "." + frame.getMethod().getName();
+            if (fallback == null) {
+                fallback = name;
+            }
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return name;
+            }
+        }
+        return fallback;
+    }
+
+    long getEvents() { return events.sum(); }
+    long getTotalNanos() { return totalNanos.sum(); }
+    String getLastFrame() { return lastFrame; }
+
+    void close() {
+        stream.close();
+    }
+}
@@ -0,0 +1,185 @@
+package com.ollamachat.scheduler;
+
+import com.ollamachat.core.ConfigManager;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs one kind of request pipeline stage.
+ * <p>
+ * The blocking pool runs stages that wait on something other than the network, mainly JDBC calls.
+ * On Java 21 and newer every such task gets its own virtual thread, so many requests waiting at once
+ * neither starve the server's async scheduler nor the common fork-join pool. Older runtimes get a
+ * bounded pool of platform threads instead. Virtual threads are created through reflection because
+ * the plugin is compiled for Java 17. The compute pool is a few platform threads for stages that
+ * only keep a CPU busy, such as building prompts.
+ */
+public class WorkerPool implements Executor {
+    public enum Mode {
+        VIRTUAL, PLATFORM
+    }
+
+    private final String name;
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final Mode mode;
+    private final PinningMonitor pinningMonitor;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger peakRunning = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Creates the blocking pool, virtual or platform threads depending on {@code workers.mode}.
+     */
+    public WorkerPool(ConfigManager configManager, Logger logger) {
+        this.name = "blocking";
+        this.logger = logger;
+        String requested = configManager.getWorkerMode();
+        ExecutorService virtual = "platform".equalsIgnoreCase(requested) ? null : newVirtualThreadExecutor();
+        if (virtual != null) {
+            this.executor = virtual;
+            this.mode = Mode.VIRTUAL;
+            int threshold = configManager.getWorkerPinnedThreshold();
+            this.pinningMonitor = threshold > 0 ? PinningMonitor.start(Duration.ofMillis(threshold), logger) : null;
+        } else {
+            if ("virtual".equalsIgnoreCase(requested)) {
+                logger.warning("Virtual threads need Java 21 or newer, using platform worker threads instead");
+            }
+            int threads = Math.max(1, configManager.getWorkerPlatformThreads());
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new NamedThreadFactory("OllamaChat-Worker"));
+            this.mode = Mode.PLATFORM;
+            this.pinningMonitor = null;
+        }
+    }
+
+    /**
+     * Creates a pool of a fixed number of platform threads.
+     */
+    public WorkerPool(String name, int threads, Logger logger) {
+        this.name = name;
+        this.logger = logger;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("OllamaChat-" + name));
+        this.mode = Mode.PLATFORM;
+        this.pinningMonitor = null;
+    }
+
+    /**
+     * @return An executor starting one named virtual thread per task, or null if the runtime has none
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "OllamaChat-Virtual-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            int now = running.incrementAndGet();
+            peakRunning.accumulateAndGet(now, Math::max);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                failed.increment();
+                logger.log(Level.WARNING, "Uncaught exception in worker task", e);
+            } finally {
+                running.decrementAndGet();
+                completed.increment();
+            }
+        });
+    }
+
+    /**
+     * Stops accepting tasks and waits a few seconds for running ones, e.g. pending database writes.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (pinningMonitor != null) {
+            pinningMonitor.close();
+        }
+    }
+
+    public String getName() { return name; }
+    public Mode getMode() { return mode; }
+    public int getRunning() { return running.get(); }
+    public int getPeakRunning() { return peakRunning.get(); }
+    public long getCompleted() { return completed.sum(); }
+    public long getFailed() { return failed.sum(); }
+
+    /**
+     * @return The platform threads of the pool, or the running virtual threads
+     */
+    public int getThreads() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getPoolSize() : running.get();
+    }
+
+    /**
+     * @return Tasks waiting for a platform thread; always 0 with virtual threads
+     */
+    public int getQueued() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+
+    /**
+     * @return How often a virtual thread was pinned to its carrier longer than the threshold
+     */
+    public long getPinnedEvents() {
+        return pinningMonitor != null ? pinningMonitor.getEvents() : 0;
+    }
+
+    public long getPinnedMillis() {
+        return pinningMonitor != null ? pinningMonitor.getTotalNanos() / 1_000_000L : 0;
+    }
+
+    /**
+     * @return The plugin or library method where the last pinning happened, or null
+     */
+    public String getLastPinnedAt() {
+        return pinningMonitor != null ? pinningMonitor.getLastFrame() : null;
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
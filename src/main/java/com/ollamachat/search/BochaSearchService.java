@@ -5,18 +5,19 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
 import com.ollamachat.core.ConfigManager;
 import com.ollamachat.core.Ollamachat;
+import com.ollamachat.http.HttpTransport;
+import com.ollamachat.metrics.LatencyTimer;
 
-import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class BochaSearchService {
     private final Ollamachat plugin;
     private final ConfigManager configManager;
-    private final HttpClient httpClient;
+    private final HttpTransport transport;
     private final Gson gson;
 
     private static final String BOCHA_API_URL = "https://api.bocha.cn/v1/web-search";
@@ -24,59 +25,72 @@ public class BochaSearchService {
     public BochaSearchService(Ollamachat plugin) {
         this.plugin = plugin;
         this.configManager = plugin.getConfigManager();
-        this.httpClient = HttpClient.newHttpClient();
+        this.transport = plugin.getHttpTransport();
         this.gson = new Gson();
     }
 
     /**
      */
     public CompletableFuture<List<WebSearchService.SearchResult>> search(String query, int count) {
-        return CompletableFuture.supplyAsync(() -> {
+        String apiKey = configManager.getBochaApiKey();
+        if (apiKey == null || apiKey.isEmpty()) {
+            plugin.getLogger().warning("Bocha API key is not configured");
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("query", query);
+        requestBody.put("count", count);
+
+        if (configManager.isBochaIncludeSites() && !configManager.getBochaIncludeSites().isEmpty()) {
+            requestBody.put("includeSites", configManager.getBochaIncludeSites());
+        }
+        if (configManager.isBochaExcludeSites() && !configManager.getBochaExcludeSites().isEmpty()) {
+            requestBody.put("excludeSites", configManager.getBochaExcludeSites());
+        }
+        if (configManager.getBochaTimeRange() > 0) {
+            requestBody.put("timeRange", configManager.getBochaTimeRange());
+        }
+        if (configManager.getBochaFreshness() != null && !configManager.getBochaFreshness().isEmpty()) {
+            requestBody.put("freshness", configManager.getBochaFreshness());
+        }
+
+        String jsonRequest = gson.toJson(requestBody);
+
+        LatencyTimer timer = plugin.getPluginMetrics().search(ConfigManager.SearchEngine.BOCHA);
+        long startedAt = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> exchange;
+        try {
+            HttpRequest request = transport.newRequest(BOCHA_API_URL)
+                    .header("Content-Type", "application/json")
+                    .header("Authorization", "Bearer " + apiKey)
+                    .POST(HttpRequest.BodyPublishers.ofString(jsonRequest))
+                    .build();
+            exchange = transport.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            exchange = CompletableFuture.failedFuture(e);
+        }
+
+        // No thread waits for the response; it is parsed on the thread that completes the exchange
+        return exchange.handle((response, error) -> {
+            timer.recordSince(startedAt);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                timer.recordFailure();
+                plugin.getLogger().severe("Failed to perform Bocha search: " + cause.getMessage());
+                return Collections.<WebSearchService.SearchResult>emptyList();
+            }
+            if (response.statusCode() != 200) {
+                timer.recordFailure();
+                plugin.getLogger().warning("Bocha API error: " + response.statusCode() + " - " + response.body());
+                return Collections.<WebSearchService.SearchResult>emptyList();
+            }
             try {
-                String apiKey = configManager.getBochaApiKey();
-                if (apiKey == null || apiKey.isEmpty()) {
-                    plugin.getLogger().warning("Bocha API key is not configured");
-                    return Collections.emptyList();
-                }
-
-                Map<String, Object> requestBody = new HashMap<>();
-                requestBody.put("query", query);
-                requestBody.put("count", count);
-
-                if (configManager.isBochaIncludeSites() && !configManager.getBochaIncludeSites().isEmpty()) {
-                    requestBody.put("includeSites", configManager.getBochaIncludeSites());
-                }
-                if (configManager.isBochaExcludeSites() && !configManager.getBochaExcludeSites().isEmpty()) {
-                    requestBody.put("excludeSites", configManager.getBochaExcludeSites());
-                }
-                if (configManager.getBochaTimeRange() > 0) {
-                    requestBody.put("timeRange", configManager.getBochaTimeRange());
-                }
-                if (configManager.getBochaFreshness() != null && !configManager.getBochaFreshness().isEmpty()) {
-                    requestBody.put("freshness", configManager.getBochaFreshness());
-                }
-
-                String jsonRequest = gson.toJson(requestBody);
-
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(BOCHA_API_URL))
-                        .header("Content-Type", "application/json")
-                        .header("Authorization", "Bearer " + apiKey)
-                        .POST(HttpRequest.BodyPublishers.ofString(jsonRequest))
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    return parseSearchResults(response.body());
-                } else {
-                    plugin.getLogger().warning("Bocha API error: " + response.statusCode() + " - " + response.body());
-                    return Collections.emptyList();
-                }
-            } catch (Exception e) {
-                plugin.getLogger().severe("Failed to perform Bocha search: " + e.getMessage());
-                e.printStackTrace();
-                return Collections.emptyList();
+                return parseSearchResults(response.body());
+            } catch (RuntimeException e) {
+                timer.recordFailure();
+                plugin.getLogger().severe("Failed to parse Bocha search results: " + e.getMessage());
+                return Collections.<WebSearchService.SearchResult>emptyList();
             }
         });
     }
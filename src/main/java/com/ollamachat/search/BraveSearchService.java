@@ -5,18 +5,19 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
 import com.ollamachat.core.ConfigManager;
 import com.ollamachat.core.Ollamachat;
+import com.ollamachat.http.HttpTransport;
+import com.ollamachat.metrics.LatencyTimer;
 
-import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class BraveSearchService {
     private final Ollamachat plugin;
     private final ConfigManager configManager;
-    private final HttpClient httpClient;
+    private final HttpTransport transport;
     private final Gson gson;
 
     private static final String BRAVE_API_URL = "https://api.search.brave.com/res/v1/web/search";
@@ -24,48 +25,61 @@ public class BraveSearchService {
     public BraveSearchService(Ollamachat plugin) {
         this.plugin = plugin;
         this.configManager = plugin.getConfigManager();
-        this.httpClient = HttpClient.newHttpClient();
+        this.transport = plugin.getHttpTransport();
         this.gson = new Gson();
     }
 
     public CompletableFuture<List<WebSearchService.SearchResult>> search(String query, int count) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String apiKey = configManager.getBraveApiKey();
-                if (apiKey == null || apiKey.isEmpty()) {
-                    plugin.getLogger().warning("Brave API key is not configured");
-                    return Collections.emptyList();
-                }
+        String apiKey = configManager.getBraveApiKey();
+        if (apiKey == null || apiKey.isEmpty()) {
+            plugin.getLogger().warning("Brave API key is not configured");
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
 
-                // Build query parameters
-                StringBuilder urlBuilder = new StringBuilder(BRAVE_API_URL);
-                urlBuilder.append("?q=").append(query.replace(" ", "+"));
-                urlBuilder.append("&count=").append(count);
-                urlBuilder.append("&country=").append(configManager.getBraveCountry());
-                urlBuilder.append("&search_lang=").append(configManager.getBraveSearchLang());
-                urlBuilder.append("&ui_lang=").append(configManager.getBraveUiLang());
-                urlBuilder.append("&safe_search=").append(configManager.getBraveSafeSearch());
-
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(urlBuilder.toString()))
-                        .header("Accept", "application/json")
-                        .header("Accept-Encoding", "gzip")
-                        .header("X-Subscription-Token", apiKey)
-                        .GET()
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    return parseSearchResults(response.body());
-                } else {
-                    plugin.getLogger().warning("Brave API error: " + response.statusCode() + " - " + response.body());
-                    return Collections.emptyList();
-                }
-            } catch (Exception e) {
-                plugin.getLogger().severe("Failed to perform Brave search: " + e.getMessage());
-                e.printStackTrace();
-                return Collections.emptyList();
+        // Build query parameters
+        StringBuilder urlBuilder = new StringBuilder(BRAVE_API_URL);
+        urlBuilder.append("?q=").append(query.replace(" ", "+"));
+        urlBuilder.append("&count=").append(count);
+        urlBuilder.append("&country=").append(configManager.getBraveCountry());
+        urlBuilder.append("&search_lang=").append(configManager.getBraveSearchLang());
+        urlBuilder.append("&ui_lang=").append(configManager.getBraveUiLang());
+        urlBuilder.append("&safe_search=").append(configManager.getBraveSafeSearch());
+
+        LatencyTimer timer = plugin.getPluginMetrics().search(ConfigManager.SearchEngine.BRAVE);
+        long startedAt = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> exchange;
+        try {
+            HttpRequest request = transport.newRequest(urlBuilder.toString())
+                    .header("Accept", "application/json")
+                    .header("Accept-Encoding", "gzip")
+                    .header("X-Subscription-Token", apiKey)
+                    .GET()
+                    .build();
+            exchange = transport.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            exchange = CompletableFuture.failedFuture(e);
+        }
+
+        // No thread waits for the response; it is parsed on the thread that completes the exchange
+        return exchange.handle((response, error) -> {
+            timer.recordSince(startedAt);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                timer.recordFailure();
+                plugin.getLogger().severe("Failed to perform Brave search: " + cause.getMessage());
+                return Collections.<WebSearchService.SearchResult>emptyList();
+            }
+            if (response.statusCode() != 200) {
+                timer.recordFailure();
+                plugin.getLogger().warning("Brave API error: " + response.statusCode() + " - " + response.body());
+                return Collections.<WebSearchService.SearchResult>emptyList();
+            }
+            try {
+                return parseSearchResults(response.body());
+            } catch (RuntimeException e) {
+                timer.recordFailure();
+                plugin.getLogger().severe("Failed to parse Brave search results: " + e.getMessage());
+                return Collections.<WebSearchService.SearchResult>emptyList();
             }
         });
     }
@@ -85,18 +85,24 @@ public class WebSearchService {
                 query != null ? Map.of("query", query) : null)).append("\n\n");
 
         for (int i = 0; i < results.size(); i++) {
-            SearchResult result = results.get(i);
-            sb.append(i + 1).append(". **").append(result.getTitle()).append("**\n");
-            sb.append("   ").append(configManager.getMessage("websearch-source",
-                    Map.of("site", result.getSiteName() != null ? result.getSiteName() : "Unknown"))).append("\n");
-            sb.append("   ").append(result.getSnippet()).append("\n");
-            sb.append("   ").append(configManager.getMessage("websearch-url",
-                    Map.of("url", result.getUrl() != null ? result.getUrl() : "#"))).append("\n\n");
+            sb.append(formatSearchResultForAI(i + 1, results.get(i)));
         }
 
         return sb.toString();
     }
 
+    /**
+     * @return One entry of {@link #formatSearchResultsForAI}
+     */
+    public String formatSearchResultForAI(int index, SearchResult result) {
+        return index + ". **" + result.getTitle() + "**\n" +
+                "   " + configManager.getMessage("websearch-source",
+                Map.of("site", result.getSiteName() != null ? result.getSiteName() : "Unknown")) + "\n" +
+                "   " + result.getSnippet() + "\n" +
+                "   " + configManager.getMessage("websearch-url",
+                Map.of("url", result.getUrl() != null ? result.getUrl() : "#")) + "\n\n";
+    }
+
     public static class SearchResult {
         private String title;
         private String url;